@@ -18,4 +18,17 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# libwebrtc calls into its Java classes from native code by name
+-keep class org.webrtc.** { *; }
+
+# Java-WebSocket logs through slf4j-api, which looks the binding up at runtime
+-dontwarn org.slf4j.impl.**
+
+# Verbose and debug logging is compiled out of release builds; R8 drops the
+# calls and any argument expressions that have no other effect.
+-assumenosideeffects class com.example.androidwebrtc.log.AppLog {
+    public static void v(...);
+    public static void d(...);
+}
@@ -0,0 +1,127 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtcCertificatePem;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * How long a PeerConnection takes from creation to its first offer when it has
+ * to generate its DTLS key pair (RSA and ECDSA) and when it is handed a
+ * pre-generated certificate, as {@link com.example.androidwebrtc.webrtc.cert.CertificateCache}
+ * does. The difference is what the cache takes off every call setup.
+ *
+ * <p>Runs on a device: {@code ./gradlew connectedAndroidTest}. Results are logged
+ * under the "DtlsCertificateSetup" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DtlsCertificateSetupTest {
+    private static final String TAG = "DtlsCertificateSetup";
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 20;
+    private static final long OFFER_TIMEOUT_S = 10;
+
+    private PeerConnectionFactory mFactory;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PeerConnectionFactory.initialize(PeerConnectionFactory.InitializationOptions.builder(context).createInitializationOptions());
+        mFactory = PeerConnectionFactory.builder().createPeerConnectionFactory();
+    }
+
+    @After
+    public void tearDown() {
+        mFactory.dispose();
+    }
+
+    @Test
+    public void measuresOfferTimeWithAndWithoutACachedCertificate() throws InterruptedException {
+        final long[] rsa = measure(PeerConnection.KeyType.RSA, null);
+        final long[] ecdsa = measure(PeerConnection.KeyType.ECDSA, null);
+        final long[] cached = measure(PeerConnection.KeyType.ECDSA, RtcCertificatePem.generateCertificate(PeerConnection.KeyType.ECDSA));
+
+        Log.i(TAG, "{\"runs\":" + RUNS
+                + ",\"rsa_generated_median_us\":" + median(rsa)
+                + ",\"ecdsa_generated_median_us\":" + median(ecdsa)
+                + ",\"cached_median_us\":" + median(cached)
+                + ",\"saved_vs_ecdsa_us\":" + (median(ecdsa) - median(cached))
+                + ",\"saved_vs_rsa_us\":" + (median(rsa) - median(cached)) + "}");
+    }
+
+    // Microseconds from createPeerConnection to onCreateSuccess of the first offer
+    private long[] measure(final PeerConnection.KeyType keyType, final RtcCertificatePem certificate) throws InterruptedException {
+        final long[] results = new long[RUNS];
+
+        for (int run = -WARMUP_RUNS; run < RUNS; run++) {
+            final PeerConnection.RTCConfiguration configuration = new PeerConnection.RTCConfiguration(
+                    new ArrayList<PeerConnection.IceServer>());
+            configuration.keyType = keyType;
+            if (certificate != null) configuration.certificate = certificate;
+
+            final CountDownLatch created = new CountDownLatch(1);
+            final long startNs = System.nanoTime();
+            final PeerConnection peerConnection = mFactory.createPeerConnection(configuration, new ForwardingPeerConnectionObserver());
+            assertNotNull(peerConnection);
+            peerConnection.createOffer(new SdpObserver() {
+                @Override
+                public void onCreateSuccess(SessionDescription sessionDescription) {
+                    created.countDown();
+                }
+
+                @Override
+                public void onSetSuccess() {
+                }
+
+                @Override
+                public void onCreateFailure(String error) {
+                    Log.e(TAG, "createOffer failed: " + error);
+                }
+
+                @Override
+                public void onSetFailure(String error) {
+                }
+            }, offerConstraints());
+
+            assertTrue(keyType + " offer timed out", created.await(OFFER_TIMEOUT_S, TimeUnit.SECONDS));
+            final long elapsedUs = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNs);
+            peerConnection.dispose();
+
+            if (run >= 0) results[run] = elapsedUs;
+        }
+        return results;
+    }
+
+    private static MediaConstraints offerConstraints() {
+        final MediaConstraints constraints = new MediaConstraints();
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
+        return constraints;
+    }
+
+    private static long median(final long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fixed-length calls between Connections in this process, with no camera and no
+ * UI. Each run writes load-reports/load-report-&lt;participants&gt;p.json to the
+ * app's external files directory and logs it under the "LoadHarness" tag.
+ *
+ * <p>Runs on a device or emulator:
+ * {@code ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.loadLabel=$(git rev-parse --short HEAD)}
+ * and pull the reports with
+ * {@code adb pull /sdcard/Android/data/com.example.androidwebrtc/files/load-reports}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HeadlessLoadTest {
+    private static final String TAG = "LoadHarness";
+
+    private static final long CALL_MS = 20_000;
+
+    @Test
+    public void twoParticipants() throws Exception {
+        run(2);
+    }
+
+    @Test
+    public void threeParticipants() throws Exception {
+        run(3);
+    }
+
+    private void run(final int participants) throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final Bundle arguments = InstrumentationRegistry.getArguments();
+
+        final JSONObject report = new LoadHarness.Builder(participants)
+                .setCallMs(CALL_MS)
+                .setY4mPath(arguments.getString("loadY4m"))
+                .setLabel(arguments.getString("loadLabel"))
+                .build()
+                .run(context);
+
+        final File file = LoadHarness.write(report, new File(context.getExternalFilesDir(null), "load-reports"));
+        Log.i(TAG, report.toString());
+        Log.i(TAG, "Report written to " + file);
+
+        assertEquals(participants * (participants - 1) / 2, report.getJSONArray("setup").length());
+        final JSONArray directions = report.getJSONArray("directions");
+        assertEquals(participants * (participants - 1), directions.length());
+        for (int i = 0; i < directions.length(); i++) {
+            final JSONObject direction = directions.getJSONObject(i);
+            assertTrue("No frames delivered " + direction.getInt("from") + "->" + direction.getInt("to"),
+                    direction.getLong("frames_delivered") > 0);
+            assertTrue(direction.getLong("video_receive_bps") > 0);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.androidwebrtc.webrtc.audio.AudioProfile;
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+import com.example.androidwebrtc.webrtc.transport.TransportProfile;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RTCStatsReport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a fixed-length call between several Connections in one process: synthetic
+ * cameras, in-memory signaling, no renderers. Every pair of participants gets
+ * its own PeerConnection, the lower index offering. The result is a JSON report
+ * of setup latency, frames and bitrate per direction, and process CPU time over
+ * the measured window, meant to be diffed between builds.
+ */
+class LoadHarness {
+    private static final String TAG = "LoadHarness";
+
+    // Bumped when a key changes meaning, so old reports are not compared blindly
+    static final int SCHEMA_VERSION = 1;
+
+    private static final long CONNECT_TIMEOUT_MS = 20_000;
+    private static final long FIRST_FRAME_TIMEOUT_MS = 10_000;
+    private static final long STATS_TIMEOUT_MS = 5_000;
+
+    private final int mParticipants;
+    private final long mWarmupMs;
+    private final long mCallMs;
+    private final SyntheticCameraEnumerator mCameras;
+    private final TransportProfile mTransport;
+    private final AudioProfile mAudioProfile;
+    private final String mLabel;
+
+    private LoadHarness(final Builder builder) {
+        mParticipants = builder.mParticipants;
+        mWarmupMs = builder.mWarmupMs;
+        mCallMs = builder.mCallMs;
+        mCameras = builder.mY4mPath == null
+                ? new SyntheticCameraEnumerator(builder.mWidth, builder.mHeight, builder.mFps)
+                : new SyntheticCameraEnumerator(builder.mWidth, builder.mHeight, builder.mFps, builder.mY4mPath);
+        mTransport = builder.mTransport;
+        mAudioProfile = builder.mAudioProfile;
+        mLabel = builder.mLabel;
+    }
+
+    // Blocks for the whole call; every Connection is released before it returns
+    JSONObject run(final Context context) throws Exception {
+        final MeshSignaling signaling = new MeshSignaling(mParticipants);
+        final Connection[] connections = new Connection[mParticipants];
+
+        try {
+            for (int i = 0; i < mParticipants; i++) {
+                connections[i] = Connection.createStandalone(context, signaling.listenerFor(i), PreferredCodecRankingPolicy.DEFAULT,
+                        mParticipants - 1, PeerRegistry.OverflowPolicy.REJECT_NEW, mAudioProfile);
+                signaling.attach(i, connections[i]);
+                connections[i].setTransportProfile(mTransport);
+                connections[i].initializeMediaDevices(context, null, mCameras);
+            }
+
+            final JSONArray links = new JSONArray();
+            for (int a = 0; a < mParticipants; a++) {
+                for (int b = a + 1; b < mParticipants; b++) {
+                    links.put(connect(connections, signaling, a, b));
+                }
+            }
+
+            Thread.sleep(mWarmupMs);
+            final RtpCounters[][] start = snapshot(signaling);
+            final long[][] renderedStart = rendered(signaling);
+            final long cpuStartMs = Process.getElapsedCpuTime();
+            final long wallStartMs = SystemClock.elapsedRealtime();
+
+            Thread.sleep(mCallMs);
+            final RtpCounters[][] end = snapshot(signaling);
+            final long[][] renderedEnd = rendered(signaling);
+            final long cpuMs = Process.getElapsedCpuTime() - cpuStartMs;
+            final long wallMs = SystemClock.elapsedRealtime() - wallStartMs;
+
+            return report(links, start, end, renderedStart, renderedEnd, cpuMs, wallMs);
+        } finally {
+            for (final Connection connection : connections) {
+                if (connection != null) connection.release();
+            }
+        }
+    }
+
+    // Writes next to earlier reports under the same name, so a CI job can pull one file per size
+    static File write(final JSONObject report, final File directory) throws IOException, JSONException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        final File file = new File(directory, "load-report-" + report.getJSONObject("config").getInt("participants") + "p.json");
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write(report.toString(2));
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private JSONObject connect(final Connection[] connections, final MeshSignaling signaling, final int a, final int b)
+            throws InterruptedException, JSONException {
+        connections[a].openPeer(MeshSignaling.participantId(b));
+        connections[b].openPeer(MeshSignaling.participantId(a));
+
+        final long startMs = SystemClock.elapsedRealtime();
+        signaling.session(a, b).createOffer();
+        if (!signaling.awaitConnected(a, b, CONNECT_TIMEOUT_MS)) {
+            throw new IllegalStateException("Link " + a + "-" + b + " did not connect");
+        }
+        final long connectedMs = SystemClock.elapsedRealtime() - startMs;
+        if (!signaling.awaitFirstFrames(a, b, FIRST_FRAME_TIMEOUT_MS)) {
+            throw new IllegalStateException("Link " + a + "-" + b + " connected but no video arrived");
+        }
+        final long firstFramesMs = Math.max(signaling.firstFrameAtMs(a, b), signaling.firstFrameAtMs(b, a)) - startMs;
+        Log.d(TAG, "Link " + a + "-" + b + " connected in " + connectedMs + "ms, video in " + firstFramesMs + "ms");
+
+        return new JSONObject()
+                .put("a", a)
+                .put("b", b)
+                .put("ice_connected_ms", connectedMs)
+                .put("first_frames_ms", firstFramesMs);
+    }
+
+    // [owner][remote], null on the diagonal
+    private RtpCounters[][] snapshot(final MeshSignaling signaling) throws InterruptedException {
+        final RtpCounters[][] counters = new RtpCounters[mParticipants][mParticipants];
+        for (int owner = 0; owner < mParticipants; owner++) {
+            for (int remote = 0; remote < mParticipants; remote++) {
+                if (owner != remote) counters[owner][remote] = RtpCounters.from(getStats(signaling.session(owner, remote)));
+            }
+        }
+        return counters;
+    }
+
+    // [receiver][sender]
+    private long[][] rendered(final MeshSignaling signaling) {
+        final long[][] frames = new long[mParticipants][mParticipants];
+        for (int receiver = 0; receiver < mParticipants; receiver++) {
+            for (int sender = 0; sender < mParticipants; sender++) {
+                if (receiver != sender) frames[receiver][sender] = signaling.framesReceived(receiver, sender);
+            }
+        }
+        return frames;
+    }
+
+    private static RTCStatsReport getStats(final PeerSession session) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<RTCStatsReport> result = new AtomicReference<>();
+        session.getStats(new RTCStatsCollectorCallback() {
+            @Override
+            public void onStatsDelivered(RTCStatsReport report) {
+                result.set(report);
+                done.countDown();
+            }
+        });
+        if (!done.await(STATS_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("No stats from " + session.getRemoteId());
+        }
+        return result.get();
+    }
+
+    private JSONObject report(final JSONArray links, final RtpCounters[][] start, final RtpCounters[][] end,
+                              final long[][] renderedStart, final long[][] renderedEnd, final long cpuMs, final long wallMs)
+            throws JSONException {
+        final double seconds = wallMs / 1000.0;
+        final JSONArray directions = new JSONArray();
+        long framesSent = 0;
+        long framesReceived = 0;
+        long bytesSent = 0;
+        long bytesReceived = 0;
+
+        for (int sender = 0; sender < mParticipants; sender++) {
+            for (int receiver = 0; receiver < mParticipants; receiver++) {
+                if (sender == receiver) continue;
+
+                final RtpCounters sent = end[sender][receiver].minus(start[sender][receiver]);
+                final RtpCounters received = end[receiver][sender].minus(start[receiver][sender]);
+                final long rendered = renderedEnd[receiver][sender] - renderedStart[receiver][sender];
+                framesSent += sent.mFramesSent;
+                framesReceived += received.mFramesReceived;
+                bytesSent += sent.mVideoBytesSent + sent.mAudioBytesSent;
+                bytesReceived += received.mVideoBytesReceived + received.mAudioBytesReceived;
+
+                directions.put(new JSONObject()
+                        .put("from", sender)
+                        .put("to", receiver)
+                        .put("frames_encoded", sent.mFramesEncoded)
+                        .put("frames_sent", sent.mFramesSent)
+                        .put("frames_received", received.mFramesReceived)
+                        .put("frames_decoded", received.mFramesDecoded)
+                        .put("frames_dropped", received.mFramesDropped)
+                        .put("frames_delivered", rendered)
+                        .put("received_fps", rendered / seconds)
+                        .put("packets_lost", received.mPacketsLost)
+                        .put("video_send_bps", bitsPerSecond(sent.mVideoBytesSent, seconds))
+                        .put("video_receive_bps", bitsPerSecond(received.mVideoBytesReceived, seconds))
+                        .put("audio_send_bps", bitsPerSecond(sent.mAudioBytesSent, seconds))
+                        .put("audio_receive_bps", bitsPerSecond(received.mAudioBytesReceived, seconds)));
+            }
+        }
+
+        return new JSONObject()
+                .put("schema_version", SCHEMA_VERSION)
+                .put("label", mLabel)
+                .put("device", new JSONObject()
+                        .put("manufacturer", Build.MANUFACTURER)
+                        .put("model", Build.MODEL)
+                        .put("sdk", Build.VERSION.SDK_INT)
+                        .put("cores", Runtime.getRuntime().availableProcessors()))
+                .put("config", new JSONObject()
+                        .put("participants", mParticipants)
+                        .put("warmup_ms", mWarmupMs)
+                        .put("call_ms", mCallMs)
+                        .put("source", mCameras.describe())
+                        .put("transport", mTransport.getName())
+                        .put("audio_profile", mAudioProfile.getName()))
+                .put("setup", links)
+                .put("cpu", new JSONObject()
+                        .put("process_cpu_ms", cpuMs)
+                        .put("wall_ms", wallMs)
+                        // Cores kept busy on average, all participants together
+                        .put("cores_busy", (double) cpuMs / wallMs)
+                        .put("cpu_ms_per_participant_second", cpuMs / (seconds * mParticipants)))
+                .put("directions", directions)
+                .put("totals", new JSONObject()
+                        .put("frames_sent", framesSent)
+                        .put("frames_received", framesReceived)
+                        .put("send_bps", bitsPerSecond(bytesSent, seconds))
+                        .put("receive_bps", bitsPerSecond(bytesReceived, seconds)));
+    }
+
+    private static long bitsPerSecond(final long bytes, final double seconds) {
+        return Math.round(bytes * 8 / seconds);
+    }
+
+    // The cumulative RTP counters of one PeerConnection, summed over its streams
+    static class RtpCounters {
+        long mFramesEncoded;
+        long mFramesSent;
+        long mVideoBytesSent;
+        long mAudioBytesSent;
+        long mFramesReceived;
+        long mFramesDecoded;
+        long mFramesDropped;
+        long mVideoBytesReceived;
+        long mAudioBytesReceived;
+        long mPacketsLost;
+
+        static RtpCounters from(final RTCStatsReport report) {
+            final RtpCounters counters = new RtpCounters();
+
+            for (final RTCStats stats : report.getStatsMap().values()) {
+                final Map<String, Object> members = stats.getMembers();
+                final boolean video = "video".equals(members.get("kind"));
+
+                switch (stats.getType()) {
+                    case "outbound-rtp":
+                        if (video) {
+                            // One per simulcast layer
+                            counters.mFramesEncoded += count(members, "framesEncoded");
+                            counters.mFramesSent += count(members, "framesSent");
+                            counters.mVideoBytesSent += count(members, "bytesSent");
+                        } else {
+                            counters.mAudioBytesSent += count(members, "bytesSent");
+                        }
+                        break;
+                    case "inbound-rtp":
+                        if (video) {
+                            counters.mFramesReceived += count(members, "framesReceived");
+                            counters.mFramesDecoded += count(members, "framesDecoded");
+                            counters.mFramesDropped += count(members, "framesDropped");
+                            counters.mVideoBytesReceived += count(members, "bytesReceived");
+                        } else {
+                            counters.mAudioBytesReceived += count(members, "bytesReceived");
+                        }
+                        counters.mPacketsLost += count(members, "packetsLost");
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return counters;
+        }
+
+        RtpCounters minus(final RtpCounters earlier) {
+            final RtpCounters delta = new RtpCounters();
+            delta.mFramesEncoded = mFramesEncoded - earlier.mFramesEncoded;
+            delta.mFramesSent = mFramesSent - earlier.mFramesSent;
+            delta.mVideoBytesSent = mVideoBytesSent - earlier.mVideoBytesSent;
+            delta.mAudioBytesSent = mAudioBytesSent - earlier.mAudioBytesSent;
+            delta.mFramesReceived = mFramesReceived - earlier.mFramesReceived;
+            delta.mFramesDecoded = mFramesDecoded - earlier.mFramesDecoded;
+            delta.mFramesDropped = mFramesDropped - earlier.mFramesDropped;
+            delta.mVideoBytesReceived = mVideoBytesReceived - earlier.mVideoBytesReceived;
+            delta.mAudioBytesReceived = mAudioBytesReceived - earlier.mAudioBytesReceived;
+            delta.mPacketsLost = mPacketsLost - earlier.mPacketsLost;
+            return delta;
+        }
+
+        private static long count(final Map<String, Object> members, final String name) {
+            final Object value = members.get(name);
+            return value instanceof Number ? ((Number) value).longValue() : 0;
+        }
+    }
+
+    static class Builder {
+        private final int mParticipants;
+        private long mWarmupMs = 3_000;
+        private long mCallMs = 20_000;
+        private int mWidth = 640;
+        private int mHeight = 480;
+        private int mFps = 30;
+        private String mY4mPath;
+        private TransportProfile mTransport = new TransportProfile.Builder("loopback", TransportProfile.MAX_BUNDLE)
+                .clearIceServers()
+                .build();
+        private AudioProfile mAudioProfile = AudioProfile.CONVERSATION;
+        private String mLabel = "";
+
+        Builder(final int participants) {
+            if (participants < 2) {
+                throw new IllegalArgumentException("A call needs at least 2 participants: " + participants);
+            }
+            mParticipants = participants;
+        }
+
+        // Lets the bandwidth estimate ramp up before counting starts
+        Builder setWarmupMs(final long warmupMs) {
+            if (warmupMs < 0) {
+                throw new IllegalArgumentException("warmupMs must not be negative: " + warmupMs);
+            }
+            mWarmupMs = warmupMs;
+            return this;
+        }
+
+        Builder setCallMs(final long callMs) {
+            if (callMs <= 0) {
+                throw new IllegalArgumentException("callMs must be positive: " + callMs);
+            }
+            mCallMs = callMs;
+            return this;
+        }
+
+        Builder setVideo(final int width, final int height, final int fps) {
+            if (width <= 0 || height <= 0 || fps <= 0) {
+                throw new IllegalArgumentException("Invalid video " + width + "x" + height + "@" + fps);
+            }
+            mWidth = width;
+            mHeight = height;
+            mFps = fps;
+            return this;
+        }
+
+        // Loops a Y4M file instead of the test pattern
+        Builder setY4mPath(final String path) {
+            mY4mPath = path;
+            return this;
+        }
+
+        Builder setTransportProfile(final TransportProfile profile) {
+            mTransport = profile;
+            return this;
+        }
+
+        Builder setAudioProfile(final AudioProfile profile) {
+            mAudioProfile = profile;
+            return this;
+        }
+
+        // Free text carried into the report, e.g. the commit under test
+        Builder setLabel(final String label) {
+            mLabel = label == null ? "" : label;
+            return this;
+        }
+
+        LoadHarness build() {
+            if (mTransport == null || mAudioProfile == null) {
+                throw new IllegalStateException("Transport and audio profiles are required");
+            }
+            return new LoadHarness(this);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Minimal TURN server over UDP (RFC 5766) so relay-only calls can be tested on
+ * a device without network access. Handles Allocate with long-term credentials,
+ * Refresh, CreatePermission, ChannelBind, Send and Data indications and
+ * ChannelData; permissions are accepted but not enforced, and there is no
+ * allocation expiry. Not meant for anything but tests.
+ */
+class LocalTurnServer {
+    private static final String TAG = "LocalTurnServer";
+
+    static final String USERNAME = "loopback";
+    static final String PASSWORD = "loopback-secret";
+    private static final String REALM = "androidwebrtc.test";
+    private static final String NONCE = "0123456789abcdef";
+    private static final int LIFETIME_S = 600;
+
+    private static final int MAGIC_COOKIE = 0x2112A442;
+    private static final int HEADER_SIZE = 20;
+    private static final int MAX_PACKET = 65536;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BINDING = 0x0001;
+    private static final int ALLOCATE = 0x0003;
+    private static final int REFRESH = 0x0004;
+    private static final int SEND = 0x0006;
+    private static final int DATA = 0x0007;
+    private static final int CREATE_PERMISSION = 0x0008;
+    private static final int CHANNEL_BIND = 0x0009;
+
+    private static final int CLASS_REQUEST = 0x0000;
+    private static final int CLASS_INDICATION = 0x0010;
+    private static final int CLASS_SUCCESS = 0x0100;
+    private static final int CLASS_ERROR = 0x0110;
+
+    private static final int ATTR_USERNAME = 0x0006;
+    private static final int ATTR_MESSAGE_INTEGRITY = 0x0008;
+    private static final int ATTR_ERROR_CODE = 0x0009;
+    private static final int ATTR_CHANNEL_NUMBER = 0x000C;
+    private static final int ATTR_LIFETIME = 0x000D;
+    private static final int ATTR_XOR_PEER_ADDRESS = 0x0012;
+    private static final int ATTR_DATA = 0x0013;
+    private static final int ATTR_REALM = 0x0014;
+    private static final int ATTR_NONCE = 0x0015;
+    private static final int ATTR_XOR_RELAYED_ADDRESS = 0x0016;
+    private static final int ATTR_XOR_MAPPED_ADDRESS = 0x0020;
+    private static final int ATTR_FINGERPRINT = 0x8028;
+
+    private final InetAddress mAddress;
+    private final DatagramSocket mSocket;
+    private final byte[] mKey;
+    private final Map<InetSocketAddress, Allocation> mAllocations = new ConcurrentHashMap<>();
+    private final AtomicLong mRelayedPackets = new AtomicLong();
+    private final Thread mThread;
+    private volatile boolean mClosed;
+
+    LocalTurnServer(final InetAddress address) throws IOException {
+        mAddress = address;
+        mSocket = new DatagramSocket(new InetSocketAddress(address, 0));
+        mKey = md5(USERNAME + ":" + REALM + ":" + PASSWORD);
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "local-turn");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    // libwebrtc leaves loopback out of its networks, so serve on the address it gathers from
+    static InetAddress siteLocalAddress() throws SocketException {
+        final Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        for (final NetworkInterface networkInterface : Collections.list(interfaces)) {
+            if (!networkInterface.isUp() || networkInterface.isLoopback()) continue;
+
+            for (final InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                if (address instanceof Inet4Address && address.isSiteLocalAddress()) return address;
+            }
+        }
+        return InetAddress.getLoopbackAddress();
+    }
+
+    String getUrl() {
+        return "turn:" + mAddress.getHostAddress() + ":" + mSocket.getLocalPort() + "?transport=udp";
+    }
+
+    int getAllocationCount() {
+        return mAllocations.size();
+    }
+
+    // Packets forwarded in either direction between clients and their peers
+    long getRelayedPackets() {
+        return mRelayedPackets.get();
+    }
+
+    void close() {
+        mClosed = true;
+        mSocket.close();
+        for (final Allocation allocation : mAllocations.values()) {
+            allocation.close();
+        }
+        mAllocations.clear();
+    }
+
+    private void serve() {
+        final byte[] buffer = new byte[MAX_PACKET];
+        final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+        while (!mClosed) {
+            try {
+                packet.setLength(buffer.length);
+                mSocket.receive(packet);
+                final InetSocketAddress client = (InetSocketAddress) packet.getSocketAddress();
+                final byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
+
+                // ChannelData starts with a channel number in 0x4000-0x7FFF
+                if (data.length >= 4 && (data[0] & 0xC0) == 0x40) {
+                    onChannelData(client, data);
+                } else if (data.length >= HEADER_SIZE && ByteBuffer.wrap(data).getInt(4) == MAGIC_COOKIE) {
+                    onStunMessage(client, data);
+                }
+            } catch (IOException e) {
+                if (!mClosed) Log.w(TAG, "Receive failed", e);
+            }
+        }
+    }
+
+    private void onChannelData(final InetSocketAddress client, final byte[] data) throws IOException {
+        final Allocation allocation = mAllocations.get(client);
+        if (allocation == null) return;
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final int channel = buffer.getShort(0) & 0xFFFF;
+        final int length = buffer.getShort(2) & 0xFFFF;
+        final InetSocketAddress peer = allocation.mPeersByChannel.get(channel);
+        if (peer == null || length > data.length - 4) return;
+
+        allocation.send(peer, Arrays.copyOfRange(data, 4, 4 + length));
+    }
+
+    private void onStunMessage(final InetSocketAddress client, final byte[] data) throws IOException {
+        final Message request = Message.parse(data);
+        if (request == null) return;
+
+        final int method = request.mType & 0x3EEF;
+        final int messageClass = request.mType & 0x0110;
+
+        if (messageClass == CLASS_INDICATION) {
+            if (method == SEND) onSend(client, request);
+            return;
+        }
+        if (messageClass != CLASS_REQUEST) return;
+
+        if (method == BINDING) {
+            final Builder response = new Builder(BINDING | CLASS_SUCCESS, request.mTransactionId);
+            response.addAddress(ATTR_XOR_MAPPED_ADDRESS, client);
+            reply(client, response.build(null));
+            return;
+        }
+
+        if (!isAuthenticated(request, data)) {
+            final Builder response = new Builder(method | CLASS_ERROR, request.mTransactionId);
+            response.addErrorCode(401, "Unauthorized");
+            response.add(ATTR_REALM, REALM.getBytes(UTF_8));
+            response.add(ATTR_NONCE, NONCE.getBytes(UTF_8));
+            reply(client, response.build(null));
+            return;
+        }
+
+        switch (method) {
+            case ALLOCATE:
+                onAllocate(client, request);
+                break;
+            case REFRESH:
+                onRefresh(client, request);
+                break;
+            case CREATE_PERMISSION:
+                if (mAllocations.containsKey(client)) {
+                    reply(client, new Builder(CREATE_PERMISSION | CLASS_SUCCESS, request.mTransactionId).build(mKey));
+                } else {
+                    replyError(client, request, 437, "Allocation Mismatch");
+                }
+                break;
+            case CHANNEL_BIND:
+                onChannelBind(client, request);
+                break;
+            default:
+                replyError(client, request, 400, "Bad Request");
+                break;
+        }
+    }
+
+    private void onAllocate(final InetSocketAddress client, final Message request) throws IOException {
+        Allocation allocation = mAllocations.get(client);
+        if (allocation == null) {
+            allocation = new Allocation(client);
+            mAllocations.put(client, allocation);
+            Log.d(TAG, "Allocated " + allocation.mRelay.getLocalSocketAddress() + " for " + client);
+        } else if (!Arrays.equals(allocation.mTransactionId, request.mTransactionId)) {
+            replyError(client, request, 437, "Allocation Mismatch");
+            return;
+        }
+        allocation.mTransactionId = request.mTransactionId;
+
+        final Builder response = new Builder(ALLOCATE | CLASS_SUCCESS, request.mTransactionId);
+        response.addAddress(ATTR_XOR_RELAYED_ADDRESS, (InetSocketAddress) allocation.mRelay.getLocalSocketAddress());
+        response.addAddress(ATTR_XOR_MAPPED_ADDRESS, client);
+        response.addInt(ATTR_LIFETIME, LIFETIME_S);
+        reply(client, response.build(mKey));
+    }
+
+    private void onRefresh(final InetSocketAddress client, final Message request) throws IOException {
+        final byte[] lifetime = request.mAttributes.get(ATTR_LIFETIME);
+        final boolean delete = lifetime != null && ByteBuffer.wrap(lifetime).getInt() == 0;
+
+        final Allocation allocation = delete ? mAllocations.remove(client) : mAllocations.get(client);
+        if (allocation == null) {
+            replyError(client, request, 437, "Allocation Mismatch");
+            return;
+        }
+        if (delete) allocation.close();
+
+        final Builder response = new Builder(REFRESH | CLASS_SUCCESS, request.mTransactionId);
+        response.addInt(ATTR_LIFETIME, delete ? 0 : LIFETIME_S);
+        reply(client, response.build(mKey));
+    }
+
+    private void onChannelBind(final InetSocketAddress client, final Message request) throws IOException {
+        final Allocation allocation = mAllocations.get(client);
+        final byte[] channelNumber = request.mAttributes.get(ATTR_CHANNEL_NUMBER);
+        final InetSocketAddress peer = request.address(ATTR_XOR_PEER_ADDRESS);
+        if (allocation == null || channelNumber == null || peer == null) {
+            replyError(client, request, allocation == null ? 437 : 400, allocation == null ? "Allocation Mismatch" : "Bad Request");
+            return;
+        }
+
+        final int channel = ByteBuffer.wrap(channelNumber).getShort() & 0xFFFF;
+        allocation.mPeersByChannel.put(channel, peer);
+        allocation.mChannelsByPeer.put(peer, channel);
+        reply(client, new Builder(CHANNEL_BIND | CLASS_SUCCESS, request.mTransactionId).build(mKey));
+    }
+
+    private void onSend(final InetSocketAddress client, final Message indication) throws IOException {
+        final Allocation allocation = mAllocations.get(client);
+        final InetSocketAddress peer = indication.address(ATTR_XOR_PEER_ADDRESS);
+        final byte[] data = indication.mAttributes.get(ATTR_DATA);
+        if (allocation == null || peer == null || data == null) return;
+
+        allocation.send(peer, data);
+    }
+
+    private boolean isAuthenticated(final Message request, final byte[] data) {
+        final byte[] username = request.mAttributes.get(ATTR_USERNAME);
+        if (username == null || request.mIntegrityOffset < 0) return false;
+        if (!USERNAME.equals(new String(username, UTF_8))) return false;
+
+        // The integrity covers everything before it, with the length as if it were the last attribute
+        final byte[] covered = Arrays.copyOf(data, request.mIntegrityOffset);
+        ByteBuffer.wrap(covered).putShort(2, (short) (request.mIntegrityOffset + 24 - HEADER_SIZE));
+        final byte[] expected = hmacSha1(mKey, covered);
+        return Arrays.equals(expected, Arrays.copyOfRange(data, request.mIntegrityOffset + 4, request.mIntegrityOffset + 24));
+    }
+
+    private void replyError(final InetSocketAddress client, final Message request, final int code, final String reason) throws IOException {
+        final Builder response = new Builder((request.mType & 0x3EEF) | CLASS_ERROR, request.mTransactionId);
+        response.addErrorCode(code, reason);
+        reply(client, response.build(mKey));
+    }
+
+    private void reply(final InetSocketAddress client, final byte[] message) throws IOException {
+        mSocket.send(new DatagramPacket(message, message.length, client));
+    }
+
+    private static byte[] md5(final String value) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(value.getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmacSha1(final byte[] key, final byte[] data) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(key, "HmacSHA1"));
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // One client's relayed transport address and the peers it talks to
+    private class Allocation {
+        final InetSocketAddress mClient;
+        final DatagramSocket mRelay;
+        final Map<Integer, InetSocketAddress> mPeersByChannel = new ConcurrentHashMap<>();
+        final Map<InetSocketAddress, Integer> mChannelsByPeer = new ConcurrentHashMap<>();
+        volatile byte[] mTransactionId;
+
+        Allocation(final InetSocketAddress client) throws SocketException {
+            mClient = client;
+            mRelay = new DatagramSocket(new InetSocketAddress(mAddress, 0));
+
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    relay();
+                }
+            }, "local-turn-relay");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void send(final InetSocketAddress peer, final byte[] data) throws IOException {
+            mRelay.send(new DatagramPacket(data, data.length, peer));
+            mRelayedPackets.incrementAndGet();
+        }
+
+        void close() {
+            mRelay.close();
+        }
+
+        // Peer to client, as ChannelData once a channel is bound, as a Data indication before
+        private void relay() {
+            final byte[] buffer = new byte[MAX_PACKET];
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+            while (!mRelay.isClosed()) {
+                try {
+                    packet.setLength(buffer.length);
+                    mRelay.receive(packet);
+                    final InetSocketAddress peer = (InetSocketAddress) packet.getSocketAddress();
+                    final Integer channel = mChannelsByPeer.get(peer);
+
+                    final byte[] message;
+                    if (channel != null) {
+                        message = new byte[4 + packet.getLength()];
+                        ByteBuffer.wrap(message).putShort((short) (int) channel).putShort((short) packet.getLength())
+                                .put(packet.getData(), 0, packet.getLength());
+                    } else {
+                        final Builder indication = new Builder(DATA | CLASS_INDICATION, Message.newTransactionId());
+                        indication.addAddress(ATTR_XOR_PEER_ADDRESS, peer);
+                        indication.add(ATTR_DATA, Arrays.copyOf(packet.getData(), packet.getLength()));
+                        message = indication.build(null);
+                    }
+                    mSocket.send(new DatagramPacket(message, message.length, mClient));
+                    mRelayedPackets.incrementAndGet();
+                } catch (IOException e) {
+                    if (!mRelay.isClosed()) Log.w(TAG, "Relay failed", e);
+                }
+            }
+        }
+    }
+
+    private static class Message {
+        private static final Random RANDOM = new Random();
+
+        int mType;
+        byte[] mTransactionId;
+        final Map<Integer, byte[]> mAttributes = new HashMap<>();
+        // Start of the MESSAGE-INTEGRITY attribute, -1 without one
+        int mIntegrityOffset = -1;
+
+        static Message parse(final byte[] data) {
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            final Message message = new Message();
+            message.mType = buffer.getShort(0) & 0x3FFF;
+            final int length = buffer.getShort(2) & 0xFFFF;
+            if (HEADER_SIZE + length > data.length) return null;
+            message.mTransactionId = Arrays.copyOfRange(data, 8, HEADER_SIZE);
+
+            int offset = HEADER_SIZE;
+            while (offset + 4 <= HEADER_SIZE + length) {
+                final int type = buffer.getShort(offset) & 0xFFFF;
+                final int valueLength = buffer.getShort(offset + 2) & 0xFFFF;
+                if (offset + 4 + valueLength > HEADER_SIZE + length) return null;
+
+                // Attributes after the integrity are not covered by it; only FINGERPRINT may follow
+                if (message.mIntegrityOffset < 0) {
+                    if (type == ATTR_MESSAGE_INTEGRITY) message.mIntegrityOffset = offset;
+                    message.mAttributes.put(type, Arrays.copyOfRange(data, offset + 4, offset + 4 + valueLength));
+                }
+                offset += 4 + ((valueLength + 3) & ~3);
+            }
+            return message;
+        }
+
+        static byte[] newTransactionId() {
+            final byte[] id = new byte[12];
+            RANDOM.nextBytes(id);
+            return id;
+        }
+
+        InetSocketAddress address(final int attribute) {
+            final byte[] value = mAttributes.get(attribute);
+            if (value == null || value.length < 8 || value[1] != 0x01) return null;
+
+            final ByteBuffer buffer = ByteBuffer.wrap(value);
+            final int port = (buffer.getShort(2) & 0xFFFF) ^ (MAGIC_COOKIE >>> 16);
+            final int address = buffer.getInt(4) ^ MAGIC_COOKIE;
+            try {
+                return new InetSocketAddress(InetAddress.getByAddress(ByteBuffer.allocate(4).putInt(address).array()), port);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    private static class Builder {
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(MAX_PACKET);
+
+        Builder(final int type, final byte[] transactionId) {
+            mBuffer.putShort((short) type).putShort((short) 0).putInt(MAGIC_COOKIE).put(transactionId);
+        }
+
+        void add(final int type, final byte[] value) {
+            mBuffer.putShort((short) type).putShort((short) value.length).put(value);
+            for (int i = value.length; i % 4 != 0; i++) {
+                mBuffer.put((byte) 0);
+            }
+        }
+
+        void addInt(final int type, final int value) {
+            add(type, ByteBuffer.allocate(4).putInt(value).array());
+        }
+
+        // XOR-mapped IPv4 address
+        void addAddress(final int type, final InetSocketAddress address) {
+            final byte[] ip = address.getAddress().getAddress();
+            add(type, ByteBuffer.allocate(8)
+                    .put((byte) 0).put((byte) 0x01)
+                    .putShort((short) (address.getPort() ^ (MAGIC_COOKIE >>> 16)))
+                    .putInt(ByteBuffer.wrap(ip).getInt() ^ MAGIC_COOKIE)
+                    .array());
+        }
+
+        void addErrorCode(final int code, final String reason) {
+            final byte[] phrase = reason.getBytes(UTF_8);
+            add(ATTR_ERROR_CODE, ByteBuffer.allocate(4 + phrase.length)
+                    .putShort((short) 0).put((byte) (code / 100)).put((byte) (code % 100)).put(phrase)
+                    .array());
+        }
+
+        // Signs with the key when given, then adds FINGERPRINT
+        byte[] build(final byte[] key) {
+            if (key != null) {
+                setLength(mBuffer.position() + 24 - HEADER_SIZE);
+                add(ATTR_MESSAGE_INTEGRITY, hmacSha1(key, Arrays.copyOf(mBuffer.array(), mBuffer.position())));
+            }
+
+            setLength(mBuffer.position() + 8 - HEADER_SIZE);
+            final CRC32 crc = new CRC32();
+            crc.update(mBuffer.array(), 0, mBuffer.position());
+            addInt(ATTR_FINGERPRINT, (int) crc.getValue() ^ 0x5354554E);
+            return Arrays.copyOf(mBuffer.array(), mBuffer.position());
+        }
+
+        private void setLength(final int length) {
+            mBuffer.putShort(2, (short) length);
+        }
+    }
+}
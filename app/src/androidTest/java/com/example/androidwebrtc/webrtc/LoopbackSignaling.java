@@ -0,0 +1,123 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.os.SystemClock;
+
+import com.example.androidwebrtc.webrtc.data.BinaryDataChannel;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory signaling between loopback pairs of one Connection. The session
+ * keyed "b-i" is side a talking to b, so its partner is "a-i".
+ */
+class LoopbackSignaling implements ConnectionListener {
+    // Short enough for setup times to be worth comparing
+    private static final long POLL_INTERVAL_MS = 10;
+
+    private volatile Connection mConnection;
+    // Every candidate a session gathered, keyed by its remote id
+    private final Map<String, List<IceCandidate>> mCandidates = new ConcurrentHashMap<>();
+
+    // The listener is needed to build the Connection, so it is attached afterwards
+    void attach(final Connection connection) {
+        mConnection = connection;
+    }
+
+    static String callerId(final int index) {
+        return "b-" + index;
+    }
+
+    static String calleeId(final int index) {
+        return "a-" + index;
+    }
+
+    static String partnerOf(final String remoteId) {
+        return (remoteId.startsWith("a-") ? "b-" : "a-") + remoteId.substring(2);
+    }
+
+    List<IceCandidate> candidatesOf(final String remoteId) {
+        final List<IceCandidate> candidates = mCandidates.get(remoteId);
+        return candidates == null ? new ArrayList<IceCandidate>() : new ArrayList<>(candidates);
+    }
+
+    void clearCandidates() {
+        mCandidates.clear();
+    }
+
+    // Polls until both sides of the first `pairs` pairs report ICE connected
+    boolean awaitConnected(final int pairs, final long timeoutMs) throws InterruptedException {
+        final long deadlineMs = SystemClock.elapsedRealtime() + timeoutMs;
+
+        while (SystemClock.elapsedRealtime() < deadlineMs) {
+            int connected = 0;
+            for (int i = 0; i < pairs; i++) {
+                if (isConnected(mConnection.getPeer(callerId(i)))) connected++;
+                if (isConnected(mConnection.getPeer(calleeId(i)))) connected++;
+            }
+            if (connected == 2 * pairs) return true;
+
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return false;
+    }
+
+    private static boolean isConnected(final PeerSession session) {
+        if (session == null) return false;
+
+        final PeerConnection.IceConnectionState state = session.getIceConnectionState();
+        return state == PeerConnection.IceConnectionState.CONNECTED
+                || state == PeerConnection.IceConnectionState.COMPLETED;
+    }
+
+    private PeerSession partner(final String remoteId) {
+        final Connection connection = mConnection;
+        return connection == null ? null : connection.getPeer(partnerOf(remoteId));
+    }
+
+    @Override
+    public void onIceCandidateReceived(String remoteId, IceCandidate iceCandidate) {
+        List<IceCandidate> candidates = mCandidates.get(remoteId);
+        if (candidates == null) {
+            mCandidates.putIfAbsent(remoteId, new CopyOnWriteArrayList<IceCandidate>());
+            candidates = mCandidates.get(remoteId);
+        }
+        candidates.add(iceCandidate);
+
+        final PeerSession partner = partner(remoteId);
+        if (partner != null) partner.addRemoteIceCandidate(iceCandidate);
+    }
+
+    @Override
+    public void onIceGatheringComplete(String remoteId) {
+    }
+
+    @Override
+    public void onAddStream(String remoteId, MediaStreamTrack mediaStreamTrack) {
+        mediaStreamTrack.setEnabled(true);
+    }
+
+    @Override
+    public void onDataChannel(String remoteId, BinaryDataChannel channel) {
+    }
+
+    @Override
+    public void onLocalOffer(String remoteId, SessionDescription offer) {
+        final PeerSession partner = partner(remoteId);
+        if (partner != null) partner.applyRemoteOffer(offer.description);
+    }
+
+    @Override
+    public void onLocalAnswer(String remoteId, SessionDescription answer) {
+        final PeerSession partner = partner(remoteId);
+        if (partner != null) partner.applyRemoteAnswer(answer.description);
+    }
+}
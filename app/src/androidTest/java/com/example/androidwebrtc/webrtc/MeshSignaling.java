@@ -0,0 +1,162 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.os.SystemClock;
+
+import com.example.androidwebrtc.webrtc.data.BinaryDataChannel;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.SessionDescription;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory signaling between several Connections in one process. Participant i
+ * keys its session with participant j as "p-j", so whatever it sends there is
+ * applied to j's session keyed "p-i". Remote video is counted, not rendered.
+ */
+class MeshSignaling {
+    private static final long POLL_INTERVAL_MS = 10;
+
+    private final Connection[] mConnections;
+    // Keyed by link(receiver, sender)
+    private final Map<String, FrameCounter> mReceived = new ConcurrentHashMap<>();
+
+    MeshSignaling(final int participants) {
+        mConnections = new Connection[participants];
+    }
+
+    static String participantId(final int index) {
+        return "p-" + index;
+    }
+
+    static int indexOf(final String remoteId) {
+        return Integer.parseInt(remoteId.substring(2));
+    }
+
+    static String link(final int receiver, final int sender) {
+        return sender + "->" + receiver;
+    }
+
+    // The listener is needed to build the Connection, so it is attached afterwards
+    ConnectionListener listenerFor(final int index) {
+        return new Listener(index);
+    }
+
+    void attach(final int index, final Connection connection) {
+        mConnections[index] = connection;
+    }
+
+    PeerSession session(final int owner, final int remote) {
+        final Connection connection = mConnections[owner];
+        return connection == null ? null : connection.getPeer(participantId(remote));
+    }
+
+    // Frames participant `receiver` decoded from `sender`; 0 until its video track arrives
+    long framesReceived(final int receiver, final int sender) {
+        final FrameCounter counter = mReceived.get(link(receiver, sender));
+        return counter == null ? 0 : counter.mFrames.get();
+    }
+
+    // elapsedRealtime of the first decoded frame, or -1
+    long firstFrameAtMs(final int receiver, final int sender) {
+        final FrameCounter counter = mReceived.get(link(receiver, sender));
+        return counter == null ? -1 : counter.mFirstFrameAtMs.get();
+    }
+
+    // Polls until both sessions of the link report ICE connected
+    boolean awaitConnected(final int a, final int b, final long timeoutMs) throws InterruptedException {
+        final long deadlineMs = SystemClock.elapsedRealtime() + timeoutMs;
+
+        while (SystemClock.elapsedRealtime() < deadlineMs) {
+            if (isConnected(session(a, b)) && isConnected(session(b, a))) return true;
+
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return false;
+    }
+
+    // Polls until both sides of the link decoded a frame from each other
+    boolean awaitFirstFrames(final int a, final int b, final long timeoutMs) throws InterruptedException {
+        final long deadlineMs = SystemClock.elapsedRealtime() + timeoutMs;
+
+        while (SystemClock.elapsedRealtime() < deadlineMs) {
+            if (framesReceived(a, b) > 0 && framesReceived(b, a) > 0) return true;
+
+            Thread.sleep(POLL_INTERVAL_MS);
+        }
+        return false;
+    }
+
+    private static boolean isConnected(final PeerSession session) {
+        if (session == null) return false;
+
+        final PeerConnection.IceConnectionState state = session.getIceConnectionState();
+        return state == PeerConnection.IceConnectionState.CONNECTED
+                || state == PeerConnection.IceConnectionState.COMPLETED;
+    }
+
+    private static class FrameCounter implements VideoSink {
+        final AtomicLong mFrames = new AtomicLong();
+        final AtomicLong mFirstFrameAtMs = new AtomicLong(-1);
+
+        @Override
+        public void onFrame(VideoFrame frame) {
+            if (mFrames.getAndIncrement() == 0) mFirstFrameAtMs.set(SystemClock.elapsedRealtime());
+        }
+    }
+
+    private class Listener implements ConnectionListener {
+        private final int mIndex;
+
+        Listener(final int index) {
+            mIndex = index;
+        }
+
+        private PeerSession partner(final String remoteId) {
+            return session(indexOf(remoteId), mIndex);
+        }
+
+        @Override
+        public void onIceCandidateReceived(String remoteId, IceCandidate iceCandidate) {
+            final PeerSession partner = partner(remoteId);
+            if (partner != null) partner.addRemoteIceCandidate(iceCandidate);
+        }
+
+        @Override
+        public void onIceGatheringComplete(String remoteId) {
+        }
+
+        @Override
+        public void onAddStream(String remoteId, MediaStreamTrack mediaStreamTrack) {
+            mediaStreamTrack.setEnabled(true);
+            if (!(mediaStreamTrack instanceof VideoTrack)) return;
+
+            final FrameCounter counter = new FrameCounter();
+            mReceived.put(link(mIndex, indexOf(remoteId)), counter);
+            ((VideoTrack) mediaStreamTrack).addSink(counter);
+        }
+
+        @Override
+        public void onDataChannel(String remoteId, BinaryDataChannel channel) {
+        }
+
+        @Override
+        public void onLocalOffer(String remoteId, SessionDescription offer) {
+            final PeerSession partner = partner(remoteId);
+            if (partner != null) partner.applyRemoteOffer(offer.description);
+        }
+
+        @Override
+        public void onLocalAnswer(String remoteId, SessionDescription answer) {
+            final PeerSession partner = partner(remoteId);
+            if (partner != null) partner.applyRemoteAnswer(answer.description);
+        }
+    }
+}
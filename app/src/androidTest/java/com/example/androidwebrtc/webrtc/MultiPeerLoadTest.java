@@ -0,0 +1,113 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.webrtc.SurfaceViewRenderer;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Connects N loopback pairs inside one Connection and reports how CPU time and
+ * native heap grow with the number of peers. Side "a-i" calls side "b-i" through
+ * in-memory signaling, so every pair costs two PeerSessions and two encoders.
+ *
+ * <p>Runs on a device: {@code ./gradlew connectedAndroidTest}. Results are logged
+ * under the "MultiPeerLoad" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MultiPeerLoadTest {
+    private static final String TAG = "MultiPeerLoad";
+
+    private static final int[] PAIR_COUNTS = {1, 2, 4};
+    private static final long CONNECT_TIMEOUT_MS = 20_000;
+    private static final long MEASURE_WINDOW_MS = 10_000;
+
+    private static final LoopbackSignaling sSignaling = new LoopbackSignaling();
+    private static Connection sConnection;
+    private static boolean sHasLocalMedia;
+
+    @BeforeClass
+    public static void setUpClass() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final int maxPairs = PAIR_COUNTS[PAIR_COUNTS.length - 1];
+
+        sConnection = Connection.initialize(context, sSignaling, PreferredCodecRankingPolicy.DEFAULT,
+                2 * maxPairs, PeerRegistry.OverflowPolicy.REJECT_NEW);
+        sSignaling.attach(sConnection);
+
+        // Without a camera the pairs still connect, but only measure receive cost
+        final SurfaceViewRenderer[] localRenderer = new SurfaceViewRenderer[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                localRenderer[0] = new SurfaceViewRenderer(context);
+            }
+        });
+        try {
+            sConnection.initializeMediaDevices(context, localRenderer[0]);
+            sHasLocalMedia = true;
+        } catch (Exception e) {
+            Log.w(TAG, "No local media, measuring receive-only peers", e);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        sConnection.release();
+    }
+
+    @Test
+    public void connectsLoopbackPairsAndReportsScaling() throws InterruptedException {
+        for (final int pairs : PAIR_COUNTS) {
+            final long heapBeforeBytes = Debug.getNativeHeapAllocatedSize();
+            final long setupStartMs = SystemClock.elapsedRealtime();
+
+            for (int i = 0; i < pairs; i++) {
+                // Both sides must exist before the offer so early candidates have a target
+                sConnection.openPeer(LoopbackSignaling.callerId(i));
+                sConnection.openPeer(LoopbackSignaling.calleeId(i));
+            }
+            for (int i = 0; i < pairs; i++) {
+                sConnection.getPeer(LoopbackSignaling.callerId(i)).createOffer();
+            }
+
+            assertTrue("pairs=" + pairs + " did not connect", sSignaling.awaitConnected(pairs, CONNECT_TIMEOUT_MS));
+            final long setupMs = SystemClock.elapsedRealtime() - setupStartMs;
+
+            final long cpuStartMs = Process.getElapsedCpuTime();
+            final long wallStartMs = SystemClock.elapsedRealtime();
+            Thread.sleep(MEASURE_WINDOW_MS);
+            final double cpuPercent = 100.0 * (Process.getElapsedCpuTime() - cpuStartMs)
+                    / (SystemClock.elapsedRealtime() - wallStartMs);
+            final long heapDeltaKb = (Debug.getNativeHeapAllocatedSize() - heapBeforeBytes) / 1024;
+
+            Log.i(TAG, "{\"pairs\":" + pairs
+                    + ",\"peers\":" + sConnection.getPeerCount()
+                    + ",\"media\":" + sHasLocalMedia
+                    + ",\"setup_ms\":" + setupMs
+                    + ",\"cpu_percent\":" + String.format(Locale.US, "%.1f", cpuPercent)
+                    + ",\"native_heap_delta_kb\":" + heapDeltaKb + "}");
+
+            for (int i = 0; i < pairs; i++) {
+                sConnection.closePeer(LoopbackSignaling.callerId(i));
+                sConnection.closePeer(LoopbackSignaling.calleeId(i));
+            }
+            assertEquals(0, sConnection.getPeerCount());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.androidwebrtc.webrtc.audio.AudioProfile;
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loopback calls one after another on a pre-warmed Connection. Every call, not
+ * only the first, must find a standby PeerConnection waiting.
+ *
+ * <p>Runs on a device: {@code ./gradlew connectedAndroidTest}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PrewarmTest {
+    private static final int CALLS = 2;
+    private static final long CONNECT_TIMEOUT_MS = 20_000;
+
+    private final LoopbackSignaling mSignaling = new LoopbackSignaling();
+    private Connection mConnection;
+
+    @Before
+    public void setUp() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mConnection = Connection.createStandalone(context, mSignaling, PreferredCodecRankingPolicy.DEFAULT,
+                2, PeerRegistry.OverflowPolicy.REJECT_NEW, AudioProfile.CONVERSATION);
+        mSignaling.attach(mConnection);
+        mConnection.initializeMediaDevices(context, null, new SyntheticCameraEnumerator(640, 480, 30));
+        mConnection.prewarm();
+    }
+
+    @After
+    public void tearDown() {
+        mConnection.release();
+    }
+
+    @Test
+    public void callsInARow_eachStartFromAStandby() throws InterruptedException {
+        for (int call = 0; call < CALLS; call++) {
+            assertTrue("No standby before call " + call, mConnection.hasStandby());
+
+            mConnection.openPeer(LoopbackSignaling.callerId(0));
+            mConnection.openPeer(LoopbackSignaling.calleeId(0));
+            mConnection.getPeer(LoopbackSignaling.callerId(0)).createOffer();
+            assertTrue("call " + call + " did not connect", mSignaling.awaitConnected(1, CONNECT_TIMEOUT_MS));
+
+            mConnection.close();
+            assertEquals(0, mConnection.getPeerCount());
+        }
+
+        assertTrue(mConnection.hasStandby());
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.webrtc.SurfaceViewRenderer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sets up and tears down hundreds of loopback calls on one Connection and checks
+ * that native and Java heap stop growing once the first calls have warmed the
+ * pools and caches. A second pass does the same for full initialize/release
+ * cycles, which rebuild the factory each time.
+ *
+ * <p>Runs on a device: {@code ./gradlew connectedAndroidTest}. Results are logged
+ * under the "LifecycleSoak" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionLifecycleSoakTest {
+    private static final String TAG = "LifecycleSoak";
+
+    private static final int CALL_CYCLES = 300;
+    private static final int RELEASE_CYCLES = 20;
+    // Growth is measured from here, after codec and buffer pools have filled
+    private static final int WARMUP_CYCLES = 20;
+    private static final int WARMUP_RELEASE_CYCLES = 3;
+    private static final long CONNECT_TIMEOUT_MS = 20_000;
+    // Native teardown finishes on WebRTC's own threads after close() returns
+    private static final long SETTLE_MS = 500;
+    private static final long MAX_NATIVE_GROWTH_KB = 8 * 1024;
+    private static final long MAX_JAVA_GROWTH_KB = 2 * 1024;
+
+    private final LoopbackSignaling mSignaling = new LoopbackSignaling();
+    private Context mContext;
+    private Connection mConnection;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mConnection = open();
+    }
+
+    @After
+    public void tearDown() {
+        mConnection.release();
+    }
+
+    @Test
+    public void repeatedCallsReuseTheConnectionWithoutGrowingHeap() throws InterruptedException {
+        long nativeStart = 0;
+        long javaStart = 0;
+
+        for (int cycle = 0; cycle < CALL_CYCLES; cycle++) {
+            if (cycle == WARMUP_CYCLES) {
+                settle();
+                nativeStart = Debug.getNativeHeapAllocatedSize();
+                javaStart = javaHeapUsed();
+            }
+
+            mConnection.openPeer(LoopbackSignaling.callerId(0));
+            mConnection.openPeer(LoopbackSignaling.calleeId(0));
+            mConnection.getPeer(LoopbackSignaling.callerId(0)).createOffer();
+            assertTrue("cycle " + cycle + " did not connect", mSignaling.awaitConnected(1, CONNECT_TIMEOUT_MS));
+
+            mConnection.close();
+            assertEquals(0, mConnection.getPeerCount());
+            // The next call must get the same warm instance, not a rebuilt factory
+            assertSame(mConnection, Connection.initialize(mContext, mSignaling));
+        }
+
+        settle();
+        report("calls", CALL_CYCLES - WARMUP_CYCLES, nativeStart, javaStart);
+    }
+
+    @Test
+    public void releasedConnectionIsReplacedWithoutGrowingHeap() throws InterruptedException {
+        long nativeStart = 0;
+        long javaStart = 0;
+
+        for (int cycle = 0; cycle < RELEASE_CYCLES; cycle++) {
+            if (cycle == WARMUP_RELEASE_CYCLES) {
+                settle();
+                nativeStart = Debug.getNativeHeapAllocatedSize();
+                javaStart = javaHeapUsed();
+            }
+
+            final Connection released = mConnection;
+            released.release();
+            assertTrue(released.isReleased());
+
+            mConnection = open();
+            assertNotSame(released, mConnection);
+            assertFalse(mConnection.isReleased());
+        }
+
+        settle();
+        report("releases", RELEASE_CYCLES - WARMUP_RELEASE_CYCLES, nativeStart, javaStart);
+    }
+
+    private Connection open() {
+        final Connection connection = Connection.initialize(mContext, mSignaling, PreferredCodecRankingPolicy.DEFAULT,
+                2, PeerRegistry.OverflowPolicy.REJECT_NEW);
+        mSignaling.attach(connection);
+
+        final SurfaceViewRenderer[] localRenderer = new SurfaceViewRenderer[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                localRenderer[0] = new SurfaceViewRenderer(mContext);
+            }
+        });
+        try {
+            connection.initializeMediaDevices(mContext, localRenderer[0]);
+        } catch (Exception e) {
+            Log.w(TAG, "No local media, soaking receive-only peers", e);
+        }
+        return connection;
+    }
+
+    private static void report(final String kind, final int cycles, final long nativeStart, final long javaStart) {
+        final long nativeGrowthKb = (Debug.getNativeHeapAllocatedSize() - nativeStart) / 1024;
+        final long javaGrowthKb = (javaHeapUsed() - javaStart) / 1024;
+
+        Log.i(TAG, "{\"kind\":\"" + kind + "\""
+                + ",\"cycles\":" + cycles
+                + ",\"native_heap_growth_kb\":" + nativeGrowthKb
+                + ",\"java_heap_growth_kb\":" + javaGrowthKb + "}");
+
+        assertTrue(kind + ": native heap grew " + nativeGrowthKb + " KB", nativeGrowthKb < MAX_NATIVE_GROWTH_KB);
+        assertTrue(kind + ": Java heap grew " + javaGrowthKb + " KB", javaGrowthKb < MAX_JAVA_GROWTH_KB);
+    }
+
+    // Finalizers release native peers of collected Java objects, so collect first
+    private static void settle() throws InterruptedException {
+        Thread.sleep(SETTLE_MS);
+        collect();
+    }
+
+    private static long javaHeapUsed() {
+        collect();
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void collect() {
+        System.gc();
+        System.runFinalization();
+        System.gc();
+    }
+}
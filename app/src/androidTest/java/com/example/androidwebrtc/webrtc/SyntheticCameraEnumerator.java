@@ -0,0 +1,254 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.example.androidwebrtc.webrtc.processing.I420BufferPool;
+
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.CameraVideoCapturer;
+import org.webrtc.CapturerObserver;
+import org.webrtc.FileVideoCapturer;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One camera that needs no hardware: a moving test pattern, or a Y4M file played
+ * in a loop through FileVideoCapturer. Lets Connection run its normal capture
+ * path on devices and emulators without a camera or without a UI.
+ */
+class SyntheticCameraEnumerator implements CameraEnumerator {
+    static final String DEVICE_NAME = "synthetic";
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFps;
+    // Null for the test pattern
+    private final String mY4mPath;
+
+    SyntheticCameraEnumerator(final int width, final int height, final int fps) {
+        this(width, height, fps, null);
+    }
+
+    // The file's own size and rate win over the ones given here
+    SyntheticCameraEnumerator(final int width, final int height, final int fps, final String y4mPath) {
+        mWidth = width;
+        mHeight = height;
+        mFps = fps;
+        mY4mPath = y4mPath;
+    }
+
+    String describe() {
+        return mY4mPath == null ? "pattern " + mWidth + "x" + mHeight + "@" + mFps : "file " + mY4mPath;
+    }
+
+    @Override
+    public String[] getDeviceNames() {
+        return new String[]{DEVICE_NAME};
+    }
+
+    @Override
+    public boolean isFrontFacing(String deviceName) {
+        return true;
+    }
+
+    @Override
+    public boolean isBackFacing(String deviceName) {
+        return false;
+    }
+
+    @Override
+    public List<CaptureFormat> getSupportedFormats(String deviceName) {
+        return Collections.singletonList(new CaptureFormat(mWidth, mHeight, mFps * 1000, mFps * 1000));
+    }
+
+    @Override
+    public CameraVideoCapturer createCapturer(String deviceName, CameraVideoCapturer.CameraEventsHandler eventsHandler) {
+        if (mY4mPath == null) return new PatternCapturer();
+
+        try {
+            return new FileCapturer(new FileVideoCapturer(mY4mPath));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + mY4mPath, e);
+        }
+    }
+
+    // A bright bar sweeping over a gradient, so the encoder has motion to code
+    private static class PatternCapturer implements CameraVideoCapturer {
+        private final I420BufferPool mPool = new I420BufferPool();
+        private CapturerObserver mObserver;
+        private ScheduledExecutorService mExecutor;
+        private byte[] mRow;
+        private int mWidth;
+        private int mHeight;
+        private int mFrame;
+
+        @Override
+        public void initialize(SurfaceTextureHelper helper, Context context, CapturerObserver observer) {
+            mObserver = observer;
+        }
+
+        @Override
+        public synchronized void startCapture(final int width, final int height, final int framerate) {
+            if (mExecutor != null) return;
+
+            mWidth = width;
+            mHeight = height;
+            // Twice as wide so each frame copies a shifted window of it
+            mRow = new byte[2 * width];
+            for (int x = 0; x < mRow.length; x++) {
+                mRow[x] = (byte) ((x % width) < width / 8 ? 235 : 16 + (x * 200 / mRow.length));
+            }
+
+            mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "synthetic-camera");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mExecutor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    captureFrame();
+                }
+            }, 0, TimeUnit.SECONDS.toMicros(1) / framerate, TimeUnit.MICROSECONDS);
+            mObserver.onCapturerStarted(true);
+        }
+
+        @Override
+        public void stopCapture() throws InterruptedException {
+            final ScheduledExecutorService executor;
+            synchronized (this) {
+                executor = mExecutor;
+                mExecutor = null;
+            }
+            if (executor == null) return;
+
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+            mObserver.onCapturerStopped();
+        }
+
+        @Override
+        public void changeCaptureFormat(int width, int height, int framerate) {
+            try {
+                stopCapture();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            startCapture(width, height, framerate);
+        }
+
+        @Override
+        public void dispose() {
+            try {
+                stopCapture();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean isScreencast() {
+            return false;
+        }
+
+        @Override
+        public void switchCamera(CameraSwitchHandler handler) {
+            if (handler != null) handler.onCameraSwitchError("The synthetic camera cannot switch");
+        }
+
+        @Override
+        public void switchCamera(CameraSwitchHandler handler, String cameraName) {
+            switchCamera(handler);
+        }
+
+        // Runs on the capture thread
+        private void captureFrame() {
+            final JavaI420Buffer buffer = mPool.acquire(mWidth, mHeight);
+            final int shift = (mFrame++ * 8) % mWidth;
+
+            final ByteBuffer dataY = buffer.getDataY();
+            for (int y = 0; y < mHeight; y++) {
+                dataY.position(y * buffer.getStrideY());
+                dataY.put(mRow, shift, mWidth);
+            }
+            fill(buffer.getDataU(), (byte) 128);
+            fill(buffer.getDataV(), (byte) 128);
+
+            final VideoFrame frame = new VideoFrame(buffer, 0, TimeUnit.MILLISECONDS.toNanos(SystemClock.elapsedRealtime()));
+            mObserver.onFrameCaptured(frame);
+            frame.release();
+        }
+
+        private static void fill(final ByteBuffer plane, final byte value) {
+            while (plane.hasRemaining()) {
+                plane.put(value);
+            }
+        }
+    }
+
+    // FileVideoCapturer is no CameraVideoCapturer, which CameraController drives
+    private static class FileCapturer implements CameraVideoCapturer {
+        private final VideoCapturer mDelegate;
+
+        FileCapturer(final VideoCapturer delegate) {
+            mDelegate = delegate;
+        }
+
+        @Override
+        public void initialize(SurfaceTextureHelper helper, Context context, CapturerObserver observer) {
+            mDelegate.initialize(helper, context, observer);
+        }
+
+        @Override
+        public void startCapture(int width, int height, int framerate) {
+            mDelegate.startCapture(width, height, framerate);
+        }
+
+        @Override
+        public void stopCapture() throws InterruptedException {
+            mDelegate.stopCapture();
+        }
+
+        @Override
+        public void changeCaptureFormat(int width, int height, int framerate) {
+            mDelegate.changeCaptureFormat(width, height, framerate);
+        }
+
+        @Override
+        public void dispose() {
+            mDelegate.dispose();
+        }
+
+        @Override
+        public boolean isScreencast() {
+            return false;
+        }
+
+        @Override
+        public void switchCamera(CameraSwitchHandler handler) {
+            if (handler != null) handler.onCameraSwitchError("The file camera cannot switch");
+        }
+
+        @Override
+        public void switchCamera(CameraSwitchHandler handler, String cameraName) {
+            switchCamera(handler);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+import com.example.androidwebrtc.webrtc.transport.TransportProfile;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.webrtc.IceCandidate;
+import org.webrtc.PeerConnection;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Connects a loopback pair under each transport profile and compares how many
+ * candidates both sides gather and how long the pair takes to connect. STUN
+ * servers are left out so the numbers only depend on the device's own networks,
+ * and the relay-only profile goes through a {@link LocalTurnServer}.
+ *
+ * <p>Runs on a device: {@code ./gradlew connectedAndroidTest}. Results are logged
+ * under the "TransportProfileLoopback" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransportProfileLoopbackTest {
+    private static final String TAG = "TransportProfileLoopback";
+
+    private static final int RUNS = 5;
+    private static final long CONNECT_TIMEOUT_MS = 20_000;
+    // Late candidates of continual gathering still count
+    private static final long SETTLE_MS = 1000;
+    // Loopback setup times are short and noisy
+    private static final double SETUP_TOLERANCE = 1.2;
+
+    private static final LoopbackSignaling sSignaling = new LoopbackSignaling();
+    private static Connection sConnection;
+    private static LocalTurnServer sTurnServer;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        sConnection = Connection.initialize(context, sSignaling, PreferredCodecRankingPolicy.DEFAULT,
+                2, PeerRegistry.OverflowPolicy.REJECT_NEW);
+        sSignaling.attach(sConnection);
+        sTurnServer = new LocalTurnServer(LocalTurnServer.siteLocalAddress());
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        sConnection.release();
+        sTurnServer.close();
+    }
+
+    @Test
+    public void maxBundleGathersFewerCandidatesAndConnectsNoSlower() throws InterruptedException {
+        final Result standard = measure(withoutStun(TransportProfile.STANDARD));
+        final Result maxBundle = measure(withoutStun(TransportProfile.MAX_BUNDLE));
+        final Result cellular = measure(withoutStun(TransportProfile.CELLULAR_FRIENDLY));
+
+        assertTrue("max-bundle gathered " + maxBundle.mMedianCandidates + ", standard " + standard.mMedianCandidates,
+                maxBundle.mMedianCandidates < standard.mMedianCandidates);
+        assertTrue("max-bundle took " + maxBundle.mMedianSetupMs + "ms, standard " + standard.mMedianSetupMs + "ms",
+                maxBundle.mMedianSetupMs <= standard.mMedianSetupMs * SETUP_TOLERANCE);
+        assertTrue(cellular.mMedianCandidates < standard.mMedianCandidates);
+    }
+
+    @Test
+    public void relayOnlyConnectsThroughTheTurnServer() throws InterruptedException {
+        final TransportProfile relayOnly = TransportProfile.relayOnly(Collections.singletonList(new TransportProfile.IceServerSpec(
+                Collections.singletonList(sTurnServer.getUrl()), LocalTurnServer.USERNAME, LocalTurnServer.PASSWORD)));
+
+        final Result result = measure(relayOnly);
+
+        assertTrue(result.mMedianCandidates > 0);
+        assertTrue("Nothing went through the TURN server", sTurnServer.getRelayedPackets() > 0);
+    }
+
+    private Result measure(final TransportProfile profile) throws InterruptedException {
+        sConnection.setTransportProfile(profile);
+        final long[] setupMs = new long[RUNS];
+        final long[] candidates = new long[RUNS];
+
+        for (int run = 0; run < RUNS; run++) {
+            sSignaling.clearCandidates();
+            final String caller = LoopbackSignaling.callerId(0);
+            final String callee = LoopbackSignaling.calleeId(0);
+            sConnection.openPeer(caller);
+            sConnection.openPeer(callee);
+
+            final long startMs = SystemClock.elapsedRealtime();
+            sConnection.getPeer(caller).createOffer();
+            assertTrue(profile.getName() + " did not connect", sSignaling.awaitConnected(1, CONNECT_TIMEOUT_MS));
+            setupMs[run] = SystemClock.elapsedRealtime() - startMs;
+
+            Thread.sleep(SETTLE_MS);
+            for (final String side : new String[]{caller, callee}) {
+                for (final IceCandidate candidate : sSignaling.candidatesOf(side)) {
+                    if (profile.getIceTransportsType() == PeerConnection.IceTransportsType.RELAY) {
+                        assertTrue("Not a relay candidate: " + candidate.sdp, candidate.sdp.contains(" typ relay"));
+                    }
+                    candidates[run]++;
+                }
+            }
+
+            sConnection.closePeer(caller);
+            sConnection.closePeer(callee);
+        }
+
+        final Result result = new Result(median(setupMs), median(candidates));
+        Log.i(TAG, "{\"profile\":\"" + profile.getName() + "\""
+                + ",\"runs\":" + RUNS
+                + ",\"setup_median_ms\":" + result.mMedianSetupMs
+                + ",\"candidates_median\":" + result.mMedianCandidates
+                + ",\"setup_ms\":" + Arrays.toString(setupMs)
+                + ",\"candidates\":" + Arrays.toString(candidates) + "}");
+        return result;
+    }
+
+    // Host candidates only, so the comparison does not depend on reaching a public STUN server
+    private static TransportProfile withoutStun(final TransportProfile profile) {
+        return new TransportProfile.Builder(profile.getName(), profile).clearIceServers().build();
+    }
+
+    private static long median(final long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static class Result {
+        final long mMedianSetupMs;
+        final long mMedianCandidates;
+
+        Result(final long medianSetupMs, final long medianCandidates) {
+            mMedianSetupMs = medianSetupMs;
+            mMedianCandidates = medianCandidates;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.androidwebrtc.webrtc.negotiation.NegotiationStateMachine;
+import com.example.androidwebrtc.webrtc.negotiation.PeerConnectionSdpTarget;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RtpReceiver;
+import org.webrtc.SessionDescription;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Data channel throughput between two PeerConnections in this process over
+ * loopback, for a few message sizes. Runs on a device:
+ * {@code ./gradlew connectedAndroidTest}; results are logged under the
+ * "DataChannelThroughput" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataChannelThroughputTest {
+    private static final String TAG = "DataChannelThroughput";
+
+    private static final int[] MESSAGE_SIZES = {16 * 1024, 256 * 1024, 4 * 1024 * 1024};
+    private static final long BYTES_PER_RUN = 64L * 1024 * 1024;
+    private static final long CONNECT_TIMEOUT_S = 20;
+    private static final long TRANSFER_TIMEOUT_S = 120;
+
+    private PeerConnectionFactory mFactory;
+    private ExecutorService mSendExecutor;
+    private DirectBufferPool mPool;
+    private LoopbackPeer mSender;
+    private LoopbackPeer mReceiver;
+
+    @Before
+    public void setUp() {
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PeerConnectionFactory.initialize(PeerConnectionFactory.InitializationOptions.builder(context).createInitializationOptions());
+        mFactory = PeerConnectionFactory.builder().createPeerConnectionFactory();
+        mSendExecutor = Executors.newSingleThreadExecutor();
+        mPool = new DirectBufferPool();
+
+        mSender = new LoopbackPeer("sender");
+        mReceiver = new LoopbackPeer("receiver");
+        mSender.mPartner = mReceiver;
+        mReceiver.mPartner = mSender;
+    }
+
+    @After
+    public void tearDown() {
+        mSender.close();
+        mReceiver.close();
+        mSendExecutor.shutdownNow();
+        mFactory.dispose();
+    }
+
+    @Test
+    public void measuresThroughputPerMessageSize() throws InterruptedException {
+        final BinaryDataChannel outgoing = new BinaryDataChannel(
+                mSender.mPeerConnection.createDataChannel("bench", new DataChannel.Init()), mPool, mSendExecutor);
+        final Semaphore writable = new Semaphore(0);
+        final CountDownLatch open = new CountDownLatch(1);
+        outgoing.setListener(new BinaryDataChannel.Listener() {
+            @Override
+            public void onOpen() {
+                open.countDown();
+            }
+
+            @Override
+            public void onMessage(ByteBuffer message) {
+            }
+
+            @Override
+            public void onWritable() {
+                writable.release();
+            }
+
+            @Override
+            public void onClosed() {
+            }
+        });
+
+        // The channel exists before the offer, so the offer carries the data section
+        mSender.mNegotiation.createOffer(new MediaConstraints());
+        assertTrue("data channel did not open", open.await(CONNECT_TIMEOUT_S, TimeUnit.SECONDS));
+
+        final BinaryDataChannel incoming = mReceiver.mChannels.poll(CONNECT_TIMEOUT_S, TimeUnit.SECONDS);
+        assertNotNull(incoming);
+        final AtomicLong receivedBytes = new AtomicLong();
+        final AtomicLong expectedBytes = new AtomicLong(Long.MAX_VALUE);
+        final CountDownLatch[] done = new CountDownLatch[1];
+        incoming.setListener(new BinaryDataChannel.Listener() {
+            @Override
+            public void onOpen() {
+            }
+
+            @Override
+            public void onMessage(ByteBuffer message) {
+                if (receivedBytes.addAndGet(message.remaining()) >= expectedBytes.get()) done[0].countDown();
+            }
+
+            @Override
+            public void onWritable() {
+            }
+
+            @Override
+            public void onClosed() {
+            }
+        });
+
+        for (final int messageSize : MESSAGE_SIZES) {
+            final ByteBuffer payload = ByteBuffer.allocateDirect(messageSize);
+            final int messages = (int) (BYTES_PER_RUN / messageSize);
+            done[0] = new CountDownLatch(1);
+            receivedBytes.set(0);
+            expectedBytes.set((long) messages * messageSize);
+            final int pausesBefore = outgoing.getPauseCount();
+            final long startMs = SystemClock.elapsedRealtime();
+
+            for (int i = 0; i < messages; i++) {
+                // The payload never changes, so every send can share it
+                while (outgoing.send(payload.duplicate()) < 0) {
+                    writable.tryAcquire(1, TimeUnit.SECONDS);
+                }
+            }
+
+            assertTrue("transfer of " + messageSize + " byte messages timed out", done[0].await(TRANSFER_TIMEOUT_S, TimeUnit.SECONDS));
+            final long elapsedMs = Math.max(1, SystemClock.elapsedRealtime() - startMs);
+
+            Log.i(TAG, "{\"message_bytes\":" + messageSize
+                    + ",\"total_bytes\":" + expectedBytes.get()
+                    + ",\"elapsed_ms\":" + elapsedMs
+                    + ",\"mbit_per_s\":" + String.format(Locale.US, "%.1f", expectedBytes.get() * 8.0 / 1000.0 / elapsedMs)
+                    + ",\"pauses\":" + (outgoing.getPauseCount() - pausesBefore)
+                    + ",\"pool_allocations\":" + mPool.getAllocationCount() + "}");
+        }
+    }
+
+    private class LoopbackPeer implements PeerConnection.Observer {
+        final String mName;
+        final PeerConnection mPeerConnection;
+        final NegotiationStateMachine mNegotiation;
+        final BlockingQueue<BinaryDataChannel> mChannels = new LinkedBlockingQueue<>();
+        LoopbackPeer mPartner;
+
+        LoopbackPeer(final String name) {
+            mName = name;
+            mPeerConnection = mFactory.createPeerConnection(new PeerConnection.RTCConfiguration(new ArrayList<PeerConnection.IceServer>()), this);
+            mNegotiation = new NegotiationStateMachine(new PeerConnectionSdpTarget(mPeerConnection), new NegotiationStateMachine.Listener() {
+                @Override
+                public void onLocalDescriptionCreated(SessionDescription description) {
+                }
+
+                @Override
+                public void onLocalOffer(SessionDescription offer) {
+                    mPartner.mNegotiation.setRemoteOffer(offer.description, new MediaConstraints());
+                }
+
+                @Override
+                public void onLocalAnswer(SessionDescription answer) {
+                    mPartner.mNegotiation.setRemoteAnswer(answer.description);
+                }
+
+                @Override
+                public void onNegotiationFailed(String reason) {
+                    Log.e(TAG, mName + " negotiation failed: " + reason);
+                }
+            });
+        }
+
+        void close() {
+            mNegotiation.close();
+            mPeerConnection.dispose();
+        }
+
+        @Override
+        public void onIceCandidate(IceCandidate iceCandidate) {
+            mPartner.mNegotiation.addRemoteCandidate(iceCandidate);
+        }
+
+        @Override
+        public void onDataChannel(DataChannel dataChannel) {
+            mChannels.add(new BinaryDataChannel(dataChannel, mPool, mSendExecutor));
+        }
+
+        @Override
+        public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+            Log.d(TAG, mName + " ice=" + iceConnectionState);
+        }
+
+        @Override
+        public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+        }
+
+        @Override
+        public void onIceConnectionReceivingChange(boolean receiving) {
+        }
+
+        @Override
+        public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+        }
+
+        @Override
+        public void onIceCandidatesRemoved(IceCandidate[] iceCandidates) {
+        }
+
+        @Override
+        public void onAddStream(MediaStream mediaStream) {
+        }
+
+        @Override
+        public void onRemoveStream(MediaStream mediaStream) {
+        }
+
+        @Override
+        public void onRenegotiationNeeded() {
+        }
+
+        @Override
+        public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
+        }
+    }
+}
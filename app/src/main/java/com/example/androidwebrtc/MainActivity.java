@@ -5,19 +5,32 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import android.Manifest;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.log.AsyncRingAppender;
+import com.example.androidwebrtc.log.LogcatAppender;
+import com.example.androidwebrtc.signaling.IceCandidateBatcher;
+import com.example.androidwebrtc.signaling.SignalingClient;
+import com.example.androidwebrtc.signaling.SignalingEventLoop;
+import com.example.androidwebrtc.signaling.SignalingMessage;
 import com.example.androidwebrtc.webrtc.Connection;
 import com.example.androidwebrtc.webrtc.ConnectionListener;
-
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.webrtc.EglBase;
+import com.example.androidwebrtc.webrtc.PeerSession;
+import com.example.androidwebrtc.webrtc.audio.AudioProfile;
+import com.example.androidwebrtc.webrtc.capture.CameraController;
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+import com.example.androidwebrtc.webrtc.data.BinaryDataChannel;
+import com.example.androidwebrtc.webrtc.dump.Y4mFrameDumpSink;
+import com.example.androidwebrtc.webrtc.encoding.SimulcastConfig;
+import com.example.androidwebrtc.webrtc.sdp.RemoveCodecsRule;
+import com.example.androidwebrtc.webrtc.trace.CallPhase;
+import com.example.androidwebrtc.webrtc.trace.CallSetupTracer;
+import com.example.androidwebrtc.webrtc.transport.TransportProfile;
+
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.webrtc.IceCandidate;
 import org.webrtc.MediaStreamTrack;
 import org.webrtc.RendererCommon;
@@ -25,12 +38,22 @@ import org.webrtc.SessionDescription;
 import org.webrtc.SurfaceViewRenderer;
 import org.webrtc.VideoTrack;
 
+import java.io.File;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -50,31 +73,121 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
     private static final boolean IS_DEBUG = true;
     private static final int CAMERA_AND_MIC = 1001;
 
-    private WebSocketClient socket;
+    // Offer the binary signaling codec and permessage-deflate, servers that don't support them keep JSON
+    private static final boolean OFFER_BINARY_SIGNALING = true;
+    private static final boolean OFFER_SIGNALING_COMPRESSION = true;
+    // Build the PeerConnection once media is ready instead of on the call button
+    private static final boolean PREWARM_PEER_CONNECTION = true;
+    // Dump sampled local and remote frames to Y4M under the app's external files dir
+    private static final boolean DUMP_FRAMES = false;
+    private static final int DUMP_SAMPLE_INTERVAL = 15;
+    // Write logs from a background thread so logcat never stalls signaling or capture
+    private static final boolean ASYNC_LOGGING = true;
+    // Send quarter, half and full resolution layers for a relay that forwards one per receiver
+    private static final boolean SIMULCAST = false;
+    private static final int SIMULCAST_MAX_BITRATE_BPS = 1_500_000;
+    // Trades platform noise suppression and jitter tolerance for a shorter audio delay
+    private static final boolean LOWEST_LATENCY_AUDIO = false;
+    // One bundled transport without TCP candidates; the remote side must accept max-bundle
+    private static final TransportProfile TRANSPORT_PROFILE = TransportProfile.MAX_BUNDLE;
+    // A dropped signaling socket is reopened after this delay, doubling up to the max
+    private static final long SIGNALING_RECONNECT_MIN_MS = 500;
+    private static final long SIGNALING_RECONNECT_MAX_MS = 30_000;
+    // How long onDestroy waits for the signaling loop to tear the call down
+    private static final long TEARDOWN_TIMEOUT_MS = 3000;
+
+    private SignalingClient socket;
+    // Set once we close the socket ourselves, any other close is reconnected
+    private volatile boolean mSignalingClosed;
+    private volatile long mReconnectDelayMs = SIGNALING_RECONNECT_MIN_MS;
+    // Set once media is up, a reconnect only registers with the server again
+    private volatile boolean mMediaStarted;
     private SurfaceViewRenderer mLocalRenderer;
     private SurfaceViewRenderer mRemoteRenderer;
     private EditText mPeerIdEditText;
     private Button mCallButton;
     private Button mLogoutButton;
     private Connection mConnection;
+    // Owns mRemoteId, the batchers and every call into mConnection's peers
+    private final SignalingEventLoop mSignalingLoop = new SignalingEventLoop();
+    // The peer shown in the remote renderer, the layout has room for one
     private String mRemoteId;
+    private final Map<String, IceCandidateBatcher> mCandidateBatchers = new HashMap<>();
+    private Y4mFrameDumpSink mLocalDump;
+    // Owned by the signaling loop, like the remote id they belong to
+    private Y4mFrameDumpSink mRemoteDump;
+    private VideoTrack mRemoteDumpTrack;
+    // The track drawn into mRemoteRenderer, loop-owned like mRemoteId
+    private VideoTrack mRemoteVideoTrack;
+    private final ScheduledExecutorService mBatchExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ice-batcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final ScheduledExecutorService mReconnectExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "signaling-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // The appender is process wide, a recreated activity keeps the first one
+        if (ASYNC_LOGGING && !(AppLog.getAppender() instanceof AsyncRingAppender)) {
+            AppLog.setAppender(new AsyncRingAppender(new LogcatAppender()));
+        }
+
         mLocalRenderer = findViewById(R.id.localRenderer);
         mRemoteRenderer = findViewById(R.id.remoteRenderer);
         mPeerIdEditText = findViewById(R.id.peerIdEditText);
         mCallButton = findViewById(R.id.callButton);
         mLogoutButton = findViewById(R.id.logoutButton);
 
-        mConnection = Connection.initialize(this, this);
+        mConnection = Connection.initialize(this, this, PreferredCodecRankingPolicy.DEFAULT, Connection.DEFAULT_MAX_PEERS,
+                Connection.DEFAULT_OVERFLOW_POLICY, LOWEST_LATENCY_AUDIO ? AudioProfile.LOWEST_LATENCY : AudioProfile.CONVERSATION);
+        // After a configuration change the live instance still points at the old activity
+        mConnection.setListener(this);
+        // Legacy audio codecs we never pick only make every offer longer
+        mConnection.getSdpRewriter().addLocalRule(new RemoveCodecsRule("audio", "ISAC", "ILBC"));
+        if (SIMULCAST) mConnection.setSimulcast(SimulcastConfig.threeLayers(SIMULCAST_MAX_BITRATE_BPS));
+        mConnection.setTransportProfile(TRANSPORT_PROFILE);
 
         initializeCallButton();
         connectToWebsocketServer();
         initializeLogoutButton();
+        initializeCameraSwitch();
+    }
+
+    // Tapping the local preview flips between front and back camera mid-call
+    private void initializeCameraSwitch() {
+        mLocalRenderer.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                final CameraController camera = mConnection.getCamera();
+                if (camera == null) return;
+
+                camera.switchCamera(new CameraController.SwitchListener() {
+                    @Override
+                    public void onCameraSwitched(String deviceName, boolean frontFacing) {
+                        AppLog.d(TAG, "Camera switched to {}", deviceName);
+                    }
+
+                    @Override
+                    public void onCameraSwitchFailed(String error) {
+                        AppLog.w(TAG, "Camera switch failed: {}", error);
+                    }
+                });
+            }
+        });
     }
 
     private void initializeCallButton() {
@@ -83,16 +196,28 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
             public void onClick(View view) {
                 if (mPeerIdEditText.getText().toString().trim().length() == 0) return;
 
-                mRemoteId = mPeerIdEditText.getText().toString();
+                final String remoteId = mPeerIdEditText.getText().toString();
                 mPeerIdEditText.setVisibility(View.INVISIBLE);
                 mCallButton.setVisibility(View.INVISIBLE);
                 mRemoteRenderer.setVisibility(View.VISIBLE);
                 mLocalRenderer.setVisibility(View.VISIBLE);
                 mLogoutButton.setVisibility(View.VISIBLE);
-                Log.d(TAG, "Remote id " + mRemoteId);
+                AppLog.d(TAG, "Remote id {}", remoteId);
 
-                mConnection.createPeerConnection();
-                mConnection.createOffer();
+                mSignalingLoop.post("call", new Runnable() {
+                    @Override
+                    public void run() {
+                        mConnection.getCallSetupTracer().begin(CallSetupTracer.Role.CALLER);
+                        mRemoteId = remoteId;
+
+                        final PeerSession session = mConnection.openPeer(remoteId);
+                        if (session == null) {
+                            AppLog.w(TAG, "Call is full, not calling {}", remoteId);
+                            return;
+                        }
+                        session.createOffer();
+                    }
+                });
 
                 view.clearFocus();
             }
@@ -101,39 +226,53 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
 
     private void connectToWebsocketServer() {
         try {
-            this.socket = new WebSocketClient(new URI(WS_URI)) {
+            this.socket = new SignalingClient(new URI(WS_URI), new SignalingClient.Listener() {
                 @Override
-                public void onOpen(ServerHandshake handshakedata) {
-                    Log.d(TAG, "onOpen");
+                public void onOpen() {
+                    AppLog.d(TAG, "onOpen");
+                    mReconnectDelayMs = SIGNALING_RECONNECT_MIN_MS;
                     runOnUiThread(new Runnable() {
                         @Override
                         public void run() {
                             mCallButton.setEnabled(true);
                         }
                     });
-                    requestCameraAndMicAccess();
+                    if (mMediaStarted) {
+                        sendSocketMessage(SignalingMessage.start(null));
+                    } else {
+                        requestCameraAndMicAccess();
+                    }
                 }
 
                 @Override
-                public void onMessage(String message) {
-                    Log.d(TAG, "onMessage message=" + message);
-                    handleWebSocketMessage(message);
+                public void onMessage(final SignalingMessage message) {
+                    AppLog.d(TAG, "onMessage message={}", message);
+                    // Nothing the server relays is sent twice, so none of it may be dropped;
+                    // a lost remote candidate may be the only path that works
+                    mSignalingLoop.post(message.type.name(), new Runnable() {
+                        @Override
+                        public void run() {
+                            handleSignalingMessage(message);
+                        }
+                    });
                 }
 
                 @Override
                 public void onClose(int code, String reason, boolean remote) {
-                    Log.d(TAG, "onClose reason=" + reason);
-                    MainActivity.this.closeConnection();
+                    AppLog.d(TAG, "onClose code={} reason={}", code, reason);
+                    // Peers keep their media path without signaling, and ICE recovery
+                    // retries its restart offers until the socket is back
+                    if (!mSignalingClosed) scheduleReconnect();
                 }
 
                 @Override
                 public void onError(Exception ex) {
-                    Log.e(TAG, "onError", ex);
+                    AppLog.e(TAG, "onError", ex);
                 }
-            };
+            }, OFFER_BINARY_SIGNALING, OFFER_SIGNALING_COMPRESSION);
 
             if (IS_DEBUG) {
-                Log.w(TAG, "Enabling debug mode");
+                AppLog.w(TAG, "Enabling debug mode");
                 final SSLSocketFactory factory = supportSelfSignedCert();
                 HttpsURLConnection.setDefaultSSLSocketFactory(factory);
                 this.socket.setSocketFactory(factory);
@@ -141,7 +280,25 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
 
             this.socket.connect();
         } catch (Exception e) {
-            Log.e(TAG, e.getMessage());
+            AppLog.e(TAG, "Failed to connect signaling", e);
+        }
+    }
+
+    private void scheduleReconnect() {
+        final long delayMs = mReconnectDelayMs;
+        mReconnectDelayMs = Math.min(delayMs * 2, SIGNALING_RECONNECT_MAX_MS);
+        AppLog.w(TAG, "Signaling closed, reconnecting in {}ms", delayMs);
+
+        try {
+            mReconnectExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // A failed attempt closes again and schedules the next one
+                    if (!mSignalingClosed) socket.reconnect();
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            AppLog.d(TAG, "Not reconnecting after destroy");
         }
     }
 
@@ -149,22 +306,103 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
         mLogoutButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
+                postCloseConnection();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        mSignalingClosed = true;
+        mReconnectExecutor.shutdownNow();
+        if (socket != null) socket.close();
+
+        // Peers, batchers and dumps belong to the signaling loop, so they are torn
+        // down there once the events already queued have run
+        final boolean finishing = isFinishing();
+        try {
+            if (!mSignalingLoop.shutdownAfter("destroy", new Runnable() {
+                @Override
+                public void run() {
+                    tearDown(finishing);
+                }
+            }, TEARDOWN_TIMEOUT_MS)) {
+                AppLog.w(TAG, "Signaling loop still busy {}ms after destroy", TEARDOWN_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mBatchExecutor.shutdownNow();
+        if (finishing) return;
+
+        // Recreated for a configuration change: the call has ended, the shared
+        // Connection stays warm for the next activity, only these views go
+        mConnection.removeLocalVideoSink(mLocalRenderer);
+        mConnection.getRendererPool().release(mLocalRenderer);
+        mConnection.getRendererPool().release(mRemoteRenderer);
+    }
+
+    // Runs on the signaling loop, as its last event. The socket, remote id and
+    // batchers die with this activity, so the call ends here either way; without
+    // release the factory and capture stay warm for the recreated activity.
+    private void tearDown(final boolean release) {
+        for (final IceCandidateBatcher batcher : mCandidateBatchers.values()) {
+            batcher.reset();
+        }
+        mCandidateBatchers.clear();
+        stopRemoteDump();
+        detachRemoteVideo();
+        if (mLocalDump != null) {
+            mConnection.removeLocalVideoSink(mLocalDump);
+            mLocalDump.close();
+            mLocalDump = null;
+        }
+        mRemoteId = null;
+        if (release) {
+            mConnection.release();
+        } else {
+            mConnection.close();
+        }
+    }
+
+    private void postCloseConnection() {
+        mSignalingLoop.post("close", new Runnable() {
+            @Override
+            public void run() {
                 closeConnection();
             }
         });
     }
 
+    // Runs on the signaling loop
     private void closeConnection() {
+        mConnection.getCallSetupTracer().finish();
+        for (final IceCandidateBatcher batcher : mCandidateBatchers.values()) {
+            batcher.reset();
+        }
+        mCandidateBatchers.clear();
+        stopRemoteDump();
+        detachRemoteVideo();
         mConnection.close();
+        mRemoteId = null;
+        AppLog.d(TAG, "Signaling loop {}", mSignalingLoop.getMetrics());
 
-        mLocalRenderer.release();
-        mRemoteRenderer.release();
-
-        mPeerIdEditText.setVisibility(View.VISIBLE);
-        mCallButton.setVisibility(View.VISIBLE);
-        mRemoteRenderer.setVisibility(View.INVISIBLE);
-        mLocalRenderer.setVisibility(View.INVISIBLE);
-        mLogoutButton.setVisibility(View.INVISIBLE);
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // Keep the renderers initialized so the next call can reuse them
+                mConnection.getRendererPool().recycle(mLocalRenderer);
+                mConnection.getRendererPool().recycle(mRemoteRenderer);
+
+                mPeerIdEditText.setVisibility(View.VISIBLE);
+                mCallButton.setVisibility(View.VISIBLE);
+                mRemoteRenderer.setVisibility(View.INVISIBLE);
+                mLocalRenderer.setVisibility(View.INVISIBLE);
+                mLogoutButton.setVisibility(View.INVISIBLE);
+            }
+        });
     }
 
     private SSLSocketFactory supportSelfSignedCert() throws NoSuchAlgorithmException, KeyManagementException {
@@ -195,48 +433,95 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
         return context.getSocketFactory();
     }
 
-    private void handleWebSocketMessage(final String message) {
-        Log.d(TAG, "Got server message:" + message);
-        try {
-           final JSONObject jsonMessage = new JSONObject(message);
-           final String action = jsonMessage.getString("action");
-
-           switch(action) {
-               case "start":
-                   Log.d(TAG, "WebSocket::start");
-                   // TODO: Deplace in text
-                   Log.d(TAG, "Local ID = " + jsonMessage.getString("id"));
-                   break;
-               case "offer":
-                   Log.d(TAG, "WebSocket::offer " + jsonMessage.getJSONObject("data"));
-                   mRemoteId = jsonMessage.getJSONObject("data").getString("remoteId");
-
-                   mConnection.createAnswerFromRemoteOffer(jsonMessage.getJSONObject("data").getJSONObject("offer").getString("name"));
-                   break;
-               case "answer":
-                   Log.d(TAG, "WebSocket::answer");
-                   mConnection.createAnswerFromRemoteOffer(jsonMessage.getJSONObject("data").getJSONObject("answer").getString("sdp"));
-                   break;
-               case "iceCandidate":
-                   Log.d(TAG, "WebSocket::iceCandidate " + jsonMessage.getJSONObject("data").getJSONObject("candidate").toString());
-                    mConnection.addRemoteIceCandidate(jsonMessage.getJSONObject("data").getJSONObject("candidate"));
-                   break;
-               default: Log.w(TAG, "WebSocket unknown action" + action);
-           }
-        } catch (JSONException je) {
-            Log.e(TAG, "Failed to handle WebSocket message", je);
+    // Runs on the signaling loop
+    private void handleSignalingMessage(final SignalingMessage message) {
+        switch (message.type) {
+            case START:
+                AppLog.d(TAG, "WebSocket::start");
+                // TODO: Deplace in text
+                AppLog.d(TAG, "Local ID = {}", message.localId);
+                break;
+            case OFFER: {
+                AppLog.d(TAG, "WebSocket::offer {}", message);
+                if (mConnection.getPeerCount() == 0) {
+                    mConnection.getCallSetupTracer().begin(CallSetupTracer.Role.CALLEE);
+                }
+
+                final PeerSession session = mConnection.openPeer(message.remoteId);
+                if (session == null) {
+                    AppLog.w(TAG, "Call is full, ignoring offer from {}", message.remoteId);
+                    break;
+                }
+                if (mRemoteId == null) mRemoteId = message.remoteId;
+
+                session.applyRemoteOffer(message.sdp);
+                break;
+            }
+            case ANSWER: {
+                AppLog.d(TAG, "WebSocket::answer");
+                final PeerSession session = findPeer(message.remoteId);
+                if (session != null) session.applyRemoteAnswer(message.sdp);
+                break;
+            }
+            case ICE_CANDIDATE: {
+                AppLog.d(TAG, "WebSocket::iceCandidate {}", message.candidate);
+                final PeerSession session = findPeer(message.remoteId);
+                if (session != null) session.addRemoteIceCandidate(message.candidate);
+                break;
+            }
+            case ICE_CANDIDATES: {
+                AppLog.d(TAG, "WebSocket::iceCandidates count={}", message.candidates.size());
+                final PeerSession session = findPeer(message.remoteId);
+                if (session != null) session.addRemoteIceCandidates(message.candidates);
+                break;
+            }
+            default: AppLog.w(TAG, "WebSocket unknown message type {}", message.type);
         }
     }
 
-    private void sendSocketMessage(final String action, final JSONObject data) {
-        try {
-            final JSONObject message = new JSONObject();
-            message.put("action", action);
-            message.put("data", data);
+    // Servers that do not stamp the sender on relayed messages leave the id out,
+    // in which case the message is for the peer on screen
+    private PeerSession findPeer(final String remoteId) {
+        PeerSession session = remoteId == null ? null : mConnection.getPeer(remoteId);
+        if (session == null && mRemoteId != null) session = mConnection.getPeer(mRemoteId);
+        if (session == null) AppLog.w(TAG, "No peer for message from {}", remoteId);
+
+        return session;
+    }
+
+    private IceCandidateBatcher candidateBatcherFor(final String remoteId) {
+        IceCandidateBatcher batcher = mCandidateBatchers.get(remoteId);
+        if (batcher == null) {
+            batcher = new IceCandidateBatcher(new IceCandidateBatcher.Sink() {
+                @Override
+                public void onCandidates(List<IceCandidate> candidates) {
+                    // Single candidates keep the legacy message so older peers still understand them
+                    final SignalingMessage message = candidates.size() == 1
+                            ? SignalingMessage.iceCandidate(remoteId, candidates.get(0))
+                            : SignalingMessage.iceCandidates(remoteId, candidates);
+                    if (mSignalingLoop.isLoopThread()) {
+                        sendSocketMessage(message);
+                        return;
+                    }
+                    // Window flushes run on the batch executor, the socket belongs to the loop
+                    mSignalingLoop.post("sendCandidates", new Runnable() {
+                        @Override
+                        public void run() {
+                            sendSocketMessage(message);
+                        }
+                    });
+                }
+            }, IceCandidateBatcher.DEFAULT_WINDOW_MS, IceCandidateBatcher.DEFAULT_MAX_BATCH_SIZE, mBatchExecutor);
+            mCandidateBatchers.put(remoteId, batcher);
+        }
+        return batcher;
+    }
 
-            socket.send(message.toString());
-        } catch (JSONException je) {
-            Log.e(TAG, je.toString());
+    private void sendSocketMessage(final SignalingMessage message) {
+        try {
+            socket.send(message);
+        } catch (WebsocketNotConnectedException e) {
+            AppLog.w(TAG, "Signaling down, dropping {}", message.type);
         }
     }
 
@@ -244,7 +529,7 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
     private void requestCameraAndMicAccess() {
         String[] permissions = { Manifest.permission.CAMERA, Manifest.permission.RECORD_AUDIO };
         if(EasyPermissions.hasPermissions(this, permissions)) {
-            Log.d(TAG, "media permissions granted");
+            AppLog.d(TAG, "media permissions granted");
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
@@ -258,15 +543,18 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
 
     private void getUserMedia() {
         try {
-            Log.d(TAG, "getUserMedia");
+            AppLog.d(TAG, "getUserMedia");
             mConnection.initializeMediaDevices(this, mLocalRenderer);
+            mMediaStarted = true;
+            if (PREWARM_PEER_CONNECTION) mConnection.prewarm();
+            if (DUMP_FRAMES) {
+                mLocalDump = createFrameDump("local");
+                mConnection.addLocalVideoSink(mLocalDump);
+            }
 
-            final JSONObject data = new JSONObject();
-            data.put("action", "start");
-
-            sendSocketMessage("start", data);
+            sendSocketMessage(SignalingMessage.start(null));
         } catch (Exception e) {
-            Log.e(TAG, "Failed to get camera device", e);
+            AppLog.e(TAG, "Failed to get camera device", e);
         }
     }
 
@@ -278,23 +566,43 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
     }
 
     @Override
-    public void onAddStream(MediaStreamTrack mediaStreamTrack) {
-        Log.d(TAG, "onAddStream " + mediaStreamTrack.kind());
+    public void onAddStream(final String remoteId, final MediaStreamTrack mediaStreamTrack) {
+        mSignalingLoop.post("addStream", new Runnable() {
+            @Override
+            public void run() {
+                showRemoteTrack(remoteId, mediaStreamTrack);
+            }
+        });
+    }
+
+    private void showRemoteTrack(final String remoteId, final MediaStreamTrack mediaStreamTrack) {
+        AppLog.d(TAG, "onAddStream {} remoteId={}", mediaStreamTrack.kind(), remoteId);
         mediaStreamTrack.setEnabled(true);
 
-        if (mediaStreamTrack.kind().equals("video")) {
-            Log.d(TAG, "add video");
+        // Other peers are heard but not shown
+        if (mediaStreamTrack.kind().equals("video") && remoteId.equals(mRemoteId)) {
+            AppLog.d(TAG, "add video");
             final VideoTrack videoTrack = (VideoTrack) mediaStreamTrack;
+            if (DUMP_FRAMES) {
+                stopRemoteDump();
+                mRemoteDump = createFrameDump("remote-" + remoteId);
+                mRemoteDumpTrack = videoTrack;
+                videoTrack.addSink(mRemoteDump);
+            }
+            // Attached here rather than on the UI thread so the loop always knows
+            // which track to detach; frames before the renderer is ready are dropped
+            detachRemoteVideo();
+            mRemoteVideoTrack = videoTrack;
+            videoTrack.addSink(mRemoteRenderer);
 
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
-                    final EglBase.Context eglContext = EglBase.create().getEglBaseContext();
-
-                    mRemoteRenderer.init(eglContext, new RendererCommon.RendererEvents() {
+                    mConnection.getRendererPool().acquire(mRemoteRenderer, new RendererCommon.RendererEvents() {
                         @Override
                         public void onFirstFrameRendered() {
-
+                            mConnection.getCallSetupTracer().mark(CallPhase.FIRST_FRAME_RENDERED);
+                            mConnection.getCallSetupTracer().finish();
                         }
 
                         @Override
@@ -302,67 +610,101 @@ public class MainActivity extends AppCompatActivity implements ConnectionListene
 
                         }
                     });
-
-                    videoTrack.addSink(mRemoteRenderer);
                 }
             });
         }
     }
 
+    private Y4mFrameDumpSink createFrameDump(final String name) {
+        final File directory = new File(getExternalFilesDir(null), "frame-dumps");
+        return new Y4mFrameDumpSink(directory, name + "-" + System.currentTimeMillis(), DUMP_SAMPLE_INTERVAL,
+                Y4mFrameDumpSink.DEFAULT_MAX_FILE_BYTES, Y4mFrameDumpSink.DEFAULT_FRAME_RATE / DUMP_SAMPLE_INTERVAL);
+    }
+
+    // Runs on the signaling loop, before the remote track is disposed, so the
+    // renderer and the activity behind it are not left referenced by the track
+    private void detachRemoteVideo() {
+        if (mRemoteVideoTrack == null) return;
+
+        mRemoteVideoTrack.removeSink(mRemoteRenderer);
+        mRemoteVideoTrack = null;
+    }
+
+    // Runs on the signaling loop, before the remote track is disposed
+    private void stopRemoteDump() {
+        if (mRemoteDump == null) return;
+
+        mRemoteDumpTrack.removeSink(mRemoteDump);
+        mRemoteDump.close();
+        mRemoteDump = null;
+        mRemoteDumpTrack = null;
+    }
+
     @Override
-    public void onIceCandidateReceived(IceCandidate iceCandidate) {
-        try {
-            final JSONObject candidate = new JSONObject();
-            candidate.put("sdp", iceCandidate.sdp);
-            candidate.put("sdpMLineIndex", iceCandidate.sdpMLineIndex);
-            candidate.put("sdpMid", iceCandidate.sdpMid);
-
-            final JSONObject data = new JSONObject();
-            data.put("action", "iceCandidate");
-            data.put("remoteId", mRemoteId);
-            data.put("candidate", candidate);
-
-            sendSocketMessage("iceCandidate", data);
-        } catch (JSONException je) {
-            Log.e(TAG, "Failed to handle onIceCandidate event", je);
-        }
+    public void onIceCandidateReceived(final String remoteId, final IceCandidate iceCandidate) {
+        // Gathered once and never again, so it is queued like SDP rather than dropped
+        mSignalingLoop.post("localCandidate", new Runnable() {
+            @Override
+            public void run() {
+                candidateBatcherFor(remoteId).add(iceCandidate);
+            }
+        });
     }
 
     @Override
-    public void onLocalOffer(SessionDescription offer) {
-        Log.d(TAG, "onLocalOffer offer=" + offer);
-        try {
-            final JSONObject sdp = new JSONObject();
-            sdp.put("type", "offer");
-            sdp.put("sdp", offer.description);
-
-            final JSONObject data = new JSONObject();
-            data.put("action", offer.type);
-            data.put("remoteId", mRemoteId);
-            data.put("offer", sdp);
-
-            sendSocketMessage("offer", data);
-        } catch (JSONException je) {
-           Log.e(TAG, "Failed to handle onLocalOffer", je);
-        }
+    public void onIceGatheringComplete(final String remoteId) {
+        mSignalingLoop.post("gatheringComplete", new Runnable() {
+            @Override
+            public void run() {
+                candidateBatcherFor(remoteId).onGatheringComplete();
+            }
+        });
     }
 
     @Override
-    public void onLocalAnswer(SessionDescription answer) {
-        Log.d(TAG, "onLocalAnswer answer=" + answer);
-        try {
-            final JSONObject sdp = new JSONObject();
-            sdp.put("type", "answer");
-            sdp.put("sdp", answer.description);
-
-            final JSONObject data = new JSONObject();
-            data.put("action", "answer");
-            data.put("remoteId", mRemoteId);
-            data.put("answer", sdp);
-
-            sendSocketMessage("answer", data);
-        } catch (JSONException je) {
-            Log.e(TAG, "Failed to handle onLocalAnswer", je);
-        }
+    public void onLocalOffer(final String remoteId, final SessionDescription offer) {
+        mSignalingLoop.post("localOffer", new Runnable() {
+            @Override
+            public void run() {
+                AppLog.d(TAG, "onLocalOffer offer={}", offer);
+                sendSocketMessage(SignalingMessage.offer(remoteId, offer.description));
+            }
+        });
+    }
+
+    @Override
+    public void onDataChannel(final String remoteId, final BinaryDataChannel channel) {
+        AppLog.d(TAG, "onDataChannel remoteId={} label={}", remoteId, channel.getLabel());
+        channel.setListener(new BinaryDataChannel.Listener() {
+            @Override
+            public void onOpen() {
+                AppLog.d(TAG, "Data channel open label={}", channel.getLabel());
+            }
+
+            @Override
+            public void onMessage(ByteBuffer message) {
+                AppLog.d(TAG, "Data channel message label={} size={}", channel.getLabel(), message.remaining());
+            }
+
+            @Override
+            public void onWritable() {
+            }
+
+            @Override
+            public void onClosed() {
+                AppLog.d(TAG, "Data channel closed label={}", channel.getLabel());
+            }
+        });
+    }
+
+    @Override
+    public void onLocalAnswer(final String remoteId, final SessionDescription answer) {
+        mSignalingLoop.post("localAnswer", new Runnable() {
+            @Override
+            public void run() {
+                AppLog.d(TAG, "onLocalAnswer answer={}", answer);
+                sendSocketMessage(SignalingMessage.answer(remoteId, answer.description));
+            }
+        });
     }
 }
\ No newline at end of file
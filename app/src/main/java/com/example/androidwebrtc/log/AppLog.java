@@ -0,0 +1,143 @@
+package com.example.androidwebrtc.log;
+
+import android.util.Log;
+
+import com.example.androidwebrtc.BuildConfig;
+
+/**
+ * Logging facade for the signaling and media paths. The level is checked before
+ * anything is formatted, and arguments are only turned into text for lines that
+ * are kept, so a disabled call costs a comparison:
+ *
+ *   AppLog.d(TAG, "onMessage message={}", message);
+ *
+ * <p>Release builds start at INFO, and R8 removes the verbose and debug calls
+ * altogether (see proguard-rules.pro). Lines are formatted into a per-thread
+ * builder and handed to the appender, logcat unless {@link #setAppender} installs
+ * an {@link AsyncRingAppender}.
+ */
+public final class AppLog {
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private static volatile int sMinLevel = BuildConfig.DEBUG ? DEBUG : INFO;
+    private static volatile LogAppender sAppender = new LogcatAppender();
+
+    private AppLog() {}
+
+    public static void setMinLevel(final int level) {
+        sMinLevel = level;
+    }
+
+    public static int getMinLevel() {
+        return sMinLevel;
+    }
+
+    public static LogAppender getAppender() {
+        return sAppender;
+    }
+
+    // Returns the appender it replaces, so callers can restore or close it
+    public static LogAppender setAppender(final LogAppender appender) {
+        final LogAppender previous = sAppender;
+        sAppender = appender;
+        return previous;
+    }
+
+    // For lines whose arguments are themselves expensive to compute
+    public static boolean isLoggable(final int level) {
+        return level >= sMinLevel;
+    }
+
+    public static void v(final String tag, final String message) {
+        if (isLoggable(VERBOSE)) log(VERBOSE, tag, message, 0, null, null, null, null);
+    }
+
+    public static void v(final String tag, final String pattern, final Object arg) {
+        if (isLoggable(VERBOSE)) log(VERBOSE, tag, pattern, 1, arg, null, null, null);
+    }
+
+    public static void v(final String tag, final String pattern, final Object first, final Object second) {
+        if (isLoggable(VERBOSE)) log(VERBOSE, tag, pattern, 2, first, second, null, null);
+    }
+
+    public static void d(final String tag, final String message) {
+        if (isLoggable(DEBUG)) log(DEBUG, tag, message, 0, null, null, null, null);
+    }
+
+    public static void d(final String tag, final String pattern, final Object arg) {
+        if (isLoggable(DEBUG)) log(DEBUG, tag, pattern, 1, arg, null, null, null);
+    }
+
+    public static void d(final String tag, final String pattern, final Object first, final Object second) {
+        if (isLoggable(DEBUG)) log(DEBUG, tag, pattern, 2, first, second, null, null);
+    }
+
+    public static void d(final String tag, final String pattern, final Object first, final Object second, final Object third) {
+        if (isLoggable(DEBUG)) log(DEBUG, tag, pattern, 3, first, second, third, null);
+    }
+
+    public static void i(final String tag, final String message) {
+        if (isLoggable(INFO)) log(INFO, tag, message, 0, null, null, null, null);
+    }
+
+    public static void i(final String tag, final String pattern, final Object arg) {
+        if (isLoggable(INFO)) log(INFO, tag, pattern, 1, arg, null, null, null);
+    }
+
+    public static void i(final String tag, final String pattern, final Object first, final Object second) {
+        if (isLoggable(INFO)) log(INFO, tag, pattern, 2, first, second, null, null);
+    }
+
+    public static void w(final String tag, final String message) {
+        if (isLoggable(WARN)) log(WARN, tag, message, 0, null, null, null, null);
+    }
+
+    public static void w(final String tag, final String pattern, final Object arg) {
+        if (isLoggable(WARN)) log(WARN, tag, pattern, 1, arg, null, null, null);
+    }
+
+    public static void w(final String tag, final String pattern, final Object first, final Object second) {
+        if (isLoggable(WARN)) log(WARN, tag, pattern, 2, first, second, null, null);
+    }
+
+    public static void w(final String tag, final String pattern, final Object first, final Object second, final Object third) {
+        if (isLoggable(WARN)) log(WARN, tag, pattern, 3, first, second, third, null);
+    }
+
+    public static void w(final String tag, final String message, final Throwable error) {
+        if (isLoggable(WARN)) log(WARN, tag, message, 0, null, null, null, error);
+    }
+
+    public static void e(final String tag, final String message) {
+        if (isLoggable(ERROR)) log(ERROR, tag, message, 0, null, null, null, null);
+    }
+
+    public static void e(final String tag, final String pattern, final Object arg) {
+        if (isLoggable(ERROR)) log(ERROR, tag, pattern, 1, arg, null, null, null);
+    }
+
+    public static void e(final String tag, final String pattern, final Object first, final Object second) {
+        if (isLoggable(ERROR)) log(ERROR, tag, pattern, 2, first, second, null, null);
+    }
+
+    public static void e(final String tag, final String message, final Throwable error) {
+        if (isLoggable(ERROR)) log(ERROR, tag, message, 0, null, null, null, error);
+    }
+
+    private static void log(final int level, final String tag, final String pattern, final int argCount,
+                            final Object first, final Object second, final Object third, final Throwable error) {
+        final StringBuilder message = LogFormat.format(BUILDER.get(), pattern, argCount, first, second, third);
+        sAppender.append(level, tag, message, error);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.androidwebrtc.log;
+
+import android.util.Log;
+
+/**
+ * Moves logcat writes off the calling thread. Lines are copied into a fixed ring
+ * of preallocated slots and written by one background thread; when the ring is
+ * full new lines are dropped and counted rather than blocking the caller. The
+ * slots' builders grow to the longest line seen and are then reused, so a caller
+ * only pays for a short lock and a character copy.
+ */
+public class AsyncRingAppender implements LogAppender {
+    private static final String TAG = "AsyncRingAppender";
+
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private final LogAppender mDelegate;
+    private final Slot[] mSlots;
+    private final Thread mThread;
+    private final Slot mScratch = new Slot();
+
+    // Guarded by this
+    private int mHead;
+    private int mSize;
+    private long mDropped;
+    private long mReportedDropped;
+    private boolean mClosed;
+
+    public AsyncRingAppender(final LogAppender delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public AsyncRingAppender(final LogAppender delegate, final int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+
+        mDelegate = delegate;
+        mSlots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mSlots[i] = new Slot();
+        }
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "log-appender");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    public synchronized long getDroppedCount() {
+        return mDropped;
+    }
+
+    public synchronized int getPendingCount() {
+        return mSize;
+    }
+
+    @Override
+    public void append(final int level, final String tag, final CharSequence message, final Throwable error) {
+        synchronized (this) {
+            if (mClosed) return;
+            if (mSize == mSlots.length) {
+                mDropped++;
+                return;
+            }
+
+            final Slot slot = mSlots[(mHead + mSize) % mSlots.length];
+            slot.mLevel = level;
+            slot.mTag = tag;
+            slot.mMessage.setLength(0);
+            slot.mMessage.append(message);
+            slot.mError = error;
+            mSize++;
+            if (mSize == 1) notifyAll();
+        }
+    }
+
+    // Blocks until every line appended so far has been written, or the timeout passes
+    public boolean flush(final long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            while (mSize > 0 || mScratch.mTag != null) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    // Lines still in the ring are written before the thread exits
+    public void close() {
+        synchronized (this) {
+            mClosed = true;
+            notifyAll();
+        }
+    }
+
+    private void drain() {
+        final Slot line = mScratch;
+        while (true) {
+            long dropped = 0;
+            synchronized (this) {
+                line.mTag = null;
+                notifyAll();
+                while (mSize == 0 && !mClosed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (mSize == 0) return;
+
+                // Swap the slot's contents out so the lock is not held while writing
+                final Slot slot = mSlots[mHead];
+                line.swap(slot);
+                mHead = (mHead + 1) % mSlots.length;
+                mSize--;
+
+                if (mDropped != mReportedDropped) {
+                    dropped = mDropped - mReportedDropped;
+                    mReportedDropped = mDropped;
+                }
+            }
+
+            try {
+                if (dropped > 0) {
+                    mDelegate.append(Log.WARN, TAG, "Dropped " + dropped + " log lines, ring full", null);
+                }
+                mDelegate.append(line.mLevel, line.mTag, line.mMessage, line.mError);
+            } catch (RuntimeException e) {
+                // The appender must outlive a bad line
+            }
+        }
+    }
+
+    private static class Slot {
+        int mLevel;
+        String mTag;
+        StringBuilder mMessage = new StringBuilder(128);
+        Throwable mError;
+
+        void swap(final Slot other) {
+            final StringBuilder message = mMessage;
+            mLevel = other.mLevel;
+            mTag = other.mTag;
+            mMessage = other.mMessage;
+            mError = other.mError;
+            other.mMessage = message;
+            other.mTag = null;
+            other.mError = null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.androidwebrtc.log;
+
+/**
+ * Destination of formatted log lines. The message is only valid during the call,
+ * appenders that keep it must copy it.
+ */
+public interface LogAppender {
+    void append(int level, String tag, CharSequence message, Throwable error);
+}
@@ -0,0 +1,45 @@
+package com.example.androidwebrtc.log;
+
+// Replaces each "{}" in the pattern with the next argument. Arguments are passed
+// separately rather than as varargs so a call does not allocate an array, and
+// CharSequence arguments are appended without a toString() copy.
+final class LogFormat {
+    // Logcat truncates longer lines anyway
+    static final int MAX_MESSAGE_CHARS = 4000;
+
+    private static final String TRUNCATED = "...";
+
+    private LogFormat() {}
+
+    static StringBuilder format(final StringBuilder out, final String pattern, final int argCount,
+                                final Object first, final Object second, final Object third) {
+        out.setLength(0);
+
+        int start = 0;
+        int arg = 0;
+        while (arg < argCount) {
+            final int placeholder = pattern.indexOf("{}", start);
+            if (placeholder < 0) break;
+
+            out.append(pattern, start, placeholder);
+            appendArg(out, arg == 0 ? first : arg == 1 ? second : third);
+            start = placeholder + 2;
+            arg++;
+        }
+        out.append(pattern, start, pattern.length());
+
+        if (out.length() > MAX_MESSAGE_CHARS) {
+            out.setLength(MAX_MESSAGE_CHARS - TRUNCATED.length());
+            out.append(TRUNCATED);
+        }
+        return out;
+    }
+
+    private static void appendArg(final StringBuilder out, final Object arg) {
+        if (arg instanceof CharSequence) {
+            out.append((CharSequence) arg);
+        } else {
+            out.append(arg);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.androidwebrtc.log;
+
+import android.util.Log;
+
+/**
+ * Writes straight to logcat on the calling thread.
+ */
+public class LogcatAppender implements LogAppender {
+    @Override
+    public void append(final int level, final String tag, final CharSequence message, final Throwable error) {
+        if (error == null) {
+            Log.println(level, tag, message.toString());
+        } else {
+            Log.println(level, tag, message + "\n" + Log.getStackTraceString(error));
+        }
+    }
+}
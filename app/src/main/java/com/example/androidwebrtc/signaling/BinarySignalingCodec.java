@@ -0,0 +1,342 @@
+package com.example.androidwebrtc.signaling;
+
+import org.webrtc.IceCandidate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary framing negotiated through the {@link #PROTOCOL} WebSocket subprotocol.
+ *
+ * <pre>
+ * frame  = version:u8 type:u8 field*
+ * field  = key:varint value
+ * key    = tag << 1 | wireType   (0 = varint, 1 = length-prefixed bytes)
+ * </pre>
+ *
+ * Strings and SDP bodies are raw UTF-8 bytes behind a varint length, so nothing is
+ * escaped. A candidate batch repeats a length-prefixed entry field whose body holds
+ * the sdpMid, sdpMLineIndex and candidate fields of one candidate. Unknown fields are skipped, which lets either side add fields later.
+ */
+public class BinarySignalingCodec implements SignalingCodec {
+    public static final String PROTOCOL = "webrtc-signaling.bin.v1";
+
+    static final int VERSION = 1;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_BYTES = 1;
+
+    private static final int TAG_REMOTE_ID = 1;
+    private static final int TAG_LOCAL_ID = 2;
+    private static final int TAG_SDP = 3;
+    private static final int TAG_SDP_MID = 4;
+    private static final int TAG_SDP_MLINE_INDEX = 5;
+    private static final int TAG_CANDIDATE = 6;
+    private static final int TAG_CANDIDATE_ENTRY = 7;
+
+    // Message types on the wire; fixed so reordering the enum cannot change the protocol
+    private static final int TYPE_START = 0;
+    private static final int TYPE_OFFER = 1;
+    private static final int TYPE_ANSWER = 2;
+    private static final int TYPE_ICE_CANDIDATE = 3;
+    private static final int TYPE_ICE_CANDIDATES = 4;
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    @Override
+    public ByteBuffer encode(final SignalingMessage message) throws SignalingException {
+        final IceCandidate candidate = message.candidate;
+
+        int size = 2;
+        size += stringFieldSize(TAG_REMOTE_ID, message.remoteId);
+        size += stringFieldSize(TAG_LOCAL_ID, message.localId);
+        size += stringFieldSize(TAG_SDP, message.sdp);
+        if (candidate != null) {
+            size += candidateFieldsSize(candidate);
+        } else if (message.candidates != null) {
+            for (final IceCandidate entry : message.candidates) {
+                final int entrySize = candidateFieldsSize(entry);
+                size += varintSize(key(TAG_CANDIDATE_ENTRY, WIRE_BYTES)) + varintSize(entrySize) + entrySize;
+            }
+        }
+
+        final byte[] frame = new byte[size];
+        frame[0] = VERSION;
+        frame[1] = (byte) wireType(message.type);
+
+        int position = 2;
+        position = writeStringField(frame, position, TAG_REMOTE_ID, message.remoteId);
+        position = writeStringField(frame, position, TAG_LOCAL_ID, message.localId);
+        position = writeStringField(frame, position, TAG_SDP, message.sdp);
+        if (candidate != null) {
+            position = writeCandidateFields(frame, position, candidate);
+        } else if (message.candidates != null) {
+            for (final IceCandidate entry : message.candidates) {
+                position = writeVarint(frame, position, key(TAG_CANDIDATE_ENTRY, WIRE_BYTES));
+                position = writeVarint(frame, position, candidateFieldsSize(entry));
+                position = writeCandidateFields(frame, position, entry);
+            }
+        }
+
+        if (position != size) {
+            throw new SignalingException("Encoded " + position + " bytes, expected " + size);
+        }
+
+        return ByteBuffer.wrap(frame);
+    }
+
+    @Override
+    public SignalingMessage decode(final ByteBuffer payload) throws SignalingException {
+        if (payload.remaining() < 2) {
+            throw new SignalingException("Truncated frame");
+        }
+
+        final int version = payload.get() & 0xff;
+        if (version != VERSION) {
+            throw new SignalingException("Unsupported frame version " + version);
+        }
+
+        final int type = payload.get() & 0xff;
+
+        String remoteId = null;
+        String localId = null;
+        String sdp = null;
+        String sdpMid = null;
+        int sdpMLineIndex = -1;
+        String candidateSdp = null;
+        List<IceCandidate> candidates = null;
+
+        while (payload.hasRemaining()) {
+            final int key = readVarint(payload);
+            final int tag = key >>> 1;
+
+            if ((key & 1) == WIRE_VARINT) {
+                final int value = readVarint(payload);
+                if (tag == TAG_SDP_MLINE_INDEX) sdpMLineIndex = value;
+                continue;
+            }
+
+            final int length = readVarint(payload);
+            // A fifth varint byte can set the sign bit
+            if (length < 0 || length > payload.remaining()) {
+                throw new SignalingException("Field " + tag + " overruns frame");
+            }
+
+            switch (tag) {
+                case TAG_REMOTE_ID: remoteId = readString(payload, length); break;
+                case TAG_LOCAL_ID: localId = readString(payload, length); break;
+                case TAG_SDP: sdp = readString(payload, length); break;
+                case TAG_SDP_MID: sdpMid = readString(payload, length); break;
+                case TAG_CANDIDATE: candidateSdp = readString(payload, length); break;
+                case TAG_CANDIDATE_ENTRY:
+                    if (candidates == null) candidates = new ArrayList<>();
+                    candidates.add(readCandidateEntry(payload, length));
+                    break;
+                default: payload.position(payload.position() + length);
+            }
+        }
+
+        switch (type) {
+            case TYPE_START:
+                return SignalingMessage.start(localId);
+            case TYPE_OFFER:
+                return SignalingMessage.offer(remoteId, require(sdp, "sdp"));
+            case TYPE_ANSWER:
+                return SignalingMessage.answer(remoteId, require(sdp, "sdp"));
+            case TYPE_ICE_CANDIDATE:
+                return SignalingMessage.iceCandidate(remoteId, new IceCandidate(sdpMid, sdpMLineIndex, require(candidateSdp, "candidate")));
+            case TYPE_ICE_CANDIDATES:
+                return SignalingMessage.iceCandidates(remoteId, require(candidates, "candidates"));
+            default:
+                throw new SignalingException("Unknown message type " + type);
+        }
+    }
+
+    private static int wireType(final SignalingMessage.Type type) throws SignalingException {
+        switch (type) {
+            case START: return TYPE_START;
+            case OFFER: return TYPE_OFFER;
+            case ANSWER: return TYPE_ANSWER;
+            case ICE_CANDIDATE: return TYPE_ICE_CANDIDATE;
+            case ICE_CANDIDATES: return TYPE_ICE_CANDIDATES;
+            default: throw new SignalingException("Unsupported message type " + type);
+        }
+    }
+
+    private static IceCandidate readCandidateEntry(final ByteBuffer payload, final int length) throws SignalingException {
+        final int end = payload.position() + length;
+
+        String sdpMid = null;
+        int sdpMLineIndex = -1;
+        String candidateSdp = null;
+
+        while (payload.position() < end) {
+            final int key = readVarint(payload);
+            final int tag = key >>> 1;
+
+            if ((key & 1) == WIRE_VARINT) {
+                final int value = readVarint(payload);
+                if (tag == TAG_SDP_MLINE_INDEX) sdpMLineIndex = value;
+                continue;
+            }
+
+            final int fieldLength = readVarint(payload);
+            if (fieldLength < 0 || fieldLength > end - payload.position()) {
+                throw new SignalingException("Field " + tag + " overruns candidate entry");
+            }
+
+            switch (tag) {
+                case TAG_SDP_MID: sdpMid = readString(payload, fieldLength); break;
+                case TAG_CANDIDATE: candidateSdp = readString(payload, fieldLength); break;
+                default: payload.position(payload.position() + fieldLength);
+            }
+        }
+
+        if (payload.position() != end) {
+            throw new SignalingException("Candidate entry overruns its length");
+        }
+
+        return new IceCandidate(sdpMid, sdpMLineIndex, require(candidateSdp, "candidate"));
+    }
+
+    private static int candidateFieldsSize(final IceCandidate candidate) {
+        return stringFieldSize(TAG_SDP_MID, candidate.sdpMid)
+                + varintSize(key(TAG_SDP_MLINE_INDEX, WIRE_VARINT)) + varintSize(candidate.sdpMLineIndex)
+                + stringFieldSize(TAG_CANDIDATE, candidate.sdp);
+    }
+
+    private static int writeCandidateFields(final byte[] frame, int position, final IceCandidate candidate) {
+        position = writeStringField(frame, position, TAG_SDP_MID, candidate.sdpMid);
+        position = writeVarint(frame, position, key(TAG_SDP_MLINE_INDEX, WIRE_VARINT));
+        position = writeVarint(frame, position, candidate.sdpMLineIndex);
+        return writeStringField(frame, position, TAG_CANDIDATE, candidate.sdp);
+    }
+
+    private static <T> T require(final T value, final String field) throws SignalingException {
+        if (value == null) {
+            throw new SignalingException("Missing field " + field);
+        }
+        return value;
+    }
+
+    private static int key(final int tag, final int wireType) {
+        return tag << 1 | wireType;
+    }
+
+    private static int stringFieldSize(final int tag, final String value) {
+        if (value == null) return 0;
+
+        final int length = utf8Length(value);
+        return varintSize(key(tag, WIRE_BYTES)) + varintSize(length) + length;
+    }
+
+    private static int writeStringField(final byte[] frame, int position, final int tag, final String value) {
+        if (value == null) return position;
+
+        position = writeVarint(frame, position, key(tag, WIRE_BYTES));
+        position = writeVarint(frame, position, utf8Length(value));
+        return writeUtf8(frame, position, value);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(final byte[] frame, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            frame[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        frame[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarint(final ByteBuffer payload) throws SignalingException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!payload.hasRemaining()) {
+                throw new SignalingException("Truncated varint");
+            }
+
+            final int b = payload.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new SignalingException("Malformed varint");
+    }
+
+    private static String readString(final ByteBuffer payload, final int length) {
+        final String value;
+        if (payload.hasArray()) {
+            value = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+            payload.position(payload.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            payload.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    // SDP and candidates are almost always ASCII, so encode without the temporary
+    // byte[] String.getBytes would allocate
+    private static int utf8Length(final String value) {
+        final int chars = value.length();
+        int length = chars;
+
+        for (int i = 0; i < chars; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    length += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 2;
+                    i++;
+                } else {
+                    length += 2;
+                }
+            }
+        }
+
+        return length;
+    }
+
+    private static int writeUtf8(final byte[] frame, int position, final String value) {
+        final int chars = value.length();
+
+        for (int i = 0; i < chars; i++) {
+            final char c = value.charAt(i);
+
+            if (c < 0x80) {
+                frame[position++] = (byte) c;
+            } else if (c < 0x800) {
+                frame[position++] = (byte) (0xc0 | c >> 6);
+                frame[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                frame[position++] = (byte) (0xf0 | codePoint >> 18);
+                frame[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                frame[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                frame[position++] = (byte) (0x80 | codePoint & 0x3f);
+            } else {
+                // Unpaired surrogates become U+FFFD, three bytes like any other BMP char
+                final char out = Character.isSurrogate(c) ? '\uFFFD' : c;
+                frame[position++] = (byte) (0xe0 | out >> 12);
+                frame[position++] = (byte) (0x80 | out >> 6 & 0x3f);
+                frame[position++] = (byte) (0x80 | out & 0x3f);
+            }
+        }
+
+        return position;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.IceCandidate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces trickled local candidates so the relay sees a few signaling messages
+ * per call setup instead of one per candidate. A batch goes out when the window
+ * expires or the size limit is reached, and immediately for the first host
+ * candidate so connectivity checks are not held back. An ICE restart gathers
+ * under a new ufrag, and its first host candidate is sent at once as well.
+ */
+public class IceCandidateBatcher {
+    private static final String TAG = "IceCandidateBatcher";
+
+    public static final long DEFAULT_WINDOW_MS = 50;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 8;
+
+    public interface Sink {
+        // Called with at least one candidate, in gathering order
+        void onCandidates(List<IceCandidate> candidates);
+    }
+
+    private final Sink mSink;
+    private final long mWindowMs;
+    private final int mMaxBatchSize;
+    private final ScheduledExecutorService mExecutor;
+    private final boolean mOwnsExecutor;
+    private final List<IceCandidate> mPending = new ArrayList<>();
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private ScheduledFuture<?> mFlushTask;
+    private boolean mHostFlushed;
+    private String mUfrag;
+
+    public IceCandidateBatcher(final Sink sink) {
+        this(sink, DEFAULT_WINDOW_MS, DEFAULT_MAX_BATCH_SIZE, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ice-batcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    public IceCandidateBatcher(final Sink sink, final long windowMs, final int maxBatchSize, final ScheduledExecutorService executor) {
+        this(sink, windowMs, maxBatchSize, executor, false);
+    }
+
+    private IceCandidateBatcher(final Sink sink, final long windowMs, final int maxBatchSize,
+                                final ScheduledExecutorService executor, final boolean ownsExecutor) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+
+        mSink = sink;
+        mWindowMs = windowMs;
+        mMaxBatchSize = maxBatchSize;
+        mExecutor = executor;
+        mOwnsExecutor = ownsExecutor;
+    }
+
+    public void add(final IceCandidate candidate) {
+        final List<IceCandidate> batch;
+
+        synchronized (this) {
+            mPending.add(candidate);
+
+            final String ufrag = ufragOf(candidate);
+            if (ufrag != null && !ufrag.equals(mUfrag)) {
+                if (mUfrag != null) AppLog.d(TAG, "ICE restart, new ufrag {}", ufrag);
+                mUfrag = ufrag;
+                mHostFlushed = false;
+            }
+
+            if (!mHostFlushed && isHost(candidate)) {
+                mHostFlushed = true;
+                batch = drainLocked();
+            } else if (mPending.size() >= mMaxBatchSize) {
+                batch = drainLocked();
+            } else {
+                if (mFlushTask == null) {
+                    mFlushTask = mExecutor.schedule(mFlushRunnable, mWindowMs, TimeUnit.MILLISECONDS);
+                }
+                batch = null;
+            }
+        }
+
+        if (batch != null) send(batch);
+    }
+
+    // libwebrtc reports the last candidate before the COMPLETE state change
+    public void onGatheringComplete() {
+        flush();
+    }
+
+    public void flush() {
+        final List<IceCandidate> batch;
+        synchronized (this) {
+            batch = drainLocked();
+        }
+
+        if (batch != null) send(batch);
+    }
+
+    // Drops anything pending, used when a call ends before gathering completes
+    public synchronized void reset() {
+        cancelFlushLocked();
+        mPending.clear();
+        mHostFlushed = false;
+        mUfrag = null;
+    }
+
+    public void shutdown() {
+        reset();
+        if (mOwnsExecutor) mExecutor.shutdownNow();
+    }
+
+    private List<IceCandidate> drainLocked() {
+        cancelFlushLocked();
+        if (mPending.isEmpty()) return null;
+
+        final List<IceCandidate> batch = new ArrayList<>(mPending);
+        mPending.clear();
+        return batch;
+    }
+
+    private void cancelFlushLocked() {
+        if (mFlushTask == null) return;
+
+        mFlushTask.cancel(false);
+        mFlushTask = null;
+    }
+
+    private void send(final List<IceCandidate> batch) {
+        AppLog.d(TAG, "Flushing {} candidate(s)", batch.size());
+        mSink.onCandidates(batch);
+    }
+
+    static boolean isHost(final IceCandidate candidate) {
+        return candidate.sdp != null && candidate.sdp.contains(" typ host");
+    }
+
+    // libwebrtc writes the credentials' ufrag into every candidate line; null when absent
+    static String ufragOf(final IceCandidate candidate) {
+        if (candidate.sdp == null) return null;
+
+        final int start = candidate.sdp.indexOf(" ufrag ");
+        if (start < 0) return null;
+
+        final int from = start + " ufrag ".length();
+        final int end = candidate.sdp.indexOf(' ', from);
+        return end < 0 ? candidate.sdp.substring(from) : candidate.sdp.substring(from, end);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.androidwebrtc.signaling;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.IceCandidate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original JSON protocol: {"action": ..., "data": {...}} text frames.
+ */
+public class JsonSignalingCodec implements SignalingCodec {
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    @Override
+    public ByteBuffer encode(final SignalingMessage message) throws SignalingException {
+        return ByteBuffer.wrap(encodeToString(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String encodeToString(final SignalingMessage message) throws SignalingException {
+        try {
+            final JSONObject data = new JSONObject();
+
+            switch (message.type) {
+                case START:
+                    data.put("action", "start");
+                    break;
+                case OFFER:
+                    data.put("action", "offer");
+                    data.put("remoteId", message.remoteId);
+                    data.put("offer", sdp("offer", message.sdp));
+                    break;
+                case ANSWER:
+                    data.put("action", "answer");
+                    data.put("remoteId", message.remoteId);
+                    data.put("answer", sdp("answer", message.sdp));
+                    break;
+                case ICE_CANDIDATE:
+                    data.put("action", "iceCandidate");
+                    data.put("remoteId", message.remoteId);
+                    data.put("candidate", candidate(message.candidate));
+                    break;
+                case ICE_CANDIDATES: {
+                    final JSONArray candidates = new JSONArray();
+                    for (final IceCandidate iceCandidate : message.candidates) {
+                        candidates.put(candidate(iceCandidate));
+                    }
+
+                    data.put("action", "iceCandidates");
+                    data.put("remoteId", message.remoteId);
+                    data.put("candidates", candidates);
+                    break;
+                }
+                default:
+                    throw new SignalingException("Unsupported message type " + message.type);
+            }
+
+            final JSONObject json = new JSONObject();
+            json.put("action", data.getString("action"));
+            // Servers reply to start with the client's id next to the action
+            if (message.type == SignalingMessage.Type.START && message.localId != null) {
+                json.put("id", message.localId);
+            }
+            json.put("data", data);
+            return json.toString();
+        } catch (JSONException je) {
+            throw new SignalingException("Failed to encode " + message.type, je);
+        }
+    }
+
+    @Override
+    public SignalingMessage decode(final ByteBuffer payload) throws SignalingException {
+        final byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return decode(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public SignalingMessage decode(final String text) throws SignalingException {
+        try {
+            final JSONObject json = new JSONObject(text);
+            final String action = json.getString("action");
+
+            switch (action) {
+                case "start":
+                    return SignalingMessage.start(json.optString("id", null));
+                case "offer": {
+                    final JSONObject data = json.getJSONObject("data");
+                    return SignalingMessage.offer(data.optString("remoteId", null), sdpBody(data.getJSONObject("offer")));
+                }
+                case "answer": {
+                    final JSONObject data = json.getJSONObject("data");
+                    return SignalingMessage.answer(data.optString("remoteId", null), sdpBody(data.getJSONObject("answer")));
+                }
+                case "iceCandidate": {
+                    final JSONObject data = json.getJSONObject("data");
+                    return SignalingMessage.iceCandidate(data.optString("remoteId", null), iceCandidate(data.getJSONObject("candidate")));
+                }
+                case "iceCandidates": {
+                    final JSONObject data = json.getJSONObject("data");
+                    final JSONArray candidates = data.getJSONArray("candidates");
+                    final List<IceCandidate> iceCandidates = new ArrayList<>(candidates.length());
+                    for (int i = 0; i < candidates.length(); i++) {
+                        iceCandidates.add(iceCandidate(candidates.getJSONObject(i)));
+                    }
+                    return SignalingMessage.iceCandidates(data.optString("remoteId", null), iceCandidates);
+                }
+                default:
+                    throw new SignalingException("Unknown action " + action);
+            }
+        } catch (JSONException je) {
+            throw new SignalingException("Malformed JSON message", je);
+        }
+    }
+
+    private static JSONObject sdp(final String type, final String description) throws JSONException {
+        final JSONObject sdp = new JSONObject();
+        sdp.put("type", type);
+        sdp.put("sdp", description);
+        return sdp;
+    }
+
+    private static JSONObject candidate(final IceCandidate iceCandidate) throws JSONException {
+        final JSONObject candidate = new JSONObject();
+        candidate.put("sdp", iceCandidate.sdp);
+        candidate.put("sdpMLineIndex", iceCandidate.sdpMLineIndex);
+        candidate.put("sdpMid", iceCandidate.sdpMid);
+        return candidate;
+    }
+
+    // Relayed offers carry the SDP under "name" on some server versions
+    private static String sdpBody(final JSONObject sdp) throws JSONException {
+        return sdp.has("sdp") ? sdp.getString("sdp") : sdp.getString("name");
+    }
+
+    // Browsers send the candidate line as "candidate", this client sends it as "sdp"
+    private static IceCandidate iceCandidate(final JSONObject candidate) throws JSONException {
+        final String sdp = candidate.has("candidate") ? candidate.getString("candidate") : candidate.getString("sdp");
+        return new IceCandidate(candidate.getString("sdpMid"), candidate.getInt("sdpMLineIndex"), sdp);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WebSocket signaling client that speaks either the JSON or the binary codec.
+ *
+ * The binary codec is offered as a subprotocol and used only if the server accepts
+ * it, otherwise the client stays on JSON. permessage-deflate is offered the same way.
+ */
+public class SignalingClient extends WebSocketClient {
+    private static final String TAG = "SignalingClient";
+
+    public interface Listener {
+        void onOpen();
+        void onMessage(SignalingMessage message);
+        void onClose(int code, String reason, boolean remote);
+        void onError(Exception ex);
+    }
+
+    private final Listener mListener;
+    private volatile SignalingCodec mCodec = new JsonSignalingCodec();
+
+    public SignalingClient(final URI uri, final Listener listener, final boolean offerBinary, final boolean offerCompression) {
+        super(uri, createDraft(offerBinary, offerCompression));
+        mListener = listener;
+    }
+
+    private static Draft createDraft(final boolean offerBinary, final boolean offerCompression) {
+        final List<IExtension> extensions = new ArrayList<>();
+        if (offerCompression) {
+            extensions.add(new PerMessageDeflateExtension());
+        }
+
+        final List<IProtocol> protocols = new ArrayList<>();
+        if (offerBinary) {
+            protocols.add(new Protocol(BinarySignalingCodec.PROTOCOL));
+        }
+        // Empty protocol accepts servers that do not negotiate one, those get JSON
+        protocols.add(new Protocol(""));
+
+        return new Draft_6455(extensions, protocols);
+    }
+
+    public SignalingCodec getCodec() {
+        return mCodec;
+    }
+
+    public void send(final SignalingMessage message) {
+        try {
+            final SignalingCodec codec = mCodec;
+            final ByteBuffer payload = codec.encode(message);
+
+            if (codec.isBinary()) {
+                send(payload);
+            } else {
+                // Already UTF-8, send as a text frame without another String round trip
+                final TextFrame frame = new TextFrame();
+                frame.setPayload(payload);
+                frame.setFin(true);
+                sendFrame(frame);
+            }
+        } catch (SignalingException se) {
+            AppLog.e(TAG, "Failed to send " + message.type, se);
+        }
+    }
+
+    @Override
+    public void onOpen(final ServerHandshake handshakedata) {
+        // The connection negotiates on its own copy of the draft; getDraft() is the unnegotiated original
+        final Draft draft = getConnection().getDraft();
+        final IProtocol protocol = draft instanceof Draft_6455 ? ((Draft_6455) draft).getProtocol() : null;
+
+        // Decided again on every open, a reconnect may reach a server that no longer speaks binary
+        mCodec = protocol != null && BinarySignalingCodec.PROTOCOL.equals(protocol.getProvidedProtocol())
+                ? new BinarySignalingCodec() : new JsonSignalingCodec();
+
+        AppLog.d(TAG, "onOpen codec={} compression={}", mCodec.getClass().getSimpleName(),
+                draft instanceof Draft_6455 && ((Draft_6455) draft).getExtension() instanceof PerMessageDeflateExtension);
+        mListener.onOpen();
+    }
+
+    @Override
+    public void onMessage(final String message) {
+        try {
+            mListener.onMessage(mCodec.decode(message));
+        } catch (SignalingException se) {
+            AppLog.e(TAG, "Failed to decode text message", se);
+        }
+    }
+
+    @Override
+    public void onMessage(final ByteBuffer bytes) {
+        try {
+            mListener.onMessage(mCodec.decode(bytes));
+        } catch (SignalingException se) {
+            AppLog.e(TAG, "Failed to decode binary message", se);
+        }
+    }
+
+    @Override
+    public void onClose(final int code, final String reason, final boolean remote) {
+        mListener.onClose(code, reason, remote);
+    }
+
+    @Override
+    public void onError(final Exception ex) {
+        mListener.onError(ex);
+    }
+}
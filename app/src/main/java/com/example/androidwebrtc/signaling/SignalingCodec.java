@@ -0,0 +1,21 @@
+package com.example.androidwebrtc.signaling;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of signaling messages. Text codecs produce UTF-8 payloads that are
+ * sent as WebSocket text frames, binary codecs are sent as binary frames.
+ */
+public interface SignalingCodec {
+    boolean isBinary();
+
+    ByteBuffer encode(SignalingMessage message) throws SignalingException;
+
+    SignalingMessage decode(ByteBuffer payload) throws SignalingException;
+
+    // Text frames arrive already decoded by the WebSocket library
+    default SignalingMessage decode(final String text) throws SignalingException {
+        return decode(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.Clock;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One thread that owns signaling and peer-connection state. The socket thread,
+ * WebRTC's signaling thread and the UI post events here instead of touching that
+ * state themselves. Posting never blocks. Events that are produced again if
+ * lost go through {@link #postDroppable} and are dropped and counted once the
+ * mailbox holds its capacity, so a stalled handler shows up in the metrics instead
+ * of backing up into the socket or native threads. SDP, candidates and lifecycle
+ * events happen once and go through {@link #post}, which always queues.
+ */
+public class SignalingEventLoop {
+    private static final String TAG = "SignalingEventLoop";
+
+    public static final int DEFAULT_CAPACITY = 256;
+    // Events that waited longer than this are logged, signaling should stay interactive
+    static final long SLOW_WAIT_MS = 100;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final int mCapacity;
+    private final Clock mClock;
+    private final AtomicInteger mMaxDepth = new AtomicInteger();
+    private final AtomicLong mRejected = new AtomicLong();
+    private volatile Thread mThread;
+
+    // Written on the loop thread only
+    private long mHandled;
+    private long mTotalWaitNs;
+    private long mMaxWaitNs;
+    private long mTotalHandleNs;
+    private long mMaxHandleNs;
+
+    public SignalingEventLoop() {
+        this(DEFAULT_CAPACITY, Clock.SYSTEM);
+    }
+
+    SignalingEventLoop(final int capacity, final Clock clock) {
+        mCapacity = capacity;
+        mClock = clock;
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "signaling-loop");
+                mThread = thread;
+                return thread;
+            }
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Queues the event however deep the mailbox is. Returns false only after
+    // shutdown, when nothing is left to handle it.
+    public boolean post(final String name, final Runnable handler) {
+        final Event event = new Event(name, handler, mClock.nanoTime());
+        try {
+            mExecutor.execute(event);
+        } catch (RejectedExecutionException e) {
+            mRejected.incrementAndGet();
+            AppLog.w(TAG, "Loop shut down, dropping {}", name);
+            return false;
+        }
+
+        final int depth = getQueueDepth();
+        if (depth > mCapacity) AppLog.e(TAG, "{} queued over capacity, depth={}", name, depth);
+        updateMaxDepth(depth);
+        return true;
+    }
+
+    // Only for events that are produced again if lost, such as periodic samples;
+    // returns false when the event was dropped because the mailbox is full or
+    // the loop has been shut down
+    public boolean postDroppable(final String name, final Runnable handler) {
+        if (getQueueDepth() >= mCapacity) {
+            mRejected.incrementAndGet();
+            AppLog.w(TAG, "Dropping {}, depth={}", name, getQueueDepth());
+            return false;
+        }
+        return post(name, handler);
+    }
+
+    public boolean isLoopThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    public int getQueueDepth() {
+        return mExecutor.getQueue().size();
+    }
+
+    public Metrics getMetrics() {
+        synchronized (this) {
+            return new Metrics(getQueueDepth(), mMaxDepth.get(), mHandled, mRejected.get(),
+                    mHandled == 0 ? 0 : nsToMs(mTotalWaitNs) / mHandled, nsToMs(mMaxWaitNs),
+                    mHandled == 0 ? 0 : nsToMs(mTotalHandleNs) / mHandled, nsToMs(mMaxHandleNs));
+        }
+    }
+
+    // Pending events are dropped, the one in progress finishes
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    // Runs every event queued so far and then the given one, and waits for them;
+    // for teardown that must happen on the loop. Returns false on timeout.
+    public boolean shutdownAfter(final String name, final Runnable handler, final long timeoutMs) throws InterruptedException {
+        post(name, handler);
+        mExecutor.shutdown();
+        return mExecutor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void updateMaxDepth(final int depth) {
+        int max = mMaxDepth.get();
+        while (depth > max && !mMaxDepth.compareAndSet(max, depth)) {
+            max = mMaxDepth.get();
+        }
+    }
+
+    private static double nsToMs(final long ns) {
+        return ns / 1_000_000.0;
+    }
+
+    private class Event implements Runnable {
+        private final String mName;
+        private final Runnable mHandler;
+        private final long mPostedNs;
+
+        Event(final String name, final Runnable handler, final long postedNs) {
+            mName = name;
+            mHandler = handler;
+            mPostedNs = postedNs;
+        }
+
+        @Override
+        public void run() {
+            final long startNs = mClock.nanoTime();
+            try {
+                mHandler.run();
+            } catch (RuntimeException e) {
+                // One bad event must not take the loop down with it
+                AppLog.e(TAG, "Handler for " + mName + " failed", e);
+            }
+            final long endNs = mClock.nanoTime();
+            final long waitNs = startNs - mPostedNs;
+
+            synchronized (SignalingEventLoop.this) {
+                mHandled++;
+                mTotalWaitNs += waitNs;
+                mMaxWaitNs = Math.max(mMaxWaitNs, waitNs);
+                mTotalHandleNs += endNs - startNs;
+                mMaxHandleNs = Math.max(mMaxHandleNs, endNs - startNs);
+            }
+
+            if (TimeUnit.NANOSECONDS.toMillis(waitNs) > SLOW_WAIT_MS) {
+                AppLog.w(TAG, "{} waited {}ms in the mailbox", mName, TimeUnit.NANOSECONDS.toMillis(waitNs));
+            }
+        }
+    }
+
+    public static class Metrics {
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long handled;
+        public final long rejected;
+        public final double meanWaitMs;
+        public final double maxWaitMs;
+        public final double meanHandleMs;
+        public final double maxHandleMs;
+
+        Metrics(final int queueDepth, final int maxQueueDepth, final long handled, final long rejected,
+                final double meanWaitMs, final double maxWaitMs, final double meanHandleMs, final double maxHandleMs) {
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.handled = handled;
+            this.rejected = rejected;
+            this.meanWaitMs = meanWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.meanHandleMs = meanHandleMs;
+            this.maxHandleMs = maxHandleMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{depth=" + queueDepth + " maxDepth=" + maxQueueDepth
+                    + " handled=" + handled + " rejected=" + rejected
+                    + " wait=" + meanWaitMs + "/" + maxWaitMs + "ms"
+                    + " handle=" + meanHandleMs + "/" + maxHandleMs + "ms}";
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.androidwebrtc.signaling;
+
+public class SignalingException extends Exception {
+    public SignalingException(final String message) {
+        super(message);
+    }
+
+    public SignalingException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.androidwebrtc.signaling;
+
+import org.webrtc.IceCandidate;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One message of the signaling protocol, independent of its wire format.
+ */
+public final class SignalingMessage {
+    public enum Type {
+        // Client registers with the server, the server replies with our id
+        START,
+        OFFER,
+        ANSWER,
+        ICE_CANDIDATE,
+        // Several trickled candidates coalesced into one message
+        ICE_CANDIDATES
+    }
+
+    public final Type type;
+    // Peer the message is addressed to, or the peer that sent it
+    public final String remoteId;
+    // Our id, only set on START replies from the server
+    public final String localId;
+    public final String sdp;
+    // Only set on ICE_CANDIDATE
+    public final IceCandidate candidate;
+    // Set on both ICE_CANDIDATE and ICE_CANDIDATES
+    public final List<IceCandidate> candidates;
+
+    private SignalingMessage(final Type type, final String remoteId, final String localId, final String sdp,
+                             final IceCandidate candidate, final List<IceCandidate> candidates) {
+        this.type = type;
+        this.remoteId = remoteId;
+        this.localId = localId;
+        this.sdp = sdp;
+        this.candidate = candidate;
+        this.candidates = candidates;
+    }
+
+    public static SignalingMessage start(final String localId) {
+        return new SignalingMessage(Type.START, null, localId, null, null, null);
+    }
+
+    public static SignalingMessage offer(final String remoteId, final String sdp) {
+        return new SignalingMessage(Type.OFFER, remoteId, null, sdp, null, null);
+    }
+
+    public static SignalingMessage answer(final String remoteId, final String sdp) {
+        return new SignalingMessage(Type.ANSWER, remoteId, null, sdp, null, null);
+    }
+
+    public static SignalingMessage iceCandidate(final String remoteId, final IceCandidate candidate) {
+        return new SignalingMessage(Type.ICE_CANDIDATE, remoteId, null, null, candidate, Collections.singletonList(candidate));
+    }
+
+    public static SignalingMessage iceCandidates(final String remoteId, final List<IceCandidate> candidates) {
+        return new SignalingMessage(Type.ICE_CANDIDATES, remoteId, null, null, null, Collections.unmodifiableList(candidates));
+    }
+
+    @Override
+    public String toString() {
+        // SDP bodies are left out on purpose, they are several KB each
+        return "SignalingMessage{type=" + type + ", remoteId=" + remoteId + ", localId=" + localId
+                + ", sdpLength=" + (sdp == null ? 0 : sdp.length())
+                + ", candidates=" + (candidates == null ? 0 : candidates.size()) + "}";
+    }
+}
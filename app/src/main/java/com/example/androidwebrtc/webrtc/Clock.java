@@ -0,0 +1,15 @@
+package com.example.androidwebrtc.webrtc;
+
+/**
+ * Monotonic time source, swapped for a fake one in unit tests.
+ */
+public interface Clock {
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    long nanoTime();
+}
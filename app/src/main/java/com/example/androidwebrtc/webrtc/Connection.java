@@ -1,40 +1,80 @@
 package com.example.androidwebrtc.webrtc;
 
 import android.content.Context;
-import android.util.Log;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.adaptation.AdaptationStatsSource;
+import com.example.androidwebrtc.webrtc.adaptation.AggregateStatsSource;
+import com.example.androidwebrtc.webrtc.adaptation.OutputFormatSink;
+import com.example.androidwebrtc.webrtc.adaptation.VideoAdaptationController;
+import com.example.androidwebrtc.webrtc.adaptation.VideoQualityLadder;
+import com.example.androidwebrtc.webrtc.audio.AudioProfile;
+import com.example.androidwebrtc.webrtc.capture.CameraController;
+import com.example.androidwebrtc.webrtc.capture.CaptureFormatSelector;
+import com.example.androidwebrtc.webrtc.cert.CertificateCache;
+import com.example.androidwebrtc.webrtc.codec.CodecHealth;
+import com.example.androidwebrtc.webrtc.codec.CodecRankingPolicy;
+import com.example.androidwebrtc.webrtc.codec.FallbackVideoDecoderFactory;
+import com.example.androidwebrtc.webrtc.codec.FallbackVideoEncoderFactory;
+import com.example.androidwebrtc.webrtc.codec.PreferredCodecRankingPolicy;
+import com.example.androidwebrtc.webrtc.data.DirectBufferPool;
+import com.example.androidwebrtc.webrtc.encoding.EncodingController;
+import com.example.androidwebrtc.webrtc.encoding.RtpSenderEncodingTarget;
+import com.example.androidwebrtc.webrtc.encoding.SimulcastConfig;
+import com.example.androidwebrtc.webrtc.processing.FrameProcessingPipeline;
+import com.example.androidwebrtc.webrtc.processing.I420BufferPool;
+import com.example.androidwebrtc.webrtc.sdp.SdpRewriter;
+import com.example.androidwebrtc.webrtc.stats.StatsSnapshot;
+import com.example.androidwebrtc.webrtc.trace.CallSetupTracer;
+import com.example.androidwebrtc.webrtc.transport.TransportProfile;
+
 import org.webrtc.AudioSource;
 import org.webrtc.AudioTrack;
 import org.webrtc.Camera1Enumerator;
 import org.webrtc.Camera2Enumerator;
 import org.webrtc.CameraEnumerator;
-import org.webrtc.DataChannel;
 import org.webrtc.EglBase;
-import org.webrtc.IceCandidate;
-import org.webrtc.MediaConstraints;
+import org.webrtc.HardwareVideoDecoderFactory;
+import org.webrtc.HardwareVideoEncoderFactory;
 import org.webrtc.MediaStream;
 import org.webrtc.MediaStreamTrack;
 import org.webrtc.PeerConnection;
 import org.webrtc.PeerConnectionFactory;
 import org.webrtc.RendererCommon;
-import org.webrtc.RtpReceiver;
-import org.webrtc.SdpObserver;
-import org.webrtc.SessionDescription;
+import org.webrtc.RtcCertificatePem;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
 import org.webrtc.SoftwareVideoDecoderFactory;
 import org.webrtc.SoftwareVideoEncoderFactory;
 import org.webrtc.SurfaceTextureHelper;
 import org.webrtc.SurfaceViewRenderer;
-import org.webrtc.VideoCapturer;
 import org.webrtc.VideoDecoderFactory;
 import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoSink;
 import org.webrtc.VideoSource;
 import org.webrtc.VideoTrack;
+import org.webrtc.audio.AudioDeviceModule;
 
 import java.util.ArrayList;
-
-public class Connection implements PeerConnection.Observer {
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide WebRTC state shared by every peer of a call: the factory, EGL
+ * context, capture pipeline and local tracks. Each remote peer gets its own
+ * {@link PeerSession}, keyed by remote id.
+ *
+ * <p>The factory and capture pipeline outlive calls: {@link #close()} only ends
+ * the current call and pauses capture, the next {@link #openPeer} resumes it.
+ * {@link #release()} disposes everything and lets the next
+ * {@link #initialize} build a fresh instance.
+ */
+public class Connection {
     private static final String TAG = "Connection";
 
     private static final String MEDIA_STREAM_ID = "ARDAMS";
@@ -43,266 +83,584 @@ public class Connection implements PeerConnection.Observer {
     private static final int VIDEO_HEIGHT = 480;
     private static final int VIDEO_WIDTH = 640;
     private static final int VIDEO_FPS = 30;
+    // Outlives released Connections so a new one does not enumerate cameras again
+    private static final CaptureFormatSelector CAPTURE_FORMATS = new CaptureFormatSelector();
 
-    private static final String STUN_SERVER_URL = "stun:stun.l.google.com:19302";
+    // Every peer runs its own encoder, so a phone tops out at a small mesh
+    public static final int DEFAULT_MAX_PEERS = 4;
+    public static final PeerRegistry.OverflowPolicy DEFAULT_OVERFLOW_POLICY = PeerRegistry.OverflowPolicy.REJECT_NEW;
+    // How long release() waits for data channels to be disposed on their executor
+    private static final long DATA_CHANNEL_CLOSE_TIMEOUT_MS = 1000;
 
     private static Connection INSTANCE = null;
+    private final EglBase mEglBase;
+    private final RendererPool mRendererPool;
     private final PeerConnectionFactory mFactory;
-    private PeerConnection mPeerConnection;
+    private final AudioProfile mAudioProfile;
+    private final AudioDeviceModule mAudioDeviceModule;
+    private final CodecHealth mEncoderHealth = new CodecHealth();
+    private final CodecHealth mDecoderHealth = new CodecHealth();
+    private final CallSetupTracer mCallTracer = new CallSetupTracer();
+    private final CertificateCache mCertificates;
+    // Rules apply to every peer; add them before the first call
+    private final SdpRewriter mSdpRewriter = new SdpRewriter();
+    private final StandbyPool<PreparedPeerConnection> mStandby;
+    private final PeerRegistry<PeerSession> mPeers;
+    // Drives ICE restart timers for every peer
+    private final ScheduledExecutorService mRecoveryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ice-recovery");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // Shared by the data channels of every peer
+    private final DirectBufferPool mDataBufferPool = new DirectBufferPool();
+    private final ExecutorService mDataExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "data-channel");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    // Sits between the capturer and the source; passes frames through until filters are added
+    private final FrameProcessingPipeline mFramePipeline = new FrameProcessingPipeline(new I420BufferPool());
+    private volatile StatsListener mStatsListener;
+    private volatile SimulcastConfig mSimulcast = SimulcastConfig.singleLayer();
+    private volatile TransportProfile mTransport = TransportProfile.STANDARD;
+    private volatile boolean mPrewarm;
     private MediaStream mMediaStream;
-    private VideoCapturer mVideoCapturer;
-    private final ConnectionListener mListener;
+    private CameraController mCamera;
+    private SurfaceTextureHelper mSurfaceTextureHelper;
+    private VideoSource mVideoSource;
+    private AudioSource mAudioSource;
+    // Capture is paused between calls, the sources and tracks stay alive
+    private boolean mCapturing;
+    private boolean mReleased;
+    private VideoAdaptationController mAdaptationController;
+    private final ForwardingConnectionListener mListener = new ForwardingConnectionListener();
+    private final RendererCommon.RendererEvents mLocalRendererEvents = new RendererCommon.RendererEvents() {
+        @Override
+        public void onFirstFrameRendered() {
+            AppLog.d(TAG, "onFirstFrameRendered");
+        }
+
+        @Override
+        public void onFrameResolutionChanged(int i, int i1, int i2) {
+            AppLog.d(TAG, "Frame resolution changed");
+        }
+    };
 
-    private Connection(final Context context, final ConnectionListener listener) {
+    private Connection(final Context context, final ConnectionListener listener, final CodecRankingPolicy codecRankingPolicy,
+                       final int maxPeers, final PeerRegistry.OverflowPolicy overflowPolicy, final AudioProfile audioProfile) {
         final PeerConnectionFactory.InitializationOptions options = PeerConnectionFactory.InitializationOptions.builder(context).createInitializationOptions();
-        final EglBase.Context eglContext = EglBase.create().getEglBaseContext();
-        final VideoEncoderFactory encoderFactory = new SoftwareVideoEncoderFactory();
-        final VideoDecoderFactory decoderFactory = new SoftwareVideoDecoderFactory();
+
+        // One EGL context shared by the capturer, renderers and codecs so frames stay on the GPU
+        mEglBase = EglBase.create();
+        mRendererPool = new RendererPool(mEglBase.getEglBaseContext());
+
+        final EglBase.Context eglContext = mEglBase.getEglBaseContext();
+        final VideoEncoderFactory encoderFactory = new FallbackVideoEncoderFactory(
+                new HardwareVideoEncoderFactory(eglContext, true, true),
+                new SoftwareVideoEncoderFactory(),
+                codecRankingPolicy,
+                mEncoderHealth);
+        final VideoDecoderFactory decoderFactory = new FallbackVideoDecoderFactory(
+                new HardwareVideoDecoderFactory(eglContext),
+                new SoftwareVideoDecoderFactory(),
+                codecRankingPolicy,
+                mDecoderHealth);
 
         PeerConnectionFactory.initialize(options);
+        mAudioProfile = audioProfile;
+        mAudioDeviceModule = audioProfile.createAudioDeviceModule(context);
         mFactory = PeerConnectionFactory.builder()
+                .setAudioDeviceModule(mAudioDeviceModule)
                 .setVideoEncoderFactory(encoderFactory)
                 .setVideoDecoderFactory(decoderFactory)
                 .createPeerConnectionFactory();
-        mListener = listener;
+        // Ready long before the first call on every launch but the very first
+        mCertificates = new CertificateCache(context);
+        mCertificates.start();
+        mListener.setDelegate(listener);
+
+        mStandby = new StandbyPool<>(new StandbyPool.Factory<PreparedPeerConnection>() {
+            @Override
+            public PreparedPeerConnection create() {
+                return preparePeerConnection();
+            }
+
+            @Override
+            public void dispose(PreparedPeerConnection prepared) {
+                prepared.mPeerConnection.dispose();
+            }
+        });
+
+        mPeers = new PeerRegistry<>(new PeerRegistry.Factory<PeerSession>() {
+            @Override
+            public PeerSession create(String remoteId) {
+                return createPeerSession(remoteId);
+            }
+
+            @Override
+            public void close(PeerSession session) {
+                session.close();
+            }
+        }, maxPeers, overflowPolicy);
     };
 
     public static synchronized Connection initialize(final Context context, final ConnectionListener listener) {
+        return initialize(context, listener, PreferredCodecRankingPolicy.DEFAULT);
+    }
+
+    public static synchronized Connection initialize(final Context context, final ConnectionListener listener, final CodecRankingPolicy codecRankingPolicy) {
+        return initialize(context, listener, codecRankingPolicy, DEFAULT_MAX_PEERS, DEFAULT_OVERFLOW_POLICY);
+    }
+
+    public static synchronized Connection initialize(final Context context, final ConnectionListener listener, final CodecRankingPolicy codecRankingPolicy,
+                                                     final int maxPeers, final PeerRegistry.OverflowPolicy overflowPolicy) {
+        return initialize(context, listener, codecRankingPolicy, maxPeers, overflowPolicy, AudioProfile.CONVERSATION);
+    }
+
+    // Returns the live instance, or builds a new one if there is none or the last
+    // one was released. The audio profile of a live instance stays as it was;
+    // release it first to switch profiles.
+    public static synchronized Connection initialize(final Context context, final ConnectionListener listener, final CodecRankingPolicy codecRankingPolicy,
+                                                     final int maxPeers, final PeerRegistry.OverflowPolicy overflowPolicy,
+                                                     final AudioProfile audioProfile) {
         if (INSTANCE != null) {
             return INSTANCE;
         }
 
-        INSTANCE = new Connection(context, listener);
+        INSTANCE = new Connection(context, listener, codecRankingPolicy, maxPeers, overflowPolicy, audioProfile);
         return INSTANCE;
     }
 
-    public void initializeMediaDevices(final Context context, final SurfaceViewRenderer localRenderer) throws Exception {
-        mMediaStream = mFactory.createLocalMediaStream(MEDIA_STREAM_ID);
+    // An instance besides the shared one, for running several Connections in one
+    // process as the load harness does. initialize() never hands it out and the
+    // caller releases it.
+    static Connection createStandalone(final Context context, final ConnectionListener listener, final CodecRankingPolicy codecRankingPolicy,
+                                       final int maxPeers, final PeerRegistry.OverflowPolicy overflowPolicy, final AudioProfile audioProfile) {
+        return new Connection(context, listener, codecRankingPolicy, maxPeers, overflowPolicy, audioProfile);
+    }
+
+    // initialize() hands out the live instance as it is, so a recreated activity
+    // takes over the callbacks here
+    public void setListener(final ConnectionListener listener) {
+        mListener.setDelegate(listener);
+    }
 
-        mVideoCapturer = createVideoCapturer(context);
+    public EglBase.Context getEglBaseContext() {
+        return mEglBase.getEglBaseContext();
+    }
 
-        final VideoSource videoSource = mFactory.createVideoSource(false);
-        final EglBase.Context eglContext = EglBase.create().getEglBaseContext();
-        final SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create("captureThread", eglContext);
+    public RendererPool getRendererPool() {
+        return mRendererPool;
+    }
 
-        // Video capturer and localRenderer needs to be initialized
-        mVideoCapturer.initialize(surfaceTextureHelper, context, videoSource.getCapturerObserver());
-        localRenderer.init(eglContext, new RendererCommon.RendererEvents() {
-            @Override
-            public void onFirstFrameRendered() {
-                Log.d(TAG, "onFirstFrameRendered");
-            }
+    // Applies to every current and future peer
+    public void setStatsListener(final StatsListener listener) {
+        mStatsListener = listener;
+        for (final PeerSession session : mPeers.snapshot()) {
+            session.setStatsListener(listener);
+        }
+    }
 
-            @Override
-            public void onFrameResolutionChanged(int i, int i1, int i2) {
-                Log.d(TAG, "Frame resolution changed");
+    // Returns null when there is no peer with that id
+    public StatsSnapshot getStatsSnapshot(final String remoteId, final StatsSnapshot snapshot) {
+        final PeerSession session = mPeers.get(remoteId);
+        return session == null ? null : session.getStatsSnapshot(snapshot);
+    }
+
+    public FrameProcessingPipeline getFramePipeline() {
+        return mFramePipeline;
+    }
+
+    // Camera switching and capture size changes; null until media is initialized
+    public synchronized CameraController getCamera() {
+        return mCamera;
+    }
+
+    public AudioProfile getAudioProfile() {
+        return mAudioProfile;
+    }
+
+    public SdpRewriter getSdpRewriter() {
+        return mSdpRewriter;
+    }
+
+    // Send encodings for peers created from now on; layers are fixed when the
+    // transceiver is created, so pre-warmed peers built with the old layout go
+    public void setSimulcast(final SimulcastConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("config must not be null");
+        }
+
+        mSimulcast = config;
+        mStandby.clear();
+        if (mPrewarm) mStandby.fill();
+    }
+
+    // ICE servers and transport policies for peers created from now on; pick one
+    // per call before opening its peers. Pre-warmed peers gathered candidates
+    // under the old profile, so they go.
+    public void setTransportProfile(final TransportProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("profile must not be null");
+        }
+
+        mTransport = profile;
+        mStandby.clear();
+        if (mPrewarm) mStandby.fill();
+        AppLog.d(TAG, "Transport profile {}", profile);
+    }
+
+    public TransportProfile getTransportProfile() {
+        return mTransport;
+    }
+
+    public CallSetupTracer getCallSetupTracer() {
+        return mCallTracer;
+    }
+
+    // Safe to call again for a later call; media built by an earlier call is
+    // reused and only the renderer and capture are set up again
+    public void initializeMediaDevices(final Context context, final SurfaceViewRenderer localRenderer) throws Exception {
+        initializeMediaDevices(context, localRenderer, Camera2Enumerator.isSupported(context)
+                ? new Camera2Enumerator(context) : new Camera1Enumerator(true));
+    }
+
+    // Captures from the given cameras, which may be synthetic ones for tests. The
+    // renderer may be null to run without a local preview.
+    public synchronized void initializeMediaDevices(final Context context, final SurfaceViewRenderer localRenderer,
+                                                    final CameraEnumerator cameraEnumerator) throws Exception {
+        if (mMediaStream != null) {
+            if (localRenderer != null) {
+                mRendererPool.acquire(localRenderer, mLocalRendererEvents);
+                addLocalVideoSink(localRenderer);
             }
-        });
+            resumeMedia();
+            AppLog.d(TAG, "media devices reused");
+            return;
+        }
+
+        // Throws without a camera, before anything that would mark media as ready
+        mCamera = createCamera(cameraEnumerator);
+        mMediaStream = mFactory.createLocalMediaStream(MEDIA_STREAM_ID);
+
+        mVideoSource = mFactory.createVideoSource(false);
+        mVideoSource.setVideoProcessor(mFramePipeline);
+        if (mSurfaceTextureHelper == null) {
+            mSurfaceTextureHelper = SurfaceTextureHelper.create("captureThread", mEglBase.getEglBaseContext());
+        }
 
-        mVideoCapturer.startCapture(VIDEO_WIDTH, VIDEO_HEIGHT, VIDEO_FPS);
+        // Video capturer and localRenderer needs to be initialized
+        mCamera.getCapturer().initialize(mSurfaceTextureHelper, context, mVideoSource.getCapturerObserver());
+        if (localRenderer != null) mRendererPool.acquire(localRenderer, mLocalRendererEvents);
+
+        mCamera.start();
+        mCapturing = true;
 
-        final VideoTrack videoTrack = mFactory.createVideoTrack(VIDEO_TRACK_ID, videoSource);
+        final VideoTrack videoTrack = mFactory.createVideoTrack(VIDEO_TRACK_ID, mVideoSource);
         videoTrack.setEnabled(true);
-        videoTrack.addSink(localRenderer);
+        if (localRenderer != null) videoTrack.addSink(localRenderer);
 
-        final AudioSource audioSource = mFactory.createAudioSource(new MediaConstraints());
-        final AudioTrack audioTrack = mFactory.createAudioTrack(AUDIO_TRACK_ID, audioSource);
+        mAudioSource = mFactory.createAudioSource(mAudioProfile.toAudioConstraints());
+        final AudioTrack audioTrack = mFactory.createAudioTrack(AUDIO_TRACK_ID, mAudioSource);
         audioTrack.setEnabled(true);
 
         mMediaStream.addTrack(videoTrack);
         mMediaStream.addTrack(audioTrack);
-        Log.d(TAG, "media devices initialized");
+        AppLog.d(TAG, "media devices initialized");
     }
 
-    public void createOffer() {
-        final MediaConstraints mediaConstraints = new MediaConstraints();
+    // Sinks see the captured frames after the frame pipeline, as they are sent
+    public synchronized void addLocalVideoSink(final VideoSink sink) {
+        if (mMediaStream == null) return;
 
-        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
-        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        for (final VideoTrack videoTrack : mMediaStream.videoTracks) {
+            videoTrack.addSink(sink);
+        }
+    }
 
+    public synchronized void removeLocalVideoSink(final VideoSink sink) {
+        if (mMediaStream == null) return;
 
-        for (final MediaStreamTrack videoTrack: mMediaStream.videoTracks) {
-            mPeerConnection.addTrack(videoTrack);
+        for (final VideoTrack videoTrack : mMediaStream.videoTracks) {
+            videoTrack.removeSink(sink);
         }
+    }
 
-        for (final MediaStreamTrack audioTrack: mMediaStream.audioTracks) {
-            mPeerConnection.addTrack(audioTrack);
-        }
+    // Ends the call with every peer and pauses capture; the factory, sources and
+    // tracks are kept for the next call
+    public void close() {
+        pauseMedia();
+        stopVideoAdaptation();
+        mPeers.closeAll();
 
-        mPeerConnection.createOffer(new SdpObserver() {
-            @Override
-            public void onCreateSuccess(SessionDescription sessionDescription) {
-                Log.d(TAG, "Local offer created:" + sessionDescription.description);
-                mPeerConnection.setLocalDescription(this, sessionDescription);
-            }
+        // A standby holds the tracks that were just disabled; openPeer enables them
+        // again, so the next call can still start from one
+        if (mPrewarm && !isReleased() && hasMedia()) mStandby.fill();
+    }
 
-            @Override
-            public void onSetSuccess() {
-                Log.d(TAG, "Local description set success");
+    // Full disposal, for when the app is done with WebRTC. Native objects go in
+    // reverse order of creation: peers, tracks, sources, capturer, factory, audio
+    // device, EGL
+    public void release() {
+        synchronized (Connection.class) {
+            if (mReleased) return;
+            mReleased = true;
+            if (INSTANCE == this) INSTANCE = null;
+        }
 
-                mListener.onLocalOffer(mPeerConnection.getLocalDescription());
+        close();
+        mStandby.shutdown();
+        mRecoveryExecutor.shutdownNow();
+        // Closing the peers queued each data channel's dispose behind its sends;
+        // they must run before the factory goes
+        mDataExecutor.shutdown();
+        try {
+            if (!mDataExecutor.awaitTermination(DATA_CHANNEL_CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                AppLog.w(TAG, "Data channels still closing after {}ms", DATA_CHANNEL_CLOSE_TIMEOUT_MS);
+                mDataExecutor.shutdownNow();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mDataExecutor.shutdownNow();
+        }
+        mCertificates.shutdown();
 
-            @Override
-            public void onCreateFailure(String s) {
-                Log.e(TAG, "Failed to create local offer error:" + s);
+        synchronized (this) {
+            if (mMediaStream != null) {
+                // Disposes the tracks it holds as well
+                mMediaStream.dispose();
+                mMediaStream = null;
             }
-
-            @Override
-            public void onSetFailure(String s) {
-                Log.e(TAG, "Failed to set local description error:" + s);
+            if (mAudioSource != null) {
+                mAudioSource.dispose();
+                mAudioSource = null;
             }
-        }, mediaConstraints);
-    }
-
-    public void createAnswerFromRemoteOffer(final String remoteOffer) {
-        // Reuse the SdpObserver
-        final SdpObserver observer = new SdpObserver() {
-            @Override
-            public void onCreateSuccess(SessionDescription sessionDescription) {
-                Log.d(TAG, "Local answer created");
-                mListener.onLocalAnswer(sessionDescription);
-                mPeerConnection.setLocalDescription(this);
+            if (mCamera != null) {
+                mCamera.dispose();
+                mCamera = null;
             }
-
-            @Override
-            public void onSetSuccess() {
-                Log.d(TAG, "Set description was successful");
+            if (mVideoSource != null) {
+                mVideoSource.dispose();
+                mVideoSource = null;
             }
-
-            @Override
-            public void onCreateFailure(String s) {
-                Log.e(TAG, "Failed to create local answer error:" + s);
+            if (mSurfaceTextureHelper != null) {
+                mSurfaceTextureHelper.dispose();
+                mSurfaceTextureHelper = null;
             }
+        }
 
-            @Override
-            public void onSetFailure(String s) {
-                Log.e(TAG, "Failed to set description error:" + s);
-            }
-        };
-
-        final SessionDescription sessionDescription = new SessionDescription(SessionDescription.Type.ANSWER, remoteOffer);
-        final MediaConstraints mediaConstraints = new MediaConstraints();
-
-        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
-        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        mFramePipeline.shutdown();
+        mFactory.dispose();
+        // The factory only borrows the module
+        mAudioDeviceModule.release();
+        mRendererPool.release();
+        mEglBase.release();
+        AppLog.d(TAG, "Released");
+    }
 
-        mPeerConnection.setRemoteDescription(observer, sessionDescription);
-        mPeerConnection.createAnswer(observer, mediaConstraints);
+    // Whether a pre-warmed PeerConnection is waiting for the next peer
+    boolean hasStandby() {
+        return mStandby.hasStandby();
     }
 
-    public void addRemoteIceCandidate(final JSONObject iceCandidateData) throws JSONException {
-        Log.d(TAG, "Check " + iceCandidateData.toString());
-        final String sdpMid = iceCandidateData.getString("sdpMid");
-        final int sdpMLineIndex = iceCandidateData.getInt("sdpMLineIndex");
-        String sdp = iceCandidateData.getString("candidate");
+    private synchronized boolean hasMedia() {
+        return mMediaStream != null;
+    }
 
-        final IceCandidate iceCandidate = new IceCandidate(sdpMid, sdpMLineIndex, sdp);
-        Log.d(TAG, "add remote candidate " + iceCandidate.toString());
-        mPeerConnection.addIceCandidate(iceCandidate);
+    public boolean isReleased() {
+        synchronized (Connection.class) {
+            return mReleased;
+        }
     }
 
-    public void close() {
-        for (AudioTrack audioTrack : mMediaStream.audioTracks) {
+    private synchronized void pauseMedia() {
+        if (mMediaStream == null || !mCapturing) return;
+
+        for (final AudioTrack audioTrack : mMediaStream.audioTracks) {
             audioTrack.setEnabled(false);
         }
-
-        for (VideoTrack videoTrack : mMediaStream.videoTracks) {
+        for (final VideoTrack videoTrack : mMediaStream.videoTracks) {
             videoTrack.setEnabled(false);
         }
 
         try {
-            mVideoCapturer.stopCapture();
+            mCamera.stop();
         } catch (InterruptedException ie) {
-            Log.e(TAG, "Failed to stop capture", ie);
+            AppLog.e(TAG, "Failed to stop capture", ie);
+            Thread.currentThread().interrupt();
         }
-
-        mPeerConnection.close();
-        mFactory.dispose();
+        mCapturing = false;
     }
 
-    private VideoCapturer createVideoCapturer(final Context context) throws Exception {
-        final boolean isUseCamera2 = Camera2Enumerator.isSupported(context);
-        final CameraEnumerator cameraEnumerator = isUseCamera2 ? new Camera2Enumerator(context) : new Camera1Enumerator(true);
+    private synchronized void resumeMedia() {
+        if (mMediaStream == null || mCapturing) return;
 
-        final String[] deviceNames = cameraEnumerator.getDeviceNames();
+        mCamera.start();
+        mCapturing = true;
+        for (final AudioTrack audioTrack : mMediaStream.audioTracks) {
+            audioTrack.setEnabled(true);
+        }
+        for (final VideoTrack videoTrack : mMediaStream.videoTracks) {
+            videoTrack.setEnabled(true);
+        }
+        AppLog.d(TAG, "media resumed");
+    }
 
-        for (final String deviceName : deviceNames) {
-            Log.d(TAG, "Found device: " + deviceName);
-            if (cameraEnumerator.isFrontFacing(deviceName)) {
-                Log.d(TAG, "Found front device");
-                return cameraEnumerator.createCapturer(deviceName, null);
-            }
+    private CameraController createCamera(final CameraEnumerator cameraEnumerator) throws Exception {
+        final String deviceName = CameraController.pickDevice(cameraEnumerator);
+        if (deviceName == null) {
+            throw new Exception("Failed to get camera device");
         }
 
-        throw new Exception("Failed to get camera device");
+        AppLog.d(TAG, "Using device: {}", deviceName);
+        return new CameraController(cameraEnumerator, deviceName, CAPTURE_FORMATS, VIDEO_WIDTH, VIDEO_HEIGHT, VIDEO_FPS);
     }
 
-    public void createPeerConnection() {
-        if (mPeerConnection != null) return;
+    // Builds a standby PeerConnection with the local tracks attached so its ICE
+    // candidate pool starts gathering before the call; call once media is ready
+    public void prewarm() {
+        mPrewarm = true;
+        mStandby.fill();
+    }
 
-        final ArrayList<PeerConnection.IceServer> iceServers = new ArrayList<>();
-        iceServers.add(PeerConnection.IceServer.builder(STUN_SERVER_URL).createIceServer());
+    // Returns the peer for the id, creating it if needed, or null when the call is
+    // full and the overflow policy rejects new peers
+    public PeerSession openPeer(final String remoteId) {
+        final PeerSession session = mPeers.open(remoteId);
+        if (session == null) return null;
 
-        mPeerConnection = mFactory.createPeerConnection(iceServers, this);
-        Log.d(TAG, "Peer Connection created");
-    }
+        // The previous call paused capture
+        resumeMedia();
 
-    @Override
-    public void onAddStream(MediaStream mediaStream) {
-        Log.d(TAG, "onAddStream");
+        startVideoAdaptation();
+        // Keep the next joiner fast as well while there is room
+        if (mPrewarm && mPeers.size() < mPeers.getMaxPeers()) mStandby.fill();
+        return session;
     }
 
-    @Override
-    public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
-        Log.d(TAG, "onAddTrack");
-        mListener.onAddStream(receiver.track());
+    public PeerSession getPeer(final String remoteId) {
+        return mPeers.get(remoteId);
     }
 
-    @Override
-    public void onIceConnectionReceivingChange(boolean b) {
-        Log.d(TAG, "onIceConnectionReceivingChange");
+    public int getPeerCount() {
+        return mPeers.size();
     }
 
-    @Override
-    public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
-        Log.d(TAG, "onIceGatheringChange state=" + iceGatheringState.toString());
+    public void closePeer(final String remoteId) {
+        mPeers.close(remoteId);
+        if (mPeers.size() == 0) stopVideoAdaptation();
     }
 
-    @Override
-    public void onDataChannel(DataChannel dataChannel) {
-        Log.d(TAG, "onDataChannel");
-    }
+    private PeerSession createPeerSession(final String remoteId) {
+        PreparedPeerConnection prepared = mStandby.take();
+        if (prepared == null) {
+            prepared = preparePeerConnection();
+            AppLog.d(TAG, "Peer Connection created remoteId={}", remoteId);
+        } else {
+            AppLog.d(TAG, "Using pre-warmed Peer Connection remoteId={}", remoteId);
+        }
 
-    @Override
-    public void onRenegotiationNeeded() {
-        Log.d(TAG, "onRenegotiationNeeded");
+        return new PeerSession(remoteId, prepared.mPeerConnection, prepared.mObserver, mListener, mCallTracer, mStatsListener, mRecoveryExecutor,
+                mDataBufferPool, mDataExecutor, mSdpRewriter, prepared.mVideoEncodings);
     }
 
-    @Override
-    public void onIceCandidate(IceCandidate iceCandidate) {
-        Log.d(TAG, "onIceCandidate");
+    // Runs on the standby thread as well as the caller's, so the tracks are read
+    // under the lock; the PeerConnection is built outside it
+    private PreparedPeerConnection preparePeerConnection() {
+        final List<VideoTrack> videoTracks = new ArrayList<>();
+        final List<AudioTrack> audioTracks = new ArrayList<>();
+        synchronized (this) {
+            if (mMediaStream != null) {
+                videoTracks.addAll(mMediaStream.videoTracks);
+                audioTracks.addAll(mMediaStream.audioTracks);
+            }
+        }
 
-        mListener.onIceCandidateReceived(iceCandidate);
-    }
+        final PeerConnection.RTCConfiguration configuration = mTransport.createConfiguration();
+        // Without one the PeerConnection generates a key pair before it can create an offer
+        final RtcCertificatePem certificate = mCertificates.get();
+        if (certificate != null) configuration.certificate = certificate;
+        mAudioProfile.applyTo(configuration);
+
+        final ForwardingPeerConnectionObserver observer = new ForwardingPeerConnectionObserver();
+        final PeerConnection peerConnection = mFactory.createPeerConnection(configuration, observer);
+
+        // Tracks are attached up front so transceivers exist before the offer
+        final SimulcastConfig simulcast = mSimulcast;
+        EncodingController videoEncodings = null;
+        for (final MediaStreamTrack videoTrack : videoTracks) {
+            final RtpSender sender;
+            if (simulcast.isSimulcast()) {
+                // Layers can only be declared when the transceiver is created
+                sender = peerConnection.addTransceiver(videoTrack, new RtpTransceiver.RtpTransceiverInit(
+                        RtpTransceiver.RtpTransceiverDirection.SEND_RECV, Collections.<String>emptyList(), simulcast.toSendEncodings())).getSender();
+            } else {
+                sender = peerConnection.addTrack(videoTrack);
+            }
+            videoEncodings = new EncodingController(new RtpSenderEncodingTarget(sender), simulcast);
+            // The degradation preference has no transceiver init field
+            if (simulcast.getDegradationPreference() != null) videoEncodings.apply();
+        }
 
-    @Override
-    public void onSignalingChange(PeerConnection.SignalingState signalingState) {
-        Log.d(TAG, "onSignalingChange state=" + signalingState.toString());
+        for (final MediaStreamTrack audioTrack : audioTracks) {
+            peerConnection.addTrack(audioTrack);
+        }
+
+        return new PreparedPeerConnection(peerConnection, observer, videoEncodings);
     }
 
-    @Override
-    public void onIceCandidatesRemoved(IceCandidate[] iceCandidates) {
-        Log.d(TAG, "onIceCandidatesRemoved");
+    private synchronized void startVideoAdaptation() {
+        if (mVideoSource == null || mAdaptationController != null) return;
+
+        final VideoSource videoSource = mVideoSource;
+        mAdaptationController = new VideoAdaptationController(
+                VideoQualityLadder.defaultLadder(mCamera.getWidth(), mCamera.getHeight(), mCamera.getFramerate()),
+                new OutputFormatSink() {
+                    @Override
+                    public void adaptOutputFormat(int width, int height, int fps) {
+                        // Same bounds for both orientations so portrait capture is not cropped
+                        videoSource.adaptOutputFormat(width, height, height, width, fps);
+                    }
+                },
+                // One capture source feeds every peer, so adapt to all of them at once
+                new AggregateStatsSource(new AggregateStatsSource.Sources() {
+                    @Override
+                    public List<AdaptationStatsSource> current() {
+                        final List<AdaptationStatsSource> sources = new ArrayList<>();
+                        for (final PeerSession session : mPeers.snapshot()) {
+                            sources.add(session.getAdaptationStatsSource());
+                        }
+                        return sources;
+                    }
+                }));
+        mAdaptationController.start(VideoAdaptationController.DEFAULT_INTERVAL_MS);
     }
 
-    @Override
-    public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
-        Log.d(TAG, "onIceConnectionChange state=" + iceConnectionState.toString());
+    private synchronized void stopVideoAdaptation() {
+        if (mAdaptationController == null) return;
+
+        mAdaptationController.stop();
+        mAdaptationController = null;
     }
 
-    @Override
-    public void onRemoveStream(MediaStream mediaStream) {
-        Log.d(TAG, "onRemoveStream");
+    private static class PreparedPeerConnection {
+        final PeerConnection mPeerConnection;
+        final ForwardingPeerConnectionObserver mObserver;
+        // Null without a local video track
+        final EncodingController mVideoEncodings;
+
+        PreparedPeerConnection(final PeerConnection peerConnection, final ForwardingPeerConnectionObserver observer,
+                               final EncodingController videoEncodings) {
+            mPeerConnection = peerConnection;
+            mObserver = observer;
+            mVideoEncodings = videoEncodings;
+        }
     }
 }
@@ -1,12 +1,18 @@
 package com.example.androidwebrtc.webrtc;
 
+import com.example.androidwebrtc.webrtc.data.BinaryDataChannel;
+
 import org.webrtc.IceCandidate;
 import org.webrtc.MediaStreamTrack;
 import org.webrtc.SessionDescription;
 
+// Every callback names the remote peer it belongs to
 public interface ConnectionListener {
-    void onIceCandidateReceived(IceCandidate iceCandidate);
-    void onAddStream(MediaStreamTrack mediaStreamTrack);
-    void onLocalOffer(SessionDescription offer);
-    void onLocalAnswer(SessionDescription answer);
+    void onIceCandidateReceived(String remoteId, IceCandidate iceCandidate);
+    void onIceGatheringComplete(String remoteId);
+    void onAddStream(String remoteId, MediaStreamTrack mediaStreamTrack);
+    void onLocalOffer(String remoteId, SessionDescription offer);
+    void onLocalAnswer(String remoteId, SessionDescription answer);
+    // A channel opened by the remote peer; set a listener to start receiving
+    void onDataChannel(String remoteId, BinaryDataChannel channel);
 }
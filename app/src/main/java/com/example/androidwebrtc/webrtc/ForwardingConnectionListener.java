@@ -0,0 +1,53 @@
+package com.example.androidwebrtc.webrtc;
+
+import com.example.androidwebrtc.webrtc.data.BinaryDataChannel;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.SessionDescription;
+
+// Peers keep this one for their whole life, so the listener behind it can change
+// under them, e.g. when the activity is recreated and a pre-warmed peer carries over
+class ForwardingConnectionListener implements ConnectionListener {
+    private volatile ConnectionListener mDelegate;
+
+    void setDelegate(final ConnectionListener delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void onIceCandidateReceived(String remoteId, IceCandidate iceCandidate) {
+        final ConnectionListener delegate = mDelegate;
+        if (delegate != null) delegate.onIceCandidateReceived(remoteId, iceCandidate);
+    }
+
+    @Override
+    public void onIceGatheringComplete(String remoteId) {
+        final ConnectionListener delegate = mDelegate;
+        if (delegate != null) delegate.onIceGatheringComplete(remoteId);
+    }
+
+    @Override
+    public void onAddStream(String remoteId, MediaStreamTrack mediaStreamTrack) {
+        final ConnectionListener delegate = mDelegate;
+        if (delegate != null) delegate.onAddStream(remoteId, mediaStreamTrack);
+    }
+
+    @Override
+    public void onLocalOffer(String remoteId, SessionDescription offer) {
+        final ConnectionListener delegate = mDelegate;
+        if (delegate != null) delegate.onLocalOffer(remoteId, offer);
+    }
+
+    @Override
+    public void onLocalAnswer(String remoteId, SessionDescription answer) {
+        final ConnectionListener delegate = mDelegate;
+        if (delegate != null) delegate.onLocalAnswer(remoteId, answer);
+    }
+
+    @Override
+    public void onDataChannel(String remoteId, BinaryDataChannel channel) {
+        final ConnectionListener delegate = mDelegate;
+        if (delegate != null) delegate.onDataChannel(remoteId, channel);
+    }
+}
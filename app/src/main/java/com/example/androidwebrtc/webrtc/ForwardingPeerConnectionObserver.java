@@ -0,0 +1,103 @@
+package com.example.androidwebrtc.webrtc;
+
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpTransceiver;
+
+// The observer can only be set when the PeerConnection is created, so a standby
+// connection gets one of these and is attached to the call when it is taken.
+// Events raised while nothing is attached are dropped.
+class ForwardingPeerConnectionObserver implements PeerConnection.Observer {
+    private volatile PeerConnection.Observer mDelegate;
+
+    void setDelegate(final PeerConnection.Observer delegate) {
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onSignalingChange(signalingState);
+    }
+
+    @Override
+    public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onIceConnectionChange(iceConnectionState);
+    }
+
+    @Override
+    public void onStandardizedIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onStandardizedIceConnectionChange(iceConnectionState);
+    }
+
+    @Override
+    public void onConnectionChange(PeerConnection.PeerConnectionState peerConnectionState) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onConnectionChange(peerConnectionState);
+    }
+
+    @Override
+    public void onIceConnectionReceivingChange(boolean receiving) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onIceConnectionReceivingChange(receiving);
+    }
+
+    @Override
+    public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onIceGatheringChange(iceGatheringState);
+    }
+
+    @Override
+    public void onIceCandidate(IceCandidate iceCandidate) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onIceCandidate(iceCandidate);
+    }
+
+    @Override
+    public void onIceCandidatesRemoved(IceCandidate[] iceCandidates) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onIceCandidatesRemoved(iceCandidates);
+    }
+
+    @Override
+    public void onAddStream(MediaStream mediaStream) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onAddStream(mediaStream);
+    }
+
+    @Override
+    public void onRemoveStream(MediaStream mediaStream) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onRemoveStream(mediaStream);
+    }
+
+    @Override
+    public void onDataChannel(DataChannel dataChannel) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onDataChannel(dataChannel);
+    }
+
+    @Override
+    public void onRenegotiationNeeded() {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onRenegotiationNeeded();
+    }
+
+    @Override
+    public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onAddTrack(receiver, mediaStreams);
+    }
+
+    @Override
+    public void onTrack(RtpTransceiver transceiver) {
+        final PeerConnection.Observer delegate = mDelegate;
+        if (delegate != null) delegate.onTrack(transceiver);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.androidwebrtc.webrtc;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Peers of a call keyed by remote id, capped at a fixed count. Peers are created
+ * and closed outside the lock because both block on the native signaling thread,
+ * which may itself be waiting to call back into the app.
+ */
+public class PeerRegistry<T> {
+    private static final String TAG = "PeerRegistry";
+
+    public enum OverflowPolicy {
+        // Refuse the new peer and keep the call as it is
+        REJECT_NEW,
+        // Drop the peer that joined first to make room
+        EVICT_OLDEST
+    }
+
+    public interface Factory<T> {
+        T create(String remoteId);
+        void close(T peer);
+    }
+
+    private final Factory<T> mFactory;
+    private final int mMaxPeers;
+    private final OverflowPolicy mPolicy;
+    private final LinkedHashMap<String, T> mPeers = new LinkedHashMap<>();
+
+    public PeerRegistry(final Factory<T> factory, final int maxPeers, final OverflowPolicy policy) {
+        if (maxPeers < 1) {
+            throw new IllegalArgumentException("maxPeers must be positive");
+        }
+
+        mFactory = factory;
+        mMaxPeers = maxPeers;
+        mPolicy = policy;
+    }
+
+    public int getMaxPeers() {
+        return mMaxPeers;
+    }
+
+    // Returns the existing peer for the id, a new one, or null when the cap is
+    // reached and the policy is REJECT_NEW. With EVICT_OLDEST the oldest peer is
+    // closed only once its replacement has been built.
+    public T open(final String remoteId) {
+        synchronized (this) {
+            final T existing = mPeers.get(remoteId);
+            if (existing != null) return existing;
+
+            if (mPeers.size() >= mMaxPeers && mPolicy == OverflowPolicy.REJECT_NEW) {
+                AppLog.w(TAG, "Rejecting {}, already at {} peers", remoteId, mMaxPeers);
+                return null;
+            }
+        }
+
+        final T created = mFactory.create(remoteId);
+        final T raced;
+        T evicted = null;
+        boolean rejected = false;
+
+        // Other threads may have opened peers while this one was being created
+        synchronized (this) {
+            raced = mPeers.get(remoteId);
+            if (raced == null) {
+                if (mPeers.size() < mMaxPeers) {
+                    mPeers.put(remoteId, created);
+                } else if (mPolicy == OverflowPolicy.REJECT_NEW) {
+                    AppLog.w(TAG, "Rejecting {}, already at {} peers", remoteId, mMaxPeers);
+                    rejected = true;
+                } else {
+                    final Iterator<Map.Entry<String, T>> oldest = mPeers.entrySet().iterator();
+                    final Map.Entry<String, T> entry = oldest.next();
+                    AppLog.w(TAG, "Evicting {} to make room for {}", entry.getKey(), remoteId);
+                    evicted = entry.getValue();
+                    oldest.remove();
+                    mPeers.put(remoteId, created);
+                }
+            }
+        }
+
+        if (evicted != null) mFactory.close(evicted);
+
+        if (raced != null || rejected) {
+            mFactory.close(created);
+            return raced;
+        }
+        return created;
+    }
+
+    public synchronized T get(final String remoteId) {
+        return mPeers.get(remoteId);
+    }
+
+    public synchronized int size() {
+        return mPeers.size();
+    }
+
+    public synchronized List<T> snapshot() {
+        return new ArrayList<>(mPeers.values());
+    }
+
+    public boolean close(final String remoteId) {
+        final T peer;
+        synchronized (this) {
+            peer = mPeers.remove(remoteId);
+        }
+
+        if (peer == null) return false;
+
+        mFactory.close(peer);
+        return true;
+    }
+
+    public void closeAll() {
+        final List<T> peers;
+        synchronized (this) {
+            peers = new ArrayList<>(mPeers.values());
+            mPeers.clear();
+        }
+
+        for (final T peer : peers) {
+            mFactory.close(peer);
+        }
+    }
+}
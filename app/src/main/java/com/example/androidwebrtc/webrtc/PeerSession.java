@@ -0,0 +1,314 @@
+package com.example.androidwebrtc.webrtc;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.adaptation.AdaptationStatsSource;
+import com.example.androidwebrtc.webrtc.adaptation.PeerConnectionStatsSource;
+import com.example.androidwebrtc.webrtc.audio.AudioLatencyMeter;
+import com.example.androidwebrtc.webrtc.data.BinaryDataChannel;
+import com.example.androidwebrtc.webrtc.data.DirectBufferPool;
+import com.example.androidwebrtc.webrtc.encoding.EncodingController;
+import com.example.androidwebrtc.webrtc.negotiation.NegotiationStateMachine;
+import com.example.androidwebrtc.webrtc.negotiation.PeerConnectionSdpTarget;
+import com.example.androidwebrtc.webrtc.recovery.IceRecoveryController;
+import com.example.androidwebrtc.webrtc.sdp.SdpRewriter;
+import com.example.androidwebrtc.webrtc.stats.StatsCollector;
+import com.example.androidwebrtc.webrtc.stats.StatsSnapshot;
+import com.example.androidwebrtc.webrtc.trace.CallPhase;
+import com.example.androidwebrtc.webrtc.trace.CallSetupTracer;
+
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RtpReceiver;
+import org.webrtc.SessionDescription;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * One remote peer of a call: its PeerConnection, negotiation state and stats. The
+ * local tracks attached to it are shared with every other peer of the Connection.
+ */
+public class PeerSession implements PeerConnection.Observer {
+    private static final String TAG = "PeerSession";
+
+    private final String mRemoteId;
+    private final PeerConnection mPeerConnection;
+    private final ForwardingPeerConnectionObserver mObserver;
+    private final NegotiationStateMachine mNegotiation;
+    private final StatsCollector mStatsCollector = new StatsCollector();
+    private final PeerConnectionStatsSource mAdaptationSource;
+    private final AudioLatencyMeter mAudioLatency;
+    private final ConnectionListener mListener;
+    private final CallSetupTracer mCallTracer;
+    private final IceRecoveryController mRecovery;
+    private final DirectBufferPool mDataBufferPool;
+    private final Executor mDataExecutor;
+    private final EncodingController mVideoEncodings;
+    private final List<BinaryDataChannel> mDataChannels = new CopyOnWriteArrayList<>();
+
+    private volatile PeerConnection.IceConnectionState mIceConnectionState = PeerConnection.IceConnectionState.NEW;
+
+    PeerSession(final String remoteId, final PeerConnection peerConnection, final ForwardingPeerConnectionObserver observer,
+                final ConnectionListener listener, final CallSetupTracer callTracer, final StatsListener statsListener,
+                final ScheduledExecutorService recoveryExecutor, final DirectBufferPool dataBufferPool, final Executor dataExecutor,
+                final SdpRewriter sdpRewriter, final EncodingController videoEncodings) {
+        mRemoteId = remoteId;
+        mPeerConnection = peerConnection;
+        mObserver = observer;
+        mListener = listener;
+        mCallTracer = callTracer;
+        mDataBufferPool = dataBufferPool;
+        mDataExecutor = dataExecutor;
+        mVideoEncodings = videoEncodings;
+        mAdaptationSource = new PeerConnectionStatsSource(peerConnection);
+        mAudioLatency = new AudioLatencyMeter(peerConnection);
+
+        mNegotiation = new NegotiationStateMachine(new PeerConnectionSdpTarget(peerConnection), new NegotiationStateMachine.Listener() {
+            @Override
+            public void onLocalDescriptionCreated(SessionDescription description) {
+                mCallTracer.mark(CallPhase.LOCAL_SDP_CREATED);
+            }
+
+            @Override
+            public void onLocalOffer(SessionDescription offer) {
+                AppLog.d(TAG, "Local description set success remoteId={}", mRemoteId);
+                mCallTracer.mark(CallPhase.LOCAL_SDP_SET);
+                mListener.onLocalOffer(mRemoteId, offer);
+            }
+
+            @Override
+            public void onLocalAnswer(SessionDescription answer) {
+                AppLog.d(TAG, "Local answer created remoteId={}", mRemoteId);
+                mCallTracer.mark(CallPhase.LOCAL_SDP_SET);
+                mListener.onLocalAnswer(mRemoteId, answer);
+            }
+
+            @Override
+            public void onNegotiationFailed(String reason) {
+                AppLog.e(TAG, "Negotiation failed remoteId={} error:{}", mRemoteId, reason);
+            }
+        }, sdpRewriter);
+        // The side that sent the first offer wins when restart offers collide
+        mNegotiation.setPolite(true);
+
+        mRecovery = new IceRecoveryController(new IceRecoveryController.Restarter() {
+            @Override
+            public void restartIce() {
+                mNegotiation.restartIce(iceRestartConstraints());
+            }
+        }, new IceRecoveryController.Listener() {
+            @Override
+            public void onIceRestart(int attempt) {
+                AppLog.d(TAG, "ICE restart remoteId={} attempt={}", mRemoteId, attempt);
+            }
+
+            @Override
+            public void onRecovered(long recoveryMs, int attempts) {
+                AppLog.d(TAG, "Recovered remoteId={} after {}ms", mRemoteId, recoveryMs);
+            }
+
+            @Override
+            public void onRecoveryFailed(int attempts) {
+                AppLog.e(TAG, "Could not recover remoteId={} after {} ICE restarts", mRemoteId, attempts);
+            }
+        }, recoveryExecutor);
+
+        mStatsCollector.setListener(statsListener);
+        mStatsCollector.start(peerConnection);
+        mObserver.setDelegate(this);
+    }
+
+    public String getRemoteId() {
+        return mRemoteId;
+    }
+
+    public PeerConnection.IceConnectionState getIceConnectionState() {
+        return mIceConnectionState;
+    }
+
+    public StatsSnapshot getStatsSnapshot(final StatsSnapshot snapshot) {
+        return mStatsCollector.getSnapshot(snapshot);
+    }
+
+    void setStatsListener(final StatsListener listener) {
+        mStatsCollector.setListener(listener);
+    }
+
+    // Raw stats for harnesses that need counters the collector does not keep
+    void getStats(final RTCStatsCollectorCallback callback) {
+        mPeerConnection.getStats(callback);
+    }
+
+    AdaptationStatsSource getAdaptationStatsSource() {
+        return mAdaptationSource;
+    }
+
+    // Latency of the audio received from this peer, averaged since the previous request
+    public void requestAudioLatency(final AudioLatencyMeter.Callback callback) {
+        mAudioLatency.requestLatency(callback);
+    }
+
+    public IceRecoveryController getRecoveryController() {
+        return mRecovery;
+    }
+
+    // Per-layer bitrate, framerate and on/off for the local video sent to this
+    // peer; null when no local video track was attached
+    public EncodingController getVideoEncodings() {
+        return mVideoEncodings;
+    }
+
+    // Create the first channel before createOffer so the offer carries the data
+    // section; later channels share its SCTP association without renegotiating
+    public BinaryDataChannel createDataChannel(final String label) {
+        final DataChannel.Init init = new DataChannel.Init();
+        init.ordered = true;
+
+        final BinaryDataChannel channel = new BinaryDataChannel(mPeerConnection.createDataChannel(label, init), mDataBufferPool, mDataExecutor);
+        mDataChannels.add(channel);
+        return channel;
+    }
+
+    public void createOffer() {
+        mRecovery.setInitiator(true);
+        mNegotiation.setPolite(false);
+        mNegotiation.createOffer(receiveConstraints());
+    }
+
+    public void applyRemoteOffer(final String remoteOffer) {
+        mCallTracer.mark(CallPhase.REMOTE_SDP_RECEIVED);
+        mNegotiation.setRemoteOffer(remoteOffer, receiveConstraints());
+    }
+
+    public void applyRemoteAnswer(final String remoteAnswer) {
+        mCallTracer.mark(CallPhase.REMOTE_SDP_RECEIVED);
+        mNegotiation.setRemoteAnswer(remoteAnswer);
+    }
+
+    public void addRemoteIceCandidate(final IceCandidate iceCandidate) {
+        AppLog.d(TAG, "add remote candidate {}", iceCandidate);
+        mNegotiation.addRemoteCandidate(iceCandidate);
+    }
+
+    public void addRemoteIceCandidates(final List<IceCandidate> iceCandidates) {
+        AppLog.d(TAG, "add {} remote candidates", iceCandidates.size());
+        mNegotiation.addRemoteCandidates(iceCandidates);
+    }
+
+    void close() {
+        mObserver.setDelegate(null);
+        mRecovery.close();
+        for (final BinaryDataChannel channel : mDataChannels) {
+            channel.close();
+        }
+        mDataChannels.clear();
+        mStatsCollector.stop();
+        mNegotiation.close();
+        mPeerConnection.dispose();
+        AppLog.d(TAG, "Closed remoteId={}", mRemoteId);
+    }
+
+    private static MediaConstraints receiveConstraints() {
+        final MediaConstraints mediaConstraints = new MediaConstraints();
+
+        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
+        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
+        return mediaConstraints;
+    }
+
+    private static MediaConstraints iceRestartConstraints() {
+        final MediaConstraints mediaConstraints = receiveConstraints();
+
+        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("IceRestart", "true"));
+        return mediaConstraints;
+    }
+
+    @Override
+    public void onAddStream(MediaStream mediaStream) {
+        AppLog.d(TAG, "onAddStream");
+    }
+
+    @Override
+    public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
+        AppLog.d(TAG, "onAddTrack");
+        mListener.onAddStream(mRemoteId, receiver.track());
+    }
+
+    @Override
+    public void onIceConnectionReceivingChange(boolean b) {
+        AppLog.d(TAG, "onIceConnectionReceivingChange");
+    }
+
+    @Override
+    public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+        AppLog.d(TAG, "onIceGatheringChange state={}", iceGatheringState);
+
+        if (iceGatheringState == PeerConnection.IceGatheringState.COMPLETE) {
+            mListener.onIceGatheringComplete(mRemoteId);
+        }
+    }
+
+    @Override
+    public void onDataChannel(DataChannel dataChannel) {
+        AppLog.d(TAG, "onDataChannel label={}", dataChannel.label());
+        final BinaryDataChannel channel = new BinaryDataChannel(dataChannel, mDataBufferPool, mDataExecutor);
+        mDataChannels.add(channel);
+        mListener.onDataChannel(mRemoteId, channel);
+    }
+
+    @Override
+    public void onRenegotiationNeeded() {
+        AppLog.d(TAG, "onRenegotiationNeeded");
+    }
+
+    @Override
+    public void onIceCandidate(IceCandidate iceCandidate) {
+        AppLog.d(TAG, "onIceCandidate");
+        mCallTracer.mark(CallPhase.FIRST_LOCAL_CANDIDATE);
+
+        mListener.onIceCandidateReceived(mRemoteId, iceCandidate);
+    }
+
+    @Override
+    public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+        AppLog.d(TAG, "onSignalingChange state={}", signalingState);
+    }
+
+    @Override
+    public void onIceCandidatesRemoved(IceCandidate[] iceCandidates) {
+        AppLog.d(TAG, "onIceCandidatesRemoved");
+    }
+
+    @Override
+    public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+        AppLog.d(TAG, "onIceConnectionChange state={}", iceConnectionState);
+        mIceConnectionState = iceConnectionState;
+        mRecovery.onIceConnectionChange(iceConnectionState);
+
+        if (iceConnectionState == PeerConnection.IceConnectionState.CONNECTED
+                || iceConnectionState == PeerConnection.IceConnectionState.COMPLETED) {
+            mCallTracer.mark(CallPhase.ICE_CONNECTED);
+        }
+    }
+
+    @Override
+    public void onConnectionChange(PeerConnection.PeerConnectionState peerConnectionState) {
+        AppLog.d(TAG, "onConnectionChange state={}", peerConnectionState);
+
+        // The aggregate state only reaches CONNECTED once DTLS is up as well
+        if (peerConnectionState == PeerConnection.PeerConnectionState.CONNECTED) {
+            mCallTracer.mark(CallPhase.DTLS_CONNECTED);
+        }
+    }
+
+    @Override
+    public void onRemoveStream(MediaStream mediaStream) {
+        AppLog.d(TAG, "onRemoveStream");
+    }
+}
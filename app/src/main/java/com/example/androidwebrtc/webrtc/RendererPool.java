@@ -0,0 +1,96 @@
+package com.example.androidwebrtc.webrtc;
+
+import android.graphics.Bitmap;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.EglBase;
+import org.webrtc.EglRenderer;
+import org.webrtc.RendererCommon;
+import org.webrtc.SurfaceViewRenderer;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Keeps SurfaceViewRenderers initialized against the shared EGL context so they
+ * can be recycled between calls instead of being released and re-initialized.
+ * The renderer reports its first frame only once per init(), so the pool reports
+ * it itself, once after every acquire.
+ */
+public class RendererPool {
+    private static final String TAG = "RendererPool";
+
+    private final EglBase.Context mEglContext;
+    private final Map<SurfaceViewRenderer, ForwardingRendererEvents> mRenderers = new IdentityHashMap<>();
+
+    public RendererPool(final EglBase.Context eglContext) {
+        mEglContext = eglContext;
+    }
+
+    public synchronized void acquire(final SurfaceViewRenderer renderer, final RendererCommon.RendererEvents events) {
+        ForwardingRendererEvents forwardingEvents = mRenderers.get(renderer);
+
+        if (forwardingEvents == null) {
+            forwardingEvents = new ForwardingRendererEvents();
+            renderer.init(mEglContext, forwardingEvents);
+            mRenderers.put(renderer, forwardingEvents);
+            AppLog.d(TAG, "Renderer initialized");
+        } else {
+            // Left over from an acquire that never got a frame
+            renderer.removeFrameListener(forwardingEvents);
+        }
+
+        forwardingEvents.mDelegate = events;
+        // Frame listeners are one-shot and run after a frame is drawn; scale 0 skips the bitmap copy
+        renderer.addFrameListener(forwardingEvents, 0f);
+    }
+
+    public synchronized void recycle(final SurfaceViewRenderer renderer) {
+        final ForwardingRendererEvents forwardingEvents = mRenderers.get(renderer);
+        if (forwardingEvents == null) return;
+
+        forwardingEvents.mDelegate = null;
+        renderer.removeFrameListener(forwardingEvents);
+        renderer.clearImage();
+    }
+
+    // For a renderer whose view goes away while the pool stays, e.g. on rotation
+    public synchronized void release(final SurfaceViewRenderer renderer) {
+        if (mRenderers.remove(renderer) == null) return;
+
+        renderer.release();
+    }
+
+    public synchronized void release() {
+        for (final SurfaceViewRenderer renderer : mRenderers.keySet()) {
+            renderer.release();
+        }
+
+        mRenderers.clear();
+        AppLog.d(TAG, "Renderers released");
+    }
+
+    // Renderer events can only be set in init(), so each pooled renderer keeps one
+    // forwarding instance and swaps the delegate on every acquire. First frames come
+    // from the frame listener armed in acquire, not from init().
+    private static class ForwardingRendererEvents implements RendererCommon.RendererEvents, EglRenderer.FrameListener {
+        private volatile RendererCommon.RendererEvents mDelegate;
+
+        @Override
+        public void onFirstFrameRendered() {
+        }
+
+        @Override
+        public void onFrame(final Bitmap frame) {
+            final RendererCommon.RendererEvents delegate = mDelegate;
+            if (delegate != null) delegate.onFirstFrameRendered();
+        }
+
+        @Override
+        public void onFrameResolutionChanged(int videoWidth, int videoHeight, int rotation) {
+            final RendererCommon.RendererEvents delegate = mDelegate;
+            if (delegate != null) delegate.onFrameResolutionChanged(videoWidth, videoHeight, rotation);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.androidwebrtc.webrtc;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds one object built ahead of time, such as a PeerConnection that is already
+ * gathering into its ICE candidate pool, so the next call can take it instead of
+ * building one on the critical path. Idle standbys are rebuilt after a timeout
+ * because pooled server-reflexive bindings go stale behind NATs.
+ *
+ * <p>Standbys are created and disposed outside the lock, as in {@link PeerRegistry},
+ * because both block on the native signaling thread. A standby whose creation
+ * started before a clear() is disposed instead of handed out.
+ */
+public class StandbyPool<T> {
+    private static final String TAG = "StandbyPool";
+
+    public static final long DEFAULT_MAX_IDLE_MS = 60_000;
+
+    public interface Factory<T> {
+        T create();
+        void dispose(T item);
+    }
+
+    private final Factory<T> mFactory;
+    private final long mMaxIdleNs;
+    private final Clock mClock;
+    private final ScheduledExecutorService mExecutor;
+    private final boolean mOwnsExecutor;
+
+    private T mStandby;
+    private long mCreatedNs;
+    private int mRecycleCount;
+    private ScheduledFuture<?> mRecycleTask;
+    // Bumped by clear(), so standbys still being created for an older one are dropped
+    private int mGeneration;
+    // Generation a create is running for, so fill() does not start a second one
+    private int mCreatingGeneration = -1;
+    private int mCreating;
+    private boolean mShutdown;
+
+    public StandbyPool(final Factory<T> factory) {
+        this(factory, DEFAULT_MAX_IDLE_MS, Clock.SYSTEM, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "standby");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    StandbyPool(final Factory<T> factory, final long maxIdleMs, final Clock clock, final ScheduledExecutorService executor) {
+        this(factory, maxIdleMs, clock, executor, false);
+    }
+
+    private StandbyPool(final Factory<T> factory, final long maxIdleMs, final Clock clock,
+                        final ScheduledExecutorService executor, final boolean ownsExecutor) {
+        mFactory = factory;
+        mMaxIdleNs = TimeUnit.MILLISECONDS.toNanos(maxIdleMs);
+        mClock = clock;
+        mExecutor = executor;
+        mOwnsExecutor = ownsExecutor;
+    }
+
+    // Builds a standby if there is none and starts watching it for staleness
+    public void fill() {
+        final int generation;
+        synchronized (this) {
+            if (mShutdown || mStandby != null || mCreatingGeneration == mGeneration) return;
+
+            generation = mGeneration;
+            mCreatingGeneration = generation;
+            mCreating++;
+        }
+
+        T created = null;
+        try {
+            created = mFactory.create();
+            synchronized (this) {
+                if (generation == mGeneration && !mShutdown && mStandby == null) {
+                    mStandby = created;
+                    mCreatedNs = mClock.nanoTime();
+                    created = null;
+                    scheduleRecycleLocked();
+                    AppLog.d(TAG, "Standby ready");
+                }
+            }
+        } finally {
+            // Cleared or shut down meanwhile
+            if (created != null) mFactory.dispose(created);
+            synchronized (this) {
+                if (mCreatingGeneration == generation) mCreatingGeneration = -1;
+                mCreating--;
+                notifyAll();
+            }
+        }
+    }
+
+    // Returns the standby, or null when there is none or it went stale; the caller
+    // then builds one itself
+    public T take() {
+        final T stale;
+        synchronized (this) {
+            stale = removeIfStaleLocked();
+            if (stale == null && mStandby != null) {
+                final T standby = mStandby;
+                mStandby = null;
+                cancelRecycleLocked();
+                AppLog.d(TAG, "Standby taken after {}ms", TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime() - mCreatedNs));
+                return standby;
+            }
+            if (stale != null) cancelRecycleLocked();
+        }
+
+        if (stale != null) mFactory.dispose(stale);
+        return null;
+    }
+
+    public synchronized boolean hasStandby() {
+        return mStandby != null;
+    }
+
+    public synchronized int getRecycleCount() {
+        return mRecycleCount;
+    }
+
+    void recycleIfStale() {
+        final T stale;
+        synchronized (this) {
+            stale = removeIfStaleLocked();
+        }
+        if (stale == null) return;
+
+        mFactory.dispose(stale);
+        fill();
+    }
+
+    public void clear() {
+        final T standby;
+        synchronized (this) {
+            mGeneration++;
+            cancelRecycleLocked();
+            standby = mStandby;
+            mStandby = null;
+        }
+
+        if (standby != null) mFactory.dispose(standby);
+    }
+
+    // Waits for creates already running, so nothing the pool built outlives it
+    public void shutdown() {
+        synchronized (this) {
+            mShutdown = true;
+        }
+        clear();
+
+        synchronized (this) {
+            while (mCreating > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (mOwnsExecutor) mExecutor.shutdownNow();
+    }
+
+    // Takes a stale standby out of the pool for the caller to dispose unlocked
+    private T removeIfStaleLocked() {
+        if (mStandby == null || mClock.nanoTime() - mCreatedNs < mMaxIdleNs) return null;
+
+        AppLog.d(TAG, "Standby idle for too long, recycling");
+        final T stale = mStandby;
+        mStandby = null;
+        mRecycleCount++;
+        return stale;
+    }
+
+    private void scheduleRecycleLocked() {
+        if (mRecycleTask != null) return;
+
+        final long checkIntervalNs = Math.max(mMaxIdleNs / 4, TimeUnit.MILLISECONDS.toNanos(1));
+        mRecycleTask = mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                recycleIfStale();
+            }
+        }, checkIntervalNs, checkIntervalNs, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelRecycleLocked() {
+        if (mRecycleTask == null) return;
+
+        mRecycleTask.cancel(false);
+        mRecycleTask = null;
+    }
+}
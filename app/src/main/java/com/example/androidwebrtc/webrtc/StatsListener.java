@@ -0,0 +1,8 @@
+package com.example.androidwebrtc.webrtc;
+
+import com.example.androidwebrtc.webrtc.stats.StatsSnapshot;
+
+public interface StatsListener {
+    // Called on the stats thread with a reused snapshot
+    void onStats(StatsSnapshot snapshot);
+}
@@ -0,0 +1,39 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+/**
+ * One reading of the sender side signals the adaptation controller acts on.
+ */
+public class AdaptationSample {
+    public enum LimitationReason {
+        NONE, CPU, BANDWIDTH, OTHER;
+
+        public static LimitationReason fromStatsValue(final String value) {
+            if (value == null) return NONE;
+
+            switch (value) {
+                case "cpu": return CPU;
+                case "bandwidth": return BANDWIDTH;
+                case "other": return OTHER;
+                default: return NONE;
+            }
+        }
+    }
+
+    public final double availableOutgoingBitrateBps;
+    // Average encode time per frame over the last sampling interval, negative when unknown
+    public final double encodeTimeMsPerFrame;
+    public final LimitationReason limitationReason;
+
+    public AdaptationSample(final double availableOutgoingBitrateBps, final double encodeTimeMsPerFrame, final LimitationReason limitationReason) {
+        this.availableOutgoingBitrateBps = availableOutgoingBitrateBps;
+        this.encodeTimeMsPerFrame = encodeTimeMsPerFrame;
+        this.limitationReason = limitationReason;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptationSample{bitrate=" + availableOutgoingBitrateBps
+                + ", encodeMs=" + encodeTimeMsPerFrame
+                + ", reason=" + limitationReason + "}";
+    }
+}
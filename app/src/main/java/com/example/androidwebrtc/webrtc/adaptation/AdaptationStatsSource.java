@@ -0,0 +1,13 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+/**
+ * Produces adaptation samples asynchronously, backed by PeerConnection.getStats
+ * in the app and by recorded traces in tests.
+ */
+public interface AdaptationStatsSource {
+    interface Callback {
+        void onSample(AdaptationSample sample);
+    }
+
+    void requestSample(Callback callback);
+}
@@ -0,0 +1,88 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Combines the samples of every peer that encodes from the shared capture source.
+ * The source can only be adapted once for all of them, so the slowest link and
+ * the combined encoder load decide.
+ */
+public class AggregateStatsSource implements AdaptationStatsSource {
+    public interface Sources {
+        List<AdaptationStatsSource> current();
+    }
+
+    private final Sources mSources;
+
+    public AggregateStatsSource(final Sources sources) {
+        mSources = sources;
+    }
+
+    @Override
+    public void requestSample(final Callback callback) {
+        final List<AdaptationStatsSource> sources = mSources.current();
+        if (sources.isEmpty()) return;
+
+        final Combiner combiner = new Combiner(sources.size(), callback);
+        for (final AdaptationStatsSource source : sources) {
+            source.requestSample(combiner);
+        }
+    }
+
+    static AdaptationSample combine(final List<AdaptationSample> samples) {
+        double bitrate = -1;
+        double encodeTimeMs = -1;
+        AdaptationSample.LimitationReason reason = AdaptationSample.LimitationReason.NONE;
+
+        for (final AdaptationSample sample : samples) {
+            if (sample.availableOutgoingBitrateBps >= 0 && (bitrate < 0 || sample.availableOutgoingBitrateBps < bitrate)) {
+                bitrate = sample.availableOutgoingBitrateBps;
+            }
+            // Every peer runs its own encoder on the same CPU, so their costs add up
+            if (sample.encodeTimeMsPerFrame >= 0) {
+                encodeTimeMs = Math.max(encodeTimeMs, 0) + sample.encodeTimeMsPerFrame;
+            }
+            if (severity(sample.limitationReason) > severity(reason)) {
+                reason = sample.limitationReason;
+            }
+        }
+
+        return new AdaptationSample(bitrate, encodeTimeMs, reason);
+    }
+
+    // Also used to pick the worst of several layers of one peer
+    static int severity(final AdaptationSample.LimitationReason reason) {
+        switch (reason) {
+            case CPU: return 3;
+            case BANDWIDTH: return 2;
+            case OTHER: return 1;
+            default: return 0;
+        }
+    }
+
+    private static class Combiner implements Callback {
+        private final Callback mCallback;
+        private final AdaptationSample[] mSamples;
+        private int mReceived;
+
+        Combiner(final int expected, final Callback callback) {
+            mCallback = callback;
+            mSamples = new AdaptationSample[expected];
+        }
+
+        @Override
+        public void onSample(final AdaptationSample sample) {
+            final AdaptationSample combined;
+
+            synchronized (this) {
+                mSamples[mReceived++] = sample;
+                if (mReceived < mSamples.length) return;
+
+                combined = combine(Arrays.asList(mSamples));
+            }
+
+            mCallback.onSample(combined);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+public interface OutputFormatSink {
+    void adaptOutputFormat(int width, int height, int fps);
+}
@@ -0,0 +1,96 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RTCStatsReport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads adaptation samples from PeerConnection.getStats. Encode time is reported
+ * cumulatively, so the per-frame value is derived from the delta since the last call.
+ *
+ * <p>With simulcast there is one video outbound-rtp entry per layer. Deltas are
+ * taken per SSRC, and the sample carries the slowest layer's encode time and the
+ * most severe limitation reason of any layer.
+ */
+public class PeerConnectionStatsSource implements AdaptationStatsSource {
+    private final PeerConnection mPeerConnection;
+
+    // Keyed by SSRC, or by stats id when a report leaves the SSRC out
+    private Map<Object, EncodeCounters> mLastEncode = new HashMap<>();
+
+    public PeerConnectionStatsSource(final PeerConnection peerConnection) {
+        mPeerConnection = peerConnection;
+    }
+
+    @Override
+    public void requestSample(final Callback callback) {
+        mPeerConnection.getStats(new RTCStatsCollectorCallback() {
+            @Override
+            public void onStatsDelivered(RTCStatsReport report) {
+                callback.onSample(toSample(report));
+            }
+        });
+    }
+
+    synchronized AdaptationSample toSample(final RTCStatsReport report) {
+        double availableBitrate = -1;
+        double encodeTimeMs = -1;
+        AdaptationSample.LimitationReason reason = AdaptationSample.LimitationReason.NONE;
+        // Layers that are gone, such as one the encoder turned off, are forgotten
+        final Map<Object, EncodeCounters> encode = new HashMap<>();
+
+        for (final RTCStats stats : report.getStatsMap().values()) {
+            final Map<String, Object> members = stats.getMembers();
+
+            switch (stats.getType()) {
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(members.get("nominated")) && members.get("availableOutgoingBitrate") instanceof Number) {
+                        availableBitrate = ((Number) members.get("availableOutgoingBitrate")).doubleValue();
+                    }
+                    break;
+                case "outbound-rtp": {
+                    if (!"video".equals(members.get("kind"))) break;
+
+                    final AdaptationSample.LimitationReason layerReason =
+                            AdaptationSample.LimitationReason.fromStatsValue((String) members.get("qualityLimitationReason"));
+                    if (AggregateStatsSource.severity(layerReason) > AggregateStatsSource.severity(reason)) reason = layerReason;
+
+                    if (members.get("totalEncodeTime") instanceof Number && members.get("framesEncoded") instanceof Number) {
+                        final Object key = members.get("ssrc") != null ? members.get("ssrc") : stats.getId();
+                        final EncodeCounters counters = new EncodeCounters(((Number) members.get("totalEncodeTime")).doubleValue(),
+                                ((Number) members.get("framesEncoded")).longValue());
+                        encode.put(key, counters);
+                        encodeTimeMs = Math.max(encodeTimeMs, counters.msPerFrameSince(mLastEncode.get(key)));
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        mLastEncode = encode;
+        return new AdaptationSample(availableBitrate, encodeTimeMs, reason);
+    }
+
+    private static class EncodeCounters {
+        final double mTotalEncodeTimeSec;
+        final long mFramesEncoded;
+
+        EncodeCounters(final double totalEncodeTimeSec, final long framesEncoded) {
+            mTotalEncodeTimeSec = totalEncodeTimeSec;
+            mFramesEncoded = framesEncoded;
+        }
+
+        // Negative when there is nothing earlier to compare with or no new frame
+        double msPerFrameSince(final EncodeCounters last) {
+            if (last == null || mFramesEncoded <= last.mFramesEncoded) return -1;
+
+            return (mTotalEncodeTimeSec - last.mTotalEncodeTimeSec) * 1000.0 / (mFramesEncoded - last.mFramesEncoded);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steps the capture output up and down a {@link VideoQualityLadder} based on the
+ * available outgoing bitrate, encode time and quality limitation reason.
+ *
+ * Stepping down needs a few consecutive bad samples, stepping up needs a longer run
+ * of good samples with headroom for the next rung, so the output does not flap.
+ *
+ * <p>The sink usually outlives the controller, so start() and stop() both put it
+ * back on the top rung; otherwise the next call would begin at whatever format the
+ * last one ended on.
+ */
+public class VideoAdaptationController {
+    private static final String TAG = "VideoAdaptation";
+
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+    public static final int DEFAULT_STEP_DOWN_SAMPLES = 2;
+    public static final int DEFAULT_STEP_UP_SAMPLES = 5;
+
+    // Bitrate needed above the next rung's minimum before stepping up
+    private static final double STEP_UP_BITRATE_HEADROOM = 1.3;
+    // Share of the frame interval the encoder may use before we call it overloaded
+    private static final double OVERLOAD_ENCODE_RATIO = 0.8;
+    // Share of the next rung's frame interval the projected encode time must stay under
+    private static final double STEP_UP_ENCODE_RATIO = 0.5;
+
+    private final VideoQualityLadder mLadder;
+    private final OutputFormatSink mSink;
+    private final AdaptationStatsSource mStatsSource;
+    private final int mStepDownSamples;
+    private final int mStepUpSamples;
+
+    private int mRungIndex;
+    private int mBadSamples;
+    private int mGoodSamples;
+    private ScheduledExecutorService mExecutor;
+    // Stats requests still in flight when stopped must not move the sink again
+    private boolean mStopped;
+
+    public VideoAdaptationController(final VideoQualityLadder ladder, final OutputFormatSink sink, final AdaptationStatsSource statsSource) {
+        this(ladder, sink, statsSource, DEFAULT_STEP_DOWN_SAMPLES, DEFAULT_STEP_UP_SAMPLES);
+    }
+
+    public VideoAdaptationController(final VideoQualityLadder ladder, final OutputFormatSink sink, final AdaptationStatsSource statsSource,
+                                     final int stepDownSamples, final int stepUpSamples) {
+        mLadder = ladder;
+        mSink = sink;
+        mStatsSource = statsSource;
+        mStepDownSamples = stepDownSamples;
+        mStepUpSamples = stepUpSamples;
+    }
+
+    public synchronized void start(final long intervalMs) {
+        if (mExecutor != null) return;
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "adaptation");
+            }
+        });
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                mStatsSource.requestSample(new AdaptationStatsSource.Callback() {
+                    @Override
+                    public void onSample(AdaptationSample sample) {
+                        onStats(sample);
+                    }
+                });
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        mStopped = false;
+        resetToTop();
+        AppLog.d(TAG, "Started at {}", getCurrentRung());
+    }
+
+    public synchronized void stop() {
+        if (mExecutor == null) return;
+
+        mExecutor.shutdownNow();
+        mExecutor = null;
+        mStopped = true;
+        resetToTop();
+    }
+
+    public synchronized VideoQualityLadder.Rung getCurrentRung() {
+        return mLadder.get(mRungIndex);
+    }
+
+    public synchronized void onStats(final AdaptationSample sample) {
+        if (mStopped) return;
+
+        final VideoQualityLadder.Rung rung = mLadder.get(mRungIndex);
+
+        if (isOverloaded(rung, sample) || isStarved(rung, sample)) {
+            mGoodSamples = 0;
+            if (++mBadSamples >= mStepDownSamples && mRungIndex < mLadder.size() - 1) {
+                stepTo(mRungIndex + 1, sample);
+            }
+            return;
+        }
+
+        mBadSamples = 0;
+        if (mRungIndex > 0 && canStepUp(rung, mLadder.get(mRungIndex - 1), sample)) {
+            if (++mGoodSamples >= mStepUpSamples) {
+                stepTo(mRungIndex - 1, sample);
+            }
+        } else {
+            mGoodSamples = 0;
+        }
+    }
+
+    private void stepTo(final int rungIndex, final AdaptationSample sample) {
+        mRungIndex = rungIndex;
+        mBadSamples = 0;
+        mGoodSamples = 0;
+
+        final VideoQualityLadder.Rung rung = mLadder.get(rungIndex);
+        AppLog.d(TAG, "Adapting output to {} on {}", rung, sample);
+        mSink.adaptOutputFormat(rung.width, rung.height, rung.fps);
+    }
+
+    private void resetToTop() {
+        mRungIndex = 0;
+        mBadSamples = 0;
+        mGoodSamples = 0;
+
+        final VideoQualityLadder.Rung rung = mLadder.get(0);
+        mSink.adaptOutputFormat(rung.width, rung.height, rung.fps);
+    }
+
+    private static boolean isOverloaded(final VideoQualityLadder.Rung rung, final AdaptationSample sample) {
+        if (sample.limitationReason == AdaptationSample.LimitationReason.CPU) return true;
+
+        return sample.encodeTimeMsPerFrame >= 0 && sample.encodeTimeMsPerFrame > frameIntervalMs(rung) * OVERLOAD_ENCODE_RATIO;
+    }
+
+    private static boolean isStarved(final VideoQualityLadder.Rung rung, final AdaptationSample sample) {
+        if (sample.limitationReason == AdaptationSample.LimitationReason.BANDWIDTH) return true;
+
+        return sample.availableOutgoingBitrateBps >= 0 && sample.availableOutgoingBitrateBps < rung.minBitrateBps;
+    }
+
+    private static boolean canStepUp(final VideoQualityLadder.Rung rung, final VideoQualityLadder.Rung upper, final AdaptationSample sample) {
+        if (sample.availableOutgoingBitrateBps < upper.minBitrateBps * STEP_UP_BITRATE_HEADROOM) return false;
+        if (sample.encodeTimeMsPerFrame < 0) return true;
+
+        // Encode time scales roughly with the pixel count
+        final double pixelRatio = (double) (upper.width * upper.height) / (rung.width * rung.height);
+        return sample.encodeTimeMsPerFrame * pixelRatio < frameIntervalMs(upper) * STEP_UP_ENCODE_RATIO;
+    }
+
+    private static double frameIntervalMs(final VideoQualityLadder.Rung rung) {
+        return 1000.0 / rung.fps;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of output formats from the highest quality (index 0) down. Each
+ * rung declares the outgoing bitrate it needs to be worth encoding.
+ */
+public class VideoQualityLadder {
+    public static class Rung {
+        public final int width;
+        public final int height;
+        public final int fps;
+        public final int minBitrateBps;
+
+        public Rung(final int width, final int height, final int fps, final int minBitrateBps) {
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+            this.minBitrateBps = minBitrateBps;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + fps;
+        }
+    }
+
+    private final List<Rung> mRungs;
+
+    private VideoQualityLadder(final List<Rung> rungs) {
+        mRungs = Collections.unmodifiableList(rungs);
+    }
+
+    public static VideoQualityLadder defaultLadder(final int width, final int height, final int fps) {
+        return new Builder()
+                .add(width, height, fps, 600_000)
+                .add(width, height, fps / 2, 350_000)
+                .add(width * 3 / 4, height * 3 / 4, fps / 2, 200_000)
+                .add(width / 2, height / 2, fps / 2, 100_000)
+                .build();
+    }
+
+    public int size() {
+        return mRungs.size();
+    }
+
+    public Rung get(final int index) {
+        return mRungs.get(index);
+    }
+
+    public static class Builder {
+        private final List<Rung> mRungs = new ArrayList<>();
+
+        public Builder add(final int width, final int height, final int fps, final int minBitrateBps) {
+            if (!mRungs.isEmpty() && mRungs.get(mRungs.size() - 1).minBitrateBps < minBitrateBps) {
+                throw new IllegalArgumentException("Rungs must be added from highest to lowest bitrate");
+            }
+
+            mRungs.add(new Rung(width, height, fps, minBitrateBps));
+            return this;
+        }
+
+        public VideoQualityLadder build() {
+            if (mRungs.isEmpty()) {
+                throw new IllegalStateException("Ladder needs at least one rung");
+            }
+
+            return new VideoQualityLadder(new ArrayList<>(mRungs));
+        }
+    }
+}
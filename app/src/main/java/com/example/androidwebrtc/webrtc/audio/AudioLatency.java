@@ -0,0 +1,37 @@
+package com.example.androidwebrtc.webrtc.audio;
+
+/**
+ * Mouth-to-ear latency of the audio received from a peer, split into the parts
+ * getStats can see. Capture and encode time on the sender are not reported, so
+ * the total is a lower bound. Components are negative when unknown.
+ */
+public class AudioLatency {
+    // Half the round trip time, the usual stand-in for the one-way delay
+    public final double networkMs;
+    // Average time a sample waited in the jitter buffer before being played
+    public final double jitterBufferMs;
+    // Average delay from the playout request to the audio device; needs a
+    // libwebrtc that reports media-playout stats
+    public final double playoutMs;
+
+    public AudioLatency(final double networkMs, final double jitterBufferMs, final double playoutMs) {
+        this.networkMs = networkMs;
+        this.jitterBufferMs = jitterBufferMs;
+        this.playoutMs = playoutMs;
+    }
+
+    // Negative until both the network and the jitter buffer parts are known;
+    // playout is added when reported
+    public double totalMs() {
+        if (networkMs < 0 || jitterBufferMs < 0) return -1;
+        return networkMs + jitterBufferMs + Math.max(0, playoutMs);
+    }
+
+    @Override
+    public String toString() {
+        return "AudioLatency{network=" + networkMs
+                + ", jitterBuffer=" + jitterBufferMs
+                + ", playout=" + playoutMs
+                + ", total=" + totalMs() + "}";
+    }
+}
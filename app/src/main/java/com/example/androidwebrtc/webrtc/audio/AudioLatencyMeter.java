@@ -0,0 +1,105 @@
+package com.example.androidwebrtc.webrtc.audio;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Map;
+
+/**
+ * Reads {@link AudioLatency} from PeerConnection.getStats. Jitter buffer and
+ * playout delays are reported as cumulative totals over a sample count, so each
+ * reading averages over the interval since the previous one; the first reading
+ * averages over the whole call.
+ */
+public class AudioLatencyMeter {
+    public interface Callback {
+        void onLatency(AudioLatency latency);
+    }
+
+    private final PeerConnection mPeerConnection;
+    private final DelayAverage mJitterBuffer = new DelayAverage();
+    private final DelayAverage mPlayout = new DelayAverage();
+
+    public AudioLatencyMeter(final PeerConnection peerConnection) {
+        mPeerConnection = peerConnection;
+    }
+
+    public void requestLatency(final Callback callback) {
+        mPeerConnection.getStats(new RTCStatsCollectorCallback() {
+            @Override
+            public void onStatsDelivered(RTCStatsReport report) {
+                callback.onLatency(toLatency(report));
+            }
+        });
+    }
+
+    synchronized AudioLatency toLatency(final RTCStatsReport report) {
+        double remoteRttSec = -1;
+        double pairRttSec = -1;
+        double jitterBufferMs = -1;
+        double playoutMs = -1;
+
+        for (final RTCStats stats : report.getStatsMap().values()) {
+            final Map<String, Object> members = stats.getMembers();
+
+            switch (stats.getType()) {
+                case "remote-inbound-rtp":
+                    // Measured by RTCP on the audio stream itself
+                    if ("audio".equals(members.get("kind")) && members.get("roundTripTime") instanceof Number) {
+                        remoteRttSec = ((Number) members.get("roundTripTime")).doubleValue();
+                    }
+                    break;
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(members.get("nominated")) && members.get("currentRoundTripTime") instanceof Number) {
+                        pairRttSec = ((Number) members.get("currentRoundTripTime")).doubleValue();
+                    }
+                    break;
+                case "inbound-rtp":
+                    if (!"audio".equals(members.get("kind"))) break;
+
+                    if (members.get("jitterBufferDelay") instanceof Number && members.get("jitterBufferEmittedCount") instanceof Number) {
+                        jitterBufferMs = mJitterBuffer.update(((Number) members.get("jitterBufferDelay")).doubleValue(),
+                                ((Number) members.get("jitterBufferEmittedCount")).longValue());
+                    }
+                    break;
+                case "media-playout":
+                    if (members.get("totalPlayoutDelay") instanceof Number && members.get("totalSamplesCount") instanceof Number) {
+                        playoutMs = mPlayout.update(((Number) members.get("totalPlayoutDelay")).doubleValue(),
+                                ((Number) members.get("totalSamplesCount")).longValue());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // RTCP round trips come only every few seconds, ICE ones are the fallback
+        final double rttSec = remoteRttSec >= 0 ? remoteRttSec : pairRttSec;
+        return new AudioLatency(rttSec >= 0 ? rttSec * 1000.0 / 2 : -1, jitterBufferMs, playoutMs);
+    }
+
+    // Per-sample average, in milliseconds, of a delay in seconds summed over every sample
+    private static class DelayAverage {
+        private double mLastTotalSec;
+        private long mLastCount;
+
+        double update(final double totalSec, final long count) {
+            double averageMs = -1;
+
+            // A restarted stream resets its counters; start over from there
+            if (count < mLastCount) {
+                mLastTotalSec = 0;
+                mLastCount = 0;
+            }
+            if (count > mLastCount) {
+                averageMs = (totalSec - mLastTotalSec) * 1000.0 / (count - mLastCount);
+            }
+
+            mLastTotalSec = totalSec;
+            mLastCount = count;
+            return averageMs;
+        }
+    }
+}
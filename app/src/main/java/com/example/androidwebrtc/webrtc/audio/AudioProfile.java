@@ -0,0 +1,275 @@
+package com.example.androidwebrtc.webrtc.audio;
+
+import android.content.Context;
+import android.media.MediaRecorder;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+import org.webrtc.audio.AudioDeviceModule;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+/**
+ * Audio device, capture processing and receive jitter buffer settings of a
+ * Connection. The device module is bound to the factory, so a profile applies
+ * for the lifetime of the Connection it was initialized with.
+ */
+public class AudioProfile {
+    private static final String TAG = "AudioProfile";
+
+    // libwebrtc's own default for audioJitterBufferMaxPackets
+    public static final int DEFAULT_JITTER_BUFFER_MAX_PACKETS = 200;
+
+    // Platform and WebRTC processing as a regular voice call has it
+    public static final AudioProfile CONVERSATION = new Builder("conversation").build();
+
+    // Shortest mouth-to-ear path: the fast output path, no platform voice
+    // preprocessing and a jitter buffer that drains instead of growing. Echo
+    // cancellation stays on so speakerphone calls remain usable.
+    public static final AudioProfile LOWEST_LATENCY = new Builder("lowest-latency")
+            .setUseLowLatency(true)
+            .setAudioSource(MediaRecorder.AudioSource.MIC)
+            .setUseHardwareAcousticEchoCanceler(false)
+            .setUseHardwareNoiseSuppressor(false)
+            .setAutoGainControl(false)
+            .setNoiseSuppression(false)
+            .setJitterBufferMaxPackets(50)
+            .setJitterBufferFastAccelerate(true)
+            .build();
+
+    private final String mName;
+    private final boolean mUseHardwareAcousticEchoCanceler;
+    private final boolean mUseHardwareNoiseSuppressor;
+    private final boolean mUseLowLatency;
+    private final int mAudioSource;
+    private final boolean mEchoCancellation;
+    private final boolean mAutoGainControl;
+    private final boolean mNoiseSuppression;
+    private final boolean mHighpassFilter;
+    private final int mJitterBufferMaxPackets;
+    private final boolean mJitterBufferFastAccelerate;
+
+    private AudioProfile(final Builder builder) {
+        mName = builder.mName;
+        mUseHardwareAcousticEchoCanceler = builder.mUseHardwareAcousticEchoCanceler;
+        mUseHardwareNoiseSuppressor = builder.mUseHardwareNoiseSuppressor;
+        mUseLowLatency = builder.mUseLowLatency;
+        mAudioSource = builder.mAudioSource;
+        mEchoCancellation = builder.mEchoCancellation;
+        mAutoGainControl = builder.mAutoGainControl;
+        mNoiseSuppression = builder.mNoiseSuppression;
+        mHighpassFilter = builder.mHighpassFilter;
+        mJitterBufferMaxPackets = builder.mJitterBufferMaxPackets;
+        mJitterBufferFastAccelerate = builder.mJitterBufferFastAccelerate;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public boolean useHardwareAcousticEchoCanceler() {
+        return mUseHardwareAcousticEchoCanceler;
+    }
+
+    public boolean useHardwareNoiseSuppressor() {
+        return mUseHardwareNoiseSuppressor;
+    }
+
+    public boolean useLowLatency() {
+        return mUseLowLatency;
+    }
+
+    // One of MediaRecorder.AudioSource
+    public int getAudioSource() {
+        return mAudioSource;
+    }
+
+    public boolean echoCancellation() {
+        return mEchoCancellation;
+    }
+
+    public boolean autoGainControl() {
+        return mAutoGainControl;
+    }
+
+    public boolean noiseSuppression() {
+        return mNoiseSuppression;
+    }
+
+    public boolean highpassFilter() {
+        return mHighpassFilter;
+    }
+
+    public int getJitterBufferMaxPackets() {
+        return mJitterBufferMaxPackets;
+    }
+
+    public boolean jitterBufferFastAccelerate() {
+        return mJitterBufferFastAccelerate;
+    }
+
+    // The WebRTC processing switches, for PeerConnectionFactory.createAudioSource
+    public MediaConstraints toAudioConstraints() {
+        final MediaConstraints constraints = new MediaConstraints();
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googEchoCancellation", Boolean.toString(mEchoCancellation)));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googAutoGainControl", Boolean.toString(mAutoGainControl)));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googNoiseSuppression", Boolean.toString(mNoiseSuppression)));
+        constraints.mandatory.add(new MediaConstraints.KeyValuePair("googHighpassFilter", Boolean.toString(mHighpassFilter)));
+        return constraints;
+    }
+
+    // The receive side; set on every PeerConnection's configuration
+    public void applyTo(final PeerConnection.RTCConfiguration configuration) {
+        configuration.audioJitterBufferMaxPackets = mJitterBufferMaxPackets;
+        configuration.audioJitterBufferFastAccelerate = mJitterBufferFastAccelerate;
+    }
+
+    // Hardware effects the device lacks are left off; WebRTC's own echo
+    // cancellation and noise suppression then do the work if enabled
+    public AudioDeviceModule createAudioDeviceModule(final Context context) {
+        final boolean hardwareAec = mUseHardwareAcousticEchoCanceler && JavaAudioDeviceModule.isBuiltInAcousticEchoCancelerSupported();
+        final boolean hardwareNs = mUseHardwareNoiseSuppressor && JavaAudioDeviceModule.isBuiltInNoiseSuppressorSupported();
+        AppLog.d(TAG, "Audio profile {} hardwareAec={} hardwareNs={}", mName, hardwareAec, hardwareNs);
+
+        return JavaAudioDeviceModule.builder(context)
+                .setAudioSource(mAudioSource)
+                .setUseHardwareAcousticEchoCanceler(hardwareAec)
+                .setUseHardwareNoiseSuppressor(hardwareNs)
+                .setUseLowLatency(mUseLowLatency)
+                .setAudioRecordErrorCallback(new JavaAudioDeviceModule.AudioRecordErrorCallback() {
+                    @Override
+                    public void onWebRtcAudioRecordInitError(String message) {
+                        AppLog.e(TAG, "Audio record init error: {}", message);
+                    }
+
+                    @Override
+                    public void onWebRtcAudioRecordStartError(JavaAudioDeviceModule.AudioRecordStartErrorCode code, String message) {
+                        AppLog.e(TAG, "Audio record start error {}: {}", code, message);
+                    }
+
+                    @Override
+                    public void onWebRtcAudioRecordError(String message) {
+                        AppLog.e(TAG, "Audio record error: {}", message);
+                    }
+                })
+                .setAudioTrackErrorCallback(new JavaAudioDeviceModule.AudioTrackErrorCallback() {
+                    @Override
+                    public void onWebRtcAudioTrackInitError(String message) {
+                        AppLog.e(TAG, "Audio track init error: {}", message);
+                    }
+
+                    @Override
+                    public void onWebRtcAudioTrackStartError(JavaAudioDeviceModule.AudioTrackStartErrorCode code, String message) {
+                        AppLog.e(TAG, "Audio track start error {}: {}", code, message);
+                    }
+
+                    @Override
+                    public void onWebRtcAudioTrackError(String message) {
+                        AppLog.e(TAG, "Audio track error: {}", message);
+                    }
+                })
+                .createAudioDeviceModule();
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+    public static class Builder {
+        private final String mName;
+        private boolean mUseHardwareAcousticEchoCanceler = true;
+        private boolean mUseHardwareNoiseSuppressor = true;
+        private boolean mUseLowLatency;
+        private int mAudioSource = MediaRecorder.AudioSource.VOICE_COMMUNICATION;
+        private boolean mEchoCancellation = true;
+        private boolean mAutoGainControl = true;
+        private boolean mNoiseSuppression = true;
+        private boolean mHighpassFilter = true;
+        private int mJitterBufferMaxPackets = DEFAULT_JITTER_BUFFER_MAX_PACKETS;
+        private boolean mJitterBufferFastAccelerate;
+
+        public Builder(final String name) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("name must not be empty");
+            }
+            mName = name;
+        }
+
+        // Starts from an existing profile, e.g. a preset with one setting changed
+        public Builder(final String name, final AudioProfile base) {
+            this(name);
+            mUseHardwareAcousticEchoCanceler = base.mUseHardwareAcousticEchoCanceler;
+            mUseHardwareNoiseSuppressor = base.mUseHardwareNoiseSuppressor;
+            mUseLowLatency = base.mUseLowLatency;
+            mAudioSource = base.mAudioSource;
+            mEchoCancellation = base.mEchoCancellation;
+            mAutoGainControl = base.mAutoGainControl;
+            mNoiseSuppression = base.mNoiseSuppression;
+            mHighpassFilter = base.mHighpassFilter;
+            mJitterBufferMaxPackets = base.mJitterBufferMaxPackets;
+            mJitterBufferFastAccelerate = base.mJitterBufferFastAccelerate;
+        }
+
+        public Builder setUseHardwareAcousticEchoCanceler(final boolean use) {
+            mUseHardwareAcousticEchoCanceler = use;
+            return this;
+        }
+
+        public Builder setUseHardwareNoiseSuppressor(final boolean use) {
+            mUseHardwareNoiseSuppressor = use;
+            return this;
+        }
+
+        // AAudio-style low latency output where the platform offers it (API 26+)
+        public Builder setUseLowLatency(final boolean use) {
+            mUseLowLatency = use;
+            return this;
+        }
+
+        public Builder setAudioSource(final int audioSource) {
+            mAudioSource = audioSource;
+            return this;
+        }
+
+        public Builder setEchoCancellation(final boolean enabled) {
+            mEchoCancellation = enabled;
+            return this;
+        }
+
+        public Builder setAutoGainControl(final boolean enabled) {
+            mAutoGainControl = enabled;
+            return this;
+        }
+
+        public Builder setNoiseSuppression(final boolean enabled) {
+            mNoiseSuppression = enabled;
+            return this;
+        }
+
+        public Builder setHighpassFilter(final boolean enabled) {
+            mHighpassFilter = enabled;
+            return this;
+        }
+
+        // Each packet holds 10 to 20ms of audio, so this caps the added delay
+        public Builder setJitterBufferMaxPackets(final int maxPackets) {
+            if (maxPackets <= 0) {
+                throw new IllegalArgumentException("maxPackets must be positive: " + maxPackets);
+            }
+            mJitterBufferMaxPackets = maxPackets;
+            return this;
+        }
+
+        // Lets the jitter buffer time-compress audio to drain faster after a burst
+        public Builder setJitterBufferFastAccelerate(final boolean enabled) {
+            mJitterBufferFastAccelerate = enabled;
+            return this;
+        }
+
+        public AudioProfile build() {
+            return new AudioProfile(this);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.androidwebrtc.webrtc.capture;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.CameraVideoCapturer;
+import org.webrtc.VideoCapturer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Owns the camera capturer of the local video track and starts it in the native
+ * format closest to the requested one. Switching cameras and changing the
+ * capture size happen inside the capturer, so the track, its senders and the
+ * negotiated session stay as they are and no new offer is needed.
+ */
+public class CameraController {
+    private static final String TAG = "CameraController";
+
+    public interface SwitchListener {
+        void onCameraSwitched(String deviceName, boolean frontFacing);
+        void onCameraSwitchFailed(String error);
+    }
+
+    private final CameraEnumerator mEnumerator;
+    private final CameraVideoCapturer mCapturer;
+    private final CaptureFormatSelector mSelector;
+    // Follow-up format changes leave the camera thread the switch callback runs on
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+
+    private String mDeviceName;
+    private int mTargetWidth;
+    private int mTargetHeight;
+    private int mTargetFps;
+    // What the capturer was last asked for
+    private int mWidth;
+    private int mHeight;
+    private int mFps;
+    private boolean mCapturing;
+    private boolean mSwitching;
+
+    public CameraController(final CameraEnumerator enumerator, final String deviceName, final CaptureFormatSelector selector,
+                            final int width, final int height, final int fps) {
+        this(enumerator, deviceName, selector, width, height, fps, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "camera-control");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    CameraController(final CameraEnumerator enumerator, final String deviceName, final CaptureFormatSelector selector,
+                     final int width, final int height, final int fps, final Executor executor) {
+        this(enumerator, deviceName, selector, width, height, fps, executor, false);
+    }
+
+    private CameraController(final CameraEnumerator enumerator, final String deviceName, final CaptureFormatSelector selector,
+                             final int width, final int height, final int fps, final Executor executor, final boolean ownsExecutor) {
+        checkTarget(width, height, fps);
+        mEnumerator = enumerator;
+        mSelector = selector;
+        mDeviceName = deviceName;
+        mTargetWidth = width;
+        mTargetHeight = height;
+        mTargetFps = fps;
+        mExecutor = executor;
+        mOwnedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        mCapturer = enumerator.createCapturer(deviceName, null);
+        selectFormat();
+    }
+
+    // Prefers the front camera, as a video call usually wants
+    public static String pickDevice(final CameraEnumerator enumerator) {
+        final String[] deviceNames = enumerator.getDeviceNames();
+        for (final String deviceName : deviceNames) {
+            if (enumerator.isFrontFacing(deviceName)) return deviceName;
+        }
+        return deviceNames.length > 0 ? deviceNames[0] : null;
+    }
+
+    public VideoCapturer getCapturer() {
+        return mCapturer;
+    }
+
+    public synchronized String getDeviceName() {
+        return mDeviceName;
+    }
+
+    public synchronized boolean isFrontFacing() {
+        return mEnumerator.isFrontFacing(mDeviceName);
+    }
+
+    public synchronized int getWidth() {
+        return mWidth;
+    }
+
+    public synchronized int getHeight() {
+        return mHeight;
+    }
+
+    public synchronized int getFramerate() {
+        return mFps;
+    }
+
+    public synchronized void start() {
+        if (mCapturing) return;
+
+        mCapturer.startCapture(mWidth, mHeight, mFps);
+        mCapturing = true;
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        if (!mCapturing) return;
+
+        mCapturing = false;
+        mCapturer.stopCapture();
+    }
+
+    // Reselects the native format for the new target; applied live while capturing
+    public synchronized void changeCaptureFormat(final int width, final int height, final int fps) {
+        checkTarget(width, height, fps);
+        mTargetWidth = width;
+        mTargetHeight = height;
+        mTargetFps = fps;
+        applyFormat();
+    }
+
+    // Moves to the next camera facing the other way, or the next camera at all on
+    // devices without one; false when there is nothing to switch to or a switch
+    // is still running
+    public synchronized boolean switchCamera(final SwitchListener listener) {
+        final String next = nextDevice();
+        if (next == null || mSwitching) return false;
+
+        mSwitching = true;
+        mCapturer.switchCamera(new CameraVideoCapturer.CameraSwitchHandler() {
+            @Override
+            public void onCameraSwitchDone(final boolean isFrontCamera) {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        final String deviceName;
+                        synchronized (CameraController.this) {
+                            mSwitching = false;
+                            mDeviceName = next;
+                            deviceName = next;
+                            // The capturer kept the old device's format, which the new one may not have
+                            applyFormat();
+                        }
+                        AppLog.d(TAG, "Switched to {}", deviceName);
+                        if (listener != null) listener.onCameraSwitched(deviceName, isFrontCamera);
+                    }
+                });
+            }
+
+            @Override
+            public void onCameraSwitchError(final String error) {
+                synchronized (CameraController.this) {
+                    mSwitching = false;
+                }
+                AppLog.w(TAG, "Camera switch failed: {}", error);
+                if (listener != null) listener.onCameraSwitchFailed(error);
+            }
+        }, next);
+        return true;
+    }
+
+    public void dispose() {
+        try {
+            stop();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        mCapturer.dispose();
+        if (mOwnedExecutor != null) mOwnedExecutor.shutdownNow();
+    }
+
+    private String nextDevice() {
+        final String[] deviceNames = mEnumerator.getDeviceNames();
+        final boolean front = mEnumerator.isFrontFacing(mDeviceName);
+
+        int current = -1;
+        for (int i = 0; i < deviceNames.length; i++) {
+            if (deviceNames[i].equals(mDeviceName)) current = i;
+        }
+
+        String fallback = null;
+        for (int step = 1; step < deviceNames.length; step++) {
+            final String candidate = deviceNames[(current + step + deviceNames.length) % deviceNames.length];
+            if (mEnumerator.isFrontFacing(candidate) != front) return candidate;
+            if (fallback == null) fallback = candidate;
+        }
+        return fallback;
+    }
+
+    private void applyFormat() {
+        final int width = mWidth;
+        final int height = mHeight;
+        final int fps = mFps;
+        selectFormat();
+
+        if (mCapturing && (width != mWidth || height != mHeight || fps != mFps)) {
+            mCapturer.changeCaptureFormat(mWidth, mHeight, mFps);
+        }
+    }
+
+    private void selectFormat() {
+        final CaptureFormat format = mSelector.select(mEnumerator, mDeviceName, mTargetWidth, mTargetHeight, mTargetFps);
+        if (format == null) {
+            mWidth = mTargetWidth;
+            mHeight = mTargetHeight;
+            mFps = mTargetFps;
+        } else {
+            mWidth = format.width;
+            mHeight = format.height;
+            mFps = CaptureFormatSelector.framerate(format, mTargetFps);
+        }
+    }
+
+    private static void checkTarget(final int width, final int height, final int fps) {
+        if (width <= 0 || height <= 0 || fps <= 0) {
+            throw new IllegalArgumentException("Invalid capture format " + width + "x" + height + "@" + fps);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.androidwebrtc.webrtc.capture;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.CameraEnumerator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Picks the native camera format closest to a requested size and framerate so
+ * frames leave the camera at the size we encode instead of being scaled on every
+ * frame. Supported formats are enumerated once per device and cached; Camera2
+ * opens the device characteristics for that, which costs tens of milliseconds.
+ */
+public class CaptureFormatSelector {
+    private static final String TAG = "CaptureFormatSelector";
+
+    // CaptureFormat framerate ranges are in frames per 1000 seconds
+    private static final int FPS_UNIT = 1000;
+
+    private final ConcurrentMap<String, List<CaptureFormat>> mFormats = new ConcurrentHashMap<>();
+
+    // Null when the device reports no formats; the capturer then falls back to its own choice
+    public CaptureFormat select(final CameraEnumerator enumerator, final String deviceName, final int width, final int height, final int fps) {
+        final CaptureFormat best = closest(getSupportedFormats(enumerator, deviceName), width, height, fps);
+        if (best != null && AppLog.isLoggable(AppLog.DEBUG)) {
+            AppLog.d(TAG, "Requested {}x{}@{}", width, height, fps);
+            AppLog.d(TAG, "Selected {} on {}", describe(best), deviceName);
+        }
+        return best;
+    }
+
+    public List<CaptureFormat> getSupportedFormats(final CameraEnumerator enumerator, final String deviceName) {
+        List<CaptureFormat> formats = mFormats.get(deviceName);
+        if (formats == null) {
+            final List<CaptureFormat> enumerated = enumerator.getSupportedFormats(deviceName);
+            formats = enumerated == null ? Collections.<CaptureFormat>emptyList() : Collections.unmodifiableList(enumerated);
+            mFormats.put(deviceName, formats);
+        }
+        return formats;
+    }
+
+    public void clear() {
+        mFormats.clear();
+    }
+
+    // Framerate to ask for with this format: the target, unless the format cannot reach it
+    public static int framerate(final CaptureFormat format, final int fps) {
+        return Math.max(1, Math.min(fps, format.framerate.max / FPS_UNIT));
+    }
+
+    // Formats that reach the target framerate win over those that don't, then the
+    // smallest size difference, then the framerate range that lets the camera
+    // slow down furthest in low light while still reaching the target
+    static CaptureFormat closest(final List<CaptureFormat> formats, final int width, final int height, final int fps) {
+        CaptureFormat best = null;
+        for (final CaptureFormat format : formats) {
+            if (best == null || compare(format, best, width, height, fps) < 0) best = format;
+        }
+        return best;
+    }
+
+    private static int compare(final CaptureFormat a, final CaptureFormat b, final int width, final int height, final int fps) {
+        final boolean aReaches = a.framerate.max >= fps * FPS_UNIT;
+        final boolean bReaches = b.framerate.max >= fps * FPS_UNIT;
+        if (aReaches != bReaches) return aReaches ? -1 : 1;
+
+        final int sizeOrder = Integer.compare(sizePenalty(a, width, height), sizePenalty(b, width, height));
+        if (sizeOrder != 0) return sizeOrder;
+
+        // Neither reaches the target: the faster one is closer
+        if (!aReaches && a.framerate.max != b.framerate.max) return a.framerate.max > b.framerate.max ? -1 : 1;
+
+        final int minOrder = Integer.compare(a.framerate.min, b.framerate.min);
+        if (minOrder != 0) return minOrder;
+
+        // A fixed range above the target only wastes sensor time
+        return Integer.compare(a.framerate.max, b.framerate.max);
+    }
+
+    private static int sizePenalty(final CaptureFormat format, final int width, final int height) {
+        return Math.abs(format.width - width) + Math.abs(format.height - height);
+    }
+
+    static String describe(final CaptureFormat format) {
+        return format.width + "x" + format.height + "@[" + format.framerate.min / FPS_UNIT + ":" + format.framerate.max / FPS_UNIT + "]";
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.androidwebrtc.webrtc.cert;
+
+import android.content.Context;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtcCertificatePem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a DTLS certificate ready for RTCConfiguration.certificate so a new
+ * PeerConnection does not generate its key pair while the call is being set up.
+ * The certificate is generated in the background, stored with its expiry in
+ * app-private storage that is excluded from backups, and reused across launches
+ * until it gets close to expiring, when a replacement is generated ahead of time.
+ */
+public class CertificateCache {
+    private static final String TAG = "CertificateCache";
+
+    public static final long DEFAULT_LIFETIME_MS = TimeUnit.DAYS.toMillis(30);
+    // Rotation starts this long before expiry, while the old one stays in use
+    public static final long DEFAULT_ROTATE_BEFORE_MS = TimeUnit.DAYS.toMillis(7);
+    // A call must never outlive its certificate
+    static final long MIN_REMAINING_MS = TimeUnit.DAYS.toMillis(1);
+    static final String FILE_NAME = "dtls-certificate.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public interface Generator {
+        RtcCertificatePem generate(long lifetimeSeconds);
+    }
+
+    // Persisted expiry needs wall time, unlike the monotonic Clock
+    public interface WallClock {
+        long currentTimeMillis();
+    }
+
+    // ECDSA P-256 takes milliseconds where RSA-2048 takes hundreds on low-end phones
+    public static final Generator ECDSA = new Generator() {
+        @Override
+        public RtcCertificatePem generate(long lifetimeSeconds) {
+            return RtcCertificatePem.generateCertificate(PeerConnection.KeyType.ECDSA, lifetimeSeconds);
+        }
+    };
+
+    public static final WallClock SYSTEM_WALL_CLOCK = new WallClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final File mFile;
+    private final Generator mGenerator;
+    private final WallClock mClock;
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final long mLifetimeMs;
+    private final long mRotateBeforeMs;
+    private final AtomicBoolean mRefreshing = new AtomicBoolean();
+
+    private volatile Entry mCurrent;
+
+    private final Runnable mRefresh = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                refresh();
+            } finally {
+                mRefreshing.set(false);
+            }
+        }
+    };
+
+    // Needs the WebRTC native library, so build it after PeerConnectionFactory.initialize
+    public CertificateCache(final Context context) {
+        this(new File(context.getNoBackupFilesDir(), FILE_NAME), ECDSA, SYSTEM_WALL_CLOCK, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "dtls-certificate");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true, DEFAULT_LIFETIME_MS, DEFAULT_ROTATE_BEFORE_MS);
+    }
+
+    CertificateCache(final File file, final Generator generator, final WallClock clock, final Executor executor,
+                     final long lifetimeMs, final long rotateBeforeMs) {
+        this(file, generator, clock, executor, false, lifetimeMs, rotateBeforeMs);
+    }
+
+    private CertificateCache(final File file, final Generator generator, final WallClock clock, final Executor executor,
+                             final boolean ownsExecutor, final long lifetimeMs, final long rotateBeforeMs) {
+        if (rotateBeforeMs + MIN_REMAINING_MS >= lifetimeMs) {
+            throw new IllegalArgumentException("Lifetime too short to rotate ahead of expiry");
+        }
+
+        mFile = file;
+        mGenerator = generator;
+        mClock = clock;
+        mExecutor = executor;
+        mOwnedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        mLifetimeMs = lifetimeMs;
+        mRotateBeforeMs = rotateBeforeMs;
+    }
+
+    // Loads the stored certificate, or generates one if there is none or it is due
+    public void start() {
+        scheduleRefresh();
+    }
+
+    // Never blocks; null while nothing usable is ready, which leaves key
+    // generation to WebRTC as before. Starts a rotation once one is due.
+    public RtcCertificatePem get() {
+        final Entry entry = mCurrent;
+        final long nowMs = mClock.currentTimeMillis();
+
+        if (entry == null || isDue(entry, nowMs)) scheduleRefresh();
+        if (entry == null || nowMs > entry.mExpiresAtMs - MIN_REMAINING_MS) return null;
+        return entry.mCertificate;
+    }
+
+    // Expiry of the certificate get() hands out, 0 when there is none
+    public long getExpiresAtMs() {
+        final Entry entry = mCurrent;
+        return entry == null ? 0 : entry.mExpiresAtMs;
+    }
+
+    public void shutdown() {
+        if (mOwnedExecutor != null) mOwnedExecutor.shutdownNow();
+    }
+
+    private boolean isDue(final Entry entry, final long nowMs) {
+        return nowMs >= entry.mExpiresAtMs - mRotateBeforeMs;
+    }
+
+    private void scheduleRefresh() {
+        if (!mRefreshing.compareAndSet(false, true)) return;
+
+        try {
+            mExecutor.execute(mRefresh);
+        } catch (RejectedExecutionException e) {
+            mRefreshing.set(false);
+        }
+    }
+
+    // Runs on the executor
+    private void refresh() {
+        if (mCurrent == null) {
+            final Entry stored = load();
+            if (stored != null) mCurrent = stored;
+        }
+
+        final Entry current = mCurrent;
+        final long nowMs = mClock.currentTimeMillis();
+        if (current != null && !isDue(current, nowMs)) return;
+
+        final long startNs = System.nanoTime();
+        final RtcCertificatePem certificate = mGenerator.generate(TimeUnit.MILLISECONDS.toSeconds(mLifetimeMs));
+        if (certificate == null) {
+            AppLog.w(TAG, "Certificate generation failed");
+            return;
+        }
+
+        // Counted from before generation so the stored expiry is never late
+        final Entry generated = new Entry(certificate, nowMs + mLifetimeMs);
+        mCurrent = generated;
+        AppLog.d(TAG, "Generated certificate in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs));
+        save(generated);
+    }
+
+    private Entry load() {
+        if (!mFile.exists()) return null;
+
+        try {
+            final JSONObject json = new JSONObject(new String(readFully(mFile), UTF_8));
+            final Entry entry = new Entry(new RtcCertificatePem(json.getString("privateKey"), json.getString("certificate")),
+                    json.getLong("expiresAtMs"));
+            AppLog.d(TAG, "Loaded certificate expiring at {}", entry.mExpiresAtMs);
+            return entry;
+        } catch (IOException | JSONException e) {
+            AppLog.w(TAG, "Discarding unreadable certificate", e);
+            if (!mFile.delete()) AppLog.w(TAG, "Could not delete {}", mFile);
+            return null;
+        }
+    }
+
+    private void save(final Entry entry) {
+        // Every Connection shares the file, so concurrent saves each get their own temp file
+        File temp = null;
+        try {
+            temp = File.createTempFile(mFile.getName(), ".tmp", mFile.getParentFile());
+            final JSONObject json = new JSONObject();
+            json.put("privateKey", entry.mCertificate.privateKey);
+            json.put("certificate", entry.mCertificate.certificate);
+            json.put("expiresAtMs", entry.mExpiresAtMs);
+
+            final OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(json.toString().getBytes(UTF_8));
+            } finally {
+                out.close();
+            }
+            // Readers on the next launch see the old file or the new one, never half of it
+            if (!temp.renameTo(mFile)) throw new IOException("Could not rename " + temp);
+        } catch (IOException | JSONException e) {
+            AppLog.w(TAG, "Could not store certificate, it lasts for this process only", e);
+            if (temp != null && temp.exists() && !temp.delete()) AppLog.w(TAG, "Could not delete {}", temp);
+        }
+    }
+
+    private static byte[] readFully(final File file) throws IOException {
+        final InputStream in = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Entry {
+        final RtcCertificatePem mCertificate;
+        final long mExpiresAtMs;
+
+        Entry(final RtcCertificatePem certificate, final long expiresAtMs) {
+            mCertificate = certificate;
+            mExpiresAtMs = expiresAtMs;
+        }
+    }
+}
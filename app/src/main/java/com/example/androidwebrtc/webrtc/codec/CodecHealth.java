@@ -0,0 +1,31 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Remembers which codecs had their hardware implementation fail during this
+ * session so later encoders for the same codec go straight to software.
+ */
+public class CodecHealth {
+    private static final String TAG = "CodecHealth";
+
+    private final Set<String> mHardwareDisabled = new HashSet<>();
+
+    public synchronized void reportHardwareFailure(final String codecName, final String reason) {
+        if (mHardwareDisabled.add(codecName.toUpperCase(Locale.US))) {
+            AppLog.w(TAG, "Disabling hardware {}: {}", codecName, reason);
+        }
+    }
+
+    public synchronized boolean isHardwareDisabled(final String codecName) {
+        return mHardwareDisabled.contains(codecName.toUpperCase(Locale.US));
+    }
+
+    public synchronized void reset() {
+        mHardwareDisabled.clear();
+    }
+}
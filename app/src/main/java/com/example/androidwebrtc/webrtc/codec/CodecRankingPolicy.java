@@ -0,0 +1,11 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.webrtc.VideoCodecInfo;
+
+/**
+ * Decides the order in which video codecs are offered. Codecs with a negative
+ * score are left out of the supported codec list entirely.
+ */
+public interface CodecRankingPolicy {
+    int score(VideoCodecInfo codec, boolean hardwareAccelerated);
+}
@@ -0,0 +1,54 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+import org.webrtc.VideoDecoderFallback;
+
+/**
+ * Decoder counterpart of {@link FallbackVideoEncoderFactory}. Init failures of the
+ * hardware decoder are handled by the native fallback wrapper.
+ */
+public class FallbackVideoDecoderFactory implements VideoDecoderFactory {
+    private final VideoDecoderFactory mHardwareFactory;
+    private final VideoDecoderFactory mSoftwareFactory;
+    private final CodecRankingPolicy mRankingPolicy;
+    private final CodecHealth mHealth;
+
+    public FallbackVideoDecoderFactory(final VideoDecoderFactory hardwareFactory, final VideoDecoderFactory softwareFactory,
+                                       final CodecRankingPolicy rankingPolicy, final CodecHealth health) {
+        mHardwareFactory = hardwareFactory;
+        mSoftwareFactory = softwareFactory;
+        mRankingPolicy = rankingPolicy;
+        mHealth = health;
+    }
+
+    @Override
+    public VideoDecoder createDecoder(final VideoCodecInfo info) {
+        final VideoDecoder softwareDecoder = RankedCodecs.isSupported(mSoftwareFactory.getSupportedCodecs(), info)
+                ? mSoftwareFactory.createDecoder(info) : null;
+
+        if (mHealth.isHardwareDisabled(info.name)) {
+            return softwareDecoder;
+        }
+
+        VideoDecoder hardwareDecoder = null;
+        try {
+            if (RankedCodecs.isSupported(mHardwareFactory.getSupportedCodecs(), info)) {
+                hardwareDecoder = mHardwareFactory.createDecoder(info);
+            }
+        } catch (RuntimeException e) {
+            mHealth.reportHardwareFailure(info.name, "createDecoder threw " + e);
+        }
+
+        if (hardwareDecoder == null) return softwareDecoder;
+        if (softwareDecoder == null) return hardwareDecoder;
+
+        return new VideoDecoderFallback(softwareDecoder, hardwareDecoder);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return RankedCodecs.merge(mHardwareFactory.getSupportedCodecs(), mSoftwareFactory.getSupportedCodecs(), mRankingPolicy, mHealth);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+import org.webrtc.VideoEncoderFallback;
+
+/**
+ * Prefers the hardware encoder for each codec and falls back to software per codec,
+ * both when the hardware encoder fails and once it has failed earlier in the session.
+ */
+public class FallbackVideoEncoderFactory implements VideoEncoderFactory {
+    public static final long DEFAULT_STALL_TIMEOUT_MS = 2000;
+
+    private final VideoEncoderFactory mHardwareFactory;
+    private final VideoEncoderFactory mSoftwareFactory;
+    private final CodecRankingPolicy mRankingPolicy;
+    private final CodecHealth mHealth;
+    private final Clock mClock;
+    private final long mStallTimeoutMs;
+
+    public FallbackVideoEncoderFactory(final VideoEncoderFactory hardwareFactory, final VideoEncoderFactory softwareFactory,
+                                       final CodecRankingPolicy rankingPolicy, final CodecHealth health) {
+        this(hardwareFactory, softwareFactory, rankingPolicy, health, Clock.SYSTEM, DEFAULT_STALL_TIMEOUT_MS);
+    }
+
+    public FallbackVideoEncoderFactory(final VideoEncoderFactory hardwareFactory, final VideoEncoderFactory softwareFactory,
+                                       final CodecRankingPolicy rankingPolicy, final CodecHealth health,
+                                       final Clock clock, final long stallTimeoutMs) {
+        mHardwareFactory = hardwareFactory;
+        mSoftwareFactory = softwareFactory;
+        mRankingPolicy = rankingPolicy;
+        mHealth = health;
+        mClock = clock;
+        mStallTimeoutMs = stallTimeoutMs;
+    }
+
+    @Override
+    public VideoEncoder createEncoder(final VideoCodecInfo info) {
+        final VideoEncoder softwareEncoder = RankedCodecs.isSupported(mSoftwareFactory.getSupportedCodecs(), info)
+                ? mSoftwareFactory.createEncoder(info) : null;
+
+        if (mHealth.isHardwareDisabled(info.name)) {
+            return softwareEncoder;
+        }
+
+        VideoEncoder hardwareEncoder = null;
+        try {
+            if (RankedCodecs.isSupported(mHardwareFactory.getSupportedCodecs(), info)) {
+                hardwareEncoder = mHardwareFactory.createEncoder(info);
+            }
+        } catch (RuntimeException e) {
+            mHealth.reportHardwareFailure(info.name, "createEncoder threw " + e);
+        }
+
+        if (hardwareEncoder == null) {
+            return softwareEncoder;
+        }
+
+        final VideoEncoder monitoredEncoder = new StallAwareVideoEncoder(hardwareEncoder, info.name, mHealth, mClock, mStallTimeoutMs);
+        if (softwareEncoder == null) {
+            return monitoredEncoder;
+        }
+
+        return new VideoEncoderFallback(softwareEncoder, monitoredEncoder);
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return RankedCodecs.merge(mHardwareFactory.getSupportedCodecs(), mSoftwareFactory.getSupportedCodecs(), mRankingPolicy, mHealth);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.webrtc.VideoCodecInfo;
+
+/**
+ * Ranks hardware accelerated codecs first, then by position in the preferred
+ * codec name list. Codecs that are not in the list are still offered, last.
+ */
+public class PreferredCodecRankingPolicy implements CodecRankingPolicy {
+    public static final PreferredCodecRankingPolicy DEFAULT = new PreferredCodecRankingPolicy("H264", "VP8", "VP9", "AV1");
+
+    private static final int HARDWARE_BONUS = 1000;
+
+    private final String[] mPreferredNames;
+
+    public PreferredCodecRankingPolicy(final String... preferredNames) {
+        mPreferredNames = preferredNames;
+    }
+
+    @Override
+    public int score(final VideoCodecInfo codec, final boolean hardwareAccelerated) {
+        int score = 0;
+
+        for (int i = 0; i < mPreferredNames.length; i++) {
+            if (mPreferredNames[i].equalsIgnoreCase(codec.name)) {
+                score = mPreferredNames.length - i;
+                break;
+            }
+        }
+
+        return hardwareAccelerated ? score + HARDWARE_BONUS : score;
+    }
+}
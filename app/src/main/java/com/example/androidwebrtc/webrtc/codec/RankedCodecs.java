@@ -0,0 +1,89 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.webrtc.VideoCodecInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Merges hardware and software codec lists into one list ordered by a ranking policy.
+ */
+final class RankedCodecs {
+    private RankedCodecs() {}
+
+    static VideoCodecInfo[] merge(final VideoCodecInfo[] hardwareCodecs, final VideoCodecInfo[] softwareCodecs,
+                                  final CodecRankingPolicy policy, final CodecHealth health) {
+        final List<RankedCodec> ranked = new ArrayList<>();
+
+        if (hardwareCodecs != null) {
+            for (final VideoCodecInfo codec : hardwareCodecs) {
+                if (!contains(ranked, codec)) {
+                    final boolean hardware = !health.isHardwareDisabled(codec.name);
+                    ranked.add(new RankedCodec(codec, policy.score(codec, hardware)));
+                }
+            }
+        }
+
+        if (softwareCodecs != null) {
+            for (final VideoCodecInfo codec : softwareCodecs) {
+                if (!contains(ranked, codec)) {
+                    ranked.add(new RankedCodec(codec, policy.score(codec, false)));
+                }
+            }
+        }
+
+        // Stable sort so codecs with equal scores keep the factory order
+        Collections.sort(ranked, new Comparator<RankedCodec>() {
+            @Override
+            public int compare(RankedCodec a, RankedCodec b) {
+                return Integer.compare(b.mScore, a.mScore);
+            }
+        });
+
+        final List<VideoCodecInfo> result = new ArrayList<>(ranked.size());
+        for (final RankedCodec rankedCodec : ranked) {
+            if (rankedCodec.mScore >= 0) {
+                result.add(rankedCodec.mCodec);
+            }
+        }
+
+        return result.toArray(new VideoCodecInfo[0]);
+    }
+
+    static boolean isSupported(final VideoCodecInfo[] codecs, final VideoCodecInfo codec) {
+        if (codecs == null) return false;
+
+        for (final VideoCodecInfo supported : codecs) {
+            if (sameCodec(supported, codec)) return true;
+        }
+
+        return false;
+    }
+
+    static boolean sameCodec(final VideoCodecInfo a, final VideoCodecInfo b) {
+        if (!a.name.equalsIgnoreCase(b.name)) return false;
+        if (a.params == null || b.params == null) return a.params == b.params;
+
+        return a.params.equals(b.params);
+    }
+
+    private static boolean contains(final List<RankedCodec> ranked, final VideoCodecInfo codec) {
+        for (final RankedCodec rankedCodec : ranked) {
+            if (sameCodec(rankedCodec.mCodec, codec)) return true;
+        }
+
+        return false;
+    }
+
+    private static class RankedCodec {
+        private final VideoCodecInfo mCodec;
+        private final int mScore;
+
+        private RankedCodec(final VideoCodecInfo codec, final int score) {
+            mCodec = codec;
+            mScore = score;
+        }
+    }
+}
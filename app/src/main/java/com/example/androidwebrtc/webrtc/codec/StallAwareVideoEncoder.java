@@ -0,0 +1,136 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoFrame;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wraps a hardware encoder and asks the native fallback wrapper to switch to
+ * software (by returning FALLBACK_SOFTWARE) when the hardware encoder fails to
+ * initialize, reports an error, or stops producing output while frames are pending.
+ */
+public class StallAwareVideoEncoder implements VideoEncoder {
+    private final VideoEncoder mEncoder;
+    private final String mCodecName;
+    private final CodecHealth mHealth;
+    private final Clock mClock;
+    private final long mStallTimeoutNs;
+
+    // Updated from the encoder output thread, read on the encode thread
+    private volatile long mLastOutputNs;
+    private final AtomicInteger mPendingFrames = new AtomicInteger();
+    private boolean mFailed;
+
+    public StallAwareVideoEncoder(final VideoEncoder encoder, final String codecName, final CodecHealth health,
+                                  final Clock clock, final long stallTimeoutMs) {
+        mEncoder = encoder;
+        mCodecName = codecName;
+        mHealth = health;
+        mClock = clock;
+        mStallTimeoutNs = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMs);
+    }
+
+    @Override
+    public long createNativeVideoEncoder() {
+        return mEncoder.createNativeVideoEncoder();
+    }
+
+    @Override
+    public boolean isHardwareEncoder() {
+        return mEncoder.isHardwareEncoder();
+    }
+
+    @Override
+    public VideoCodecStatus initEncode(final Settings settings, final Callback encodeCallback) {
+        mFailed = false;
+        mPendingFrames.set(0);
+        mLastOutputNs = mClock.nanoTime();
+
+        final VideoCodecStatus status = mEncoder.initEncode(settings, new Callback() {
+            @Override
+            public void onEncodedFrame(EncodedImage frame, CodecSpecificInfo info) {
+                mLastOutputNs = mClock.nanoTime();
+                mPendingFrames.set(0);
+                encodeCallback.onEncodedFrame(frame, info);
+            }
+        });
+
+        if (status != VideoCodecStatus.OK) {
+            return fail("initEncode returned " + status);
+        }
+
+        return status;
+    }
+
+    @Override
+    public VideoCodecStatus release() {
+        return mEncoder.release();
+    }
+
+    @Override
+    public VideoCodecStatus encode(final VideoFrame frame, final EncodeInfo info) {
+        if (mFailed) return VideoCodecStatus.FALLBACK_SOFTWARE;
+
+        if (mPendingFrames.get() > 0 && mClock.nanoTime() - mLastOutputNs > mStallTimeoutNs) {
+            return fail("no output for " + TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime() - mLastOutputNs) + "ms");
+        }
+
+        final VideoCodecStatus status = mEncoder.encode(frame, info);
+
+        switch (status) {
+            case OK:
+                if (mPendingFrames.getAndIncrement() == 0) {
+                    mLastOutputNs = mClock.nanoTime();
+                }
+                return status;
+            case ERROR:
+            case FALLBACK_SOFTWARE:
+                return fail("encode returned " + status);
+            default:
+                return status;
+        }
+    }
+
+    @Override
+    public VideoCodecStatus setRateAllocation(final BitrateAllocation allocation, final int framerate) {
+        return mEncoder.setRateAllocation(allocation, framerate);
+    }
+
+    @Override
+    public VideoCodecStatus setRates(final RateControlParameters rcParameters) {
+        return mEncoder.setRates(rcParameters);
+    }
+
+    @Override
+    public ScalingSettings getScalingSettings() {
+        return mEncoder.getScalingSettings();
+    }
+
+    @Override
+    public String getImplementationName() {
+        return mEncoder.getImplementationName();
+    }
+
+    // The defaults would hide the hardware encoder's alignment and bitrate limits
+    @Override
+    public ResolutionBitrateLimits[] getResolutionBitrateLimits() {
+        return mEncoder.getResolutionBitrateLimits();
+    }
+
+    @Override
+    public EncoderInfo getEncoderInfo() {
+        return mEncoder.getEncoderInfo();
+    }
+
+    private VideoCodecStatus fail(final String reason) {
+        mFailed = true;
+        mHealth.reportHardwareFailure(mCodecName, reason);
+        return VideoCodecStatus.FALLBACK_SOFTWARE;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * Binary messages of any size over one WebRTC data channel, with flow control
+ * driven by bufferedAmount. Messages are delivered as direct buffers that are only
+ * valid during the listener call.
+ */
+public class BinaryDataChannel {
+    private static final String TAG = "BinaryDataChannel";
+
+    // Safe for every SCTP implementation WebRTC peers use
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    public static final long DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+    public static final long DEFAULT_LOW_WATERMARK = 256 * 1024;
+    public static final long DEFAULT_MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    public interface Listener {
+        void onOpen();
+        // The buffer is only valid during the call, copy what you keep
+        void onMessage(ByteBuffer message);
+        // A refused send() can be retried now
+        void onWritable();
+        void onClosed();
+    }
+
+    private final DataChannel mChannel;
+    private final ChunkedSender mSender;
+    private final Reassembler mReassembler;
+    private volatile Listener mListener;
+    private boolean mObserving;
+
+    public BinaryDataChannel(final DataChannel channel, final DirectBufferPool pool, final Executor sendExecutor) {
+        mChannel = channel;
+        mSender = new ChunkedSender(new DataChannelTransport() {
+            @Override
+            public long bufferedAmount() {
+                return mChannel.bufferedAmount();
+            }
+
+            @Override
+            public boolean send(ByteBuffer frame) {
+                return mChannel.send(new DataChannel.Buffer(frame, true));
+            }
+        }, sendExecutor, DEFAULT_CHUNK_SIZE, DEFAULT_HIGH_WATERMARK, DEFAULT_LOW_WATERMARK, DEFAULT_MAX_QUEUED_BYTES);
+        mReassembler = new Reassembler(pool, DEFAULT_MAX_MESSAGE_SIZE, Reassembler.DEFAULT_MAX_CONCURRENT_TRANSFERS, new Reassembler.Listener() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                final Listener listener = mListener;
+                if (listener != null) listener.onMessage(message);
+            }
+        });
+        mSender.setListener(new ChunkedSender.Listener() {
+            @Override
+            public void onWritable() {
+                final Listener listener = mListener;
+                if (listener != null) listener.onWritable();
+            }
+        });
+    }
+
+    public String getLabel() {
+        return mChannel.label();
+    }
+
+    public boolean isOpen() {
+        return mChannel.state() == DataChannel.State.OPEN;
+    }
+
+    // libwebrtc holds incoming messages until an observer is registered, so
+    // nothing is lost between the channel arriving and the listener being set
+    public synchronized void setListener(final Listener listener) {
+        mListener = listener;
+        if (mObserving) return;
+
+        mObserving = true;
+        mChannel.registerObserver(new DataChannel.Observer() {
+            @Override
+            public void onBufferedAmountChange(long previousAmount) {
+                mSender.resume();
+            }
+
+            @Override
+            public void onStateChange() {
+                final DataChannel.State state = mChannel.state();
+                AppLog.d(TAG, "onStateChange label={} state={}", mChannel.label(), state);
+                final Listener current = mListener;
+
+                if (state == DataChannel.State.OPEN) {
+                    mSender.resume();
+                    if (current != null) current.onOpen();
+                } else if (state == DataChannel.State.CLOSED) {
+                    mSender.close();
+                    mReassembler.reset();
+                    if (current != null) current.onClosed();
+                }
+            }
+
+            @Override
+            public void onMessage(DataChannel.Buffer buffer) {
+                if (!buffer.binary) {
+                    AppLog.w(TAG, "Ignoring text message on {}", mChannel.label());
+                    return;
+                }
+                mReassembler.onFrame(buffer.data);
+            }
+        });
+    }
+
+    // Returns the transfer id, or -1 when too much is queued; retry after onWritable.
+    // Sending waits for the channel to open, which is only noticed once a listener is set
+    public int send(final ByteBuffer payload) {
+        return mSender.send(payload);
+    }
+
+    public long getQueuedBytes() {
+        return mSender.getQueuedBytes();
+    }
+
+    public long getBytesSent() {
+        return mSender.getBytesSent();
+    }
+
+    public int getPauseCount() {
+        return mSender.getPauseCount();
+    }
+
+    // The channel is disposed on the send executor after the sender has stopped,
+    // a pump still running there would otherwise use a disposed channel
+    public void close() {
+        synchronized (this) {
+            if (mObserving) mChannel.unregisterObserver();
+            mObserving = false;
+        }
+        mSender.close(new Runnable() {
+            @Override
+            public void run() {
+                mChannel.close();
+                mChannel.dispose();
+            }
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.androidwebrtc.webrtc.data;
+
+// Wire format of a binary data channel message. Payloads that fit in one chunk go
+// out as [KIND_MESSAGE][payload]; larger ones as a series of
+// [KIND_CHUNK][transfer id][total length][offset][payload] frames.
+final class ChunkFrames {
+    static final byte KIND_MESSAGE = 0;
+    static final byte KIND_CHUNK = 1;
+
+    static final int MESSAGE_HEADER_SIZE = 1;
+    static final int CHUNK_HEADER_SIZE = 1 + 4 + 4 + 4;
+
+    private ChunkFrames() {}
+}
@@ -0,0 +1,227 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes payloads to a data channel in chunks, pausing while the channel's
+ * bufferedAmount is above the high watermark and resuming once it has drained
+ * below the low one. Chunks are framed into one reused direct buffer, so the
+ * sender allocates nothing per chunk; DataChannel.send still copies each frame
+ * into a byte array on its way to native code.
+ *
+ * <p>Payloads wait in a queue bounded in bytes; send() refuses new ones when it
+ * is full and the listener hears when there is room again. All queue state is
+ * confined to the executor, DataChannel calls block on the network thread.
+ */
+public class ChunkedSender {
+    private static final String TAG = "ChunkedSender";
+
+    public interface Listener {
+        // A refused send() can be retried now
+        void onWritable();
+    }
+
+    private final DataChannelTransport mTransport;
+    private final Executor mExecutor;
+    private final int mChunkSize;
+    private final long mHighWatermark;
+    private final long mLowWatermark;
+    private final long mMaxQueuedBytes;
+    private final ByteBuffer mFrame;
+    private final ArrayDeque<Transfer> mPending = new ArrayDeque<>();
+    private final AtomicLong mQueuedBytes = new AtomicLong();
+    private final AtomicInteger mNextTransferId = new AtomicInteger();
+    private final AtomicBoolean mResumePosted = new AtomicBoolean();
+
+    private volatile Listener mListener;
+    private volatile boolean mPaused;
+    private volatile boolean mRefused;
+    private volatile boolean mClosed;
+    private volatile long mBytesSent;
+    private volatile int mPauseCount;
+
+    public ChunkedSender(final DataChannelTransport transport, final Executor executor, final int chunkSize,
+                         final long highWatermark, final long lowWatermark, final long maxQueuedBytes) {
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("low watermark above high watermark");
+        }
+
+        mTransport = transport;
+        mExecutor = executor;
+        mChunkSize = chunkSize;
+        mHighWatermark = highWatermark;
+        mLowWatermark = lowWatermark;
+        mMaxQueuedBytes = maxQueuedBytes;
+        mFrame = ByteBuffer.allocateDirect(ChunkFrames.CHUNK_HEADER_SIZE + chunkSize);
+    }
+
+    public void setListener(final Listener listener) {
+        mListener = listener;
+    }
+
+    // Queues the remaining bytes of payload and returns its transfer id, or -1 when
+    // the queue is full or the sender closed. The payload is read as it is sent, so
+    // it must not change until getQueuedBytes() no longer includes it.
+    public int send(final ByteBuffer payload) {
+        if (mClosed) return -1;
+
+        final int size = payload.remaining();
+        long queued;
+        do {
+            queued = mQueuedBytes.get();
+            // An empty queue always takes one payload, however large
+            if (queued > 0 && queued + size > mMaxQueuedBytes) {
+                mRefused = true;
+                return -1;
+            }
+        } while (!mQueuedBytes.compareAndSet(queued, queued + size));
+
+        final Transfer transfer = new Transfer(mNextTransferId.getAndIncrement(), payload.slice());
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mClosed) return;
+
+                mPending.add(transfer);
+                pump();
+            }
+        });
+        return transfer.mId;
+    }
+
+    // Called when the channel opens or its buffered amount changes
+    public void resume() {
+        if (!mPaused || !mResumePosted.compareAndSet(false, true)) return;
+
+        post(new Runnable() {
+            @Override
+            public void run() {
+                mResumePosted.set(false);
+                pump();
+            }
+        });
+    }
+
+    public void close() {
+        close(null);
+    }
+
+    // onClosed runs on the executor once no pump can touch the transport any more,
+    // or right here if the executor is already gone
+    public void close(final Runnable onClosed) {
+        mClosed = true;
+        final boolean posted = post(new Runnable() {
+            @Override
+            public void run() {
+                mPending.clear();
+                mQueuedBytes.set(0);
+                if (onClosed != null) onClosed.run();
+            }
+        });
+        if (!posted && onClosed != null) onClosed.run();
+    }
+
+    public long getQueuedBytes() {
+        return mQueuedBytes.get();
+    }
+
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    // Times the sender stopped for the watermark or a full channel
+    public int getPauseCount() {
+        return mPauseCount;
+    }
+
+    private void pump() {
+        if (mClosed) return;
+
+        if (mPaused) {
+            if (mTransport.bufferedAmount() > mLowWatermark) return;
+            mPaused = false;
+        }
+
+        while (!mPending.isEmpty()) {
+            if (mTransport.bufferedAmount() >= mHighWatermark) {
+                pause();
+                return;
+            }
+
+            final Transfer transfer = mPending.peek();
+            final int length = Math.min(mChunkSize, transfer.mTotal - transfer.mOffset);
+            frame(transfer, length);
+
+            if (!mTransport.send(mFrame)) {
+                // Not open yet or the native send buffer is full, wait for it to drain
+                pause();
+                return;
+            }
+
+            transfer.mOffset += length;
+            mBytesSent += length;
+            mQueuedBytes.addAndGet(-length);
+            if (transfer.mOffset == transfer.mTotal) mPending.poll();
+        }
+
+        final Listener listener = mListener;
+        if (mRefused && mQueuedBytes.get() <= mMaxQueuedBytes / 2) {
+            mRefused = false;
+            if (listener != null) listener.onWritable();
+        }
+    }
+
+    private void frame(final Transfer transfer, final int length) {
+        mFrame.clear();
+        if (transfer.mTotal <= mChunkSize) {
+            mFrame.put(ChunkFrames.KIND_MESSAGE);
+        } else {
+            mFrame.put(ChunkFrames.KIND_CHUNK);
+            mFrame.putInt(transfer.mId);
+            mFrame.putInt(transfer.mTotal);
+            mFrame.putInt(transfer.mOffset);
+        }
+
+        final ByteBuffer chunk = transfer.mPayload.duplicate();
+        chunk.position(transfer.mOffset);
+        chunk.limit(transfer.mOffset + length);
+        mFrame.put(chunk);
+        mFrame.flip();
+    }
+
+    private void pause() {
+        mPaused = true;
+        mPauseCount++;
+    }
+
+    private boolean post(final Runnable runnable) {
+        try {
+            mExecutor.execute(runnable);
+            return true;
+        } catch (RejectedExecutionException e) {
+            AppLog.d(TAG, "Dropping send after shutdown");
+            return false;
+        }
+    }
+
+    private static class Transfer {
+        final int mId;
+        final ByteBuffer mPayload;
+        final int mTotal;
+        int mOffset;
+
+        Transfer(final int id, final ByteBuffer payload) {
+            mId = id;
+            mPayload = payload;
+            mTotal = payload.remaining();
+        }
+    }
+}
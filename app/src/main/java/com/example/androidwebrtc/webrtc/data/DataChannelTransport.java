@@ -0,0 +1,16 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The part of a data channel the sender writes to, so flow control can be tested
+ * without a PeerConnection.
+ */
+public interface DataChannelTransport {
+    // Bytes accepted by send() that have not reached the network yet
+    long bufferedAmount();
+
+    // Sends remaining bytes of frame as one binary message; false when the channel
+    // is not open or its send buffer is full
+    boolean send(ByteBuffer frame);
+}
@@ -0,0 +1,76 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Direct buffers in power-of-two sizes, kept after use so reassembling large
+ * payloads does not allocate native memory per message. Buffers above
+ * {@link #DEFAULT_MAX_POOLED_CAPACITY} are handed out but not kept.
+ */
+public class DirectBufferPool {
+    public static final int DEFAULT_MAX_PER_SIZE = 4;
+    public static final int DEFAULT_MAX_POOLED_CAPACITY = 4 * 1024 * 1024;
+    static final int MIN_CAPACITY = 1024;
+
+    private final int mMaxPerSize;
+    private final int mMaxPooledCapacity;
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<ByteBuffer>[] mBuckets = new ArrayDeque[Integer.SIZE];
+    private long mAllocations;
+
+    public DirectBufferPool() {
+        this(DEFAULT_MAX_PER_SIZE, DEFAULT_MAX_POOLED_CAPACITY);
+    }
+
+    public DirectBufferPool(final int maxPerSize, final int maxPooledCapacity) {
+        mMaxPerSize = maxPerSize;
+        mMaxPooledCapacity = maxPooledCapacity;
+    }
+
+    // Returns a cleared buffer whose limit is size, its capacity may be larger
+    public ByteBuffer acquire(final int size) {
+        if (size < 0) throw new IllegalArgumentException("size must not be negative");
+
+        final int capacity = capacityFor(size);
+        ByteBuffer buffer = null;
+
+        synchronized (this) {
+            final ArrayDeque<ByteBuffer> bucket = mBuckets[bucketOf(capacity)];
+            if (bucket != null) buffer = bucket.poll();
+            if (buffer == null) mAllocations++;
+        }
+
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(capacity);
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    // Buffers that did not come from a pool are ignored
+    public synchronized void release(final ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (!buffer.isDirect() || Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY || capacity > mMaxPooledCapacity) return;
+
+        final int index = bucketOf(capacity);
+        if (mBuckets[index] == null) mBuckets[index] = new ArrayDeque<>();
+        if (mBuckets[index].size() < mMaxPerSize) mBuckets[index].add(buffer);
+    }
+
+    // Number of buffers allocated because the pool had none to hand out
+    public synchronized long getAllocationCount() {
+        return mAllocations;
+    }
+
+    static int capacityFor(final int size) {
+        if (size <= MIN_CAPACITY) return MIN_CAPACITY;
+        final int highest = Integer.highestOneBit(size);
+        if (highest == size) return size;
+        if (highest == 1 << 30) throw new IllegalArgumentException("size too large: " + size);
+        return highest << 1;
+    }
+
+    private static int bucketOf(final int capacity) {
+        return Integer.numberOfTrailingZeros(capacity);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Puts chunked payloads back together in pooled direct buffers. Single-chunk
+ * messages are handed over as a view of the received frame without a copy.
+ * Expects an ordered, reliable channel: a chunk out of sequence aborts its
+ * transfer. Not thread-safe, frames arrive on one network thread.
+ */
+public class Reassembler {
+    private static final String TAG = "Reassembler";
+
+    public static final int DEFAULT_MAX_CONCURRENT_TRANSFERS = 8;
+
+    public interface Listener {
+        // The buffer is only valid during the call, copy what you keep
+        void onMessage(ByteBuffer message);
+    }
+
+    private final DirectBufferPool mPool;
+    private final int mMaxMessageSize;
+    private final int mMaxConcurrentTransfers;
+    private final Listener mListener;
+    private final Map<Integer, Partial> mPartials = new HashMap<>();
+
+    public Reassembler(final DirectBufferPool pool, final int maxMessageSize, final int maxConcurrentTransfers, final Listener listener) {
+        mPool = pool;
+        mMaxMessageSize = maxMessageSize;
+        mMaxConcurrentTransfers = maxConcurrentTransfers;
+        mListener = listener;
+    }
+
+    public void onFrame(final ByteBuffer frame) {
+        if (!frame.hasRemaining()) {
+            AppLog.w(TAG, "Dropping empty frame");
+            return;
+        }
+
+        final int start = frame.position();
+        final byte kind = frame.get(start);
+
+        if (kind == ChunkFrames.KIND_MESSAGE) {
+            final ByteBuffer message = frame.duplicate();
+            message.position(start + ChunkFrames.MESSAGE_HEADER_SIZE);
+            mListener.onMessage(message.slice());
+            return;
+        }
+
+        if (kind != ChunkFrames.KIND_CHUNK || frame.remaining() < ChunkFrames.CHUNK_HEADER_SIZE) {
+            AppLog.w(TAG, "Dropping malformed frame kind={} size={}", kind, frame.remaining());
+            return;
+        }
+
+        final int id = frame.getInt(start + 1);
+        final int total = frame.getInt(start + 5);
+        final int offset = frame.getInt(start + 9);
+        final int length = frame.remaining() - ChunkFrames.CHUNK_HEADER_SIZE;
+
+        if (total < 0 || total > mMaxMessageSize || offset < 0 || offset > total - length) {
+            AppLog.w(TAG, "Dropping transfer {}, chunk at {} does not fit in {} bytes", id, offset, total);
+            abort(id);
+            return;
+        }
+
+        Partial partial = mPartials.get(id);
+        if (partial == null) {
+            if (mPartials.size() >= mMaxConcurrentTransfers) {
+                AppLog.w(TAG, "Dropping transfer {}, {} already in progress", id, mPartials.size());
+                return;
+            }
+            partial = new Partial(mPool.acquire(total), total);
+            mPartials.put(id, partial);
+        }
+
+        if (partial.mTotal != total || partial.mReceived != offset) {
+            AppLog.w(TAG, "Transfer {} out of sequence at offset {}, expected {}", id, offset, partial.mReceived);
+            abort(id);
+            return;
+        }
+
+        final ByteBuffer chunk = frame.duplicate();
+        chunk.position(start + ChunkFrames.CHUNK_HEADER_SIZE);
+        partial.mBuffer.position(offset);
+        partial.mBuffer.put(chunk);
+        partial.mReceived += length;
+
+        if (partial.mReceived < total) return;
+
+        mPartials.remove(id);
+        partial.mBuffer.position(0);
+        partial.mBuffer.limit(total);
+        try {
+            mListener.onMessage(partial.mBuffer);
+        } finally {
+            mPool.release(partial.mBuffer);
+        }
+    }
+
+    public int getPartialCount() {
+        return mPartials.size();
+    }
+
+    // Returns the buffers of unfinished transfers to the pool
+    public void reset() {
+        for (final Partial partial : mPartials.values()) {
+            mPool.release(partial.mBuffer);
+        }
+        mPartials.clear();
+    }
+
+    private void abort(final int id) {
+        final Partial partial = mPartials.remove(id);
+        if (partial != null) mPool.release(partial.mBuffer);
+    }
+
+    private static class Partial {
+        final ByteBuffer mBuffer;
+        final int mTotal;
+        int mReceived;
+
+        Partial(final ByteBuffer buffer, final int total) {
+            mBuffer = buffer;
+            mTotal = total;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.androidwebrtc.webrtc.dump;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes sampled frames of a track to Y4M files for offline quality analysis.
+ * The file is preallocated to the size limit and memory mapped as a ring of frame
+ * slots, so a long call keeps only its most recent frames. Frames are copied on a
+ * background thread; the render thread only retains the frame and hands it over,
+ * and drops it when the previous one is still being copied.
+ *
+ * <p>Y4M has one resolution per file, so a resolution change closes the current
+ * file and continues in the next one (name-0.y4m, name-1.y4m, ...). Closing puts
+ * the ring back in capture order.
+ */
+public class Y4mFrameDumpSink implements VideoSink {
+    private static final String TAG = "Y4mFrameDump";
+
+    public static final int DEFAULT_SAMPLE_INTERVAL = 1;
+    public static final long DEFAULT_MAX_FILE_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_FRAME_RATE = 30;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(ASCII);
+
+    private final File mDirectory;
+    private final String mName;
+    private final int mSampleInterval;
+    private final long mMaxFileBytes;
+    private final int mFrameRate;
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final AtomicBoolean mBusy = new AtomicBoolean();
+    private final AtomicLong mSeenFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mWrittenFrames = new AtomicLong();
+
+    private volatile boolean mClosed;
+
+    // Confined to the executor
+    private RingFile mFile;
+    private int mFileIndex;
+
+    private final Runnable mClose = new Runnable() {
+        @Override
+        public void run() {
+            finishFile();
+        }
+    };
+
+    public Y4mFrameDumpSink(final File directory, final String name) {
+        this(directory, name, DEFAULT_SAMPLE_INTERVAL, DEFAULT_MAX_FILE_BYTES, DEFAULT_FRAME_RATE);
+    }
+
+    // Keeps every sampleInterval-th frame; frameRate only goes into the header
+    public Y4mFrameDumpSink(final File directory, final String name, final int sampleInterval, final long maxFileBytes, final int frameRate) {
+        this(directory, name, sampleInterval, maxFileBytes, frameRate, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "frame-dump-" + name);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }), true);
+    }
+
+    // Tests pass a manual executor to control when copies run
+    Y4mFrameDumpSink(final File directory, final String name, final int sampleInterval, final long maxFileBytes,
+                     final int frameRate, final Executor executor) {
+        this(directory, name, sampleInterval, maxFileBytes, frameRate, executor, false);
+    }
+
+    private Y4mFrameDumpSink(final File directory, final String name, final int sampleInterval, final long maxFileBytes,
+                             final int frameRate, final Executor executor, final boolean ownsExecutor) {
+        if (sampleInterval < 1) throw new IllegalArgumentException("sampleInterval must be positive");
+        if (frameRate < 1) throw new IllegalArgumentException("frameRate must be positive");
+
+        mDirectory = directory;
+        mName = name;
+        mSampleInterval = sampleInterval;
+        mMaxFileBytes = maxFileBytes;
+        mFrameRate = frameRate;
+        mExecutor = executor;
+        mOwnedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames.get();
+    }
+
+    public long getWrittenFrames() {
+        return mWrittenFrames.get();
+    }
+
+    public File getFile(final int index) {
+        return new File(mDirectory, mName + "-" + index + ".y4m");
+    }
+
+    @Override
+    public void onFrame(final VideoFrame frame) {
+        if (mClosed) return;
+        if (mSeenFrames.getAndIncrement() % mSampleInterval != 0) return;
+
+        if (!mBusy.compareAndSet(false, true)) {
+            mDroppedFrames.incrementAndGet();
+            return;
+        }
+
+        frame.retain();
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(frame);
+                    } finally {
+                        frame.release();
+                        mBusy.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            frame.release();
+            mBusy.set(false);
+        }
+    }
+
+    // Finishes the current file; frames already handed over are still written.
+    // Remove the sink from its track first.
+    public void close() {
+        if (mClosed) return;
+
+        mClosed = true;
+        try {
+            mExecutor.execute(mClose);
+        } catch (RejectedExecutionException e) {
+            AppLog.w(TAG, "Dump thread already stopped, {} left unfinished", mName);
+        }
+        if (mOwnedExecutor != null) mOwnedExecutor.shutdown();
+    }
+
+    private void write(final VideoFrame frame) {
+        final VideoFrame.I420Buffer buffer = frame.getBuffer().toI420();
+        try {
+            final int width = buffer.getWidth();
+            final int height = buffer.getHeight();
+            if (mFile != null && (mFile.mWidth != width || mFile.mHeight != height)) {
+                finishFile();
+            }
+            if (mFile == null) {
+                mFile = RingFile.open(mDirectory, getFile(mFileIndex), width, height, mFrameRate, mMaxFileBytes);
+                if (mFile == null) return;
+            }
+
+            final ByteBuffer slot = mFile.nextSlot();
+            slot.put(FRAME_HEADER);
+            putPlane(slot, buffer.getDataY(), buffer.getStrideY(), width, height);
+            putPlane(slot, buffer.getDataU(), buffer.getStrideU(), (width + 1) / 2, (height + 1) / 2);
+            putPlane(slot, buffer.getDataV(), buffer.getStrideV(), (width + 1) / 2, (height + 1) / 2);
+            mWrittenFrames.incrementAndGet();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private void finishFile() {
+        if (mFile == null) return;
+
+        try {
+            mFile.finish();
+            AppLog.d(TAG, "Wrote {} frames to {}", mFile.mFrames, mFile.mTarget);
+        } catch (IOException e) {
+            AppLog.e(TAG, "Could not finish " + mFile.mTarget, e);
+        }
+        mFile = null;
+        mFileIndex++;
+    }
+
+    // A single mapping is limited to Integer.MAX_VALUE bytes, header included
+    static int slotCount(final long maxFileBytes, final int headerSize, final int slotSize) {
+        final long fileBytes = Math.min(maxFileBytes, Integer.MAX_VALUE);
+        return (int) Math.max(0, (fileBytes - headerSize) / slotSize);
+    }
+
+    private static void putPlane(final ByteBuffer slot, final ByteBuffer plane, final int stride, final int width, final int height) {
+        final ByteBuffer rows = plane.duplicate();
+        for (int row = 0; row < height; row++) {
+            rows.limit(row * stride + width);
+            rows.position(row * stride);
+            slot.put(rows);
+        }
+    }
+
+    // A preallocated, mapped file of fixed-size frame slots written round robin
+    private static class RingFile {
+        final File mTarget;
+        final File mPart;
+        final int mWidth;
+        final int mHeight;
+        final byte[] mHeader;
+        final int mSlotSize;
+        final int mSlotCount;
+        final RandomAccessFile mRaf;
+        final MappedByteBuffer mMap;
+        long mFrames;
+
+        private RingFile(final File target, final File part, final int width, final int height, final byte[] header,
+                         final int slotSize, final int slotCount, final RandomAccessFile raf, final MappedByteBuffer map) {
+            mTarget = target;
+            mPart = part;
+            mWidth = width;
+            mHeight = height;
+            mHeader = header;
+            mSlotSize = slotSize;
+            mSlotCount = slotCount;
+            mRaf = raf;
+            mMap = map;
+        }
+
+        static RingFile open(final File directory, final File target, final int width, final int height,
+                             final int frameRate, final long maxFileBytes) {
+            final byte[] header = ("YUV4MPEG2 W" + width + " H" + height + " F" + frameRate + ":1 Ip A1:1 C420\n").getBytes(ASCII);
+            final int slotSize = FRAME_HEADER.length + width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+            final int slots = slotCount(maxFileBytes, header.length, slotSize);
+            if (slots < 1) {
+                AppLog.w(TAG, "{}x{} frames do not fit in {} bytes", width, height, maxFileBytes);
+                return null;
+            }
+
+            final File part = new File(directory, target.getName() + ".part");
+            RandomAccessFile raf = null;
+            try {
+                directory.mkdirs();
+                raf = new RandomAccessFile(part, "rw");
+                final long size = header.length + (long) slots * slotSize;
+                raf.setLength(size);
+                final MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                map.put(header);
+                return new RingFile(target, part, width, height, header, slotSize, slots, raf, map);
+            } catch (IOException e) {
+                AppLog.e(TAG, "Could not map " + part, e);
+                closeQuietly(raf);
+                part.delete();
+                return null;
+            }
+        }
+
+        ByteBuffer nextSlot() {
+            final int slot = (int) (mFrames % mSlotCount);
+            mFrames++;
+
+            final ByteBuffer view = mMap.duplicate();
+            view.position(mHeader.length + slot * mSlotSize);
+            view.limit(mHeader.length + (slot + 1) * mSlotSize);
+            return view.slice();
+        }
+
+        // Writes the target with the oldest frame first, then drops the ring file
+        void finish() throws IOException {
+            mMap.force();
+            final FileChannel ring = mRaf.getChannel();
+            try {
+                if (mFrames <= mSlotCount) {
+                    ring.truncate(mHeader.length + mFrames * mSlotSize);
+                    closeQuietly(mRaf);
+                    if (!mPart.renameTo(mTarget)) throw new IOException("could not rename " + mPart);
+                    return;
+                }
+
+                final int oldest = (int) (mFrames % mSlotCount);
+                final RandomAccessFile out = new RandomAccessFile(mTarget, "rw");
+                try {
+                    final FileChannel channel = out.getChannel();
+                    channel.truncate(0);
+                    channel.write(ByteBuffer.wrap(mHeader));
+                    transferFully(ring, mHeader.length + (long) oldest * mSlotSize, (long) (mSlotCount - oldest) * mSlotSize, channel);
+                    transferFully(ring, mHeader.length, (long) oldest * mSlotSize, channel);
+                } finally {
+                    closeQuietly(out);
+                }
+            } finally {
+                closeQuietly(mRaf);
+                if (mPart.exists()) mPart.delete();
+            }
+        }
+
+        private static void transferFully(final FileChannel from, final long position, final long count, final FileChannel to) throws IOException {
+            long done = 0;
+            while (done < count) {
+                final long transferred = from.transferTo(position + done, count - done, to);
+                if (transferred <= 0) throw new IOException("short transfer");
+                done += transferred;
+            }
+        }
+
+        private static void closeQuietly(final RandomAccessFile file) {
+            if (file == null) return;
+            try {
+                file.close();
+            } catch (IOException e) {
+                AppLog.w(TAG, "Could not close dump file", e);
+            }
+        }
+    }
+}
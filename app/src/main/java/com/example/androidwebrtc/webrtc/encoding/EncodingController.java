@@ -0,0 +1,126 @@
+package com.example.androidwebrtc.webrtc.encoding;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.webrtc.RtpParameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runtime control over the send encodings of one video sender. Layers are
+ * addressed by rid (null for a single unnamed layer); every change is validated,
+ * recorded and then pushed to the sender with a read-modify-write of its
+ * parameters, so a later apply() restores the whole requested state.
+ */
+public class EncodingController {
+    private static final String TAG = "EncodingController";
+
+    private final EncodingTarget mTarget;
+    private final SimulcastConfig.Layer[] mLayers;
+    private RtpParameters.DegradationPreference mDegradationPreference;
+
+    public EncodingController(final EncodingTarget target, final SimulcastConfig config) {
+        mTarget = target;
+        mLayers = config.getLayers().toArray(new SimulcastConfig.Layer[0]);
+        mDegradationPreference = config.getDegradationPreference();
+    }
+
+    public synchronized List<SimulcastConfig.Layer> getLayers() {
+        return new ArrayList<>(Arrays.asList(mLayers));
+    }
+
+    public synchronized SimulcastConfig.Layer getLayer(final String rid) {
+        return mLayers[indexOf(rid)];
+    }
+
+    public synchronized RtpParameters.DegradationPreference getDegradationPreference() {
+        return mDegradationPreference;
+    }
+
+    // Null removes the cap and leaves the layer to the bandwidth estimator
+    public synchronized boolean setMaxBitrate(final String rid, final Integer maxBitrateBps) {
+        final int index = indexOf(rid);
+        final SimulcastConfig.Layer layer = mLayers[index];
+        mLayers[index] = new SimulcastConfig.Layer(layer.rid, layer.scaleResolutionDownBy, maxBitrateBps, layer.maxFramerate, layer.active);
+        return apply();
+    }
+
+    public synchronized boolean setMaxFramerate(final String rid, final Integer maxFramerate) {
+        final int index = indexOf(rid);
+        final SimulcastConfig.Layer layer = mLayers[index];
+        mLayers[index] = new SimulcastConfig.Layer(layer.rid, layer.scaleResolutionDownBy, layer.maxBitrateBps, maxFramerate, layer.active);
+        return apply();
+    }
+
+    // An inactive layer stops encoding entirely, freeing its uplink and encoder time
+    public synchronized boolean setActive(final String rid, final boolean active) {
+        final int index = indexOf(rid);
+        final SimulcastConfig.Layer layer = mLayers[index];
+        mLayers[index] = new SimulcastConfig.Layer(layer.rid, layer.scaleResolutionDownBy, layer.maxBitrateBps, layer.maxFramerate, active);
+        return apply();
+    }
+
+    public synchronized boolean setDegradationPreference(final RtpParameters.DegradationPreference preference) {
+        if (preference == null) {
+            throw new IllegalArgumentException("preference must not be null");
+        }
+
+        mDegradationPreference = preference;
+        return apply();
+    }
+
+    // Pushes the recorded state to the sender; false when it is gone or rejects it
+    public synchronized boolean apply() {
+        final EncodingTarget.Parameters parameters = mTarget.read();
+        if (parameters == null) {
+            AppLog.w(TAG, "Sender has no parameters");
+            return false;
+        }
+
+        final List<RtpParameters.Encoding> encodings = parameters.getEncodings();
+        for (int i = 0; i < encodings.size(); i++) {
+            final RtpParameters.Encoding encoding = encodings.get(i);
+            final SimulcastConfig.Layer layer = match(encoding, i);
+            if (layer == null) {
+                AppLog.w(TAG, "No layer for encoding rid={}", encoding.rid);
+                continue;
+            }
+
+            encoding.maxBitrateBps = layer.maxBitrateBps;
+            encoding.maxFramerate = layer.maxFramerate;
+            encoding.active = layer.active;
+        }
+
+        if (mDegradationPreference != null) {
+            parameters.setDegradationPreference(mDegradationPreference);
+        }
+
+        final boolean applied = parameters.write();
+        if (!applied) {
+            AppLog.w(TAG, "Sender rejected encodings {}", Arrays.toString(mLayers));
+        }
+        return applied;
+    }
+
+    // Simulcast encodings carry their rid; a plain sender has one unnamed encoding
+    private SimulcastConfig.Layer match(final RtpParameters.Encoding encoding, final int index) {
+        if (encoding.rid != null) {
+            for (final SimulcastConfig.Layer layer : mLayers) {
+                if (encoding.rid.equals(layer.rid)) return layer;
+            }
+            return null;
+        }
+
+        return index < mLayers.length && mLayers[index].rid == null ? mLayers[index] : null;
+    }
+
+    private int indexOf(final String rid) {
+        for (int i = 0; i < mLayers.length; i++) {
+            if (rid == null ? mLayers[i].rid == null : rid.equals(mLayers[i].rid)) return i;
+        }
+
+        throw new IllegalArgumentException("Unknown rid " + rid);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.androidwebrtc.webrtc.encoding;
+
+import org.webrtc.RtpParameters;
+
+import java.util.List;
+
+/**
+ * The parts of an RtpSender the encoding controller touches, so it can be driven
+ * without a native sender in tests.
+ */
+public interface EncodingTarget {
+    // Snapshot of the current send parameters; null once the sender is gone
+    Parameters read();
+
+    interface Parameters {
+        // Edited in place and sent back by write()
+        List<RtpParameters.Encoding> getEncodings();
+
+        void setDegradationPreference(RtpParameters.DegradationPreference preference);
+
+        // False when the sender rejects the parameters, for example a stale read
+        boolean write();
+    }
+}
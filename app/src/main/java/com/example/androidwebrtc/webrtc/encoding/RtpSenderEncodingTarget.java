@@ -0,0 +1,38 @@
+package com.example.androidwebrtc.webrtc.encoding;
+
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+
+import java.util.List;
+
+public class RtpSenderEncodingTarget implements EncodingTarget {
+    private final RtpSender mSender;
+
+    public RtpSenderEncodingTarget(final RtpSender sender) {
+        mSender = sender;
+    }
+
+    @Override
+    public Parameters read() {
+        final RtpParameters parameters = mSender.getParameters();
+        if (parameters == null) return null;
+
+        // setParameters only accepts the object from the last getParameters, transaction id and all
+        return new Parameters() {
+            @Override
+            public List<RtpParameters.Encoding> getEncodings() {
+                return parameters.encodings;
+            }
+
+            @Override
+            public void setDegradationPreference(RtpParameters.DegradationPreference preference) {
+                parameters.degradationPreference = preference;
+            }
+
+            @Override
+            public boolean write() {
+                return mSender.setParameters(parameters);
+            }
+        };
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.androidwebrtc.webrtc.encoding;
+
+import org.webrtc.RtpParameters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Send encodings of the local video track, ordered from the lowest resolution
+ * layer up. A single layer without a rid means plain, non-simulcast sending.
+ */
+public class SimulcastConfig {
+    public static final int MAX_LAYERS = 3;
+    // The rid travels in a one-byte RTP header extension, which carries at most 16 bytes
+    public static final int MAX_RID_LENGTH = 16;
+
+    public static class Layer {
+        public final String rid;
+        public final double scaleResolutionDownBy;
+        // Null leaves the limit to the bandwidth estimator
+        public final Integer maxBitrateBps;
+        public final Integer maxFramerate;
+        public final boolean active;
+
+        public Layer(final String rid, final double scaleResolutionDownBy, final Integer maxBitrateBps, final Integer maxFramerate,
+                     final boolean active) {
+            if (rid != null) checkRid(rid);
+            if (!(scaleResolutionDownBy >= 1.0)) {
+                throw new IllegalArgumentException("scaleResolutionDownBy must be at least 1: " + scaleResolutionDownBy);
+            }
+            if (maxBitrateBps != null) checkPositive("maxBitrateBps", maxBitrateBps);
+            if (maxFramerate != null) checkPositive("maxFramerate", maxFramerate);
+
+            this.rid = rid;
+            this.scaleResolutionDownBy = scaleResolutionDownBy;
+            this.maxBitrateBps = maxBitrateBps;
+            this.maxFramerate = maxFramerate;
+            this.active = active;
+        }
+
+        @Override
+        public String toString() {
+            return (rid == null ? "-" : rid) + " /" + scaleResolutionDownBy + " " + maxBitrateBps + "bps " + maxFramerate + "fps"
+                    + (active ? "" : " inactive");
+        }
+    }
+
+    private final List<Layer> mLayers;
+    private final RtpParameters.DegradationPreference mDegradationPreference;
+
+    private SimulcastConfig(final List<Layer> layers, final RtpParameters.DegradationPreference degradationPreference) {
+        mLayers = Collections.unmodifiableList(layers);
+        mDegradationPreference = degradationPreference;
+    }
+
+    // One encoding at full resolution with no rid, as addTrack would create
+    public static SimulcastConfig singleLayer() {
+        return new Builder().add(null, 1.0, null, null).build();
+    }
+
+    // Quarter, half and full resolution; the top layer gets the whole budget
+    // and each step down roughly a third of the one above
+    public static SimulcastConfig threeLayers(final int maxBitrateBps) {
+        return new Builder()
+                .add("q", 4.0, maxBitrateBps / 10, null)
+                .add("h", 2.0, maxBitrateBps / 3, null)
+                .add("f", 1.0, maxBitrateBps, null)
+                .build();
+    }
+
+    public int size() {
+        return mLayers.size();
+    }
+
+    public Layer get(final int index) {
+        return mLayers.get(index);
+    }
+
+    public List<Layer> getLayers() {
+        return mLayers;
+    }
+
+    public boolean isSimulcast() {
+        return mLayers.size() > 1;
+    }
+
+    // Null keeps the libwebrtc default, which is BALANCED
+    public RtpParameters.DegradationPreference getDegradationPreference() {
+        return mDegradationPreference;
+    }
+
+    // Fresh instances each time; libwebrtc takes ownership of the list it is given
+    public List<RtpParameters.Encoding> toSendEncodings() {
+        final List<RtpParameters.Encoding> encodings = new ArrayList<>(mLayers.size());
+        for (final Layer layer : mLayers) {
+            final RtpParameters.Encoding encoding = new RtpParameters.Encoding(layer.rid, layer.active, layer.scaleResolutionDownBy);
+            encoding.maxBitrateBps = layer.maxBitrateBps;
+            encoding.maxFramerate = layer.maxFramerate;
+            encodings.add(encoding);
+        }
+        return encodings;
+    }
+
+    static void checkRid(final String rid) {
+        if (rid.isEmpty() || rid.length() > MAX_RID_LENGTH) {
+            throw new IllegalArgumentException("rid must be 1 to " + MAX_RID_LENGTH + " characters: " + rid);
+        }
+
+        // RFC 8851 rid-id syntax
+        for (int i = 0; i < rid.length(); i++) {
+            final char c = rid.charAt(i);
+            final boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+            if (!valid) {
+                throw new IllegalArgumentException("Invalid character in rid: " + rid);
+            }
+        }
+    }
+
+    static void checkPositive(final String name, final int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return mLayers.toString();
+    }
+
+    public static class Builder {
+        private final List<Layer> mLayers = new ArrayList<>();
+        private RtpParameters.DegradationPreference mDegradationPreference;
+
+        public Builder add(final String rid, final double scaleResolutionDownBy, final Integer maxBitrateBps, final Integer maxFramerate) {
+            return add(new Layer(rid, scaleResolutionDownBy, maxBitrateBps, maxFramerate, true));
+        }
+
+        public Builder add(final Layer layer) {
+            if (!mLayers.isEmpty() && mLayers.get(mLayers.size() - 1).scaleResolutionDownBy < layer.scaleResolutionDownBy) {
+                throw new IllegalArgumentException("Layers must be added from lowest to highest resolution");
+            }
+
+            mLayers.add(layer);
+            return this;
+        }
+
+        public Builder setDegradationPreference(final RtpParameters.DegradationPreference preference) {
+            mDegradationPreference = preference;
+            return this;
+        }
+
+        public SimulcastConfig build() {
+            if (mLayers.isEmpty()) {
+                throw new IllegalStateException("Config needs at least one layer");
+            }
+            if (mLayers.size() > MAX_LAYERS) {
+                throw new IllegalStateException("At most " + MAX_LAYERS + " layers, got " + mLayers.size());
+            }
+
+            if (mLayers.size() > 1) {
+                // The rids are how the receiver and the runtime API tell layers apart
+                final Set<String> rids = new HashSet<>();
+                for (final Layer layer : mLayers) {
+                    if (layer.rid == null) {
+                        throw new IllegalStateException("Every simulcast layer needs a rid");
+                    }
+                    if (!rids.add(layer.rid)) {
+                        throw new IllegalStateException("Duplicate rid " + layer.rid);
+                    }
+                }
+            }
+
+            return new SimulcastConfig(new ArrayList<>(mLayers), mDegradationPreference);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.androidwebrtc.webrtc.negotiation;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.sdp.SdpRewriter;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes offer/answer exchanges on one thread. Each SDP operation starts only
+ * after the previous one has completed, and remote candidates that arrive before
+ * a remote description is applied are held back and added in one pass once it is.
+ * Descriptions go through the {@link SdpRewriter} before they are applied, and
+ * local ones are reported as rewritten, which is what the remote side must see.
+ *
+ * <p>When both sides offer at once, the polite side rolls its own offer back and
+ * answers the remote one; the impolite side rejects the remote offer and keeps
+ * waiting for its answer.
+ *
+ * <p>PeerConnection proxies block on the native signaling thread, so nothing here
+ * takes a lock; all state is confined to the executor.
+ */
+public class NegotiationStateMachine {
+    private static final String TAG = "Negotiation";
+
+    static final long CLOSE_TIMEOUT_MS = 1000;
+
+    public enum State {
+        STABLE,
+        HAVE_LOCAL_OFFER,
+        HAVE_REMOTE_OFFER,
+        CLOSED
+    }
+
+    public interface Listener {
+        // Called before the description is applied, for tracing
+        void onLocalDescriptionCreated(SessionDescription description);
+        void onLocalOffer(SessionDescription offer);
+        void onLocalAnswer(SessionDescription answer);
+        void onNegotiationFailed(String reason);
+    }
+
+    private final SdpTarget mTarget;
+    private final Listener mListener;
+    private final SdpRewriter mRewriter;
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final ArrayDeque<Operation> mOperations = new ArrayDeque<>();
+    private final List<IceCandidate> mPendingCandidates = new ArrayList<>();
+
+    private volatile State mState = State.STABLE;
+    private volatile int mPendingCandidateCount;
+    private volatile boolean mPolite;
+    private Operation mCurrent;
+    private boolean mDispatching;
+    private boolean mRemoteDescriptionSet;
+
+    public NegotiationStateMachine(final SdpTarget target, final Listener listener) {
+        this(target, listener, new SdpRewriter());
+    }
+
+    public NegotiationStateMachine(final SdpTarget target, final Listener listener, final SdpRewriter rewriter) {
+        this(target, listener, rewriter, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "negotiation");
+            }
+        }), true);
+    }
+
+    // Tests pass a direct executor so a sequence replays synchronously
+    public NegotiationStateMachine(final SdpTarget target, final Listener listener, final Executor executor) {
+        this(target, listener, new SdpRewriter(), executor, false);
+    }
+
+    NegotiationStateMachine(final SdpTarget target, final Listener listener, final SdpRewriter rewriter, final Executor executor) {
+        this(target, listener, rewriter, executor, false);
+    }
+
+    private NegotiationStateMachine(final SdpTarget target, final Listener listener, final SdpRewriter rewriter,
+                                    final Executor executor, final boolean ownsExecutor) {
+        mTarget = target;
+        mListener = listener;
+        mRewriter = rewriter;
+        mExecutor = executor;
+        mOwnedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    public int getPendingCandidateCount() {
+        return mPendingCandidateCount;
+    }
+
+    public void setPolite(final boolean polite) {
+        mPolite = polite;
+    }
+
+    public void createOffer(final MediaConstraints constraints) {
+        enqueue(createOfferOperation("createOffer", constraints, false));
+    }
+
+    // Unlike createOffer this may replace a local offer that was never answered,
+    // which is the usual case while the link is down
+    public void restartIce(final MediaConstraints constraints) {
+        enqueue(createOfferOperation("restartIce", constraints, true));
+    }
+
+    private Operation createOfferOperation(final String name, final MediaConstraints constraints, final boolean replaceLocalOffer) {
+        return new Operation(name) {
+            private SessionDescription mOffer;
+
+            @Override
+            void start() {
+                if (mState != State.STABLE && !(replaceLocalOffer && mState == State.HAVE_LOCAL_OFFER)) {
+                    fail("cannot create an offer in state " + mState);
+                    return;
+                }
+                mTarget.createOffer(this, constraints);
+            }
+
+            @Override
+            void created(final SessionDescription description) {
+                mOffer = rewriteLocal(description);
+                mListener.onLocalDescriptionCreated(mOffer);
+                mTarget.setLocalDescription(this, mOffer);
+            }
+
+            @Override
+            void set() {
+                mState = State.HAVE_LOCAL_OFFER;
+                mListener.onLocalOffer(mOffer);
+                finish();
+            }
+        };
+    }
+
+    public void setRemoteOffer(final String sdp, final MediaConstraints answerConstraints) {
+        enqueue(new Operation("setRemoteOffer") {
+            private boolean mRollingBack;
+            private SessionDescription mAnswer;
+
+            @Override
+            void start() {
+                if (mState == State.HAVE_LOCAL_OFFER && mPolite) {
+                    AppLog.i(TAG, "Offers collided, rolling back the local offer");
+                    mRollingBack = true;
+                    mTarget.setLocalDescription(this, new SessionDescription(SessionDescription.Type.ROLLBACK, ""));
+                    return;
+                }
+                if (mState != State.STABLE) {
+                    fail("cannot apply a remote offer in state " + mState);
+                    return;
+                }
+                applyOffer();
+            }
+
+            private void applyOffer() {
+                mTarget.setRemoteDescription(this, new SessionDescription(SessionDescription.Type.OFFER, mRewriter.rewriteRemote(sdp)));
+            }
+
+            @Override
+            void set() {
+                if (mRollingBack) {
+                    mRollingBack = false;
+                    mState = State.STABLE;
+                    applyOffer();
+                    return;
+                }
+                if (mAnswer == null) {
+                    mState = State.HAVE_REMOTE_OFFER;
+                    onRemoteDescriptionSet();
+                    mTarget.createAnswer(this, answerConstraints);
+                    return;
+                }
+
+                mState = State.STABLE;
+                mListener.onLocalAnswer(mAnswer);
+                finish();
+            }
+
+            @Override
+            void created(final SessionDescription description) {
+                mAnswer = rewriteLocal(description);
+                mListener.onLocalDescriptionCreated(mAnswer);
+                mTarget.setLocalDescription(this, mAnswer);
+            }
+        });
+    }
+
+    public void setRemoteAnswer(final String sdp) {
+        enqueue(new Operation("setRemoteAnswer") {
+            @Override
+            void start() {
+                if (mState != State.HAVE_LOCAL_OFFER) {
+                    fail("cannot apply a remote answer in state " + mState);
+                    return;
+                }
+                mTarget.setRemoteDescription(this, new SessionDescription(SessionDescription.Type.ANSWER, mRewriter.rewriteRemote(sdp)));
+            }
+
+            @Override
+            void set() {
+                mState = State.STABLE;
+                onRemoteDescriptionSet();
+                finish();
+            }
+        });
+    }
+
+    public void addRemoteCandidate(final IceCandidate candidate) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mState == State.CLOSED) return;
+
+                if (mRemoteDescriptionSet) {
+                    mTarget.addIceCandidate(candidate);
+                } else {
+                    mPendingCandidates.add(candidate);
+                    mPendingCandidateCount = mPendingCandidates.size();
+                }
+            }
+        });
+    }
+
+    public void addRemoteCandidates(final List<IceCandidate> candidates) {
+        final List<IceCandidate> copy = new ArrayList<>(candidates);
+
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mState == State.CLOSED) return;
+
+                if (mRemoteDescriptionSet) {
+                    for (final IceCandidate candidate : copy) {
+                        mTarget.addIceCandidate(candidate);
+                    }
+                } else {
+                    mPendingCandidates.addAll(copy);
+                    mPendingCandidateCount = mPendingCandidates.size();
+                }
+            }
+        });
+    }
+
+    // Drops queued work and waits briefly for an in-flight step so the caller can
+    // close the PeerConnection afterwards
+    public void close() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                mState = State.CLOSED;
+                mOperations.clear();
+                mPendingCandidates.clear();
+                mPendingCandidateCount = 0;
+                mCurrent = null;
+            }
+        });
+
+        if (mOwnedExecutor == null) return;
+
+        mOwnedExecutor.shutdown();
+        try {
+            if (!mOwnedExecutor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                AppLog.w(TAG, "Negotiation thread still busy after close");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private SessionDescription rewriteLocal(final SessionDescription description) {
+        final String sdp = mRewriter.rewriteLocal(description.description);
+        return sdp == description.description ? description : new SessionDescription(description.type, sdp);
+    }
+
+    private void onRemoteDescriptionSet() {
+        mRemoteDescriptionSet = true;
+        if (mPendingCandidates.isEmpty()) return;
+
+        AppLog.d(TAG, "Adding {} buffered remote candidates", mPendingCandidates.size());
+        for (final IceCandidate candidate : mPendingCandidates) {
+            mTarget.addIceCandidate(candidate);
+        }
+        mPendingCandidates.clear();
+        mPendingCandidateCount = 0;
+    }
+
+    private void enqueue(final Operation operation) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (mState == State.CLOSED) return;
+
+                mOperations.add(operation);
+                dispatch();
+            }
+        });
+    }
+
+    // Re-entrant completions (a target that answers synchronously) return here
+    // instead of recursing
+    private void dispatch() {
+        if (mDispatching) return;
+
+        mDispatching = true;
+        try {
+            while (mCurrent == null && !mOperations.isEmpty()) {
+                mCurrent = mOperations.poll();
+                AppLog.d(TAG, "Starting {} in state {}", mCurrent.mName, mState);
+                mCurrent.start();
+            }
+        } finally {
+            mDispatching = false;
+        }
+    }
+
+    private void post(final Runnable runnable) {
+        try {
+            mExecutor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            AppLog.d(TAG, "Dropping negotiation event after close");
+        }
+    }
+
+    private abstract class Operation implements SdpObserver {
+        final String mName;
+
+        Operation(final String name) {
+            mName = name;
+        }
+
+        abstract void start();
+
+        abstract void set();
+
+        void created(final SessionDescription description) {
+            fail("unexpected description from " + mName);
+        }
+
+        final void finish() {
+            if (mCurrent != this) return;
+
+            mCurrent = null;
+            dispatch();
+        }
+
+        final void fail(final String reason) {
+            AppLog.e(TAG, "{} failed: {}", mName, reason);
+            mListener.onNegotiationFailed(reason);
+            finish();
+        }
+
+        @Override
+        public final void onCreateSuccess(final SessionDescription description) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCurrent == Operation.this) created(description);
+                }
+            });
+        }
+
+        @Override
+        public final void onSetSuccess() {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCurrent == Operation.this) set();
+                }
+            });
+        }
+
+        @Override
+        public final void onCreateFailure(final String error) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCurrent == Operation.this) fail(error);
+                }
+            });
+        }
+
+        @Override
+        public final void onSetFailure(final String error) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCurrent == Operation.this) fail(error);
+                }
+            });
+        }
+    }
+}
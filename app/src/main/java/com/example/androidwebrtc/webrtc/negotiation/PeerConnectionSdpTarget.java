@@ -0,0 +1,40 @@
+package com.example.androidwebrtc.webrtc.negotiation;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+public class PeerConnectionSdpTarget implements SdpTarget {
+    private final PeerConnection mPeerConnection;
+
+    public PeerConnectionSdpTarget(final PeerConnection peerConnection) {
+        mPeerConnection = peerConnection;
+    }
+
+    @Override
+    public void createOffer(final SdpObserver observer, final MediaConstraints constraints) {
+        mPeerConnection.createOffer(observer, constraints);
+    }
+
+    @Override
+    public void createAnswer(final SdpObserver observer, final MediaConstraints constraints) {
+        mPeerConnection.createAnswer(observer, constraints);
+    }
+
+    @Override
+    public void setLocalDescription(final SdpObserver observer, final SessionDescription description) {
+        mPeerConnection.setLocalDescription(observer, description);
+    }
+
+    @Override
+    public void setRemoteDescription(final SdpObserver observer, final SessionDescription description) {
+        mPeerConnection.setRemoteDescription(observer, description);
+    }
+
+    @Override
+    public boolean addIceCandidate(final IceCandidate candidate) {
+        return mPeerConnection.addIceCandidate(candidate);
+    }
+}
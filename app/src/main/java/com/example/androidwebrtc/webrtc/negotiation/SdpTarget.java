@@ -0,0 +1,18 @@
+package com.example.androidwebrtc.webrtc.negotiation;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+/**
+ * The PeerConnection operations driven by {@link NegotiationStateMachine}, so
+ * tests can replay signaling against a fake that completes on demand.
+ */
+public interface SdpTarget {
+    void createOffer(SdpObserver observer, MediaConstraints constraints);
+    void createAnswer(SdpObserver observer, MediaConstraints constraints);
+    void setLocalDescription(SdpObserver observer, SessionDescription description);
+    void setRemoteDescription(SdpObserver observer, SessionDescription description);
+    boolean addIceCandidate(IceCandidate candidate);
+}
@@ -0,0 +1,92 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Blurs the luma plane with a separable box filter, enough to obscure detail for
+ * a privacy mode. Chroma is left alone, it carries little detail. The blur runs in
+ * place on private buffers; a shared one, such as the capturer's, is first copied
+ * into a pooled buffer. Scratch rows are kept between frames and only grow when
+ * the resolution does.
+ */
+public class BoxBlurFilter implements FrameFilter {
+    private final int mRadius;
+    private byte[] mLine = new byte[0];
+
+    public BoxBlurFilter(final int radius) {
+        if (radius < 1) throw new IllegalArgumentException("radius must be positive");
+
+        mRadius = radius;
+    }
+
+    @Override
+    public String getName() {
+        return "blur";
+    }
+
+    @Override
+    public VideoFrame.I420Buffer apply(final VideoFrame.I420Buffer buffer, final FilterContext context) {
+        final int width = buffer.getWidth();
+        final int height = buffer.getHeight();
+
+        if (mLine.length < Math.max(width, height)) mLine = new byte[Math.max(width, height)];
+
+        final VideoFrame.I420Buffer output = context.isBufferPrivate() ? buffer : context.getPool().acquire(width, height);
+        final ByteBuffer src = buffer.getDataY();
+        final ByteBuffer dst = output.getDataY();
+        final int srcStride = buffer.getStrideY();
+        final int dstStride = output.getStrideY();
+
+        // The horizontal pass doubles as the copy, the vertical one then works in place
+        for (int y = 0; y < height; y++) {
+            blurLine(src, y * srcStride, dst, y * dstStride, 1, width);
+        }
+        for (int x = 0; x < width; x++) {
+            blurLine(dst, x, dst, x, dstStride, height);
+        }
+        if (output == buffer) return buffer;
+
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        I420Planes.copy(buffer.getDataU(), buffer.getStrideU(), 0, 0,
+                output.getDataU(), output.getStrideU(), chromaWidth, chromaHeight);
+        I420Planes.copy(buffer.getDataV(), buffer.getStrideV(), 0, 0,
+                output.getDataV(), output.getStrideV(), chromaWidth, chromaHeight);
+
+        buffer.release();
+        return output;
+    }
+
+    // Running-sum box blur over length samples, step apart, from src into dst.
+    // The samples are read into the scratch line first, so src and dst may be the same.
+    private void blurLine(final ByteBuffer src, final int srcOffset, final ByteBuffer dst, final int dstOffset,
+                          final int step, final int length) {
+        final byte[] line = mLine;
+        for (int i = 0; i < length; i++) {
+            line[i] = src.get(srcOffset + i * step);
+        }
+
+        int sum = 0;
+        int count = 0;
+        for (int i = 0; i < Math.min(mRadius, length); i++) {
+            sum += line[i] & 0xff;
+            count++;
+        }
+
+        for (int i = 0; i < length; i++) {
+            final int add = i + mRadius;
+            if (add < length) {
+                sum += line[add] & 0xff;
+                count++;
+            }
+            final int remove = i - mRadius - 1;
+            if (remove >= 0) {
+                sum -= line[remove] & 0xff;
+                count--;
+            }
+            dst.put(dstOffset + i * step, (byte) (sum / count));
+        }
+    }
+}
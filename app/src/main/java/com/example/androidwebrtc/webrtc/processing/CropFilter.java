@@ -0,0 +1,56 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+/**
+ * Centre-crops frames to a fixed aspect ratio, such as a square for a tile view.
+ * Offsets and sizes are kept even so the chroma planes line up.
+ */
+public class CropFilter implements FrameFilter {
+    private final int mAspectWidth;
+    private final int mAspectHeight;
+
+    public CropFilter(final int aspectWidth, final int aspectHeight) {
+        if (aspectWidth <= 0 || aspectHeight <= 0) {
+            throw new IllegalArgumentException("aspect ratio must be positive");
+        }
+
+        mAspectWidth = aspectWidth;
+        mAspectHeight = aspectHeight;
+    }
+
+    @Override
+    public String getName() {
+        return "crop";
+    }
+
+    @Override
+    public VideoFrame.I420Buffer apply(final VideoFrame.I420Buffer buffer, final FilterContext context) {
+        final int width = buffer.getWidth();
+        final int height = buffer.getHeight();
+
+        int cropWidth = width;
+        int cropHeight = height;
+        if ((long) width * mAspectHeight > (long) height * mAspectWidth) {
+            cropWidth = (int) ((long) height * mAspectWidth / mAspectHeight) & ~1;
+        } else {
+            cropHeight = (int) ((long) width * mAspectHeight / mAspectWidth) & ~1;
+        }
+        if (cropWidth == width && cropHeight == height) return buffer;
+
+        final int cropX = ((width - cropWidth) / 2) & ~1;
+        final int cropY = ((height - cropHeight) / 2) & ~1;
+        final JavaI420Buffer cropped = context.getPool().acquire(cropWidth, cropHeight);
+
+        I420Planes.copy(buffer.getDataY(), buffer.getStrideY(), cropX, cropY,
+                cropped.getDataY(), cropped.getStrideY(), cropWidth, cropHeight);
+        I420Planes.copy(buffer.getDataU(), buffer.getStrideU(), cropX / 2, cropY / 2,
+                cropped.getDataU(), cropped.getStrideU(), (cropWidth + 1) / 2, (cropHeight + 1) / 2);
+        I420Planes.copy(buffer.getDataV(), buffer.getStrideV(), cropX / 2, cropY / 2,
+                cropped.getDataV(), cropped.getStrideV(), (cropWidth + 1) / 2, (cropHeight + 1) / 2);
+
+        buffer.release();
+        return cropped;
+    }
+}
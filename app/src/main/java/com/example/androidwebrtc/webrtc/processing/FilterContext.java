@@ -0,0 +1,38 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+/**
+ * Per-frame state handed along the filters. Reused for every frame, filters must
+ * not keep a reference to it.
+ */
+public class FilterContext {
+    private final I420BufferPool mPool;
+    private int mRotation;
+    private boolean mBufferPrivate;
+
+    FilterContext(final I420BufferPool pool) {
+        mPool = pool;
+    }
+
+    public I420BufferPool getPool() {
+        return mPool;
+    }
+
+    // Clockwise rotation the receiver applies to display the buffer upright
+    public int getRotation() {
+        return mRotation;
+    }
+
+    public void setRotation(final int rotation) {
+        mRotation = rotation;
+    }
+
+    // True when nothing outside the pipeline holds the current buffer, so a filter
+    // may change it in place. The capturer's own I420 buffer is never private.
+    public boolean isBufferPrivate() {
+        return mBufferPrivate;
+    }
+
+    void setBufferPrivate(final boolean bufferPrivate) {
+        mBufferPrivate = bufferPrivate;
+    }
+}
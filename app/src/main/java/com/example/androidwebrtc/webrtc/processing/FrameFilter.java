@@ -0,0 +1,16 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.webrtc.VideoFrame;
+
+/**
+ * One stage of the frame pipeline. A filter either changes the buffer in place
+ * and returns it, which is only allowed while the context says the buffer is
+ * private, or fills a new buffer from the context's pool, releases the input and
+ * returns the new one. Filters run on the pipeline thread only.
+ */
+public interface FrameFilter {
+    // Used as the key of the stage's timing counters
+    String getName();
+
+    VideoFrame.I420Buffer apply(VideoFrame.I420Buffer buffer, FilterContext context);
+}
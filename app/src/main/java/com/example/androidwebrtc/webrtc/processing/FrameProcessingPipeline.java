@@ -0,0 +1,311 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoProcessor;
+import org.webrtc.VideoSink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs captured frames through an ordered list of filters between the capturer
+ * and the VideoSource. Filters can be swapped while capturing, the next frame
+ * picks up the new list. Without filters frames pass straight through on the
+ * capture thread.
+ *
+ * <p>With filters, frames are handed to one processing thread through a single
+ * slot: a frame still waiting when the next one arrives is dropped, so a slow
+ * filter costs frame rate instead of building up latency. Intermediate buffers
+ * come from an {@link I420BufferPool}.
+ */
+public class FrameProcessingPipeline implements VideoProcessor {
+    private static final String TAG = "FramePipeline";
+
+    // Timing key of the conversion from the capturer's buffer to I420
+    public static final String STAGE_TO_I420 = "toI420";
+
+    private final I420BufferPool mPool;
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final Clock mClock;
+    private final FilterContext mContext;
+    private final Object mLock = new Object();
+    private final Map<String, StageTiming> mTimings = new LinkedHashMap<>();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mProcessedFrames = new AtomicLong();
+
+    private volatile List<FrameFilter> mFilters = Collections.emptyList();
+    private volatile VideoSink mSink;
+    private VideoFrame mPending;
+    private boolean mDrainScheduled;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public FrameProcessingPipeline(final I420BufferPool pool) {
+        this(pool, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "frame-processing");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), Clock.SYSTEM, true);
+    }
+
+    // Tests pass a direct executor so frames are processed synchronously
+    FrameProcessingPipeline(final I420BufferPool pool, final Executor executor, final Clock clock) {
+        this(pool, executor, clock, false);
+    }
+
+    private FrameProcessingPipeline(final I420BufferPool pool, final Executor executor, final Clock clock, final boolean ownsExecutor) {
+        mPool = pool;
+        mExecutor = executor;
+        mOwnedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        mClock = clock;
+        mContext = new FilterContext(pool);
+    }
+
+    // Replaces the whole chain, applied from the next frame on
+    public synchronized void setFilters(final List<FrameFilter> filters) {
+        mFilters = Collections.unmodifiableList(new ArrayList<>(filters));
+    }
+
+    public List<FrameFilter> getFilters() {
+        return mFilters;
+    }
+
+    public synchronized void addFilter(final FrameFilter filter) {
+        final List<FrameFilter> filters = new ArrayList<>(mFilters);
+        filters.add(filter);
+        mFilters = Collections.unmodifiableList(filters);
+    }
+
+    public synchronized boolean removeFilter(final FrameFilter filter) {
+        final List<FrameFilter> filters = new ArrayList<>(mFilters);
+        final boolean removed = filters.remove(filter);
+        mFilters = Collections.unmodifiableList(filters);
+        return removed;
+    }
+
+    public I420BufferPool getPool() {
+        return mPool;
+    }
+
+    public long getDroppedFrames() {
+        return mDroppedFrames.get();
+    }
+
+    public long getProcessedFrames() {
+        return mProcessedFrames.get();
+    }
+
+    // Conversion first, then filters in the order they first ran
+    public List<StageTiming> getStageTimings() {
+        synchronized (mTimings) {
+            final List<StageTiming> timings = new ArrayList<>(mTimings.size());
+            for (final StageTiming timing : mTimings.values()) {
+                timings.add(timing.copy());
+            }
+            return timings;
+        }
+    }
+
+    public void resetStageTimings() {
+        synchronized (mTimings) {
+            mTimings.clear();
+        }
+    }
+
+    @Override
+    public void setSink(final VideoSink sink) {
+        mSink = sink;
+    }
+
+    @Override
+    public void onCapturerStarted(final boolean success) {
+        AppLog.d(TAG, "onCapturerStarted success={}", success);
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        final VideoFrame pending;
+        synchronized (mLock) {
+            pending = mPending;
+            mPending = null;
+        }
+        if (pending != null) pending.release();
+        AppLog.d(TAG, "onCapturerStopped");
+    }
+
+    @Override
+    public void onFrameCaptured(final VideoFrame frame) {
+        final VideoSink sink = mSink;
+        if (sink == null) return;
+
+        if (mFilters.isEmpty()) {
+            sink.onFrame(frame);
+            return;
+        }
+
+        frame.retain();
+        final VideoFrame dropped;
+        boolean schedule = false;
+        synchronized (mLock) {
+            dropped = mPending;
+            mPending = frame;
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                schedule = true;
+            }
+        }
+
+        if (dropped != null) {
+            dropped.release();
+            mDroppedFrames.incrementAndGet();
+        }
+        if (schedule) {
+            try {
+                mExecutor.execute(mDrain);
+            } catch (RejectedExecutionException e) {
+                synchronized (mLock) {
+                    mDrainScheduled = false;
+                    mPending = null;
+                }
+                frame.release();
+            }
+        }
+    }
+
+    public void shutdown() {
+        onCapturerStopped();
+        if (mOwnedExecutor != null) mOwnedExecutor.shutdown();
+    }
+
+    private void drain() {
+        while (true) {
+            final VideoFrame frame;
+            synchronized (mLock) {
+                frame = mPending;
+                mPending = null;
+                if (frame == null) {
+                    mDrainScheduled = false;
+                    return;
+                }
+            }
+
+            try {
+                process(frame);
+            } catch (RuntimeException e) {
+                AppLog.e(TAG, "Dropping frame after a filter failed", e);
+            } finally {
+                frame.release();
+            }
+        }
+    }
+
+    private void process(final VideoFrame frame) {
+        final List<FrameFilter> filters = mFilters;
+        final VideoSink sink = mSink;
+        if (sink == null) return;
+
+        long startNs = mClock.nanoTime();
+        VideoFrame.I420Buffer buffer = frame.getBuffer().toI420();
+        long endNs = mClock.nanoTime();
+        record(STAGE_TO_I420, endNs - startNs);
+
+        mContext.setRotation(frame.getRotation());
+        // toI420() hands back the capturer's buffer itself when it already was I420
+        mContext.setBufferPrivate(buffer != frame.getBuffer());
+        try {
+            for (final FrameFilter filter : filters) {
+                startNs = endNs;
+                final VideoFrame.I420Buffer input = buffer;
+                buffer = filter.apply(input, mContext);
+                if (buffer != input) mContext.setBufferPrivate(true);
+                endNs = mClock.nanoTime();
+                record(filter.getName(), endNs - startNs);
+            }
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+
+        final VideoFrame processed = new VideoFrame(buffer, mContext.getRotation(), frame.getTimestampNs());
+        sink.onFrame(processed);
+        processed.release();
+        mProcessedFrames.incrementAndGet();
+    }
+
+    private void record(final String stage, final long elapsedNs) {
+        synchronized (mTimings) {
+            StageTiming timing = mTimings.get(stage);
+            if (timing == null) {
+                timing = new StageTiming(stage);
+                mTimings.put(stage, timing);
+            }
+            timing.add(elapsedNs);
+        }
+    }
+
+    /**
+     * Time spent in one stage since the timings were last reset.
+     */
+    public static class StageTiming {
+        public final String name;
+        private long mFrames;
+        private long mTotalNs;
+        private long mMaxNs;
+
+        StageTiming(final String name) {
+            this.name = name;
+        }
+
+        void add(final long elapsedNs) {
+            mFrames++;
+            mTotalNs += elapsedNs;
+            mMaxNs = Math.max(mMaxNs, elapsedNs);
+        }
+
+        StageTiming copy() {
+            final StageTiming copy = new StageTiming(name);
+            copy.mFrames = mFrames;
+            copy.mTotalNs = mTotalNs;
+            copy.mMaxNs = mMaxNs;
+            return copy;
+        }
+
+        public long getFrames() {
+            return mFrames;
+        }
+
+        public double getMeanMs() {
+            return mFrames == 0 ? 0 : mTotalNs / 1_000_000.0 / mFrames;
+        }
+
+        public double getMaxMs() {
+            return mMaxNs / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{frames=" + mFrames + " mean=" + getMeanMs() + "ms max=" + getMaxMs() + "ms}";
+        }
+    }
+}
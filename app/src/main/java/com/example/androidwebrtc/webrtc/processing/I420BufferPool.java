@@ -0,0 +1,107 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.webrtc.JavaI420Buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reusable I420 frames keyed by resolution. Each frame is one direct buffer
+ * holding the three planes; releasing the JavaI420Buffer returns it here, on
+ * whatever thread drops the last reference. Only the most recently used
+ * resolutions are kept so a format change does not pin the old buffers.
+ */
+public class I420BufferPool {
+    public static final int DEFAULT_MAX_PER_RESOLUTION = 4;
+    public static final int DEFAULT_MAX_RESOLUTIONS = 2;
+
+    private final int mMaxPerResolution;
+    private final int mMaxResolutions;
+    // Access order, so the first entry is the least recently used resolution
+    private final LinkedHashMap<Long, ArrayDeque<ByteBuffer>> mFree = new LinkedHashMap<>(4, 0.75f, true);
+    private long mAllocations;
+
+    public I420BufferPool() {
+        this(DEFAULT_MAX_PER_RESOLUTION, DEFAULT_MAX_RESOLUTIONS);
+    }
+
+    public I420BufferPool(final int maxPerResolution, final int maxResolutions) {
+        mMaxPerResolution = maxPerResolution;
+        mMaxResolutions = maxResolutions;
+    }
+
+    // Returns a buffer with undefined contents and a reference count of one
+    public JavaI420Buffer acquire(final int width, final int height) {
+        final int chromaWidth = (width + 1) / 2;
+        final int chromaHeight = (height + 1) / 2;
+        final int sizeY = width * height;
+        final int sizeChroma = chromaWidth * chromaHeight;
+        final long key = key(width, height);
+
+        ByteBuffer data;
+        synchronized (this) {
+            ArrayDeque<ByteBuffer> free = mFree.get(key);
+            if (free == null) {
+                free = new ArrayDeque<>();
+                mFree.put(key, free);
+                trimLocked();
+            }
+            data = free.poll();
+            if (data == null) mAllocations++;
+        }
+        if (data == null) data = ByteBuffer.allocateDirect(sizeY + 2 * sizeChroma);
+
+        final ByteBuffer frameData = data;
+        return JavaI420Buffer.wrap(width, height,
+                slice(frameData, 0, sizeY), width,
+                slice(frameData, sizeY, sizeChroma), chromaWidth,
+                slice(frameData, sizeY + sizeChroma, sizeChroma), chromaWidth,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        recycle(key, frameData);
+                    }
+                });
+    }
+
+    // Number of frames allocated because none of the right size was free
+    public synchronized long getAllocationCount() {
+        return mAllocations;
+    }
+
+    public synchronized void clear() {
+        mFree.clear();
+    }
+
+    private synchronized void recycle(final long key, final ByteBuffer data) {
+        // get() would count as a use and keep a stale resolution alive
+        for (final Map.Entry<Long, ArrayDeque<ByteBuffer>> entry : mFree.entrySet()) {
+            if (entry.getKey() != key) continue;
+
+            if (entry.getValue().size() < mMaxPerResolution) entry.getValue().add(data);
+            return;
+        }
+    }
+
+    private void trimLocked() {
+        final Iterator<Long> keys = mFree.keySet().iterator();
+        while (mFree.size() > mMaxResolutions && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static ByteBuffer slice(final ByteBuffer data, final int offset, final int length) {
+        final ByteBuffer plane = data.duplicate();
+        plane.position(offset);
+        plane.limit(offset + length);
+        return plane.slice();
+    }
+
+    private static long key(final int width, final int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+}
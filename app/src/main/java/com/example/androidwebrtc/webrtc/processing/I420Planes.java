@@ -0,0 +1,41 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import java.nio.ByteBuffer;
+
+// Plane copies used by the filters. Absolute get/put on direct buffers keeps them
+// allocation free; rows are copied in bulk where the layout allows it.
+final class I420Planes {
+    private I420Planes() {}
+
+    static void copy(final ByteBuffer src, final int srcStride, final int srcX, final int srcY,
+                     final ByteBuffer dst, final int dstStride, final int width, final int height) {
+        final ByteBuffer from = src.duplicate();
+        final ByteBuffer to = dst.duplicate();
+
+        for (int row = 0; row < height; row++) {
+            final int srcOffset = (srcY + row) * srcStride + srcX;
+            from.limit(srcOffset + width);
+            from.position(srcOffset);
+            to.position(row * dstStride);
+            to.put(from);
+        }
+    }
+
+    // Rotates a width x height plane clockwise by rotation degrees into dst
+    static void rotate(final ByteBuffer src, final int srcStride, final int width, final int height,
+                       final ByteBuffer dst, final int dstStride, final int rotation) {
+        for (int y = 0; y < height; y++) {
+            final int srcRow = y * srcStride;
+            for (int x = 0; x < width; x++) {
+                final int dstIndex;
+                switch (rotation) {
+                    case 90: dstIndex = x * dstStride + (height - 1 - y); break;
+                    case 180: dstIndex = (height - 1 - y) * dstStride + (width - 1 - x); break;
+                    case 270: dstIndex = (width - 1 - x) * dstStride + y; break;
+                    default: dstIndex = y * dstStride + x; break;
+                }
+                dst.put(dstIndex, src.get(srcRow + x));
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+/**
+ * Rotates frames upright so later filters and the encoder see display
+ * orientation and the frame goes out with rotation 0.
+ */
+public class RotationFilter implements FrameFilter {
+    @Override
+    public String getName() {
+        return "rotate";
+    }
+
+    @Override
+    public VideoFrame.I420Buffer apply(final VideoFrame.I420Buffer buffer, final FilterContext context) {
+        final int rotation = context.getRotation();
+        if (rotation % 360 == 0) return buffer;
+
+        final boolean swap = rotation % 180 != 0;
+        final int width = buffer.getWidth();
+        final int height = buffer.getHeight();
+        final JavaI420Buffer rotated = context.getPool().acquire(swap ? height : width, swap ? width : height);
+
+        I420Planes.rotate(buffer.getDataY(), buffer.getStrideY(), width, height,
+                rotated.getDataY(), rotated.getStrideY(), rotation);
+        I420Planes.rotate(buffer.getDataU(), buffer.getStrideU(), (width + 1) / 2, (height + 1) / 2,
+                rotated.getDataU(), rotated.getStrideU(), rotation);
+        I420Planes.rotate(buffer.getDataV(), buffer.getStrideV(), (width + 1) / 2, (height + 1) / 2,
+                rotated.getDataV(), rotated.getStrideV(), rotation);
+
+        buffer.release();
+        context.setRotation(0);
+        return rotated;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.androidwebrtc.webrtc.recovery;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.webrtc.PeerConnection;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings a connected peer back after the network path breaks, for example when
+ * the phone moves from Wi-Fi to cellular. DISCONNECTED often heals by itself, so
+ * a restart is only sent once it has lasted for a grace period; FAILED restarts
+ * straight away. Restarts that get no answer are retried a few times before
+ * giving up.
+ *
+ * <p>Only the side that sent the first offer restarts on time. The other side
+ * falls back to restarting itself only once all of the initiator's attempts would
+ * have timed out, half a timeout later so it never lines up with one of them; an
+ * offer that still collides is settled by the negotiation's polite side.
+ * Recovery time runs from the first loss to the next CONNECTED and is reported
+ * separately from call setup.
+ */
+public class IceRecoveryController {
+    private static final String TAG = "IceRecovery";
+
+    public static final long DEFAULT_DISCONNECT_GRACE_MS = 2000;
+    public static final long DEFAULT_RESTART_TIMEOUT_MS = 5000;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_CHECK_INTERVAL_MS = 250;
+
+    public interface Restarter {
+        // Sends an offer with fresh ICE credentials through the normal signaling path
+        void restartIce();
+    }
+
+    public interface Listener {
+        void onIceRestart(int attempt);
+        void onRecovered(long recoveryMs, int attempts);
+        void onRecoveryFailed(int attempts);
+    }
+
+    private final Restarter mRestarter;
+    private final Listener mListener;
+    private final Clock mClock;
+    private final ScheduledExecutorService mExecutor;
+    private final long mGraceNs;
+    private final long mRestartTimeoutNs;
+    private final long mFallbackDelayNs;
+    private final int mMaxAttempts;
+    private final long mCheckIntervalMs;
+
+    private boolean mInitiator;
+    private boolean mConnectedOnce;
+    private boolean mRecovering;
+    private boolean mFailed;
+    private boolean mClosed;
+    private long mLostNs;
+    private long mLastRestartNs;
+    private int mAttempts;
+    private int mRecoveryCount;
+    private long mLastRecoveryMs = -1;
+    private ScheduledFuture<?> mCheckTask;
+
+    public IceRecoveryController(final Restarter restarter, final Listener listener, final ScheduledExecutorService executor) {
+        this(restarter, listener, Clock.SYSTEM, executor, DEFAULT_DISCONNECT_GRACE_MS, DEFAULT_RESTART_TIMEOUT_MS,
+                DEFAULT_MAX_ATTEMPTS, DEFAULT_CHECK_INTERVAL_MS);
+    }
+
+    IceRecoveryController(final Restarter restarter, final Listener listener, final Clock clock, final ScheduledExecutorService executor,
+                          final long graceMs, final long restartTimeoutMs, final int maxAttempts, final long checkIntervalMs) {
+        mRestarter = restarter;
+        mListener = listener;
+        mClock = clock;
+        mExecutor = executor;
+        mGraceNs = TimeUnit.MILLISECONDS.toNanos(graceMs);
+        mRestartTimeoutNs = TimeUnit.MILLISECONDS.toNanos(restartTimeoutMs);
+        mMaxAttempts = maxAttempts;
+        mFallbackDelayNs = mGraceNs + maxAttempts * mRestartTimeoutNs + mRestartTimeoutNs / 2;
+        mCheckIntervalMs = checkIntervalMs;
+    }
+
+    // The side that sent the first offer drives restarts
+    public synchronized void setInitiator(final boolean initiator) {
+        mInitiator = initiator;
+    }
+
+    public synchronized boolean isRecovering() {
+        return mRecovering;
+    }
+
+    public synchronized int getRecoveryCount() {
+        return mRecoveryCount;
+    }
+
+    // -1 until the first recovery
+    public synchronized long getLastRecoveryMs() {
+        return mLastRecoveryMs;
+    }
+
+    public void onIceConnectionChange(final PeerConnection.IceConnectionState state) {
+        boolean restart = false;
+        long recoveredMs = -1;
+        int attempts = 0;
+
+        synchronized (this) {
+            if (mClosed) return;
+
+            switch (state) {
+                case CONNECTED:
+                case COMPLETED:
+                    mConnectedOnce = true;
+                    mFailed = false;
+                    if (!mRecovering) break;
+
+                    recoveredMs = TimeUnit.NANOSECONDS.toMillis(mClock.nanoTime() - mLostNs);
+                    attempts = mAttempts;
+                    mLastRecoveryMs = recoveredMs;
+                    mRecoveryCount++;
+                    stopRecoveringLocked();
+                    break;
+                case DISCONNECTED:
+                case FAILED:
+                    // A failure during initial setup is not a lost connection
+                    if (!mConnectedOnce || mFailed) break;
+
+                    if (!mRecovering) {
+                        mRecovering = true;
+                        mLostNs = mClock.nanoTime();
+                        AppLog.d(TAG, "Connection lost state={}", state);
+                        scheduleChecksLocked();
+                    }
+                    restart = state == PeerConnection.IceConnectionState.FAILED && mInitiator && mAttempts == 0;
+                    if (restart) {
+                        mAttempts++;
+                        mLastRestartNs = mClock.nanoTime();
+                    }
+                    break;
+                case CLOSED:
+                    closeLocked();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (recoveredMs >= 0) {
+            AppLog.d(TAG, "{\"recovery_ms\":{},\"attempts\":{}}", recoveredMs, attempts);
+            mListener.onRecovered(recoveredMs, attempts);
+        }
+        if (restart) restart(1);
+    }
+
+    // Runs on the executor while recovering; tests call it directly
+    void check() {
+        int restartAttempt = 0;
+        int failedAttempts = -1;
+
+        synchronized (this) {
+            if (!mRecovering) return;
+
+            final long nowNs = mClock.nanoTime();
+            if (mAttempts == 0) {
+                final long delayNs = mInitiator ? mGraceNs : mFallbackDelayNs;
+                if (nowNs - mLostNs >= delayNs) restartAttempt = ++mAttempts;
+            } else if (nowNs - mLastRestartNs >= mRestartTimeoutNs) {
+                if (mAttempts >= mMaxAttempts) {
+                    failedAttempts = mAttempts;
+                    mFailed = true;
+                    stopRecoveringLocked();
+                } else {
+                    restartAttempt = ++mAttempts;
+                }
+            }
+            if (restartAttempt > 0) mLastRestartNs = nowNs;
+        }
+
+        if (failedAttempts >= 0) {
+            AppLog.w(TAG, "Giving up after {} ICE restarts", failedAttempts);
+            mListener.onRecoveryFailed(failedAttempts);
+        }
+        if (restartAttempt > 0) restart(restartAttempt);
+    }
+
+    public synchronized void close() {
+        closeLocked();
+    }
+
+    private void restart(final int attempt) {
+        AppLog.d(TAG, "ICE restart attempt {}", attempt);
+        mListener.onIceRestart(attempt);
+        mRestarter.restartIce();
+    }
+
+    private void scheduleChecksLocked() {
+        if (mCheckTask != null) return;
+
+        mCheckTask = mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, mCheckIntervalMs, mCheckIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopRecoveringLocked() {
+        mRecovering = false;
+        mAttempts = 0;
+        if (mCheckTask != null) {
+            mCheckTask.cancel(false);
+            mCheckTask = null;
+        }
+    }
+
+    private void closeLocked() {
+        mClosed = true;
+        stopRecoveringLocked();
+    }
+}
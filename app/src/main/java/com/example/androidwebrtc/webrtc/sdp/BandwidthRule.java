@@ -0,0 +1,26 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+/**
+ * Caps a media type's bandwidth with b=AS (kbps, Chrome) and b=TIAS (bps,
+ * Firefox and the spec). In a local description this asks the remote side to
+ * send at most that much; in a remote one it caps what we send.
+ */
+public class BandwidthRule implements SdpRule {
+    private final String mMediaType;
+    private final int mMaxKbps;
+
+    public BandwidthRule(final String mediaType, final int maxKbps) {
+        if (maxKbps <= 0) throw new IllegalArgumentException("maxKbps must be positive");
+
+        mMediaType = mediaType;
+        mMaxKbps = maxKbps;
+    }
+
+    @Override
+    public void apply(final Sdp sdp) {
+        for (final MediaSection section : sdp.getMediaSections(mMediaType)) {
+            section.setBandwidth("AS", mMaxKbps);
+            section.setBandwidth("TIAS", mMaxKbps * 1000L);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * One m= section: the media line's fields and the lines that follow it, in
+ * order. Payload types are kept as the strings of the m= line.
+ */
+public class MediaSection {
+    private static final String RTPMAP = "a=rtpmap:";
+    private static final String FMTP = "a=fmtp:";
+    private static final String RTCP_FB = "a=rtcp-fb:";
+    private static final String EXTMAP = "a=extmap:";
+    private static final String MID = "a=mid:";
+
+    private final String mType;
+    private final String mPort;
+    private final String mProto;
+    private final List<String> mFormats;
+    final List<String> mLines = new ArrayList<>(32);
+
+    private MediaSection(final String type, final String port, final String proto, final List<String> formats) {
+        mType = type;
+        mPort = port;
+        mProto = proto;
+        mFormats = formats;
+    }
+
+    // m=<media> <port> <proto> <fmt> ...
+    static MediaSection parse(final String line) throws SdpParseException {
+        final List<String> tokens = new ArrayList<>(24);
+        int start = 2;
+        while (start < line.length()) {
+            int end = line.indexOf(' ', start);
+            if (end < 0) end = line.length();
+            if (end > start) tokens.add(line.substring(start, end));
+            start = end + 1;
+        }
+
+        if (tokens.size() < 4) throw new SdpParseException("Malformed media line: " + line);
+        return new MediaSection(tokens.get(0), tokens.get(1), tokens.get(2), new ArrayList<>(tokens.subList(3, tokens.size())));
+    }
+
+    public String getType() {
+        return mType;
+    }
+
+    public String getProto() {
+        return mProto;
+    }
+
+    public String getMid() {
+        return findValue(MID);
+    }
+
+    public List<String> getFormats() {
+        return mFormats;
+    }
+
+    // The lines after the m= line; rules may edit them directly
+    public List<String> getLines() {
+        return mLines;
+    }
+
+    // Codec name from a=rtpmap, such as "VP8" or "rtx", or null for static types without one
+    public String getCodecName(final String payloadType) {
+        final String prefix = RTPMAP + payloadType + " ";
+        for (final String line : mLines) {
+            if (line.startsWith(prefix)) {
+                final int slash = line.indexOf('/', prefix.length());
+                return line.substring(prefix.length(), slash < 0 ? line.length() : slash);
+            }
+        }
+        return null;
+    }
+
+    public List<String> findPayloadTypes(final String codecName) {
+        final List<String> payloadTypes = new ArrayList<>(4);
+        for (final String payloadType : mFormats) {
+            if (codecName.equalsIgnoreCase(getCodecName(payloadType))) payloadTypes.add(payloadType);
+        }
+        return payloadTypes;
+    }
+
+    // Payload types whose fmtp names payloadType as their apt, i.e. its rtx streams
+    public List<String> findRetransmissionTypes(final String payloadType) {
+        final List<String> rtx = new ArrayList<>(1);
+        final String apt = "apt=" + payloadType;
+        for (final String line : mLines) {
+            if (!line.startsWith(FMTP)) continue;
+
+            final int space = line.indexOf(' ');
+            if (space < 0) continue;
+            final String params = line.substring(space + 1);
+            if (params.equals(apt) || params.startsWith(apt + ";") || params.contains(";" + apt + ";") || params.endsWith(";" + apt)) {
+                rtx.add(line.substring(FMTP.length(), space));
+            }
+        }
+        return rtx;
+    }
+
+    // Drops the payload type from the m= line with its rtpmap, fmtp and rtcp-fb lines
+    public boolean removePayloadType(final String payloadType) {
+        if (!mFormats.remove(payloadType)) return false;
+
+        final String rtpmap = RTPMAP + payloadType + " ";
+        final String fmtp = FMTP + payloadType + " ";
+        final String rtcpFb = RTCP_FB + payloadType + " ";
+        final Iterator<String> lines = mLines.iterator();
+        while (lines.hasNext()) {
+            final String line = lines.next();
+            if (line.startsWith(rtpmap) || line.startsWith(fmtp) || line.startsWith(rtcpFb)) lines.remove();
+        }
+        return true;
+    }
+
+    // Moves the given payload types to the front of the m= line, in the given order
+    public void moveToFront(final List<String> payloadTypes) {
+        int position = 0;
+        for (final String payloadType : payloadTypes) {
+            if (mFormats.remove(payloadType)) mFormats.add(position++, payloadType);
+        }
+    }
+
+    // Replaces any b=<type> line. RFC 4566 puts b= after i= and c=, before k= and a=.
+    public void setBandwidth(final String type, final long value) {
+        removeBandwidth(type);
+
+        int position = 0;
+        for (int i = 0; i < mLines.size(); i++) {
+            final char kind = mLines.get(i).charAt(0);
+            if (kind == 'i' || kind == 'c' || kind == 'b') position = i + 1;
+            if (kind == 'k' || kind == 'a') break;
+        }
+        mLines.add(position, "b=" + type + ":" + value);
+    }
+
+    public String getBandwidth(final String type) {
+        return findValue("b=" + type + ":");
+    }
+
+    public boolean removeBandwidth(final String type) {
+        return removeLines("b=" + type + ":");
+    }
+
+    // Removes a=extmap lines for the extension URI, whatever id and direction they carry
+    public boolean removeExtension(final String uri) {
+        boolean removed = false;
+        final Iterator<String> lines = mLines.iterator();
+        while (lines.hasNext()) {
+            final String line = lines.next();
+            if (!line.startsWith(EXTMAP)) continue;
+
+            final int space = line.indexOf(' ');
+            if (space < 0) continue;
+            final int end = line.indexOf(' ', space + 1);
+            if (uri.equals(end < 0 ? line.substring(space + 1) : line.substring(space + 1, end))) {
+                lines.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    void write(final StringBuilder out) {
+        out.append("m=").append(mType).append(' ').append(mPort).append(' ').append(mProto);
+        for (final String format : mFormats) {
+            out.append(' ').append(format);
+        }
+        out.append(Sdp.CRLF);
+        for (final String line : mLines) {
+            out.append(line).append(Sdp.CRLF);
+        }
+    }
+
+    int estimateLength() {
+        int length = 64 + mFormats.size() * 4;
+        for (final String line : mLines) {
+            length += line.length() + 2;
+        }
+        return length;
+    }
+
+    private String findValue(final String prefix) {
+        for (final String line : mLines) {
+            if (line.startsWith(prefix)) return line.substring(prefix.length());
+        }
+        return null;
+    }
+
+    private boolean removeLines(final String prefix) {
+        boolean removed = false;
+        final Iterator<String> lines = mLines.iterator();
+        while (lines.hasNext()) {
+            if (lines.next().startsWith(prefix)) {
+                lines.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+}
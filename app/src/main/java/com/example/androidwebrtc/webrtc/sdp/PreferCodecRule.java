@@ -0,0 +1,33 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Moves the listed codecs, each followed by its rtx payload types, to the front
+ * of the m= line so they are negotiated first.
+ */
+public class PreferCodecRule implements SdpRule {
+    private final String mMediaType;
+    private final List<String> mCodecNames;
+
+    public PreferCodecRule(final String mediaType, final String... codecNames) {
+        mMediaType = mediaType;
+        mCodecNames = Arrays.asList(codecNames);
+    }
+
+    @Override
+    public void apply(final Sdp sdp) {
+        for (final MediaSection section : sdp.getMediaSections(mMediaType)) {
+            final List<String> preferred = new ArrayList<>();
+            for (final String codecName : mCodecNames) {
+                for (final String payloadType : section.findPayloadTypes(codecName)) {
+                    preferred.add(payloadType);
+                    preferred.addAll(section.findRetransmissionTypes(payloadType));
+                }
+            }
+            section.moveToFront(preferred);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drops codecs the app never uses, with their rtx payload types. A section whose
+ * every codec would go is left alone rather than made invalid.
+ */
+public class RemoveCodecsRule implements SdpRule {
+    private static final String TAG = "RemoveCodecsRule";
+
+    private final String mMediaType;
+    private final List<String> mCodecNames;
+
+    public RemoveCodecsRule(final String mediaType, final String... codecNames) {
+        mMediaType = mediaType;
+        mCodecNames = Arrays.asList(codecNames);
+    }
+
+    @Override
+    public void apply(final Sdp sdp) {
+        for (final MediaSection section : sdp.getMediaSections(mMediaType)) {
+            final List<String> removed = new ArrayList<>();
+            for (final String codecName : mCodecNames) {
+                for (final String payloadType : section.findPayloadTypes(codecName)) {
+                    removed.add(payloadType);
+                    removed.addAll(section.findRetransmissionTypes(payloadType));
+                }
+            }
+
+            if (removed.containsAll(section.getFormats())) {
+                AppLog.w(TAG, "Keeping {} codecs, nothing else is offered", mMediaType);
+                continue;
+            }
+            for (final String payloadType : removed) {
+                section.removePayloadType(payloadType);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes RTP header extensions by URI from every section. Without the extmap
+ * line the extension is not negotiated and its bytes leave every packet.
+ */
+public class RemoveExtensionsRule implements SdpRule {
+    private final List<String> mUris;
+
+    public RemoveExtensionsRule(final String... uris) {
+        mUris = Arrays.asList(uris);
+    }
+
+    @Override
+    public void apply(final Sdp sdp) {
+        for (final MediaSection section : sdp.getMediaSections()) {
+            for (final String uri : mUris) {
+                section.removeExtension(uri);
+            }
+        }
+    }
+}
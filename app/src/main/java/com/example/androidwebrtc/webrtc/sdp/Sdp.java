@@ -0,0 +1,107 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A session description as its session-level lines and media sections. Lines the
+ * rules don't touch are kept verbatim, so writing an unmodified description gives
+ * back the input with CRLF line endings.
+ *
+ * <p>Parsing splits lines with indexOf and only tokenizes m= lines; attributes
+ * are looked at when a rule asks for them.
+ */
+public class Sdp {
+    static final String CRLF = "\r\n";
+
+    private final List<String> mSessionLines;
+    private final List<MediaSection> mMediaSections;
+
+    private Sdp(final List<String> sessionLines, final List<MediaSection> mediaSections) {
+        mSessionLines = sessionLines;
+        mMediaSections = mediaSections;
+    }
+
+    // Accepts CRLF or bare LF line endings and ignores blank lines
+    public static Sdp parse(final String text) throws SdpParseException {
+        final List<String> sessionLines = new ArrayList<>(16);
+        final List<MediaSection> mediaSections = new ArrayList<>(4);
+        MediaSection current = null;
+
+        final int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) end = length;
+            final int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+
+            if (lineEnd > start) {
+                if (lineEnd - start < 2 || text.charAt(start + 1) != '=') {
+                    throw new SdpParseException("Malformed line: " + text.substring(start, lineEnd));
+                }
+
+                final String line = text.substring(start, lineEnd);
+                if (line.charAt(0) == 'm') {
+                    current = MediaSection.parse(line);
+                    mediaSections.add(current);
+                } else if (current != null) {
+                    current.mLines.add(line);
+                } else {
+                    if (sessionLines.isEmpty() && !line.startsWith("v=")) {
+                        throw new SdpParseException("Description must start with v=");
+                    }
+                    sessionLines.add(line);
+                }
+            }
+            start = end + 1;
+        }
+
+        if (sessionLines.isEmpty()) throw new SdpParseException("Empty description");
+        return new Sdp(sessionLines, mediaSections);
+    }
+
+    public List<String> getSessionLines() {
+        return mSessionLines;
+    }
+
+    public List<MediaSection> getMediaSections() {
+        return Collections.unmodifiableList(mMediaSections);
+    }
+
+    // Sections of one media type ("audio", "video", "application")
+    public List<MediaSection> getMediaSections(final String type) {
+        final List<MediaSection> sections = new ArrayList<>(mMediaSections.size());
+        for (final MediaSection section : mMediaSections) {
+            if (section.getType().equals(type)) sections.add(section);
+        }
+        return sections;
+    }
+
+    public String write() {
+        final StringBuilder out = new StringBuilder(estimateLength());
+        for (final String line : mSessionLines) {
+            out.append(line).append(CRLF);
+        }
+        for (final MediaSection section : mMediaSections) {
+            section.write(out);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return write();
+    }
+
+    private int estimateLength() {
+        int length = 0;
+        for (final String line : mSessionLines) {
+            length += line.length() + 2;
+        }
+        for (final MediaSection section : mMediaSections) {
+            length += section.estimateLength();
+        }
+        return length;
+    }
+}
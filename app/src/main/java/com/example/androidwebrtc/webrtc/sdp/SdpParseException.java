@@ -0,0 +1,7 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+public class SdpParseException extends Exception {
+    public SdpParseException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Rules applied to local descriptions before setLocalDescription and to remote
+ * ones before setRemoteDescription. With no rules for a direction the SDP is
+ * returned as is, without parsing. A description that fails to parse, or a rule
+ * that throws, leaves the SDP unchanged so negotiation goes on without the
+ * rewrite.
+ */
+public class SdpRewriter {
+    private static final String TAG = "SdpRewriter";
+
+    private final List<SdpRule> mLocalRules = new CopyOnWriteArrayList<>();
+    private final List<SdpRule> mRemoteRules = new CopyOnWriteArrayList<>();
+
+    public SdpRewriter addLocalRule(final SdpRule rule) {
+        mLocalRules.add(rule);
+        return this;
+    }
+
+    public SdpRewriter addRemoteRule(final SdpRule rule) {
+        mRemoteRules.add(rule);
+        return this;
+    }
+
+    // Applies the rule in both directions
+    public SdpRewriter addRule(final SdpRule rule) {
+        mLocalRules.add(rule);
+        mRemoteRules.add(rule);
+        return this;
+    }
+
+    public String rewriteLocal(final String sdp) {
+        return rewrite(sdp, mLocalRules, "local");
+    }
+
+    public String rewriteRemote(final String sdp) {
+        return rewrite(sdp, mRemoteRules, "remote");
+    }
+
+    private static String rewrite(final String sdp, final List<SdpRule> rules, final String direction) {
+        if (rules.isEmpty()) return sdp;
+
+        try {
+            final Sdp parsed = Sdp.parse(sdp);
+            for (final SdpRule rule : rules) {
+                rule.apply(parsed);
+            }
+
+            final String rewritten = parsed.write();
+            AppLog.d(TAG, "Rewrote {} description, {} -> {} bytes", direction, sdp.length(), rewritten.length());
+            return rewritten;
+        } catch (SdpParseException | RuntimeException e) {
+            AppLog.e(TAG, "Sending " + direction + " description unchanged", e);
+            return sdp;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+/**
+ * One rewrite step of an {@link SdpRewriter}. Rules edit the parsed description
+ * in place and must leave it valid: a section keeps at least one payload type.
+ */
+public interface SdpRule {
+    void apply(Sdp sdp);
+}
@@ -0,0 +1,62 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size history of one metric. Adding a value and computing aggregates do
+ * not allocate; percentiles are computed on a preallocated scratch copy.
+ */
+final class MetricRingBuffer {
+    private final double[] mValues;
+    private final double[] mScratch;
+    private int mNext;
+    private int mSize;
+
+    MetricRingBuffer(final int capacity) {
+        mValues = new double[capacity];
+        mScratch = new double[capacity];
+    }
+
+    void add(final double value) {
+        mValues[mNext] = value;
+        mNext = (mNext + 1) % mValues.length;
+        if (mSize < mValues.length) mSize++;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    double latest() {
+        if (mSize == 0) return Double.NaN;
+
+        return mValues[(mNext - 1 + mValues.length) % mValues.length];
+    }
+
+    double mean() {
+        if (mSize == 0) return Double.NaN;
+
+        double sum = 0;
+        for (int i = 0; i < mSize; i++) {
+            sum += mValues[i];
+        }
+
+        return sum / mSize;
+    }
+
+    // Nearest-rank percentile, p in [0, 100]
+    double percentile(final double p) {
+        if (mSize == 0) return Double.NaN;
+
+        System.arraycopy(mValues, 0, mScratch, 0, mSize);
+        Arrays.sort(mScratch, 0, mSize);
+
+        final int rank = (int) Math.ceil(p / 100.0 * mSize);
+        return mScratch[Math.max(0, Math.min(mSize - 1, rank - 1))];
+    }
+
+    void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.StatsListener;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples PeerConnection.getStats on a fixed interval and flattens the fields
+ * listed in {@link StatsMetric} into fixed-size ring buffers. Recording a report
+ * does not allocate once the collector is constructed.
+ */
+public class StatsCollector {
+    private static final String TAG = "StatsCollector";
+
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+    public static final int DEFAULT_HISTORY_SIZE = 60;
+
+    private static final StatsMetric[] METRICS = StatsMetric.values();
+
+    private final long mIntervalMs;
+    private final MetricRingBuffer[] mHistory = new MetricRingBuffer[METRICS.length];
+    private final double[] mCurrent = new double[METRICS.length];
+    private final double[] mLastCumulative = new double[METRICS.length];
+    private final StatsSnapshot mSnapshot = new StatsSnapshot();
+    private final RTCStatsCollectorCallback mCallback = new RTCStatsCollectorCallback() {
+        @Override
+        public void onStatsDelivered(RTCStatsReport report) {
+            record(report);
+        }
+    };
+
+    private double mLastTimestampUs = Double.NaN;
+    private long mSamples;
+    private volatile StatsListener mListener;
+    private ScheduledExecutorService mExecutor;
+
+    public StatsCollector() {
+        this(DEFAULT_INTERVAL_MS, DEFAULT_HISTORY_SIZE);
+    }
+
+    public StatsCollector(final long intervalMs, final int historySize) {
+        mIntervalMs = intervalMs;
+        for (int i = 0; i < METRICS.length; i++) {
+            mHistory[i] = new MetricRingBuffer(historySize);
+        }
+        Arrays.fill(mLastCumulative, Double.NaN);
+    }
+
+    public void setListener(final StatsListener listener) {
+        mListener = listener;
+    }
+
+    public synchronized void start(final PeerConnection peerConnection) {
+        if (mExecutor != null) return;
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "stats");
+            }
+        });
+        mExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                peerConnection.getStats(mCallback);
+            }
+        }, mIntervalMs, mIntervalMs, TimeUnit.MILLISECONDS);
+        AppLog.d(TAG, "Sampling every {}ms", mIntervalMs);
+    }
+
+    public synchronized void stop() {
+        if (mExecutor == null) return;
+
+        mExecutor.shutdownNow();
+        mExecutor = null;
+    }
+
+    public synchronized void reset() {
+        for (final MetricRingBuffer history : mHistory) {
+            history.clear();
+        }
+        Arrays.fill(mLastCumulative, Double.NaN);
+        mLastTimestampUs = Double.NaN;
+        mSamples = 0;
+    }
+
+    // Fills the given snapshot with the current aggregates
+    public synchronized StatsSnapshot getSnapshot(final StatsSnapshot snapshot) {
+        fillSnapshot(snapshot);
+        return snapshot;
+    }
+
+    public void record(final RTCStatsReport report) {
+        final StatsListener listener = mListener;
+
+        synchronized (this) {
+            recordLocked(report);
+            if (listener == null) return;
+
+            fillSnapshot(mSnapshot);
+        }
+
+        listener.onStats(mSnapshot);
+    }
+
+    private void recordLocked(final RTCStatsReport report) {
+        Arrays.fill(mCurrent, Double.NaN);
+
+        for (final RTCStats stats : report.getStatsMap().values()) {
+            final String type = stats.getType();
+            final Map<String, Object> members = stats.getMembers();
+
+            // Only the nominated pair describes the transport in use
+            if ("candidate-pair".equals(type) && !Boolean.TRUE.equals(members.get("nominated"))) continue;
+
+            for (int i = 0; i < METRICS.length; i++) {
+                final StatsMetric metric = METRICS[i];
+                if (!metric.statsType.equals(type)) continue;
+                if (metric.kind != null && !metric.kind.equals(members.get("kind"))) continue;
+
+                final Object value = members.get(metric.member);
+                if (!(value instanceof Number)) continue;
+
+                // Counters of several streams of the same kind, such as simulcast
+                // layers, add up; gauges like fps or jitter keep the highest stream
+                final double scaled = ((Number) value).doubleValue() * metric.scale;
+                if (Double.isNaN(mCurrent[i])) {
+                    mCurrent[i] = scaled;
+                } else {
+                    mCurrent[i] = metric.cumulative ? mCurrent[i] + scaled : Math.max(mCurrent[i], scaled);
+                }
+            }
+        }
+
+        final double timestampUs = report.getTimestampUs();
+        final double elapsedSec = (timestampUs - mLastTimestampUs) / 1_000_000.0;
+
+        for (int i = 0; i < METRICS.length; i++) {
+            final double value = mCurrent[i];
+            if (Double.isNaN(value)) continue;
+
+            if (METRICS[i].cumulative) {
+                final double last = mLastCumulative[i];
+                mLastCumulative[i] = value;
+                if (Double.isNaN(last) || !(elapsedSec > 0) || value < last) continue;
+
+                mHistory[i].add((value - last) / elapsedSec);
+            } else {
+                mHistory[i].add(value);
+            }
+        }
+
+        mLastTimestampUs = timestampUs;
+        mSamples++;
+    }
+
+    private void fillSnapshot(final StatsSnapshot snapshot) {
+        for (int i = 0; i < METRICS.length; i++) {
+            final MetricRingBuffer history = mHistory[i];
+            snapshot.mLatest[i] = history.latest();
+            snapshot.mMean[i] = history.mean();
+            snapshot.mP50[i] = history.percentile(50);
+            snapshot.mP95[i] = history.percentile(95);
+            snapshot.mSampleCount[i] = history.size();
+        }
+        snapshot.mSamples = mSamples;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+/**
+ * RTCStatsReport fields the collector keeps history for. Cumulative counters are
+ * summed over matching streams and stored as per-second rates between consecutive
+ * samples; gauges take the highest matching stream.
+ */
+public enum StatsMetric {
+    RTT_MS("candidate-pair", "currentRoundTripTime", null, false, 1000.0),
+    AVAILABLE_OUTGOING_BITRATE_BPS("candidate-pair", "availableOutgoingBitrate", null, false, 1.0),
+    OUTBOUND_VIDEO_BITRATE_BPS("outbound-rtp", "bytesSent", "video", true, 8.0),
+    INBOUND_VIDEO_BITRATE_BPS("inbound-rtp", "bytesReceived", "video", true, 8.0),
+    OUTBOUND_VIDEO_FPS("outbound-rtp", "framesPerSecond", "video", false, 1.0),
+    INBOUND_VIDEO_FPS("inbound-rtp", "framesPerSecond", "video", false, 1.0),
+    VIDEO_JITTER_MS("inbound-rtp", "jitter", "video", false, 1000.0),
+    AUDIO_JITTER_MS("inbound-rtp", "jitter", "audio", false, 1000.0),
+    VIDEO_PACKETS_LOST_PER_SECOND("inbound-rtp", "packetsLost", "video", true, 1.0),
+    AUDIO_PACKETS_LOST_PER_SECOND("inbound-rtp", "packetsLost", "audio", true, 1.0);
+
+    final String statsType;
+    final String member;
+    // Matched against the "kind" member, null matches any kind
+    final String kind;
+    final boolean cumulative;
+    final double scale;
+
+    StatsMetric(final String statsType, final String member, final String kind, final boolean cumulative, final double scale) {
+        this.statsType = statsType;
+        this.member = member;
+        this.kind = kind;
+        this.cumulative = cumulative;
+        this.scale = scale;
+    }
+}
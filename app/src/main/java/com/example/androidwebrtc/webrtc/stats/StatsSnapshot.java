@@ -0,0 +1,63 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+/**
+ * Rolling aggregates for every {@link StatsMetric}. Values are NaN until the
+ * metric has been seen. Instances handed to a listener are reused, copy what you keep.
+ */
+public class StatsSnapshot {
+    private static final int METRIC_COUNT = StatsMetric.values().length;
+
+    final double[] mLatest = new double[METRIC_COUNT];
+    final double[] mMean = new double[METRIC_COUNT];
+    final double[] mP50 = new double[METRIC_COUNT];
+    final double[] mP95 = new double[METRIC_COUNT];
+    final int[] mSampleCount = new int[METRIC_COUNT];
+    long mSamples;
+
+    public double getLatest(final StatsMetric metric) {
+        return mLatest[metric.ordinal()];
+    }
+
+    public double getMean(final StatsMetric metric) {
+        return mMean[metric.ordinal()];
+    }
+
+    public double getP50(final StatsMetric metric) {
+        return mP50[metric.ordinal()];
+    }
+
+    public double getP95(final StatsMetric metric) {
+        return mP95[metric.ordinal()];
+    }
+
+    public int getSampleCount(final StatsMetric metric) {
+        return mSampleCount[metric.ordinal()];
+    }
+
+    // Number of reports recorded since the collector was started
+    public long getSamples() {
+        return mSamples;
+    }
+
+    public void copyFrom(final StatsSnapshot other) {
+        System.arraycopy(other.mLatest, 0, mLatest, 0, METRIC_COUNT);
+        System.arraycopy(other.mMean, 0, mMean, 0, METRIC_COUNT);
+        System.arraycopy(other.mP50, 0, mP50, 0, METRIC_COUNT);
+        System.arraycopy(other.mP95, 0, mP95, 0, METRIC_COUNT);
+        System.arraycopy(other.mSampleCount, 0, mSampleCount, 0, METRIC_COUNT);
+        mSamples = other.mSamples;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("StatsSnapshot{samples=").append(mSamples);
+        for (final StatsMetric metric : StatsMetric.values()) {
+            final int i = metric.ordinal();
+            builder.append(", ").append(metric.name())
+                    .append("=[latest=").append(mLatest[i])
+                    .append(" p50=").append(mP50[i])
+                    .append(" p95=").append(mP95[i]).append(']');
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.androidwebrtc.webrtc.trace;
+
+/**
+ * Milestones of call setup, in the order they normally happen. Offsets are taken
+ * from {@link CallSetupTracer#begin}: the call button for the caller, the incoming
+ * offer for the callee.
+ */
+public enum CallPhase {
+    // Offer on the caller, answer on the callee
+    LOCAL_SDP_CREATED("local_sdp_created"),
+    LOCAL_SDP_SET("local_sdp_set"),
+    // Answer on the caller, offer on the callee
+    REMOTE_SDP_RECEIVED("remote_sdp_received"),
+    FIRST_LOCAL_CANDIDATE("first_local_candidate"),
+    ICE_CONNECTED("ice_connected"),
+    DTLS_CONNECTED("dtls_connected"),
+    FIRST_FRAME_RENDERED("first_frame_rendered");
+
+    // Stable name used in exported records
+    public final String key;
+
+    CallPhase(final String key) {
+        this.key = key;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.androidwebrtc.webrtc.trace;
+
+import com.example.androidwebrtc.log.AppLog;
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Timestamps call setup milestones against a monotonic clock and keeps the last
+ * few finished calls for percentile summaries. Marks are cheap and can come from
+ * any thread; a mark with no call in progress is ignored.
+ *
+ * <p>Each finished call is logged as one JSON line under the {@code CallSetup} tag
+ * so field builds can collect timelines from logcat; {@link #exportJson()} returns
+ * the retained calls together with per-phase percentiles.
+ */
+public class CallSetupTracer {
+    private static final String TAG = "CallSetup";
+
+    public static final int DEFAULT_HISTORY_SIZE = 50;
+
+    private static final CallPhase[] PHASES = CallPhase.values();
+
+    public enum Role {
+        CALLER("caller"),
+        CALLEE("callee");
+
+        public final String key;
+
+        Role(final String key) {
+            this.key = key;
+        }
+    }
+
+    private final Clock mClock;
+    private final int mHistorySize;
+    private final ArrayDeque<CallTimeline> mHistory = new ArrayDeque<>();
+
+    private CallTimeline mCurrent;
+    private long mStartNs;
+    private long mNextCallId;
+
+    public CallSetupTracer() {
+        this(Clock.SYSTEM, DEFAULT_HISTORY_SIZE);
+    }
+
+    public CallSetupTracer(final Clock clock, final int historySize) {
+        mClock = clock;
+        mHistorySize = historySize;
+    }
+
+    // Starts a new timeline, finishing any call still in progress
+    public synchronized void begin(final Role role) {
+        finishLocked();
+        mCurrent = new CallTimeline(mNextCallId++, role);
+        mStartNs = mClock.nanoTime();
+    }
+
+    public void mark(final CallPhase phase) {
+        final long nowNs = mClock.nanoTime();
+
+        synchronized (this) {
+            if (mCurrent == null) return;
+
+            if (mCurrent.mark(phase, nowNs - mStartNs)) {
+                AppLog.d(TAG, "{} +{}ms", phase.key, CallTimeline.round(mCurrent.getOffsetMs(phase)));
+            }
+        }
+    }
+
+    // Ends the current call, whether or not every phase was reached
+    public synchronized CallTimeline finish() {
+        return finishLocked();
+    }
+
+    public synchronized int getCallCount() {
+        return mHistory.size();
+    }
+
+    // Nearest-rank percentile of a phase over the retained calls that reached it,
+    // in milliseconds; NaN when none did
+    public synchronized double getPercentileMs(final CallPhase phase, final double p) {
+        final double[] values = new double[mHistory.size()];
+        int count = 0;
+
+        for (final CallTimeline timeline : mHistory) {
+            if (timeline.has(phase)) values[count++] = timeline.getOffsetMs(phase);
+        }
+
+        if (count == 0) return Double.NaN;
+
+        Arrays.sort(values, 0, count);
+        final int rank = (int) Math.ceil(p / 100.0 * count);
+        return values[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    public synchronized JSONObject exportJson() throws JSONException {
+        final JSONArray calls = new JSONArray();
+        for (final CallTimeline timeline : mHistory) {
+            calls.put(timeline.toJson());
+        }
+
+        final JSONObject summary = new JSONObject();
+        for (final CallPhase phase : PHASES) {
+            final double p50 = getPercentileMs(phase, 50);
+            if (Double.isNaN(p50)) continue;
+
+            final JSONObject percentiles = new JSONObject();
+            percentiles.put("p50", CallTimeline.round(p50));
+            percentiles.put("p90", CallTimeline.round(getPercentileMs(phase, 90)));
+            percentiles.put("p99", CallTimeline.round(getPercentileMs(phase, 99)));
+            summary.put(phase.key + "_ms", percentiles);
+        }
+
+        final JSONObject json = new JSONObject();
+        json.put("calls", calls);
+        json.put("summary", summary);
+        return json;
+    }
+
+    private CallTimeline finishLocked() {
+        final CallTimeline timeline = mCurrent;
+        if (timeline == null) return null;
+
+        mCurrent = null;
+        mHistory.addLast(timeline);
+        while (mHistory.size() > mHistorySize) {
+            mHistory.removeFirst();
+        }
+
+        try {
+            AppLog.i(TAG, "{}", timeline.toJson());
+        } catch (JSONException e) {
+            AppLog.e(TAG, "Failed to export call timeline", e);
+        }
+        return timeline;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.androidwebrtc.webrtc.trace;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase offsets of one call, in nanoseconds from the start of setup. Phases the
+ * call never reached stay unset.
+ */
+public class CallTimeline {
+    private static final long UNSET = -1;
+    private static final CallPhase[] PHASES = CallPhase.values();
+
+    public final long callId;
+    public final CallSetupTracer.Role role;
+
+    private final long[] mOffsetsNs = new long[PHASES.length];
+
+    CallTimeline(final long callId, final CallSetupTracer.Role role) {
+        this.callId = callId;
+        this.role = role;
+        Arrays.fill(mOffsetsNs, UNSET);
+    }
+
+    // Keeps the first time a phase is reached, later repeats are ignored
+    boolean mark(final CallPhase phase, final long offsetNs) {
+        if (mOffsetsNs[phase.ordinal()] != UNSET) return false;
+
+        mOffsetsNs[phase.ordinal()] = offsetNs;
+        return true;
+    }
+
+    public boolean has(final CallPhase phase) {
+        return mOffsetsNs[phase.ordinal()] != UNSET;
+    }
+
+    public long getOffsetNs(final CallPhase phase) {
+        return mOffsetsNs[phase.ordinal()];
+    }
+
+    public double getOffsetMs(final CallPhase phase) {
+        final long offsetNs = mOffsetsNs[phase.ordinal()];
+        return offsetNs == UNSET ? Double.NaN : offsetNs / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    // One flat JSON object per call, e.g.
+    // {"call":3,"role":"caller","local_sdp_created_ms":12.4,...}
+    public JSONObject toJson() throws JSONException {
+        final JSONObject json = new JSONObject();
+        json.put("call", callId);
+        json.put("role", role.key);
+
+        for (final CallPhase phase : PHASES) {
+            if (has(phase)) json.put(phase.key + "_ms", round(getOffsetMs(phase)));
+        }
+
+        return json;
+    }
+
+    static double round(final double ms) {
+        return Math.round(ms * 10) / 10.0;
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.androidwebrtc.webrtc.transport;
+
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ICE servers and the transport side of RTCConfiguration: how media is bundled,
+ * which candidates are gathered and how long ICE waits before calling a path
+ * dead. Policies left unset keep the libwebrtc default.
+ */
+public class TransportProfile {
+    public static final String DEFAULT_STUN_URL = "stun:stun.l.google.com:19302";
+
+    public static class IceServerSpec {
+        public final List<String> urls;
+        // Null for STUN
+        public final String username;
+        public final String password;
+
+        public IceServerSpec(final List<String> urls, final String username, final String password) {
+            if (urls == null || urls.isEmpty()) {
+                throw new IllegalArgumentException("An ICE server needs at least one url");
+            }
+            boolean turn = false;
+            for (final String url : urls) {
+                if (url.startsWith("turn:") || url.startsWith("turns:")) {
+                    turn = true;
+                } else if (!url.startsWith("stun:") && !url.startsWith("stuns:")) {
+                    throw new IllegalArgumentException("Not a STUN or TURN url: " + url);
+                }
+            }
+            if (turn && (username == null || password == null)) {
+                throw new IllegalArgumentException("TURN servers need a username and password: " + urls);
+            }
+
+            this.urls = Collections.unmodifiableList(new ArrayList<>(urls));
+            this.username = username;
+            this.password = password;
+        }
+
+        public boolean isTurn() {
+            for (final String url : urls) {
+                if (url.startsWith("turn")) return true;
+            }
+            return false;
+        }
+
+        public PeerConnection.IceServer toIceServer() {
+            final PeerConnection.IceServer.Builder builder = PeerConnection.IceServer.builder(urls);
+            if (username != null) builder.setUsername(username).setPassword(password);
+            return builder.createIceServer();
+        }
+
+        @Override
+        public String toString() {
+            return urls.toString();
+        }
+    }
+
+    // What every call used before profiles existed: one STUN server, candidates
+    // pre-gathered for an audio and a video transport, and continual gathering so
+    // a Wi-Fi to cellular switch can recover through trickled candidates
+    public static final TransportProfile STANDARD = new Builder("standard")
+            .addStunServer(DEFAULT_STUN_URL)
+            .setIceCandidatePoolSize(2)
+            .setContinualGatheringPolicy(PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY)
+            .build();
+
+    // One transport for every m-line with RTCP on the RTP port and no TCP host
+    // candidates: a single pre-gathered set is enough and ICE has a fraction of
+    // the pairs to check. Every current browser and libwebrtc accepts it.
+    public static final TransportProfile MAX_BUNDLE = new Builder("max-bundle", STANDARD)
+            .setBundlePolicy(PeerConnection.BundlePolicy.MAXBUNDLE)
+            .setRtcpMuxPolicy(PeerConnection.RtcpMuxPolicy.REQUIRE)
+            .setTcpCandidatePolicy(PeerConnection.TcpCandidatePolicy.DISABLED)
+            .setIceCandidatePoolSize(1)
+            .build();
+
+    // Max-bundle that rides out the short stalls of a cellular link instead of
+    // reporting DISCONNECTED and triggering an ICE restart.
+    public static final TransportProfile CELLULAR_FRIENDLY = new Builder("cellular-friendly", MAX_BUNDLE)
+            .setIceConnectionReceivingTimeoutMs(5000)
+            .build();
+
+    private final String mName;
+    private final List<IceServerSpec> mIceServers;
+    private final PeerConnection.IceTransportsType mIceTransportsType;
+    private final PeerConnection.BundlePolicy mBundlePolicy;
+    private final PeerConnection.RtcpMuxPolicy mRtcpMuxPolicy;
+    private final PeerConnection.TcpCandidatePolicy mTcpCandidatePolicy;
+    private final PeerConnection.CandidateNetworkPolicy mCandidateNetworkPolicy;
+    private final PeerConnection.ContinualGatheringPolicy mContinualGatheringPolicy;
+    private final int mIceCandidatePoolSize;
+    private final Integer mIceConnectionReceivingTimeoutMs;
+
+    private TransportProfile(final Builder builder) {
+        mName = builder.mName;
+        mIceServers = Collections.unmodifiableList(new ArrayList<>(builder.mIceServers));
+        mIceTransportsType = builder.mIceTransportsType;
+        mBundlePolicy = builder.mBundlePolicy;
+        mRtcpMuxPolicy = builder.mRtcpMuxPolicy;
+        mTcpCandidatePolicy = builder.mTcpCandidatePolicy;
+        mCandidateNetworkPolicy = builder.mCandidateNetworkPolicy;
+        mContinualGatheringPolicy = builder.mContinualGatheringPolicy;
+        mIceCandidatePoolSize = builder.mIceCandidatePoolSize;
+        mIceConnectionReceivingTimeoutMs = builder.mIceConnectionReceivingTimeoutMs;
+    }
+
+    // Only relay candidates, so neither side learns the other's addresses and
+    // nothing is checked that a symmetric NAT or firewall would block anyway
+    public static TransportProfile relayOnly(final List<IceServerSpec> turnServers) {
+        final Builder builder = new Builder("relay-only", MAX_BUNDLE)
+                .clearIceServers()
+                .setIceTransportsType(PeerConnection.IceTransportsType.RELAY);
+        for (final IceServerSpec server : turnServers) {
+            builder.addIceServer(server);
+        }
+        return builder.build();
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public List<IceServerSpec> getIceServers() {
+        return mIceServers;
+    }
+
+    public PeerConnection.IceTransportsType getIceTransportsType() {
+        return mIceTransportsType;
+    }
+
+    public PeerConnection.BundlePolicy getBundlePolicy() {
+        return mBundlePolicy;
+    }
+
+    public PeerConnection.RtcpMuxPolicy getRtcpMuxPolicy() {
+        return mRtcpMuxPolicy;
+    }
+
+    public PeerConnection.TcpCandidatePolicy getTcpCandidatePolicy() {
+        return mTcpCandidatePolicy;
+    }
+
+    public PeerConnection.CandidateNetworkPolicy getCandidateNetworkPolicy() {
+        return mCandidateNetworkPolicy;
+    }
+
+    public PeerConnection.ContinualGatheringPolicy getContinualGatheringPolicy() {
+        return mContinualGatheringPolicy;
+    }
+
+    public int getIceCandidatePoolSize() {
+        return mIceCandidatePoolSize;
+    }
+
+    public Integer getIceConnectionReceivingTimeoutMs() {
+        return mIceConnectionReceivingTimeoutMs;
+    }
+
+    // A fresh configuration for one PeerConnection
+    public PeerConnection.RTCConfiguration createConfiguration() {
+        final List<PeerConnection.IceServer> iceServers = new ArrayList<>(mIceServers.size());
+        for (final IceServerSpec server : mIceServers) {
+            iceServers.add(server.toIceServer());
+        }
+
+        final PeerConnection.RTCConfiguration configuration = new PeerConnection.RTCConfiguration(iceServers);
+        applyTo(configuration);
+        return configuration;
+    }
+
+    // Everything but the ICE servers
+    public void applyTo(final PeerConnection.RTCConfiguration configuration) {
+        if (mIceTransportsType != null) configuration.iceTransportsType = mIceTransportsType;
+        if (mBundlePolicy != null) configuration.bundlePolicy = mBundlePolicy;
+        if (mRtcpMuxPolicy != null) configuration.rtcpMuxPolicy = mRtcpMuxPolicy;
+        if (mTcpCandidatePolicy != null) configuration.tcpCandidatePolicy = mTcpCandidatePolicy;
+        if (mCandidateNetworkPolicy != null) configuration.candidateNetworkPolicy = mCandidateNetworkPolicy;
+        if (mContinualGatheringPolicy != null) configuration.continualGatheringPolicy = mContinualGatheringPolicy;
+        configuration.iceCandidatePoolSize = mIceCandidatePoolSize;
+        if (mIceConnectionReceivingTimeoutMs != null) configuration.iceConnectionReceivingTimeout = mIceConnectionReceivingTimeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        return mName + " " + mIceServers;
+    }
+
+    public static class Builder {
+        private final String mName;
+        private final List<IceServerSpec> mIceServers = new ArrayList<>();
+        private PeerConnection.IceTransportsType mIceTransportsType;
+        private PeerConnection.BundlePolicy mBundlePolicy;
+        private PeerConnection.RtcpMuxPolicy mRtcpMuxPolicy;
+        private PeerConnection.TcpCandidatePolicy mTcpCandidatePolicy;
+        private PeerConnection.CandidateNetworkPolicy mCandidateNetworkPolicy;
+        private PeerConnection.ContinualGatheringPolicy mContinualGatheringPolicy;
+        private int mIceCandidatePoolSize;
+        private Integer mIceConnectionReceivingTimeoutMs;
+
+        public Builder(final String name) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("name must not be empty");
+            }
+            mName = name;
+        }
+
+        // Starts from an existing profile, e.g. a preset with the app's own TURN servers
+        public Builder(final String name, final TransportProfile base) {
+            this(name);
+            mIceServers.addAll(base.mIceServers);
+            mIceTransportsType = base.mIceTransportsType;
+            mBundlePolicy = base.mBundlePolicy;
+            mRtcpMuxPolicy = base.mRtcpMuxPolicy;
+            mTcpCandidatePolicy = base.mTcpCandidatePolicy;
+            mCandidateNetworkPolicy = base.mCandidateNetworkPolicy;
+            mContinualGatheringPolicy = base.mContinualGatheringPolicy;
+            mIceCandidatePoolSize = base.mIceCandidatePoolSize;
+            mIceConnectionReceivingTimeoutMs = base.mIceConnectionReceivingTimeoutMs;
+        }
+
+        public Builder addIceServer(final IceServerSpec server) {
+            mIceServers.add(server);
+            return this;
+        }
+
+        public Builder addStunServer(final String url) {
+            return addIceServer(new IceServerSpec(Collections.singletonList(url), null, null));
+        }
+
+        public Builder addTurnServer(final String url, final String username, final String password) {
+            return addIceServer(new IceServerSpec(Collections.singletonList(url), username, password));
+        }
+
+        public Builder clearIceServers() {
+            mIceServers.clear();
+            return this;
+        }
+
+        public Builder setIceTransportsType(final PeerConnection.IceTransportsType type) {
+            mIceTransportsType = type;
+            return this;
+        }
+
+        public Builder setBundlePolicy(final PeerConnection.BundlePolicy policy) {
+            mBundlePolicy = policy;
+            return this;
+        }
+
+        public Builder setRtcpMuxPolicy(final PeerConnection.RtcpMuxPolicy policy) {
+            mRtcpMuxPolicy = policy;
+            return this;
+        }
+
+        public Builder setTcpCandidatePolicy(final PeerConnection.TcpCandidatePolicy policy) {
+            mTcpCandidatePolicy = policy;
+            return this;
+        }
+
+        public Builder setCandidateNetworkPolicy(final PeerConnection.CandidateNetworkPolicy policy) {
+            mCandidateNetworkPolicy = policy;
+            return this;
+        }
+
+        public Builder setContinualGatheringPolicy(final PeerConnection.ContinualGatheringPolicy policy) {
+            mContinualGatheringPolicy = policy;
+            return this;
+        }
+
+        // Candidates gathered before the offer; one per transport the offer creates
+        public Builder setIceCandidatePoolSize(final int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("size must not be negative: " + size);
+            }
+            mIceCandidatePoolSize = size;
+            return this;
+        }
+
+        // How long without incoming packets before a pair counts as not receiving; null keeps the default
+        public Builder setIceConnectionReceivingTimeoutMs(final Integer timeoutMs) {
+            if (timeoutMs != null && timeoutMs <= 0) {
+                throw new IllegalArgumentException("timeoutMs must be positive: " + timeoutMs);
+            }
+            mIceConnectionReceivingTimeoutMs = timeoutMs;
+            return this;
+        }
+
+        public TransportProfile build() {
+            if (mIceTransportsType == PeerConnection.IceTransportsType.RELAY) {
+                boolean hasTurn = false;
+                for (final IceServerSpec server : mIceServers) {
+                    hasTurn |= server.isTurn();
+                }
+                if (!hasTurn) {
+                    throw new IllegalStateException("Relay-only transport needs a TURN server");
+                }
+            }
+            return new TransportProfile(this);
+        }
+    }
+}
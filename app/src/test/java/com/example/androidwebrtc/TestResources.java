@@ -0,0 +1,29 @@
+package com.example.androidwebrtc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public final class TestResources {
+    private TestResources() {}
+
+    public static String read(final String name) throws IOException {
+        final InputStream in = TestResources.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing test resource " + name);
+        }
+
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
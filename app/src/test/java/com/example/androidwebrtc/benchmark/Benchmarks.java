@@ -0,0 +1,35 @@
+package com.example.androidwebrtc.benchmark;
+
+import org.junit.Assume;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH benchmarks kept in the unit test source set. They are skipped in
+ * normal test runs, run them with:
+ *
+ *   ./gradlew :app:testDebugUnitTest --tests '*Benchmark' -Pbenchmark
+ */
+public final class Benchmarks {
+    private Benchmarks() {}
+
+    public static void run(final Class<?> benchmarkClass) throws RunnerException {
+        Assume.assumeTrue("JMH benchmarks only run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        final Options options = new OptionsBuilder()
+                .include(benchmarkClass.getName())
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+
+        new Runner(options).run();
+    }
+}
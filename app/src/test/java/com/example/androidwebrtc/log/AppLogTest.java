@@ -0,0 +1,113 @@
+package com.example.androidwebrtc.log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AppLogTest {
+    private final RecordingAppender mAppender = new RecordingAppender();
+    private LogAppender mPrevious;
+    private int mPreviousLevel;
+
+    @Before
+    public void setUp() {
+        mPrevious = AppLog.setAppender(mAppender);
+        mPreviousLevel = AppLog.getMinLevel();
+    }
+
+    @After
+    public void tearDown() {
+        AppLog.setAppender(mPrevious);
+        AppLog.setMinLevel(mPreviousLevel);
+    }
+
+    @Test
+    public void belowMinLevel_argumentsAreNeverFormatted() {
+        AppLog.setMinLevel(AppLog.INFO);
+        final ExplodingArg arg = new ExplodingArg();
+
+        AppLog.d("Tag", "value={}", arg);
+        AppLog.v("Tag", "value={} {}", arg, arg);
+
+        assertEquals(0, mAppender.mLines.size());
+        assertFalse(AppLog.isLoggable(AppLog.DEBUG));
+        assertTrue(AppLog.isLoggable(AppLog.WARN));
+    }
+
+    @Test
+    public void placeholdersAreFilledInOrder() {
+        AppLog.setMinLevel(AppLog.VERBOSE);
+
+        AppLog.d("Tag", "a={} b={} c={}", "x", 2, null);
+
+        assertEquals("D/Tag: a=x b=2 c=null", mAppender.mLines.get(0));
+    }
+
+    @Test
+    public void warningsTakeUpToThreeArguments() {
+        AppLog.setMinLevel(AppLog.WARN);
+
+        AppLog.w("Tag", "{}x{} over {} bytes", 640, 480, 100);
+        AppLog.w("Tag", "{} at {}", "a", 1);
+
+        assertEquals("W/Tag: 640x480 over 100 bytes", mAppender.mLines.get(0));
+        assertEquals("W/Tag: a at 1", mAppender.mLines.get(1));
+    }
+
+    @Test
+    public void missingArgumentsLeaveThePlaceholderAndExtraTextIsKept() {
+        AppLog.setMinLevel(AppLog.VERBOSE);
+
+        AppLog.i("Tag", "a={} b={}", 1);
+        AppLog.w("Tag", "no placeholders", 1);
+
+        assertEquals("I/Tag: a=1 b={}", mAppender.mLines.get(0));
+        assertEquals("W/Tag: no placeholders", mAppender.mLines.get(1));
+    }
+
+    @Test
+    public void longMessagesAreTruncated() {
+        AppLog.setMinLevel(AppLog.VERBOSE);
+        final StringBuilder sdp = new StringBuilder();
+        while (sdp.length() < 2 * LogFormat.MAX_MESSAGE_CHARS) sdp.append("a=candidate\r\n");
+
+        AppLog.d("Tag", "sdp={}", sdp);
+
+        final String line = mAppender.mLines.get(0);
+        assertEquals("D/Tag: ".length() + LogFormat.MAX_MESSAGE_CHARS, line.length());
+        assertTrue(line.endsWith("..."));
+    }
+
+    @Test
+    public void errorsArePassedAlong() {
+        final IllegalStateException error = new IllegalStateException();
+
+        AppLog.e("Tag", "failed", error);
+
+        assertSame(error, mAppender.mErrors.get(0));
+        assertEquals("E/Tag: failed", mAppender.mLines.get(0));
+    }
+
+    private static class ExplodingArg {
+        @Override
+        public String toString() {
+            throw new AssertionError("formatted a disabled line");
+        }
+    }
+
+    static class RecordingAppender implements LogAppender {
+        final List<String> mLines = new ArrayList<>();
+        final List<Throwable> mErrors = new ArrayList<>();
+
+        @Override
+        public synchronized void append(int level, String tag, CharSequence message, Throwable error) {
+            mLines.add("??VDIWE".charAt(level) + "/" + tag + ": " + message);
+            mErrors.add(error);
+        }
+    }
+}
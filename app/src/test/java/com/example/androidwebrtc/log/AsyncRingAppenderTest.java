@@ -0,0 +1,79 @@
+package com.example.androidwebrtc.log;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncRingAppenderTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    @Test
+    public void writesLinesInOrderOnItsOwnThread() throws Exception {
+        final AppLogTest.RecordingAppender delegate = new AppLogTest.RecordingAppender();
+        final AsyncRingAppender appender = new AsyncRingAppender(delegate, 8);
+
+        final StringBuilder reused = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            reused.setLength(0);
+            reused.append("line ").append(i);
+            appender.append(AppLog.DEBUG, "Tag", reused, null);
+        }
+        assertTrue(appender.flush(TIMEOUT_MS));
+        appender.close();
+
+        assertEquals(Arrays.asList("D/Tag: line 0", "D/Tag: line 1", "D/Tag: line 2", "D/Tag: line 3", "D/Tag: line 4"),
+                delegate.mLines);
+    }
+
+    @Test
+    public void dropsLinesWhenFullAndReportsTheCount() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final AppLogTest.RecordingAppender recorder = new AppLogTest.RecordingAppender();
+        final AsyncRingAppender appender = new AsyncRingAppender(new LogAppender() {
+            @Override
+            public void append(int level, String tag, CharSequence message, Throwable error) {
+                if ("block".contentEquals(message)) {
+                    blocked.countDown();
+                    try {
+                        release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                recorder.append(level, tag, message, error);
+            }
+        }, 2);
+
+        appender.append(AppLog.DEBUG, "Tag", "block", null);
+        assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        appender.append(AppLog.DEBUG, "Tag", "a", null);
+        appender.append(AppLog.DEBUG, "Tag", "b", null);
+        appender.append(AppLog.DEBUG, "Tag", "c", null);
+        assertEquals(1, appender.getDroppedCount());
+
+        release.countDown();
+        assertTrue(appender.flush(TIMEOUT_MS));
+        appender.close();
+
+        assertEquals(Arrays.asList("D/Tag: block", "W/AsyncRingAppender: Dropped 1 log lines, ring full", "D/Tag: a", "D/Tag: b"),
+                recorder.mLines);
+    }
+
+    @Test
+    public void closeWritesWhatIsQueuedAndIgnoresLaterLines() throws Exception {
+        final AppLogTest.RecordingAppender delegate = new AppLogTest.RecordingAppender();
+        final AsyncRingAppender appender = new AsyncRingAppender(delegate, 4);
+
+        appender.append(AppLog.INFO, "Tag", "kept", null);
+        appender.close();
+        appender.append(AppLog.INFO, "Tag", "ignored", null);
+        assertTrue(appender.flush(TIMEOUT_MS));
+
+        assertEquals(Arrays.asList("I/Tag: kept"), delegate.mLines);
+    }
+}
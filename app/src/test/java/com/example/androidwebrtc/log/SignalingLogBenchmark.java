@@ -0,0 +1,83 @@
+package com.example.androidwebrtc.log;
+
+import android.util.Log;
+
+import com.example.androidwebrtc.TestResources;
+import com.example.androidwebrtc.benchmark.Benchmarks;
+import com.example.androidwebrtc.signaling.SignalingMessage;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.webrtc.IceCandidate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per signaling message (gc.alloc.rate.norm) of typical debug lines
+ * for an offer and a candidate, built with string concatenation as before and
+ * through AppLog, with debug logging on and off. AppLog writes to an appender
+ * that drops the line, so only formatting is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignalingLogBenchmark {
+    private static final String TAG = "Benchmark";
+
+    @Param({"false", "true"})
+    public boolean debugEnabled;
+
+    private SignalingMessage mOffer;
+    private IceCandidate mCandidate;
+    private LogAppender mPrevious;
+    private int mPreviousLevel;
+
+    @Setup
+    public void setUp() throws Exception {
+        mOffer = SignalingMessage.offer("peer-1", TestResources.read("sdp/android_offer.sdp"));
+        mCandidate = new IceCandidate("0", 0,
+                "candidate:842163049 1 udp 1677729535 203.0.113.7 53917 typ srflx raddr 192.168.0.12 rport 53917 generation 0 ufrag Xb3q network-cost 10");
+
+        mPreviousLevel = AppLog.getMinLevel();
+        AppLog.setMinLevel(debugEnabled ? AppLog.DEBUG : AppLog.INFO);
+        mPrevious = AppLog.setAppender(new LogAppender() {
+            @Override
+            public void append(int level, String tag, CharSequence message, Throwable error) {
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        AppLog.setAppender(mPrevious);
+        AppLog.setMinLevel(mPreviousLevel);
+    }
+
+    // The line is built whatever the level, Log.d is a no-op in unit tests
+    @Benchmark
+    public void concatenation() {
+        Log.d(TAG, "onMessage message=" + mOffer);
+        Log.d(TAG, "Local offer created:" + mOffer.sdp);
+        Log.d(TAG, "add remote candidate " + mCandidate.toString());
+    }
+
+    @Benchmark
+    public void appLog() {
+        AppLog.d(TAG, "onMessage message={}", mOffer);
+        AppLog.d(TAG, "Local offer created:{}", mOffer.sdp);
+        AppLog.d(TAG, "add remote candidate {}", mCandidate);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmarks.run(SignalingLogBenchmark.class);
+    }
+}
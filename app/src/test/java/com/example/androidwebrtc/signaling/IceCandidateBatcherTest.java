@@ -0,0 +1,174 @@
+package com.example.androidwebrtc.signaling;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IceCandidateBatcherTest {
+    private static final long WINDOW_MS = 40;
+    private static final long LONG_WINDOW_MS = 60_000;
+
+    private final LinkedBlockingQueue<List<IceCandidate>> mBatches = new LinkedBlockingQueue<>();
+    private final IceCandidateBatcher.Sink mSink = new IceCandidateBatcher.Sink() {
+        @Override
+        public void onCandidates(List<IceCandidate> candidates) {
+            mBatches.add(candidates);
+        }
+    };
+
+    private ScheduledExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void firstHostCandidate_isSentImmediately() {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, LONG_WINDOW_MS, 8, mExecutor);
+
+        batcher.add(candidate("srflx", 1));
+        batcher.add(candidate("host", 2));
+
+        final List<IceCandidate> batch = mBatches.poll();
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertEquals(candidate("srflx", 1).sdp, batch.get(0).sdp);
+
+        // Later host candidates wait for the window like any other
+        batcher.add(candidate("host", 3));
+        assertTrue(mBatches.isEmpty());
+    }
+
+    @Test
+    public void candidatesWithinWindow_areCoalesced() throws InterruptedException {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, WINDOW_MS, 8, mExecutor);
+
+        batcher.add(candidate("host", 1));
+        assertEquals(1, mBatches.take().size());
+
+        batcher.add(candidate("srflx", 2));
+        batcher.add(candidate("srflx", 3));
+        batcher.add(candidate("relay", 4));
+
+        final List<IceCandidate> batch = mBatches.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch);
+        assertEquals(3, batch.size());
+        assertNull(mBatches.poll(WINDOW_MS * 3, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void sizeLimit_flushesWithoutWaitingForWindow() {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, LONG_WINDOW_MS, 3, mExecutor);
+
+        for (int i = 0; i < 7; i++) {
+            batcher.add(candidate("srflx", i));
+        }
+
+        assertEquals(2, mBatches.size());
+        for (final List<IceCandidate> batch : mBatches) {
+            assertEquals(3, batch.size());
+        }
+    }
+
+    @Test
+    public void gatheringComplete_flushesPending() {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, LONG_WINDOW_MS, 8, mExecutor);
+
+        batcher.add(candidate("srflx", 1));
+        batcher.add(candidate("relay", 2));
+        batcher.onGatheringComplete();
+
+        assertEquals(2, mBatches.poll().size());
+
+        // Nothing pending, so completing again sends nothing
+        batcher.onGatheringComplete();
+        assertTrue(mBatches.isEmpty());
+    }
+
+    @Test
+    public void reset_dropsPendingAndRearmsHostFlush() throws InterruptedException {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, WINDOW_MS, 8, mExecutor);
+
+        batcher.add(candidate("host", 1));
+        mBatches.take();
+        batcher.add(candidate("srflx", 2));
+        batcher.reset();
+
+        assertNull(mBatches.poll(WINDOW_MS * 3, TimeUnit.MILLISECONDS));
+
+        batcher.add(candidate("host", 3));
+        assertEquals(1, mBatches.poll().size());
+    }
+
+    @Test
+    public void iceRestart_sendsTheFirstHostCandidateOfTheNewUfragImmediately() {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, LONG_WINDOW_MS, 8, mExecutor);
+
+        batcher.add(candidate("host", 1, "aaaa"));
+        assertEquals(1, mBatches.poll().size());
+        batcher.add(candidate("host", 2, "aaaa"));
+        assertTrue(mBatches.isEmpty());
+
+        // Restart: new credentials
+        batcher.add(candidate("host", 3, "bbbb"));
+        final List<IceCandidate> batch = mBatches.poll();
+        assertNotNull(batch);
+        assertEquals(2, batch.size());
+        assertEquals("bbbb", IceCandidateBatcher.ufragOf(batch.get(1)));
+    }
+
+    @Test
+    public void ufragOf_readsTheCandidateLine() {
+        assertEquals("Xy9z", IceCandidateBatcher.ufragOf(candidate("host", 1, "Xy9z")));
+        assertNull(IceCandidateBatcher.ufragOf(candidate("host", 1)));
+    }
+
+    @Test
+    public void everyCandidateIsDeliveredOnce() throws InterruptedException {
+        final IceCandidateBatcher batcher = new IceCandidateBatcher(mSink, 1, 4, mExecutor);
+        final int count = 500;
+
+        for (int i = 0; i < count; i++) {
+            batcher.add(candidate(i % 50 == 0 ? "host" : "srflx", i));
+        }
+        batcher.onGatheringComplete();
+
+        final List<String> delivered = new ArrayList<>();
+        while (delivered.size() < count) {
+            final List<IceCandidate> batch = mBatches.poll(5, TimeUnit.SECONDS);
+            assertNotNull("delivered " + delivered.size(), batch);
+            for (final IceCandidate candidate : batch) {
+                delivered.add(candidate.sdp);
+            }
+        }
+
+        assertEquals(count, delivered.size());
+        assertEquals(count, new HashSet<>(delivered).size());
+    }
+
+    private static IceCandidate candidate(final String type, final int port, final String ufrag) {
+        return new IceCandidate("0", 0, "candidate:" + port + " 1 udp 2122260223 192.168.0.12 " + port + " typ " + type
+                + " generation 0 ufrag " + ufrag + " network-id 1");
+    }
+
+    private static IceCandidate candidate(final String type, final int port) {
+        return new IceCandidate("0", 0, "candidate:" + port + " 1 udp 2122260223 192.168.0.12 " + port + " typ " + type + " generation 0");
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.log.AppLog;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reference server for the signaling protocol MainActivity speaks, on loopback.
+ * "start" registers a client and answers with its id; offers, answers and
+ * candidates go to the client named in remoteId, restamped with the sender's id.
+ * Like SignalingClient it negotiates the binary codec and permessage-deflate
+ * per connection, so JSON and binary clients can talk to each other.
+ */
+public class LocalSignalingServer extends WebSocketServer {
+    private static final String TAG = "LocalSignalingServer";
+
+    // Accept queue for connection bursts of a load run; the JDK default is 50
+    private static final int MAX_PENDING_CONNECTIONS = 4096;
+
+    private final Map<String, WebSocket> mClients = new ConcurrentHashMap<>();
+    private final AtomicInteger mNextId = new AtomicInteger();
+    private final AtomicLong mRelayed = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final CountDownLatch mStarted = new CountDownLatch(1);
+    private volatile Exception mStartError;
+
+    // Port 0 picks a free one, see getPort()
+    public LocalSignalingServer(final int port, final int decoders) {
+        super(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), decoders, Collections.singletonList(createDraft()));
+        setReuseAddr(true);
+        setMaxPendingConnections(MAX_PENDING_CONNECTIONS);
+    }
+
+    private static Draft createDraft() {
+        final List<IExtension> extensions = Collections.<IExtension>singletonList(new PerMessageDeflateExtension());
+        final List<IProtocol> protocols = Arrays.<IProtocol>asList(new Protocol(BinarySignalingCodec.PROTOCOL), new Protocol(""));
+        return new Draft_6455(extensions, protocols);
+    }
+
+    public void startAndWait(final long timeoutMs) throws InterruptedException {
+        start();
+        if (!mStarted.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Signaling server did not start within " + timeoutMs + "ms");
+        }
+        if (mStartError != null) {
+            throw new IllegalStateException("Signaling server failed to start", mStartError);
+        }
+    }
+
+    public URI getUri() {
+        return URI.create("ws://" + getAddress().getAddress().getHostAddress() + ":" + getPort());
+    }
+
+    // Registered clients that are still connected
+    public int getClientCount() {
+        return mClients.size();
+    }
+
+    public long getRelayedCount() {
+        return mRelayed.get();
+    }
+
+    // Messages to unknown or closed peers, and from clients that never sent start
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    @Override
+    public void onStart() {
+        mStarted.countDown();
+    }
+
+    @Override
+    public void onOpen(final WebSocket conn, final ClientHandshake handshake) {
+        final Draft draft = conn.getDraft();
+        final IProtocol protocol = draft instanceof Draft_6455 ? ((Draft_6455) draft).getProtocol() : null;
+        final boolean binary = protocol != null && BinarySignalingCodec.PROTOCOL.equals(protocol.getProvidedProtocol());
+
+        conn.setAttachment(new Session(binary ? new BinarySignalingCodec() : new JsonSignalingCodec()));
+    }
+
+    @Override
+    public void onMessage(final WebSocket conn, final String message) {
+        final Session session = conn.getAttachment();
+        try {
+            handle(conn, session, session.mCodec.decode(message));
+        } catch (SignalingException se) {
+            AppLog.w(TAG, "Dropping undecodable text message", se);
+            mDropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onMessage(final WebSocket conn, final ByteBuffer message) {
+        final Session session = conn.getAttachment();
+        try {
+            handle(conn, session, session.mCodec.decode(message));
+        } catch (SignalingException se) {
+            AppLog.w(TAG, "Dropping undecodable binary message", se);
+            mDropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onClose(final WebSocket conn, final int code, final String reason, final boolean remote) {
+        final Session session = conn.getAttachment();
+        if (session != null && session.mId != null) mClients.remove(session.mId, conn);
+    }
+
+    @Override
+    public void onError(final WebSocket conn, final Exception ex) {
+        // Without a connection the error is the server's own, e.g. a failed bind
+        if (conn == null && mStarted.getCount() > 0) {
+            mStartError = ex;
+            mStarted.countDown();
+            return;
+        }
+        AppLog.e(TAG, "WebSocket error", ex);
+    }
+
+    private void handle(final WebSocket conn, final Session session, final SignalingMessage message) {
+        if (message.type == SignalingMessage.Type.START) {
+            if (session.mId == null) {
+                session.mId = "u" + mNextId.incrementAndGet();
+                mClients.put(session.mId, conn);
+            }
+            send(conn, SignalingMessage.start(session.mId));
+            return;
+        }
+
+        final WebSocket target = message.remoteId == null ? null : mClients.get(message.remoteId);
+        if (session.mId == null || target == null) {
+            mDropped.incrementAndGet();
+            return;
+        }
+
+        if (send(target, restamp(message, session.mId))) {
+            mRelayed.incrementAndGet();
+        } else {
+            mDropped.incrementAndGet();
+        }
+    }
+
+    // The receiver learns who sent the message through remoteId
+    private static SignalingMessage restamp(final SignalingMessage message, final String senderId) {
+        switch (message.type) {
+            case OFFER:
+                return SignalingMessage.offer(senderId, message.sdp);
+            case ANSWER:
+                return SignalingMessage.answer(senderId, message.sdp);
+            case ICE_CANDIDATE:
+                return SignalingMessage.iceCandidate(senderId, message.candidate);
+            case ICE_CANDIDATES:
+                return SignalingMessage.iceCandidates(senderId, message.candidates);
+            default:
+                throw new IllegalArgumentException("Not a relayed message: " + message.type);
+        }
+    }
+
+    // Encodes with the receiver's codec, which may differ from the sender's
+    private static boolean send(final WebSocket conn, final SignalingMessage message) {
+        final Session session = conn.getAttachment();
+        try {
+            final ByteBuffer payload = session.mCodec.encode(message);
+            if (session.mCodec.isBinary()) {
+                conn.send(payload);
+            } else {
+                final TextFrame frame = new TextFrame();
+                frame.setPayload(payload);
+                frame.setFin(true);
+                conn.sendFrame(frame);
+            }
+            return true;
+        } catch (SignalingException se) {
+            AppLog.e(TAG, "Failed to encode " + message.type, se);
+            return false;
+        } catch (WebsocketNotConnectedException e) {
+            return false;
+        }
+    }
+
+    private static class Session {
+        final SignalingCodec mCodec;
+        // Set by start, read on any decoder thread
+        volatile String mId;
+
+        Session(final SignalingCodec codec) {
+            mCodec = codec;
+        }
+    }
+}
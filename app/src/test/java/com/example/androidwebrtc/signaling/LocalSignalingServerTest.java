@@ -0,0 +1,195 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.TestResources;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LocalSignalingServerTest {
+    private static final long TIMEOUT_MS = 5000;
+    private static final boolean RELAYED = true;
+    private static final boolean DROPPED = false;
+    private static final IceCandidate CANDIDATE = new IceCandidate("0", 0,
+            "candidate:1510613869 1 udp 2122260223 192.168.0.12 41234 typ host generation 0 ufrag Xb3q network-id 1 network-cost 10");
+
+    private LocalSignalingServer mServer;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        mServer = new LocalSignalingServer(0, 2);
+        mServer.startAndWait(TIMEOUT_MS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mServer.stop((int) TIMEOUT_MS);
+    }
+
+    @Test
+    public void start_assignsEachClientItsOwnId() throws Exception {
+        final TestClient a = TestClient.connect(mServer.getUri(), false);
+        final TestClient b = TestClient.connect(mServer.getUri(), false);
+
+        assertNotNull(a.mLocalId);
+        assertNotNull(b.mLocalId);
+        assertNotEquals(a.mLocalId, b.mLocalId);
+        assertEquals(2, mServer.getClientCount());
+
+        a.close();
+        b.close();
+    }
+
+    @Test
+    public void relaysMessagesStampedWithTheSender() throws Exception {
+        final TestClient a = TestClient.connect(mServer.getUri(), false);
+        final TestClient b = TestClient.connect(mServer.getUri(), false);
+
+        a.mClient.send(SignalingMessage.offer(b.mLocalId, "v=0"));
+        final SignalingMessage offer = b.next();
+        assertEquals(SignalingMessage.Type.OFFER, offer.type);
+        assertEquals(a.mLocalId, offer.remoteId);
+        assertEquals("v=0", offer.sdp);
+
+        b.mClient.send(SignalingMessage.answer(offer.remoteId, "v=1"));
+        b.mClient.send(SignalingMessage.iceCandidate(offer.remoteId, CANDIDATE));
+        final SignalingMessage answer = a.next();
+        assertEquals(SignalingMessage.Type.ANSWER, answer.type);
+        assertEquals(b.mLocalId, answer.remoteId);
+        final SignalingMessage candidate = a.next();
+        assertEquals(SignalingMessage.Type.ICE_CANDIDATE, candidate.type);
+        assertEquals(CANDIDATE.sdp, candidate.candidate.sdp);
+        assertEquals(3, awaitCount(RELAYED, 3));
+
+        a.close();
+        b.close();
+    }
+
+    @Test
+    public void relaysBetweenJsonAndBinaryClients() throws Exception {
+        final TestClient json = TestClient.connect(mServer.getUri(), false);
+        final TestClient binary = TestClient.connect(mServer.getUri(), true);
+        assertTrue(binary.mClient.getCodec() instanceof BinarySignalingCodec);
+        assertTrue(json.mClient.getCodec() instanceof JsonSignalingCodec);
+
+        json.mClient.send(SignalingMessage.offer(binary.mLocalId, "v=0"));
+        assertEquals("v=0", binary.next().sdp);
+        binary.mClient.send(SignalingMessage.answer(json.mLocalId, "v=1"));
+        assertEquals("v=1", json.next().sdp);
+
+        json.close();
+        binary.close();
+    }
+
+    @Test
+    public void dropsMessagesForUnknownPeers() throws Exception {
+        final TestClient a = TestClient.connect(mServer.getUri(), false);
+
+        a.mClient.send(SignalingMessage.offer("nobody", "v=0"));
+
+        assertEquals(1, awaitCount(DROPPED, 1));
+        assertEquals(0, mServer.getRelayedCount());
+        a.close();
+    }
+
+    @Test
+    public void loadGenerator_deliversEveryExchangeMessage() throws Exception {
+        final JSONObject report = new SignalingLoadGenerator.Builder(mServer.getUri(), TestResources.read("sdp/android_offer.sdp"))
+                .setClients(20)
+                .setRounds(3)
+                .setCandidatesPerRound(2)
+                .setTimeoutMs(TIMEOUT_MS)
+                .build()
+                .run();
+
+        final JSONObject exchange = report.getJSONObject("exchange");
+        assertTrue(report.getJSONObject("connect").getBoolean("all_started"));
+        assertTrue(exchange.getBoolean("completed"));
+        // 20 clients, each receiving 3 offers or answers plus 3 x 2 candidates
+        assertEquals(180, exchange.getLong("messages_delivered"));
+        assertEquals(180, awaitCount(RELAYED, 180));
+        assertEquals(30, exchange.getJSONObject("offer_answer_rtt_ms").getInt("samples"));
+        assertTrue(exchange.getJSONObject("offer_answer_rtt_ms").getDouble("p99") > 0);
+    }
+
+    @Test
+    public void latencyRecorder_usesNearestRankPercentiles() {
+        final SignalingLoadGenerator.LatencyRecorder recorder = new SignalingLoadGenerator.LatencyRecorder(200);
+        for (int i = 100; i >= 1; i--) {
+            recorder.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(50, recorder.percentileMs(50), 0);
+        assertEquals(99, recorder.percentileMs(99), 0);
+        assertEquals(100, recorder.percentileMs(100), 0);
+        assertEquals(0, new SignalingLoadGenerator.LatencyRecorder(1).percentileMs(99), 0);
+    }
+
+    // The server counts a message after handing it to the socket, so the receiver may see it first
+    private long awaitCount(final boolean relayed, final long expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        long count = relayed ? mServer.getRelayedCount() : mServer.getDroppedCount();
+        while (count < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            count = relayed ? mServer.getRelayedCount() : mServer.getDroppedCount();
+        }
+        return count;
+    }
+
+    private static class TestClient implements SignalingClient.Listener {
+        final SignalingClient mClient;
+        final BlockingQueue<SignalingMessage> mMessages = new LinkedBlockingQueue<>();
+        String mLocalId;
+
+        private TestClient(final URI uri, final boolean offerBinary) {
+            mClient = new SignalingClient(uri, this, offerBinary, false);
+        }
+
+        // Connected and registered
+        static TestClient connect(final URI uri, final boolean offerBinary) throws InterruptedException {
+            final TestClient client = new TestClient(uri, offerBinary);
+            assertTrue(client.mClient.connectBlocking(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            client.mClient.send(SignalingMessage.start(null));
+            final SignalingMessage start = client.next();
+            assertEquals(SignalingMessage.Type.START, start.type);
+            client.mLocalId = start.localId;
+            return client;
+        }
+
+        SignalingMessage next() throws InterruptedException {
+            final SignalingMessage message = mMessages.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertNotNull("No message within " + TIMEOUT_MS + "ms", message);
+            return message;
+        }
+
+        void close() throws InterruptedException {
+            mClient.closeBlocking();
+        }
+
+        @Override
+        public void onOpen() {
+        }
+
+        @Override
+        public void onMessage(SignalingMessage message) {
+            mMessages.add(message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.TestResources;
+import com.example.androidwebrtc.benchmark.Benchmarks;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.webrtc.IceCandidate;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode throughput and allocation per message (gc.alloc.rate.norm) of
+ * both signaling codecs, for a 4.6 KB offer and a single ICE candidate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SignalingCodecBenchmark {
+    @Param({"json", "binary"})
+    public String codecName;
+
+    private SignalingCodec mCodec;
+    private SignalingMessage mOffer;
+    private SignalingMessage mCandidate;
+    private ByteBuffer mEncodedOffer;
+    private ByteBuffer mEncodedCandidate;
+
+    @Setup
+    public void setUp() throws Exception {
+        mCodec = "json".equals(codecName) ? new JsonSignalingCodec() : new BinarySignalingCodec();
+        mOffer = SignalingMessage.offer("peer-1", TestResources.read("sdp/android_offer.sdp"));
+        mCandidate = SignalingMessage.iceCandidate("peer-1", new IceCandidate("0", 0,
+                "candidate:842163049 1 udp 1677729535 203.0.113.7 53917 typ srflx raddr 192.168.0.12 rport 53917 generation 0 ufrag Xb3q network-cost 10"));
+        mEncodedOffer = mCodec.encode(mOffer);
+        mEncodedCandidate = mCodec.encode(mCandidate);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeOffer() throws SignalingException {
+        return mCodec.encode(mOffer);
+    }
+
+    @Benchmark
+    public SignalingMessage decodeOffer() throws SignalingException {
+        return mCodec.decode(mEncodedOffer.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer encodeCandidate() throws SignalingException {
+        return mCodec.encode(mCandidate);
+    }
+
+    @Benchmark
+    public SignalingMessage decodeCandidate() throws SignalingException {
+        return mCodec.decode(mEncodedCandidate.duplicate());
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmarks.run(SignalingCodecBenchmark.class);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.TestResources;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SignalingCodecTest {
+    private static final IceCandidate CANDIDATE = new IceCandidate("0", 0,
+            "candidate:842163049 1 udp 1677729535 203.0.113.7 53917 typ srflx raddr 192.168.0.12 rport 53917 generation 0 ufrag Xb3q network-cost 10");
+    private static final IceCandidate HOST_CANDIDATE = new IceCandidate("1", 1,
+            "candidate:1510613869 1 udp 2122260223 192.168.0.12 41234 typ host generation 0 ufrag Xb3q network-id 1 network-cost 10");
+
+    @Test
+    public void json_roundTripsEveryMessageType() throws Exception {
+        assertRoundTrips(new JsonSignalingCodec());
+    }
+
+    @Test
+    public void binary_roundTripsEveryMessageType() throws Exception {
+        assertRoundTrips(new BinarySignalingCodec());
+    }
+
+    @Test
+    public void json_keepsTheExistingWireFormat() throws Exception {
+        final String text = new JsonSignalingCodec().encodeToString(SignalingMessage.iceCandidate("peer-1", CANDIDATE));
+        final JSONObject json = new JSONObject(text);
+
+        assertEquals("iceCandidate", json.getString("action"));
+        assertEquals("peer-1", json.getJSONObject("data").getString("remoteId"));
+        assertEquals(CANDIDATE.sdp, json.getJSONObject("data").getJSONObject("candidate").getString("sdp"));
+        assertEquals(0, json.getJSONObject("data").getJSONObject("candidate").getInt("sdpMLineIndex"));
+    }
+
+    @Test
+    public void json_acceptsServerVariants() throws Exception {
+        final JsonSignalingCodec codec = new JsonSignalingCodec();
+
+        final SignalingMessage start = codec.decode("{\"action\":\"start\",\"id\":\"abc\"}");
+        assertEquals(SignalingMessage.Type.START, start.type);
+        assertEquals("abc", start.localId);
+
+        final SignalingMessage offer = codec.decode("{\"action\":\"offer\",\"data\":{\"remoteId\":\"r\",\"offer\":{\"type\":\"offer\",\"name\":\"v=0\"}}}");
+        assertEquals("v=0", offer.sdp);
+
+        final SignalingMessage candidate = codec.decode("{\"action\":\"iceCandidate\",\"data\":{\"candidate\":{\"candidate\":\"c\",\"sdpMid\":\"1\",\"sdpMLineIndex\":1}}}");
+        assertEquals("c", candidate.candidate.sdp);
+        assertEquals(1, candidate.candidate.sdpMLineIndex);
+    }
+
+    @Test
+    public void binary_isSmallerThanJsonForOffers() throws Exception {
+        final SignalingMessage offer = SignalingMessage.offer("peer-1", TestResources.read("sdp/android_offer.sdp"));
+
+        final int json = new JsonSignalingCodec().encode(offer).remaining();
+        final int binary = new BinarySignalingCodec().encode(offer).remaining();
+
+        assertTrue("binary=" + binary + " json=" + json, binary < json);
+        // Header, remote id and SDP with their key and varint length, nothing else
+        assertEquals(2 + (2 + "peer-1".length()) + (3 + offer.sdp.length()), binary);
+    }
+
+    @Test
+    public void binary_encodesNonAsciiLikeStringGetBytes() throws Exception {
+        final String remoteId = "caf\u00e9-\u20ac-\uD83D\uDE00";
+        final ByteBuffer frame = new BinarySignalingCodec().encode(SignalingMessage.answer(remoteId, "v=0"));
+
+        assertEquals(remoteId, new BinarySignalingCodec().decode(frame).remoteId);
+    }
+
+    @Test
+    public void binary_skipsUnknownFields() throws Exception {
+        final ByteBuffer frame = new BinarySignalingCodec().encode(SignalingMessage.answer("r", "v=0"));
+        final byte[] extended = new byte[frame.remaining() + 5];
+        frame.get(extended, 0, frame.remaining());
+        // Field 30 as bytes with a 3 byte value, appended by a newer peer
+        final int offset = extended.length - 5;
+        extended[offset] = (byte) (30 << 1 | 1);
+        extended[offset + 1] = 3;
+
+        final SignalingMessage decoded = new BinarySignalingCodec().decode(ByteBuffer.wrap(extended));
+
+        assertEquals("v=0", decoded.sdp);
+    }
+
+    @Test(expected = SignalingException.class)
+    public void binary_rejectsTruncatedFrames() throws Exception {
+        final ByteBuffer frame = new BinarySignalingCodec().encode(SignalingMessage.answer("r", "v=0"));
+        frame.limit(frame.limit() - 2);
+
+        new BinarySignalingCodec().decode(frame);
+    }
+
+    @Test
+    public void json_encodesBatchesAsCandidateArray() throws Exception {
+        final String text = new JsonSignalingCodec().encodeToString(SignalingMessage.iceCandidates("peer-1", Arrays.asList(HOST_CANDIDATE, CANDIDATE)));
+        final JSONObject json = new JSONObject(text);
+
+        assertEquals("iceCandidates", json.getString("action"));
+        assertEquals(2, json.getJSONObject("data").getJSONArray("candidates").length());
+        assertEquals(CANDIDATE.sdp, json.getJSONObject("data").getJSONArray("candidates").getJSONObject(1).getString("sdp"));
+    }
+
+    @Test(expected = SignalingException.class)
+    public void binary_rejectsBatchWithoutCandidates() throws Exception {
+        // Version, ICE_CANDIDATES and nothing else
+        new BinarySignalingCodec().decode(ByteBuffer.wrap(new byte[] { 1, 4 }));
+    }
+
+    @Test
+    public void binary_keepsFixedWireTypes() throws Exception {
+        final BinarySignalingCodec codec = new BinarySignalingCodec();
+
+        assertEquals(0, codec.encode(SignalingMessage.start("l")).get(1));
+        assertEquals(1, codec.encode(SignalingMessage.offer("r", "v=0")).get(1));
+        assertEquals(2, codec.encode(SignalingMessage.answer("r", "v=0")).get(1));
+        assertEquals(3, codec.encode(SignalingMessage.iceCandidate("r", CANDIDATE)).get(1));
+        assertEquals(4, codec.encode(SignalingMessage.iceCandidates("r", Arrays.asList(CANDIDATE))).get(1));
+    }
+
+    @Test(expected = SignalingException.class)
+    public void binary_rejectsUnknownTypes() throws Exception {
+        new BinarySignalingCodec().decode(ByteBuffer.wrap(new byte[] { 1, 9 }));
+    }
+
+    @Test(expected = SignalingException.class)
+    public void binary_rejectsNegativeFieldLengths() throws Exception {
+        // ANSWER with an sdp field whose five-byte varint length decodes to -1
+        new BinarySignalingCodec().decode(ByteBuffer.wrap(new byte[] {
+                1, 2, (byte) (3 << 1 | 1), (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 'v' }));
+    }
+
+    @Test(expected = SignalingException.class)
+    public void binary_rejectsNegativeLengthsInCandidateEntries() throws Exception {
+        // ICE_CANDIDATES holding a 7-byte entry whose candidate field claims length -1
+        new BinarySignalingCodec().decode(ByteBuffer.wrap(new byte[] {
+                1, 4, (byte) (7 << 1 | 1), 7, (byte) (6 << 1 | 1), (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 'c' }));
+    }
+
+    @Test(expected = SignalingException.class)
+    public void json_rejectsUnknownActions() throws Exception {
+        new JsonSignalingCodec().decode("{\"action\":\"bogus\"}");
+    }
+
+    private static void assertRoundTrips(final SignalingCodec codec) throws IOException, SignalingException {
+        final String sdp = TestResources.read("sdp/android_offer.sdp");
+
+        final SignalingMessage start = codec.decode(codec.encode(SignalingMessage.start("local-7")));
+        assertEquals(SignalingMessage.Type.START, start.type);
+        assertEquals("local-7", start.localId);
+
+        final SignalingMessage offer = codec.decode(codec.encode(SignalingMessage.offer("peer-1", sdp)));
+        assertEquals(SignalingMessage.Type.OFFER, offer.type);
+        assertEquals("peer-1", offer.remoteId);
+        assertEquals(sdp, offer.sdp);
+
+        final SignalingMessage answer = codec.decode(codec.encode(SignalingMessage.answer("peer-1", sdp)));
+        assertEquals(SignalingMessage.Type.ANSWER, answer.type);
+        assertEquals(sdp, answer.sdp);
+
+        final SignalingMessage candidate = codec.decode(codec.encode(SignalingMessage.iceCandidate("peer-1", CANDIDATE)));
+        assertEquals(SignalingMessage.Type.ICE_CANDIDATE, candidate.type);
+        assertEquals(CANDIDATE.sdp, candidate.candidate.sdp);
+        assertEquals(CANDIDATE.sdpMid, candidate.candidate.sdpMid);
+        assertEquals(CANDIDATE.sdpMLineIndex, candidate.candidate.sdpMLineIndex);
+
+        final SignalingMessage batch = codec.decode(codec.encode(SignalingMessage.iceCandidates("peer-1", Arrays.asList(HOST_CANDIDATE, CANDIDATE))));
+        assertEquals(SignalingMessage.Type.ICE_CANDIDATES, batch.type);
+        assertEquals("peer-1", batch.remoteId);
+        assertEquals(2, batch.candidates.size());
+        assertEquals(HOST_CANDIDATE.sdp, batch.candidates.get(0).sdp);
+        assertEquals(HOST_CANDIDATE.sdpMid, batch.candidates.get(0).sdpMid);
+        assertEquals(HOST_CANDIDATE.sdpMLineIndex, batch.candidates.get(0).sdpMLineIndex);
+        assertEquals(CANDIDATE.sdp, batch.candidates.get(1).sdp);
+        assertEquals(CANDIDATE.sdpMLineIndex, batch.candidates.get(1).sdpMLineIndex);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SignalingEventLoopTest {
+    private static final int CAPACITY = 4;
+    private static final long TIMEOUT_S = 5;
+
+    private final FakeClock mClock = new FakeClock();
+    private SignalingEventLoop mLoop;
+
+    @Before
+    public void setUp() {
+        mLoop = new SignalingEventLoop(CAPACITY, mClock);
+    }
+
+    @After
+    public void tearDown() {
+        mLoop.shutdown();
+    }
+
+    @Test
+    public void post_runsEventsInOrderOnOneThread() throws InterruptedException {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Boolean> onLoop = Collections.synchronizedList(new ArrayList<Boolean>());
+        final CountDownLatch done = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            final int index = i;
+            assertTrue(mLoop.post("event" + i, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    onLoop.add(mLoop.isLoopThread());
+                    done.countDown();
+                }
+            }));
+        }
+
+        assertTrue(done.await(TIMEOUT_S, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2), order);
+        assertEquals(Arrays.asList(true, true, true), onLoop);
+        assertFalse(mLoop.isLoopThread());
+    }
+
+    @Test
+    public void postDroppable_dropsEventsWithoutBlockingWhenTheMailboxIsFull() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mLoop.post("blocker", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                awaitQuietly(release);
+            }
+        });
+        assertTrue(started.await(TIMEOUT_S, TimeUnit.SECONDS));
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(mLoop.postDroppable("queued" + i, noop()));
+        }
+        assertFalse(mLoop.postDroppable("overflow", noop()));
+
+        final SignalingEventLoop.Metrics metrics = mLoop.getMetrics();
+        assertEquals(CAPACITY, metrics.queueDepth);
+        assertEquals(CAPACITY, metrics.maxQueueDepth);
+        assertEquals(1, metrics.rejected);
+
+        release.countDown();
+        final SignalingEventLoop.Metrics drained = drain();
+        assertEquals(0, drained.queueDepth);
+        assertEquals(CAPACITY + 1, drained.handled);
+    }
+
+    @Test
+    public void post_neverDropsWhenTheMailboxIsFull() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mLoop.post("blocker", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                awaitQuietly(release);
+            }
+        });
+        assertTrue(started.await(TIMEOUT_S, TimeUnit.SECONDS));
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(mLoop.postDroppable("candidate" + i, noop()));
+        }
+        assertTrue(mLoop.post("offer", noop()));
+        assertEquals(CAPACITY + 1, mLoop.getQueueDepth());
+        assertEquals(0, mLoop.getMetrics().rejected);
+
+        release.countDown();
+        assertEquals(CAPACITY + 2, drain().handled);
+    }
+
+    @Test
+    public void shutdownAfter_runsQueuedEventsThenTheLastOneAndWaits() throws InterruptedException {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        for (int i = 0; i < 3; i++) {
+            final String name = "event" + i;
+            mLoop.post(name, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(name);
+                }
+            });
+        }
+
+        assertTrue(mLoop.shutdownAfter("release", new Runnable() {
+            @Override
+            public void run() {
+                order.add("release");
+            }
+        }, TimeUnit.SECONDS.toMillis(TIMEOUT_S)));
+
+        assertEquals(Arrays.asList("event0", "event1", "event2", "release"), order);
+        assertFalse(mLoop.post("late", noop()));
+    }
+
+    @Test
+    public void metrics_measureWaitAndHandlingTime() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch slowDone = new CountDownLatch(1);
+        mLoop.post("blocker", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                awaitQuietly(release);
+                mClock.advanceMs(30);
+            }
+        });
+        assertTrue(started.await(TIMEOUT_S, TimeUnit.SECONDS));
+
+        // Queued at t=0 behind the blocker, starts at t=30ms and takes 50ms
+        mLoop.post("slow", new Runnable() {
+            @Override
+            public void run() {
+                mClock.advanceMs(50);
+                slowDone.countDown();
+            }
+        });
+        release.countDown();
+        assertTrue(slowDone.await(TIMEOUT_S, TimeUnit.SECONDS));
+
+        final SignalingEventLoop.Metrics metrics = drain();
+        assertEquals(30, metrics.maxWaitMs, 1e-6);
+        assertEquals(50, metrics.maxHandleMs, 1e-6);
+        assertEquals(40, metrics.meanHandleMs, 1e-6);
+    }
+
+    @Test
+    public void post_keepsRunningAfterAHandlerThrows() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        mLoop.post("bad", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        mLoop.post("good", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(TIMEOUT_S, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void post_rejectsAfterShutdown() {
+        mLoop.shutdown();
+
+        assertFalse(mLoop.post("late", noop()));
+        assertEquals(1, mLoop.getMetrics().rejected);
+    }
+
+    // Metrics taken on the loop once every earlier event has been handled and counted
+    private SignalingEventLoop.Metrics drain() throws InterruptedException {
+        final SignalingEventLoop.Metrics[] metrics = new SignalingEventLoop.Metrics[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        final Runnable capture = new Runnable() {
+            @Override
+            public void run() {
+                metrics[0] = mLoop.getMetrics();
+                done.countDown();
+            }
+        };
+        assertTrue(mLoop.post("drain", capture));
+        assertTrue(done.await(TIMEOUT_S, TimeUnit.SECONDS));
+        return metrics[0];
+    }
+
+    private static Runnable noop() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_S, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class FakeClock implements Clock {
+        private volatile long mNowNs;
+
+        void advanceMs(final long ms) {
+            mNowNs += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNowNs;
+        }
+    }
+}
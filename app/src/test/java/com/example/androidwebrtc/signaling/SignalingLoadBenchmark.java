@@ -0,0 +1,98 @@
+package com.example.androidwebrtc.signaling;
+
+import com.example.androidwebrtc.TestResources;
+
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Thousands of signaling clients against an in-process {@link LocalSignalingServer},
+ * once per codec. Skipped in normal test runs, run it with:
+ *
+ *   ./gradlew :app:testDebugUnitTest --tests '*SignalingLoadBenchmark' -Pbenchmark -PsignalingClients=4000
+ *
+ * Each run prints its report and writes it to build/reports/signaling-load/. Every
+ * client holds two threads and each side of a connection a file descriptor, so
+ * large runs may need a higher ulimit -n.
+ */
+public class SignalingLoadBenchmark {
+    private static final int CLIENTS = Integer.getInteger("signalingClients", 2000);
+    private static final int ROUNDS = 5;
+    private static final int CANDIDATES_PER_ROUND = 4;
+    private static final long TIMEOUT_MS = 120_000;
+
+    private static LocalSignalingServer sServer;
+
+    @BeforeClass
+    public static void setUpClass() throws InterruptedException {
+        Assume.assumeTrue("Signaling load runs only with -Pbenchmark", Boolean.getBoolean("benchmark"));
+
+        sServer = new LocalSignalingServer(0, Runtime.getRuntime().availableProcessors());
+        sServer.startAndWait(TIMEOUT_MS);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws InterruptedException {
+        if (sServer != null) sServer.stop((int) TIMEOUT_MS);
+    }
+
+    @Test
+    public void json() throws Exception {
+        run(false);
+    }
+
+    @Test
+    public void binary() throws Exception {
+        run(true);
+    }
+
+    private void run(final boolean binary) throws Exception {
+        final long relayedBefore = sServer.getRelayedCount();
+        final long droppedBefore = sServer.getDroppedCount();
+
+        final JSONObject report = new SignalingLoadGenerator.Builder(sServer.getUri(), TestResources.read("sdp/android_offer.sdp"))
+                .setClients(CLIENTS)
+                .setRounds(ROUNDS)
+                .setCandidatesPerRound(CANDIDATES_PER_ROUND)
+                .setOfferBinary(binary)
+                .setTimeoutMs(TIMEOUT_MS)
+                .build()
+                .run();
+        report.put("server", new JSONObject()
+                .put("in_process", true)
+                .put("relayed", sServer.getRelayedCount() - relayedBefore)
+                .put("dropped", sServer.getDroppedCount() - droppedBefore));
+
+        System.out.println(report.toString(2));
+        write(report, new File("build/reports/signaling-load/signaling-load-" + CLIENTS + "-" + (binary ? "binary" : "json") + ".json"));
+
+        assertTrue(report.getJSONObject("connect").getBoolean("all_started"));
+        assertTrue(report.getJSONObject("exchange").getBoolean("completed"));
+    }
+
+    private static void write(final JSONObject report, final File file) throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            writer.write(report.toString(2));
+        } finally {
+            writer.close();
+        }
+    }
+}
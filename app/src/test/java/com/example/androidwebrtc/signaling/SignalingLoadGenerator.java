@@ -0,0 +1,346 @@
+package com.example.androidwebrtc.signaling;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.IceCandidate;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens many SignalingClients against one server and pairs them up. Every caller
+ * runs a number of offer/answer rounds with its callee, and after each answer
+ * both sides trickle candidates to each other, the way MainActivity does.
+ *
+ * <p>The JSON report holds messages delivered per second, offer-to-answer round
+ * trips (two passes through the server) and the heap and threads each session
+ * adds. Heap is measured in this JVM, so it includes the server's share when the
+ * server runs in-process.
+ */
+public class SignalingLoadGenerator {
+    // Bumped when a key changes meaning, so old reports are not compared blindly
+    static final int SCHEMA_VERSION = 1;
+
+    private static final IceCandidate CANDIDATE = new IceCandidate("0", 0,
+            "candidate:842163049 1 udp 1677729535 203.0.113.7 53917 typ srflx raddr 192.168.0.12 rport 53917 generation 0 ufrag Xb3q network-cost 10");
+
+    private final URI mUri;
+    private final int mClients;
+    private final int mRounds;
+    private final int mCandidatesPerRound;
+    private final boolean mOfferBinary;
+    private final boolean mOfferCompression;
+    private final int mMaxPendingConnects;
+    private final long mTimeoutMs;
+    private final String mSdp;
+
+    private SignalingLoadGenerator(final Builder builder) {
+        mUri = builder.mUri;
+        mClients = builder.mClients;
+        mRounds = builder.mRounds;
+        mCandidatesPerRound = builder.mCandidatesPerRound;
+        mOfferBinary = builder.mOfferBinary;
+        mOfferCompression = builder.mOfferCompression;
+        mMaxPendingConnects = builder.mMaxPendingConnects;
+        mTimeoutMs = builder.mTimeoutMs;
+        mSdp = builder.mSdp;
+    }
+
+    // Blocks until every pair is done or the timeout passes; every client is closed before it returns
+    public JSONObject run() throws InterruptedException, JSONException {
+        final SimulatedClient[] clients = new SimulatedClient[mClients];
+        final int expectedPerClient = mRounds * (1 + mCandidatesPerRound);
+        final CountDownLatch started = new CountDownLatch(mClients);
+        final CountDownLatch finished = new CountDownLatch(mClients);
+        final Semaphore connecting = new Semaphore(mMaxPendingConnects);
+        final LatencyRecorder startRtts = new LatencyRecorder(mClients);
+        final LatencyRecorder offerRtts = new LatencyRecorder(mClients / 2 * mRounds);
+        final AtomicLong delivered = new AtomicLong();
+
+        final long heapBefore = usedHeap();
+        final int threadsBefore = Thread.activeCount();
+
+        try {
+            final long connectStartNs = System.nanoTime();
+            for (int i = 0; i < mClients; i++) {
+                connecting.acquire();
+                clients[i] = new SimulatedClient(i % 2 == 0, expectedPerClient, started, finished, connecting,
+                        startRtts, offerRtts, delivered);
+                clients[i].connect();
+            }
+            final boolean allStarted = started.await(mTimeoutMs, TimeUnit.MILLISECONDS);
+            final long connectMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStartNs);
+
+            final long heapPerSession = (usedHeap() - heapBefore) / mClients;
+            final int threadsPerSession = Math.round((float) (Thread.activeCount() - threadsBefore) / mClients);
+
+            boolean completed = false;
+            long exchangeNs = 0;
+            if (allStarted) {
+                final long exchangeStartNs = System.nanoTime();
+                for (int i = 0; i < mClients; i += 2) {
+                    clients[i].call(clients[i + 1].mLocalId);
+                }
+                completed = finished.await(mTimeoutMs, TimeUnit.MILLISECONDS);
+                exchangeNs = System.nanoTime() - exchangeStartNs;
+            }
+            final double exchangeSeconds = exchangeNs / 1e9;
+
+            return new JSONObject()
+                    .put("schema_version", SCHEMA_VERSION)
+                    .put("config", new JSONObject()
+                            .put("clients", mClients)
+                            .put("rounds", mRounds)
+                            .put("candidates_per_round", mCandidatesPerRound)
+                            .put("codec", clients[0].mClient.getCodec() instanceof BinarySignalingCodec ? "binary" : "json")
+                            .put("compression_offered", mOfferCompression)
+                            .put("sdp_chars", mSdp.length()))
+                    .put("connect", new JSONObject()
+                            .put("all_started", allStarted)
+                            .put("started", mClients - started.getCount())
+                            .put("duration_ms", connectMs)
+                            .put("start_rtt_ms", startRtts.toJson()))
+                    .put("exchange", new JSONObject()
+                            .put("completed", completed)
+                            .put("duration_ms", TimeUnit.NANOSECONDS.toMillis(exchangeNs))
+                            .put("messages_expected", (long) mClients * expectedPerClient)
+                            .put("messages_delivered", delivered.get())
+                            .put("messages_per_second", exchangeSeconds > 0 ? Math.round(delivered.get() / exchangeSeconds) : 0)
+                            .put("offer_answer_rtt_ms", offerRtts.toJson()))
+                    .put("memory", new JSONObject()
+                            .put("heap_per_session_bytes", heapPerSession)
+                            .put("threads_per_session", threadsPerSession));
+        } finally {
+            for (final SimulatedClient client : clients) {
+                if (client != null) client.mClient.close();
+            }
+            for (final SimulatedClient client : clients) {
+                if (client != null) client.mClient.closeBlocking();
+            }
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // One session as MainActivity runs it; callbacks arrive on the client's read thread
+    private class SimulatedClient implements SignalingClient.Listener {
+        final SignalingClient mClient;
+        private final boolean mCaller;
+        private final int mExpected;
+        private final CountDownLatch mStarted;
+        private final CountDownLatch mFinished;
+        private final Semaphore mConnecting;
+        private final LatencyRecorder mStartRtts;
+        private final LatencyRecorder mOfferRtts;
+        private final AtomicLong mDelivered;
+        private final AtomicInteger mReceived = new AtomicInteger();
+        private volatile String mLocalId;
+        private volatile String mPartnerId;
+        private volatile long mSentNs;
+        private int mRound;
+
+        SimulatedClient(final boolean caller, final int expected, final CountDownLatch started, final CountDownLatch finished,
+                        final Semaphore connecting, final LatencyRecorder startRtts, final LatencyRecorder offerRtts,
+                        final AtomicLong delivered) {
+            mClient = new SignalingClient(mUri, this, mOfferBinary, mOfferCompression);
+            // The generator closes the clients itself, pings would only add noise
+            mClient.setConnectionLostTimeout(0);
+            mCaller = caller;
+            mExpected = expected;
+            mStarted = started;
+            mFinished = finished;
+            mConnecting = connecting;
+            mStartRtts = startRtts;
+            mOfferRtts = offerRtts;
+            mDelivered = delivered;
+        }
+
+        void connect() {
+            mSentNs = System.nanoTime();
+            mClient.connect();
+        }
+
+        void call(final String partnerId) {
+            mPartnerId = partnerId;
+            sendOffer();
+        }
+
+        private void sendOffer() {
+            mSentNs = System.nanoTime();
+            mClient.send(SignalingMessage.offer(mPartnerId, mSdp));
+        }
+
+        private void sendCandidates() {
+            for (int i = 0; i < mCandidatesPerRound; i++) {
+                mClient.send(SignalingMessage.iceCandidate(mPartnerId, CANDIDATE));
+            }
+        }
+
+        @Override
+        public void onOpen() {
+            mClient.send(SignalingMessage.start(null));
+        }
+
+        @Override
+        public void onMessage(final SignalingMessage message) {
+            switch (message.type) {
+                case START:
+                    mLocalId = message.localId;
+                    mStartRtts.record(System.nanoTime() - mSentNs);
+                    mConnecting.release();
+                    mStarted.countDown();
+                    return;
+                case OFFER:
+                    mPartnerId = message.remoteId;
+                    mClient.send(SignalingMessage.answer(mPartnerId, mSdp));
+                    sendCandidates();
+                    break;
+                case ANSWER:
+                    mOfferRtts.record(System.nanoTime() - mSentNs);
+                    sendCandidates();
+                    if (++mRound < mRounds) sendOffer();
+                    break;
+                default:
+                    break;
+            }
+
+            mDelivered.incrementAndGet();
+            if (mReceived.incrementAndGet() == mExpected) mFinished.countDown();
+        }
+
+        @Override
+        public void onClose(final int code, final String reason, final boolean remote) {
+            // A client that never started still frees its connect slot
+            if (mLocalId == null) mConnecting.release();
+        }
+
+        @Override
+        public void onError(final Exception ex) {
+        }
+    }
+
+    // Fixed-size sample store, percentiles computed once at the end
+    static class LatencyRecorder {
+        private final long[] mSamplesNs;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        LatencyRecorder(final int capacity) {
+            mSamplesNs = new long[capacity];
+        }
+
+        void record(final long latencyNs) {
+            final int index = mCount.getAndIncrement();
+            if (index < mSamplesNs.length) mSamplesNs[index] = latencyNs;
+        }
+
+        // Nearest-rank percentile in milliseconds, 0 without samples
+        double percentileMs(final double percentile) {
+            final int count = Math.min(mCount.get(), mSamplesNs.length);
+            if (count == 0) return 0;
+
+            final long[] sorted = Arrays.copyOf(mSamplesNs, count);
+            Arrays.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100 * count);
+            return sorted[Math.max(rank, 1) - 1] / 1e6;
+        }
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("samples", Math.min(mCount.get(), mSamplesNs.length))
+                    .put("p50", percentileMs(50))
+                    .put("p90", percentileMs(90))
+                    .put("p99", percentileMs(99))
+                    .put("max", percentileMs(100));
+        }
+    }
+
+    public static class Builder {
+        private final URI mUri;
+        private final String mSdp;
+        private int mClients = 1000;
+        private int mRounds = 5;
+        private int mCandidatesPerRound = 4;
+        private boolean mOfferBinary;
+        private boolean mOfferCompression;
+        private int mMaxPendingConnects = 256;
+        private long mTimeoutMs = 60_000;
+
+        // The SDP is sent as every offer and answer, e.g. sdp/android_offer.sdp
+        public Builder(final URI uri, final String sdp) {
+            if (uri == null || sdp == null) {
+                throw new IllegalArgumentException("uri and sdp are required");
+            }
+            mUri = uri;
+            mSdp = sdp;
+        }
+
+        // Callers and callees alternate, so the count must be even
+        public Builder setClients(final int clients) {
+            if (clients < 2 || clients % 2 != 0) {
+                throw new IllegalArgumentException("clients must be even and at least 2: " + clients);
+            }
+            mClients = clients;
+            return this;
+        }
+
+        public Builder setRounds(final int rounds) {
+            if (rounds <= 0) {
+                throw new IllegalArgumentException("rounds must be positive: " + rounds);
+            }
+            mRounds = rounds;
+            return this;
+        }
+
+        public Builder setCandidatesPerRound(final int candidates) {
+            if (candidates < 0) {
+                throw new IllegalArgumentException("candidates must not be negative: " + candidates);
+            }
+            mCandidatesPerRound = candidates;
+            return this;
+        }
+
+        public Builder setOfferBinary(final boolean offer) {
+            mOfferBinary = offer;
+            return this;
+        }
+
+        public Builder setOfferCompression(final boolean offer) {
+            mOfferCompression = offer;
+            return this;
+        }
+
+        // Handshakes in flight at once, so a large run does not overflow the accept queue
+        public Builder setMaxPendingConnects(final int maxPending) {
+            if (maxPending <= 0) {
+                throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+            }
+            mMaxPendingConnects = maxPending;
+            return this;
+        }
+
+        // Applies to connecting and to the exchange separately
+        public Builder setTimeoutMs(final long timeoutMs) {
+            if (timeoutMs <= 0) {
+                throw new IllegalArgumentException("timeoutMs must be positive: " + timeoutMs);
+            }
+            mTimeoutMs = timeoutMs;
+            return this;
+        }
+
+        public SignalingLoadGenerator build() {
+            return new SignalingLoadGenerator(this);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.androidwebrtc.webrtc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PeerRegistryTest {
+    private final List<String> mCreated = new ArrayList<>();
+    private final List<String> mClosed = new ArrayList<>();
+    private final PeerRegistry.Factory<String> mFactory = new PeerRegistry.Factory<String>() {
+        @Override
+        public String create(String remoteId) {
+            mCreated.add(remoteId);
+            return remoteId;
+        }
+
+        @Override
+        public void close(String peer) {
+            mClosed.add(peer);
+        }
+    };
+
+    @Test
+    public void open_returnsTheExistingPeerForAKnownId() {
+        final PeerRegistry<String> registry = new PeerRegistry<>(mFactory, 2, PeerRegistry.OverflowPolicy.REJECT_NEW);
+
+        assertEquals("a", registry.open("a"));
+        assertEquals("a", registry.open("a"));
+        assertEquals(1, mCreated.size());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void rejectNew_refusesPeersBeyondTheCapWithoutCreatingThem() {
+        final PeerRegistry<String> registry = new PeerRegistry<>(mFactory, 2, PeerRegistry.OverflowPolicy.REJECT_NEW);
+
+        registry.open("a");
+        registry.open("b");
+
+        assertNull(registry.open("c"));
+        assertEquals(Arrays.asList("a", "b"), mCreated);
+        assertEquals(Arrays.asList("a", "b"), registry.snapshot());
+        assertTrue(mClosed.isEmpty());
+    }
+
+    @Test
+    public void evictOldest_closesThePeerThatJoinedFirst() {
+        final PeerRegistry<String> registry = new PeerRegistry<>(mFactory, 2, PeerRegistry.OverflowPolicy.EVICT_OLDEST);
+
+        registry.open("a");
+        registry.open("b");
+
+        assertEquals("c", registry.open("c"));
+        assertEquals(Arrays.asList("a"), mClosed);
+        assertNull(registry.get("a"));
+        assertEquals(Arrays.asList("b", "c"), registry.snapshot());
+    }
+
+    @Test
+    public void close_freesASlot() {
+        final PeerRegistry<String> registry = new PeerRegistry<>(mFactory, 1, PeerRegistry.OverflowPolicy.REJECT_NEW);
+
+        registry.open("a");
+        assertTrue(registry.close("a"));
+        assertFalse(registry.close("a"));
+
+        assertEquals("b", registry.open("b"));
+        assertEquals(Arrays.asList("a"), mClosed);
+    }
+
+    @Test
+    public void closeAll_closesEveryPeerInJoinOrder() {
+        final PeerRegistry<String> registry = new PeerRegistry<>(mFactory, 3, PeerRegistry.OverflowPolicy.REJECT_NEW);
+
+        registry.open("a");
+        registry.open("b");
+        registry.open("c");
+        registry.closeAll();
+
+        assertEquals(0, registry.size());
+        assertEquals(Arrays.asList("a", "b", "c"), mClosed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsANonPositiveCap() {
+        new PeerRegistry<>(mFactory, 0, PeerRegistry.OverflowPolicy.REJECT_NEW);
+    }
+}
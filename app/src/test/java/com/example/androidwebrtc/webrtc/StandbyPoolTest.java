@@ -0,0 +1,166 @@
+package com.example.androidwebrtc.webrtc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StandbyPoolTest {
+    private static final long MAX_IDLE_MS = 60_000;
+
+    private final List<Integer> mCreated = new ArrayList<>();
+    private final List<Integer> mDisposed = new ArrayList<>();
+    // Runs inside the next create(), like another thread acting on the pool meanwhile
+    private Runnable mDuringCreate;
+    private boolean mCalledLocked;
+    private final StandbyPool.Factory<Integer> mFactory = new StandbyPool.Factory<Integer>() {
+        @Override
+        public Integer create() {
+            mCalledLocked |= Thread.holdsLock(mPool);
+            final Integer item = mCreated.size();
+            mCreated.add(item);
+            final Runnable duringCreate = mDuringCreate;
+            mDuringCreate = null;
+            if (duringCreate != null) duringCreate.run();
+            return item;
+        }
+
+        @Override
+        public void dispose(Integer item) {
+            mCalledLocked |= Thread.holdsLock(mPool);
+            mDisposed.add(item);
+        }
+    };
+    private final FakeClock mClock = new FakeClock();
+
+    private ScheduledExecutorService mExecutor;
+    private StandbyPool<Integer> mPool;
+
+    @Before
+    public void setUp() {
+        // The real-time staleness check never fires within a test at this interval
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mPool = new StandbyPool<>(mFactory, MAX_IDLE_MS, mClock, mExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void take_returnsThePreparedStandbyOnce() {
+        mPool.fill();
+        mPool.fill();
+
+        assertEquals(1, mCreated.size());
+        assertEquals(Integer.valueOf(0), mPool.take());
+        assertNull(mPool.take());
+        assertTrue(mDisposed.isEmpty());
+    }
+
+    @Test
+    public void take_withoutFill_returnsNull() {
+        assertNull(mPool.take());
+        assertTrue(mCreated.isEmpty());
+    }
+
+    @Test
+    public void staleStandby_isRebuiltInTheBackground() {
+        mPool.fill();
+        mClock.advanceMs(MAX_IDLE_MS - 1);
+        mPool.recycleIfStale();
+        assertEquals(0, mPool.getRecycleCount());
+
+        mClock.advanceMs(1);
+        mPool.recycleIfStale();
+
+        assertEquals(1, mPool.getRecycleCount());
+        assertEquals(2, mCreated.size());
+        assertEquals(Integer.valueOf(0), mDisposed.get(0));
+        assertEquals(Integer.valueOf(1), mPool.take());
+    }
+
+    @Test
+    public void staleStandby_isNotHandedOut() {
+        mPool.fill();
+        mClock.advanceMs(MAX_IDLE_MS);
+
+        assertNull(mPool.take());
+        assertEquals(1, mDisposed.size());
+        assertFalse(mPool.hasStandby());
+    }
+
+    @Test
+    public void clear_disposesTheStandby() {
+        mPool.fill();
+        mPool.clear();
+
+        assertEquals(1, mDisposed.size());
+        assertNull(mPool.take());
+
+        mPool.fill();
+        assertTrue(mPool.hasStandby());
+    }
+
+    @Test
+    public void factory_isNeverCalledUnderThePoolLock() {
+        mPool.fill();
+        mClock.advanceMs(MAX_IDLE_MS);
+        mPool.recycleIfStale();
+        mPool.clear();
+
+        assertEquals(2, mCreated.size());
+        assertEquals(2, mDisposed.size());
+        assertFalse(mCalledLocked);
+    }
+
+    @Test
+    public void clearDuringCreate_disposesTheOutdatedStandby() {
+        mDuringCreate = new Runnable() {
+            @Override
+            public void run() {
+                mPool.clear();
+            }
+        };
+
+        mPool.fill();
+
+        assertFalse(mPool.hasStandby());
+        assertEquals(Integer.valueOf(0), mDisposed.get(0));
+
+        mPool.fill();
+        assertEquals(Integer.valueOf(1), mPool.take());
+    }
+
+    @Test
+    public void shutdown_stopsFurtherFills() {
+        mPool.fill();
+        mPool.shutdown();
+        mPool.fill();
+
+        assertEquals(1, mCreated.size());
+        assertEquals(1, mDisposed.size());
+        assertFalse(mPool.hasStandby());
+    }
+
+    private static class FakeClock implements Clock {
+        private long mNowNs;
+
+        void advanceMs(final long ms) {
+            mNowNs += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNowNs;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AggregateStatsSourceTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void combine_takesTheSlowestLinkAndSumsEncodeTime() {
+        final AdaptationSample combined = AggregateStatsSource.combine(Arrays.asList(
+                new AdaptationSample(1_500_000, 4, AdaptationSample.LimitationReason.NONE),
+                new AdaptationSample(600_000, 6, AdaptationSample.LimitationReason.BANDWIDTH)));
+
+        assertEquals(600_000, combined.availableOutgoingBitrateBps, DELTA);
+        assertEquals(10, combined.encodeTimeMsPerFrame, DELTA);
+        assertEquals(AdaptationSample.LimitationReason.BANDWIDTH, combined.limitationReason);
+    }
+
+    @Test
+    public void combine_ignoresUnknownValues() {
+        final AdaptationSample combined = AggregateStatsSource.combine(Arrays.asList(
+                new AdaptationSample(-1, -1, AdaptationSample.LimitationReason.NONE),
+                new AdaptationSample(800_000, 5, AdaptationSample.LimitationReason.NONE)));
+
+        assertEquals(800_000, combined.availableOutgoingBitrateBps, DELTA);
+        assertEquals(5, combined.encodeTimeMsPerFrame, DELTA);
+    }
+
+    @Test
+    public void combine_staysUnknownWhenNoPeerReports() {
+        final AdaptationSample combined = AggregateStatsSource.combine(Collections.singletonList(
+                new AdaptationSample(-1, -1, AdaptationSample.LimitationReason.NONE)));
+
+        assertTrue(combined.availableOutgoingBitrateBps < 0);
+        assertTrue(combined.encodeTimeMsPerFrame < 0);
+    }
+
+    @Test
+    public void combine_reportsTheMostSevereLimitation() {
+        final AdaptationSample combined = AggregateStatsSource.combine(Arrays.asList(
+                new AdaptationSample(1_000_000, 3, AdaptationSample.LimitationReason.BANDWIDTH),
+                new AdaptationSample(1_000_000, 3, AdaptationSample.LimitationReason.CPU),
+                new AdaptationSample(1_000_000, 3, AdaptationSample.LimitationReason.OTHER)));
+
+        assertEquals(AdaptationSample.LimitationReason.CPU, combined.limitationReason);
+    }
+
+    @Test
+    public void requestSample_answersOnceEveryPeerHasReported() {
+        final DeferredSource first = new DeferredSource();
+        final DeferredSource second = new DeferredSource();
+        final List<AdaptationSample> received = new ArrayList<>();
+
+        final AggregateStatsSource source = new AggregateStatsSource(new AggregateStatsSource.Sources() {
+            @Override
+            public List<AdaptationStatsSource> current() {
+                return Arrays.<AdaptationStatsSource>asList(first, second);
+            }
+        });
+        source.requestSample(new AdaptationStatsSource.Callback() {
+            @Override
+            public void onSample(AdaptationSample sample) {
+                received.add(sample);
+            }
+        });
+
+        first.answer(new AdaptationSample(900_000, 2, AdaptationSample.LimitationReason.NONE));
+        assertTrue(received.isEmpty());
+
+        second.answer(new AdaptationSample(400_000, 3, AdaptationSample.LimitationReason.NONE));
+        assertEquals(1, received.size());
+        assertEquals(400_000, received.get(0).availableOutgoingBitrateBps, DELTA);
+        assertEquals(5, received.get(0).encodeTimeMsPerFrame, DELTA);
+    }
+
+    @Test
+    public void requestSample_staysSilentWithoutPeers() {
+        final List<AdaptationSample> received = new ArrayList<>();
+        final AggregateStatsSource source = new AggregateStatsSource(new AggregateStatsSource.Sources() {
+            @Override
+            public List<AdaptationStatsSource> current() {
+                return Collections.emptyList();
+            }
+        });
+
+        source.requestSample(new AdaptationStatsSource.Callback() {
+            @Override
+            public void onSample(AdaptationSample sample) {
+                received.add(sample);
+            }
+        });
+
+        assertTrue(received.isEmpty());
+    }
+
+    private static class DeferredSource implements AdaptationStatsSource {
+        private Callback mCallback;
+
+        @Override
+        public void requestSample(Callback callback) {
+            mCallback = callback;
+        }
+
+        void answer(final AdaptationSample sample) {
+            mCallback.onSample(sample);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import org.junit.Test;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PeerConnectionStatsSourceTest {
+    @Test
+    public void toSample_readsBitrateReasonAndEncodeTimeDelta() {
+        final PeerConnectionStatsSource source = new PeerConnectionStatsSource(null);
+
+        final AdaptationSample first = source.toSample(report(1_200_000.0, "none", 1.0, 100L));
+        assertEquals(1_200_000.0, first.availableOutgoingBitrateBps, 0.0);
+        assertEquals(AdaptationSample.LimitationReason.NONE, first.limitationReason);
+        assertTrue(first.encodeTimeMsPerFrame < 0);
+
+        // 0.3 s spent encoding 30 frames
+        final AdaptationSample second = source.toSample(report(800_000.0, "bandwidth", 1.3, 130L));
+        assertEquals(800_000.0, second.availableOutgoingBitrateBps, 0.0);
+        assertEquals(AdaptationSample.LimitationReason.BANDWIDTH, second.limitationReason);
+        assertEquals(10.0, second.encodeTimeMsPerFrame, 0.001);
+    }
+
+    @Test
+    public void toSample_takesDeltasPerLayerAndTheWorstOfThem() {
+        final PeerConnectionStatsSource source = new PeerConnectionStatsSource(null);
+
+        source.toSample(simulcastReport(new String[] {"none", "none", "none"}, new double[] {0.2, 0.5, 1.0}, new long[] {100, 100, 100}));
+        // 30 frames per layer: 2, 5 and 12 ms each
+        final AdaptationSample sample = source.toSample(simulcastReport(
+                new String[] {"none", "bandwidth", "cpu"}, new double[] {0.26, 0.65, 1.36}, new long[] {130, 130, 130}));
+
+        assertEquals(12.0, sample.encodeTimeMsPerFrame, 0.001);
+        assertEquals(AdaptationSample.LimitationReason.CPU, sample.limitationReason);
+        assertEquals(1_000_000.0, sample.availableOutgoingBitrateBps, 0.0);
+    }
+
+    @Test
+    public void toSample_skipsALayerSeenForTheFirstTime() {
+        final PeerConnectionStatsSource source = new PeerConnectionStatsSource(null);
+
+        source.toSample(simulcastReport(new String[] {"none"}, new double[] {0.2}, new long[] {100}));
+        final AdaptationSample sample = source.toSample(simulcastReport(
+                new String[] {"none", "none"}, new double[] {0.26, 50.0}, new long[] {130, 1000}));
+
+        assertEquals(2.0, sample.encodeTimeMsPerFrame, 0.001);
+    }
+
+    // One video outbound-rtp entry per layer, each with its own SSRC
+    private static RTCStatsReport simulcastReport(final String[] reasons, final double[] totalEncodeTimes, final long[] framesEncoded) {
+        final Map<String, Object> pair = new HashMap<>();
+        pair.put("nominated", true);
+        pair.put("availableOutgoingBitrate", 1_000_000.0);
+
+        final Map<String, RTCStats> stats = new HashMap<>();
+        stats.put("CP1", new RTCStats(0, "candidate-pair", "CP1", pair));
+        for (int layer = 0; layer < reasons.length; layer++) {
+            final Map<String, Object> outbound = new HashMap<>();
+            outbound.put("kind", "video");
+            outbound.put("ssrc", 3000L - layer);
+            outbound.put("qualityLimitationReason", reasons[layer]);
+            outbound.put("totalEncodeTime", totalEncodeTimes[layer]);
+            outbound.put("framesEncoded", framesEncoded[layer]);
+            stats.put("OT" + layer, new RTCStats(0, "outbound-rtp", "OT" + layer, outbound));
+        }
+        return new RTCStatsReport(0, stats);
+    }
+
+    private static RTCStatsReport report(final double availableBitrate, final String reason, final double totalEncodeTime, final long framesEncoded) {
+        final Map<String, Object> pair = new HashMap<>();
+        pair.put("nominated", true);
+        pair.put("availableOutgoingBitrate", availableBitrate);
+
+        final Map<String, Object> outbound = new HashMap<>();
+        outbound.put("kind", "video");
+        outbound.put("qualityLimitationReason", reason);
+        outbound.put("totalEncodeTime", totalEncodeTime);
+        outbound.put("framesEncoded", framesEncoded);
+
+        final Map<String, RTCStats> stats = new HashMap<>();
+        stats.put("CP1", new RTCStats(0, "candidate-pair", "CP1", pair));
+        stats.put("OT1", new RTCStats(0, "outbound-rtp", "OT1", outbound));
+        return new RTCStatsReport(0, stats);
+    }
+}
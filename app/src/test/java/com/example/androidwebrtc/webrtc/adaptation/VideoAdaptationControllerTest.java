@@ -0,0 +1,151 @@
+package com.example.androidwebrtc.webrtc.adaptation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VideoAdaptationControllerTest {
+    private final List<String> mFormats = new ArrayList<>();
+    private VideoAdaptationController mController;
+
+    @Before
+    public void setUp() {
+        mController = new VideoAdaptationController(
+                VideoQualityLadder.defaultLadder(640, 480, 30),
+                new OutputFormatSink() {
+                    @Override
+                    public void adaptOutputFormat(int width, int height, int fps) {
+                        mFormats.add(width + "x" + height + "@" + fps);
+                    }
+                },
+                null);
+    }
+
+    @Test
+    public void congestedLink_stepsDownToFloorAndRecoversGradually() throws IOException {
+        replay("adaptation/congested_link.csv");
+
+        assertEquals(6, mFormats.size());
+        assertEquals("640x480@15", mFormats.get(0));
+        assertEquals("480x360@15", mFormats.get(1));
+        assertEquals("320x240@15", mFormats.get(2));
+        assertEquals("480x360@15", mFormats.get(3));
+        assertEquals("640x480@15", mFormats.get(4));
+        assertEquals("640x480@30", mFormats.get(5));
+    }
+
+    @Test
+    public void flappingLink_doesNotChangeFormat() throws IOException {
+        replay("adaptation/flapping_link.csv");
+
+        assertTrue(mFormats.isEmpty());
+        assertEquals(640, mController.getCurrentRung().width);
+        assertEquals(30, mController.getCurrentRung().fps);
+    }
+
+    @Test
+    public void cpuOverload_stepsDownAndOnlyRecoversOnceCpuIsFree() throws IOException {
+        final List<AdaptationSample> trace = load("adaptation/cpu_overload.csv");
+
+        for (int i = 0; i < 6; i++) {
+            mController.onStats(trace.get(i));
+        }
+        assertEquals("320x240@15", mFormats.get(mFormats.size() - 1));
+
+        for (int i = 6; i < trace.size(); i++) {
+            mController.onStats(trace.get(i));
+        }
+        assertEquals("640x480@30", mFormats.get(mFormats.size() - 1));
+    }
+
+    @Test
+    public void singleBadSample_isIgnored() {
+        mController.onStats(new AdaptationSample(100_000, 5, AdaptationSample.LimitationReason.NONE));
+        mController.onStats(new AdaptationSample(2_000_000, 5, AdaptationSample.LimitationReason.NONE));
+        mController.onStats(new AdaptationSample(100_000, 5, AdaptationSample.LimitationReason.NONE));
+
+        assertTrue(mFormats.isEmpty());
+    }
+
+    @Test
+    public void startAndStop_putTheSinkBackOnTheTopRung() {
+        mController.start(TimeUnit.HOURS.toMillis(1));
+        assertEquals("640x480@30", mFormats.get(0));
+
+        mController.onStats(new AdaptationSample(100_000, 5, AdaptationSample.LimitationReason.NONE));
+        mController.onStats(new AdaptationSample(100_000, 5, AdaptationSample.LimitationReason.NONE));
+        assertEquals("640x480@15", mFormats.get(1));
+
+        mController.stop();
+        assertEquals("640x480@30", mFormats.get(2));
+        assertEquals(30, mController.getCurrentRung().fps);
+    }
+
+    @Test
+    public void samplesAfterStop_areIgnored() {
+        mController.start(TimeUnit.HOURS.toMillis(1));
+        mController.stop();
+        mFormats.clear();
+
+        mController.onStats(new AdaptationSample(100_000, 5, AdaptationSample.LimitationReason.NONE));
+        mController.onStats(new AdaptationSample(100_000, 5, AdaptationSample.LimitationReason.NONE));
+
+        assertTrue(mFormats.isEmpty());
+    }
+
+    @Test
+    public void unknownBitrate_neverStepsUp() {
+        mController.onStats(new AdaptationSample(-1, 5, AdaptationSample.LimitationReason.CPU));
+        mController.onStats(new AdaptationSample(-1, 5, AdaptationSample.LimitationReason.CPU));
+        assertEquals(1, mFormats.size());
+
+        for (int i = 0; i < 20; i++) {
+            mController.onStats(new AdaptationSample(-1, 5, AdaptationSample.LimitationReason.NONE));
+        }
+        assertEquals(1, mFormats.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ladder_rejectsIncreasingBitrates() {
+        new VideoQualityLadder.Builder().add(320, 240, 15, 100_000).add(640, 480, 30, 600_000);
+    }
+
+    private void replay(final String resource) throws IOException {
+        for (final AdaptationSample sample : load(resource)) {
+            mController.onStats(sample);
+        }
+    }
+
+    private List<AdaptationSample> load(final String resource) throws IOException {
+        final List<AdaptationSample> samples = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(resource), StandardCharsets.UTF_8));
+
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                final String[] fields = line.split(",");
+                samples.add(new AdaptationSample(
+                        Double.parseDouble(fields[0]),
+                        Double.parseDouble(fields[1]),
+                        AdaptationSample.LimitationReason.fromStatsValue(fields[2].trim().toLowerCase(Locale.US))));
+            }
+        } finally {
+            reader.close();
+        }
+
+        return samples;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.androidwebrtc.webrtc.audio;
+
+import org.junit.Test;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AudioLatencyMeterTest {
+    @Test
+    public void toLatency_splitsMouthToEarIntoItsComponents() {
+        final AudioLatencyMeter meter = new AudioLatencyMeter(null);
+
+        // Both delays are summed over every sample. The first reading averages over
+        // the call so far: 4800s over 96000 samples
+        final AudioLatency first = meter.toLatency(report(0.080, 0.120, 4800.0, 96_000L, 1000.0, 48_000L));
+        assertEquals(40.0, first.networkMs, 0.001);
+        assertEquals(50.0, first.jitterBufferMs, 0.001);
+        assertEquals(1000.0 / 48, first.playoutMs, 0.001);
+
+        // Then over the interval: 2400s more over 48000 more samples
+        final AudioLatency second = meter.toLatency(report(0.100, 0.120, 7200.0, 144_000L, 2200.0, 96_000L));
+        assertEquals(50.0, second.networkMs, 0.001);
+        assertEquals(50.0, second.jitterBufferMs, 0.001);
+        assertEquals(25.0, second.playoutMs, 0.001);
+        assertEquals(125.0, second.totalMs(), 0.001);
+    }
+
+    @Test
+    public void withoutRtcpRoundTrip_fallsBackToTheCandidatePair() {
+        final AudioLatencyMeter meter = new AudioLatencyMeter(null);
+
+        final AudioLatency latency = meter.toLatency(report(-1, 0.060, 1000.0, 20_000L, -1, 0L));
+
+        assertEquals(30.0, latency.networkMs, 0.001);
+        assertEquals(50.0, latency.jitterBufferMs, 0.001);
+        assertTrue(latency.playoutMs < 0);
+        // Playout is optional, older libwebrtc does not report it
+        assertEquals(80.0, latency.totalMs(), 0.001);
+    }
+
+    @Test
+    public void noNewSamples_leavesTheJitterBufferUnknown() {
+        final AudioLatencyMeter meter = new AudioLatencyMeter(null);
+        meter.toLatency(report(0.080, -1, 1000.0, 20_000L, -1, 0L));
+
+        final AudioLatency latency = meter.toLatency(report(0.080, -1, 1000.0, 20_000L, -1, 0L));
+
+        assertTrue(latency.jitterBufferMs < 0);
+        assertTrue(latency.totalMs() < 0);
+    }
+
+    @Test
+    public void restartedStream_startsTheAverageOver() {
+        final AudioLatencyMeter meter = new AudioLatencyMeter(null);
+        meter.toLatency(report(0.080, -1, 10_000.0, 200_000L, -1, 0L));
+
+        final AudioLatency latency = meter.toLatency(report(0.080, -1, 600.0, 10_000L, -1, 0L));
+
+        assertEquals(60.0, latency.jitterBufferMs, 0.001);
+    }
+
+    @Test
+    public void emptyReport_isAllUnknown() {
+        final AudioLatency latency = new AudioLatencyMeter(null).toLatency(new RTCStatsReport(0, new HashMap<String, RTCStats>()));
+
+        assertTrue(latency.networkMs < 0);
+        assertTrue(latency.jitterBufferMs < 0);
+        assertTrue(latency.playoutMs < 0);
+        assertTrue(latency.totalMs() < 0);
+    }
+
+    // Negative values leave the member out
+    private static RTCStatsReport report(final double remoteRttSec, final double pairRttSec, final double jitterBufferDelaySec,
+                                         final long emittedCount, final double playoutDelaySec, final long playoutSamples) {
+        final Map<String, RTCStats> stats = new HashMap<>();
+
+        final Map<String, Object> remoteInbound = new HashMap<>();
+        remoteInbound.put("kind", "audio");
+        if (remoteRttSec >= 0) remoteInbound.put("roundTripTime", remoteRttSec);
+        stats.put("RIA1", new RTCStats(0, "remote-inbound-rtp", "RIA1", remoteInbound));
+
+        // Video RTT must not be taken for audio
+        final Map<String, Object> remoteInboundVideo = new HashMap<>();
+        remoteInboundVideo.put("kind", "video");
+        remoteInboundVideo.put("roundTripTime", 5.0);
+        stats.put("RIV1", new RTCStats(0, "remote-inbound-rtp", "RIV1", remoteInboundVideo));
+
+        final Map<String, Object> pair = new HashMap<>();
+        pair.put("nominated", true);
+        if (pairRttSec >= 0) pair.put("currentRoundTripTime", pairRttSec);
+        stats.put("CP1", new RTCStats(0, "candidate-pair", "CP1", pair));
+
+        final Map<String, Object> backupPair = new HashMap<>();
+        backupPair.put("nominated", false);
+        backupPair.put("currentRoundTripTime", 5.0);
+        stats.put("CP2", new RTCStats(0, "candidate-pair", "CP2", backupPair));
+
+        final Map<String, Object> inboundAudio = new HashMap<>();
+        inboundAudio.put("kind", "audio");
+        inboundAudio.put("jitterBufferDelay", jitterBufferDelaySec);
+        inboundAudio.put("jitterBufferEmittedCount", emittedCount);
+        stats.put("IT01A", new RTCStats(0, "inbound-rtp", "IT01A", inboundAudio));
+
+        final Map<String, Object> inboundVideo = new HashMap<>();
+        inboundVideo.put("kind", "video");
+        inboundVideo.put("jitterBufferDelay", 99.0);
+        inboundVideo.put("jitterBufferEmittedCount", 10L);
+        stats.put("IT01V", new RTCStats(0, "inbound-rtp", "IT01V", inboundVideo));
+
+        if (playoutDelaySec >= 0) {
+            final Map<String, Object> playout = new HashMap<>();
+            playout.put("kind", "audio");
+            playout.put("totalPlayoutDelay", playoutDelaySec);
+            playout.put("totalSamplesCount", playoutSamples);
+            stats.put("AP", new RTCStats(0, "media-playout", "AP", playout));
+        }
+        return new RTCStatsReport(0, stats);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.androidwebrtc.webrtc.audio;
+
+import android.media.MediaRecorder;
+
+import org.junit.Test;
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AudioProfileTest {
+    @Test
+    public void conversation_keepsEveryProcessingStepAndTheDefaultJitterBuffer() {
+        final AudioProfile profile = AudioProfile.CONVERSATION;
+
+        assertTrue(profile.useHardwareAcousticEchoCanceler());
+        assertTrue(profile.useHardwareNoiseSuppressor());
+        assertFalse(profile.useLowLatency());
+        assertEquals(MediaRecorder.AudioSource.VOICE_COMMUNICATION, profile.getAudioSource());
+
+        final Map<String, String> constraints = mandatory(profile.toAudioConstraints());
+        assertEquals("true", constraints.get("googEchoCancellation"));
+        assertEquals("true", constraints.get("googAutoGainControl"));
+        assertEquals("true", constraints.get("googNoiseSuppression"));
+        assertEquals("true", constraints.get("googHighpassFilter"));
+
+        final PeerConnection.RTCConfiguration configuration = configuration();
+        profile.applyTo(configuration);
+        assertEquals(AudioProfile.DEFAULT_JITTER_BUFFER_MAX_PACKETS, configuration.audioJitterBufferMaxPackets);
+        assertFalse(configuration.audioJitterBufferFastAccelerate);
+    }
+
+    @Test
+    public void lowestLatency_takesTheFastPathAndKeepsOnlyEchoCancellation() {
+        final AudioProfile profile = AudioProfile.LOWEST_LATENCY;
+
+        assertFalse(profile.useHardwareAcousticEchoCanceler());
+        assertFalse(profile.useHardwareNoiseSuppressor());
+        assertTrue(profile.useLowLatency());
+        assertEquals(MediaRecorder.AudioSource.MIC, profile.getAudioSource());
+
+        final Map<String, String> constraints = mandatory(profile.toAudioConstraints());
+        assertEquals("true", constraints.get("googEchoCancellation"));
+        assertEquals("false", constraints.get("googAutoGainControl"));
+        assertEquals("false", constraints.get("googNoiseSuppression"));
+        assertEquals("true", constraints.get("googHighpassFilter"));
+
+        final PeerConnection.RTCConfiguration configuration = configuration();
+        profile.applyTo(configuration);
+        assertEquals(50, configuration.audioJitterBufferMaxPackets);
+        assertTrue(configuration.audioJitterBufferFastAccelerate);
+    }
+
+    @Test
+    public void builderFromBase_changesOnlyWhatIsSet() {
+        final AudioProfile profile = new AudioProfile.Builder("quiet-room", AudioProfile.LOWEST_LATENCY)
+                .setNoiseSuppression(true)
+                .build();
+
+        assertEquals("quiet-room", profile.getName());
+        assertTrue(profile.noiseSuppression());
+        assertFalse(profile.autoGainControl());
+        assertTrue(profile.useLowLatency());
+        assertEquals(AudioProfile.LOWEST_LATENCY.getJitterBufferMaxPackets(), profile.getJitterBufferMaxPackets());
+        assertTrue(profile.jitterBufferFastAccelerate());
+        // The preset is untouched
+        assertFalse(AudioProfile.LOWEST_LATENCY.noiseSuppression());
+    }
+
+    @Test
+    public void constraints_areFreshForEveryCall() {
+        final MediaConstraints first = AudioProfile.CONVERSATION.toAudioConstraints();
+        first.mandatory.clear();
+
+        assertEquals(4, AudioProfile.CONVERSATION.toAudioConstraints().mandatory.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveJitterBuffer_isRejected() {
+        new AudioProfile.Builder("broken").setJitterBufferMaxPackets(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyName_isRejected() {
+        new AudioProfile.Builder("");
+    }
+
+    private static PeerConnection.RTCConfiguration configuration() {
+        return new PeerConnection.RTCConfiguration(new ArrayList<PeerConnection.IceServer>());
+    }
+
+    private static Map<String, String> mandatory(final MediaConstraints constraints) {
+        final Map<String, String> values = new HashMap<>();
+        for (final MediaConstraints.KeyValuePair pair : constraints.mandatory) {
+            assertNull("Duplicate key " + pair.getKey(), values.put(pair.getKey(), pair.getValue()));
+        }
+        assertTrue(constraints.optional.isEmpty());
+        return values;
+    }
+}
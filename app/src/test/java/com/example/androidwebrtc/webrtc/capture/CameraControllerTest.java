@@ -0,0 +1,183 @@
+package com.example.androidwebrtc.webrtc.capture;
+
+import org.junit.Test;
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CameraControllerTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void pickDevice_prefersFrontThenFirst() {
+        assertEquals("1", CameraController.pickDevice(new FakeCameraEnumerator()
+                .add("0", false).add("1", true)));
+        assertEquals("0", CameraController.pickDevice(new FakeCameraEnumerator()
+                .add("0", false).add("2", false)));
+        assertNull(CameraController.pickDevice(new FakeCameraEnumerator()));
+    }
+
+    @Test
+    public void start_usesTheSelectedNativeFormat() {
+        final FakeCameraEnumerator enumerator = phone();
+        final CameraController controller = controller(enumerator, "front");
+
+        controller.start();
+        controller.start();
+
+        assertEquals(Arrays.asList("start 640x360@30"), enumerator.mCapturer.mEvents);
+        assertEquals(640, controller.getWidth());
+        assertEquals(360, controller.getHeight());
+        assertEquals(30, controller.getFramerate());
+    }
+
+    @Test
+    public void unknownFormats_fallBackToTheTarget() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("front", true);
+        final CameraController controller = controller(enumerator, "front");
+
+        controller.start();
+
+        assertEquals(Arrays.asList("start 640x480@30"), enumerator.mCapturer.mEvents);
+    }
+
+    @Test
+    public void changeCaptureFormat_appliesLiveOnlyWhenTheNativeFormatChanges() {
+        final FakeCameraEnumerator enumerator = phone();
+        final CameraController controller = controller(enumerator, "front");
+        controller.start();
+
+        controller.changeCaptureFormat(1280, 720, 30);
+        // Maps onto the same native format, nothing to do
+        controller.changeCaptureFormat(1300, 720, 30);
+
+        assertEquals(Arrays.asList("start 640x360@30", "change 1280x720@30"), enumerator.mCapturer.mEvents);
+    }
+
+    @Test
+    public void changeCaptureFormat_whileStopped_isUsedOnTheNextStart() throws InterruptedException {
+        final FakeCameraEnumerator enumerator = phone();
+        final CameraController controller = controller(enumerator, "front");
+
+        controller.changeCaptureFormat(320, 180, 15);
+        controller.start();
+        controller.stop();
+        controller.stop();
+
+        assertEquals(Arrays.asList("start 320x180@15", "stop"), enumerator.mCapturer.mEvents);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void changeCaptureFormat_rejectsNonPositiveValues() {
+        controller(phone(), "front").changeCaptureFormat(640, 0, 30);
+    }
+
+    @Test
+    public void switchCamera_goesToTheOtherFacingAndReselectsTheFormat() {
+        final FakeCameraEnumerator enumerator = phone();
+        final CameraController controller = controller(enumerator, "front");
+        final List<String> switched = new ArrayList<>();
+        controller.start();
+
+        assertTrue(controller.switchCamera(new RecordingListener(switched)));
+        // A second switch while the first runs is refused
+        assertFalse(controller.switchCamera(new RecordingListener(switched)));
+        enumerator.mCapturer.finishSwitch(false);
+
+        assertEquals("back", controller.getDeviceName());
+        assertFalse(controller.isFrontFacing());
+        assertEquals(Arrays.asList("back false"), switched);
+        // The back camera has VGA natively, so the format follows it
+        assertEquals(Arrays.asList("start 640x360@30", "switch back", "change 640x480@30"), enumerator.mCapturer.mEvents);
+    }
+
+    @Test
+    public void switchCamera_failureKeepsTheCurrentDevice() {
+        final FakeCameraEnumerator enumerator = phone();
+        final CameraController controller = controller(enumerator, "front");
+        final List<String> switched = new ArrayList<>();
+
+        assertTrue(controller.switchCamera(new RecordingListener(switched)));
+        enumerator.mCapturer.failSwitch("busy");
+
+        assertEquals("front", controller.getDeviceName());
+        assertEquals(Arrays.asList("failed busy"), switched);
+        // The next attempt is allowed again
+        assertTrue(controller.switchCamera(null));
+    }
+
+    @Test
+    public void switchCamera_withOneCamera_isRefused() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("front", true, format(640, 480, 15, 30));
+
+        assertFalse(controller(enumerator, "front").switchCamera(null));
+    }
+
+    @Test
+    public void switchCamera_withoutOtherFacing_movesToTheNextCamera() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator()
+                .add("wide", false, format(640, 480, 15, 30))
+                .add("tele", false, format(640, 480, 15, 30));
+        final CameraController controller = controller(enumerator, "tele");
+
+        assertTrue(controller.switchCamera(null));
+        enumerator.mCapturer.finishSwitch(false);
+
+        assertEquals("wide", controller.getDeviceName());
+    }
+
+    @Test
+    public void dispose_stopsAndDisposesTheCapturer() {
+        final FakeCameraEnumerator enumerator = phone();
+        final CameraController controller = controller(enumerator, "front");
+        controller.start();
+
+        controller.dispose();
+
+        assertEquals(Arrays.asList("start 640x360@30", "stop", "dispose"), enumerator.mCapturer.mEvents);
+    }
+
+    // A 16:9 only front camera and a back camera with VGA
+    private static FakeCameraEnumerator phone() {
+        return new FakeCameraEnumerator()
+                .add("front", true, format(1280, 720, 15, 30), format(640, 360, 15, 30), format(320, 180, 15, 30))
+                .add("back", false, format(1920, 1080, 15, 30), format(640, 480, 15, 30));
+    }
+
+    private static CameraController controller(final FakeCameraEnumerator enumerator, final String deviceName) {
+        return new CameraController(enumerator, deviceName, new CaptureFormatSelector(), 640, 480, 30, DIRECT);
+    }
+
+    // Framerates in fps, stored in the fps * 1000 units the real enumerators report
+    private static CaptureFormat format(final int width, final int height, final int minFps, final int maxFps) {
+        return new CaptureFormat(width, height, minFps * 1000, maxFps * 1000);
+    }
+
+    private static class RecordingListener implements CameraController.SwitchListener {
+        private final List<String> mEvents;
+
+        RecordingListener(final List<String> events) {
+            mEvents = events;
+        }
+
+        @Override
+        public void onCameraSwitched(String deviceName, boolean frontFacing) {
+            mEvents.add(deviceName + " " + frontFacing);
+        }
+
+        @Override
+        public void onCameraSwitchFailed(String error) {
+            mEvents.add("failed " + error);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.androidwebrtc.webrtc.capture;
+
+import org.junit.Test;
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CaptureFormatSelectorTest {
+    @Test
+    public void exactNativeFormat_isPicked() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("front", true,
+                format(1280, 720, 15, 30), format(640, 480, 15, 30), format(320, 240, 15, 30));
+
+        final CaptureFormat selected = new CaptureFormatSelector().select(enumerator, "front", 640, 480, 30);
+
+        assertEquals(640, selected.width);
+        assertEquals(480, selected.height);
+    }
+
+    @Test
+    public void closestSize_winsWhenTheTargetIsNotNative() {
+        // A 16:9 only camera asked for VGA
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("front", true,
+                format(1920, 1080, 15, 30), format(1280, 720, 15, 30), format(640, 360, 15, 30), format(320, 180, 15, 30));
+
+        final CaptureFormat selected = new CaptureFormatSelector().select(enumerator, "front", 640, 480, 30);
+
+        assertEquals(640, selected.width);
+        assertEquals(360, selected.height);
+    }
+
+    @Test
+    public void formatsReachingTheFramerate_winOverCloserSizes() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("back", false,
+                format(1280, 720, 15, 15), format(960, 720, 15, 30));
+
+        final CaptureFormat selected = new CaptureFormatSelector().select(enumerator, "back", 1280, 720, 30);
+
+        assertEquals(960, selected.width);
+    }
+
+    @Test
+    public void fastestFormat_winsWhenNoneReachTheFramerate() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("back", false,
+                format(640, 480, 10, 15), format(640, 480, 10, 24));
+
+        final CaptureFormat selected = new CaptureFormatSelector().select(enumerator, "back", 640, 480, 30);
+
+        assertEquals(24_000, selected.framerate.max);
+        assertEquals(24, CaptureFormatSelector.framerate(selected, 30));
+    }
+
+    @Test
+    public void widestRangeReachingTheTarget_isPreferred() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("front", true,
+                format(640, 480, 30, 30), format(640, 480, 7, 30), format(640, 480, 7, 60));
+
+        final CaptureFormat selected = new CaptureFormatSelector().select(enumerator, "front", 640, 480, 30);
+
+        assertEquals(7_000, selected.framerate.min);
+        assertEquals(30_000, selected.framerate.max);
+    }
+
+    @Test
+    public void framerate_isCappedByTheFormat() {
+        assertEquals(30, CaptureFormatSelector.framerate(format(640, 480, 15, 60), 30));
+        assertEquals(15, CaptureFormatSelector.framerate(format(640, 480, 15, 15), 30));
+    }
+
+    @Test
+    public void formats_areEnumeratedOncePerDevice() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator()
+                .add("front", true, format(640, 480, 15, 30))
+                .add("back", false, format(1280, 720, 15, 30));
+        final CaptureFormatSelector selector = new CaptureFormatSelector();
+
+        selector.select(enumerator, "front", 640, 480, 30);
+        selector.select(enumerator, "front", 320, 240, 15);
+        selector.select(enumerator, "back", 640, 480, 30);
+        selector.select(enumerator, "back", 640, 480, 30);
+        assertEquals(2, enumerator.mEnumerations);
+
+        selector.clear();
+        selector.select(enumerator, "front", 640, 480, 30);
+        assertEquals(3, enumerator.mEnumerations);
+    }
+
+    @Test
+    public void deviceWithoutFormats_selectsNothing() {
+        final FakeCameraEnumerator enumerator = new FakeCameraEnumerator().add("front", true);
+
+        assertNull(new CaptureFormatSelector().select(enumerator, "front", 640, 480, 30));
+        assertNull(CaptureFormatSelector.closest(Collections.<CaptureFormat>emptyList(), 640, 480, 30));
+    }
+
+    // Framerates in fps, stored in the fps * 1000 units the real enumerators report
+    private static CaptureFormat format(final int width, final int height, final int minFps, final int maxFps) {
+        return new CaptureFormat(width, height, minFps * 1000, maxFps * 1000);
+    }
+}
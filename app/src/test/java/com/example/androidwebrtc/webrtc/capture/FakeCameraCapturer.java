@@ -0,0 +1,73 @@
+package com.example.androidwebrtc.webrtc.capture;
+
+import android.content.Context;
+
+import org.webrtc.CameraVideoCapturer;
+import org.webrtc.CapturerObserver;
+import org.webrtc.SurfaceTextureHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Records the calls a CameraController makes. Camera switches complete only
+// when the test calls finishSwitch, like the camera thread would later on.
+class FakeCameraCapturer implements CameraVideoCapturer {
+    final List<String> mEvents = new ArrayList<>();
+    String mDeviceName;
+    private CameraSwitchHandler mPendingSwitch;
+    private String mPendingDevice;
+
+    void finishSwitch(final boolean frontFacing) {
+        final CameraSwitchHandler handler = mPendingSwitch;
+        mPendingSwitch = null;
+        mDeviceName = mPendingDevice;
+        handler.onCameraSwitchDone(frontFacing);
+    }
+
+    void failSwitch(final String error) {
+        final CameraSwitchHandler handler = mPendingSwitch;
+        mPendingSwitch = null;
+        handler.onCameraSwitchError(error);
+    }
+
+    @Override
+    public void switchCamera(CameraSwitchHandler handler) {
+        throw new UnsupportedOperationException("switch by name");
+    }
+
+    @Override
+    public void switchCamera(CameraSwitchHandler handler, String cameraName) {
+        mEvents.add("switch " + cameraName);
+        mPendingSwitch = handler;
+        mPendingDevice = cameraName;
+    }
+
+    @Override
+    public void initialize(SurfaceTextureHelper helper, Context context, CapturerObserver observer) {
+    }
+
+    @Override
+    public void startCapture(int width, int height, int framerate) {
+        mEvents.add("start " + width + "x" + height + "@" + framerate);
+    }
+
+    @Override
+    public void stopCapture() {
+        mEvents.add("stop");
+    }
+
+    @Override
+    public void changeCaptureFormat(int width, int height, int framerate) {
+        mEvents.add("change " + width + "x" + height + "@" + framerate);
+    }
+
+    @Override
+    public void dispose() {
+        mEvents.add("dispose");
+    }
+
+    @Override
+    public boolean isScreencast() {
+        return false;
+    }
+}
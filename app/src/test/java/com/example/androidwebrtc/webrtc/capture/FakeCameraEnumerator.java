@@ -0,0 +1,56 @@
+package com.example.androidwebrtc.webrtc.capture;
+
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.CameraVideoCapturer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cameras declared by the test with their supported formats. Counts
+// enumerations so tests can check the cache.
+class FakeCameraEnumerator implements CameraEnumerator {
+    private final Map<String, List<CaptureFormat>> mFormats = new LinkedHashMap<>();
+    private final Map<String, Boolean> mFrontFacing = new LinkedHashMap<>();
+    final FakeCameraCapturer mCapturer = new FakeCameraCapturer();
+    int mEnumerations;
+
+    FakeCameraEnumerator add(final String deviceName, final boolean frontFacing, final CaptureFormat... formats) {
+        final List<CaptureFormat> list = new ArrayList<>();
+        for (final CaptureFormat format : formats) {
+            list.add(format);
+        }
+        mFormats.put(deviceName, list);
+        mFrontFacing.put(deviceName, frontFacing);
+        return this;
+    }
+
+    @Override
+    public String[] getDeviceNames() {
+        return mFormats.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public boolean isFrontFacing(String deviceName) {
+        return mFrontFacing.get(deviceName);
+    }
+
+    @Override
+    public boolean isBackFacing(String deviceName) {
+        return !mFrontFacing.get(deviceName);
+    }
+
+    @Override
+    public List<CaptureFormat> getSupportedFormats(String deviceName) {
+        mEnumerations++;
+        return mFormats.get(deviceName);
+    }
+
+    @Override
+    public CameraVideoCapturer createCapturer(String deviceName, CameraVideoCapturer.CameraEventsHandler eventsHandler) {
+        mCapturer.mDeviceName = deviceName;
+        return mCapturer;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.androidwebrtc.webrtc.cert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.webrtc.RtcCertificatePem;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CertificateCacheTest {
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long LIFETIME_MS = 30 * DAY_MS;
+    private static final long ROTATE_BEFORE_MS = 7 * DAY_MS;
+    private static final long START_MS = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ManualExecutor mExecutor = new ManualExecutor();
+    private final FakeWallClock mClock = new FakeWallClock();
+    private final FakeGenerator mGenerator = new FakeGenerator();
+
+    @Test
+    public void start_generatesInTheBackgroundAndStoresIt() throws Exception {
+        final CertificateCache cache = cache();
+
+        cache.start();
+        assertNull(cache.get());
+        assertEquals(0, mGenerator.mCount);
+
+        mExecutor.runAll();
+        assertEquals("cert-1", cache.get().certificate);
+        assertEquals("key-1", cache.get().privateKey);
+        assertEquals(START_MS + LIFETIME_MS, cache.getExpiresAtMs());
+        assertEquals(TimeUnit.MILLISECONDS.toSeconds(LIFETIME_MS), mGenerator.mLastLifetimeSeconds);
+        assertTrue(file().exists());
+        assertArrayEquals(new String[] {CertificateCache.FILE_NAME}, mFolder.getRoot().list());
+    }
+
+    @Test
+    public void save_leavesAnotherWritersTempFileAlone() throws Exception {
+        // Stands in for a save in progress from another cache on the same file
+        final File other = new File(mFolder.getRoot(), CertificateCache.FILE_NAME + ".tmp");
+        Files.write(other.toPath(), "partial".getBytes(Charset.forName("UTF-8")));
+
+        startAndRun(cache());
+
+        assertEquals("partial", new String(Files.readAllBytes(other.toPath()), Charset.forName("UTF-8")));
+        assertEquals(2, mFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void laterLaunch_reloadsWithoutGenerating() throws Exception {
+        startAndRun(cache());
+
+        mClock.mNowMs += 10 * DAY_MS;
+        final CertificateCache relaunched = cache();
+        startAndRun(relaunched);
+
+        assertEquals(1, mGenerator.mCount);
+        assertEquals("cert-1", relaunched.get().certificate);
+        assertEquals(START_MS + LIFETIME_MS, relaunched.getExpiresAtMs());
+    }
+
+    @Test
+    public void rotation_startsAheadOfExpiryAndKeepsServingTheOldOne() throws Exception {
+        final CertificateCache cache = cache();
+        startAndRun(cache);
+
+        mClock.mNowMs = START_MS + LIFETIME_MS - ROTATE_BEFORE_MS;
+        assertEquals("cert-1", cache.get().certificate);
+        // Repeated calls while the rotation is pending queue it once
+        cache.get();
+        assertEquals(1, mExecutor.mTasks.size());
+
+        mExecutor.runAll();
+        assertEquals("cert-2", cache.get().certificate);
+        assertEquals(mClock.mNowMs + LIFETIME_MS, cache.getExpiresAtMs());
+        assertEquals(2, mGenerator.mCount);
+    }
+
+    @Test
+    public void storedCertificateDueForRotation_isReplacedOnStart() throws Exception {
+        startAndRun(cache());
+
+        mClock.mNowMs = START_MS + LIFETIME_MS - DAY_MS / 2;
+        final CertificateCache relaunched = cache();
+        relaunched.start();
+        mExecutor.runAll();
+
+        assertEquals("cert-2", relaunched.get().certificate);
+        // The replacement is what the next launch finds
+        final CertificateCache third = cache();
+        startAndRun(third);
+        assertEquals("cert-2", third.get().certificate);
+    }
+
+    @Test
+    public void certificateCloseToExpiry_isNotHandedOut() throws Exception {
+        final CertificateCache cache = cache();
+        startAndRun(cache);
+        mGenerator.mFail = true;
+
+        mClock.mNowMs = START_MS + LIFETIME_MS - DAY_MS / 2;
+        assertNull(cache.get());
+        mExecutor.runAll();
+        assertNull(cache.get());
+
+        // The next call retries
+        mGenerator.mFail = false;
+        assertNull(cache.get());
+        mExecutor.runAll();
+        assertEquals("cert-2", cache.get().certificate);
+    }
+
+    @Test
+    public void corruptFile_isDiscardedAndRegenerated() throws Exception {
+        Files.write(file().toPath(), "{\"privateKey\":".getBytes(Charset.forName("UTF-8")));
+
+        final CertificateCache cache = cache();
+        startAndRun(cache);
+
+        assertEquals("cert-1", cache.get().certificate);
+        assertEquals(1, mGenerator.mCount);
+    }
+
+    @Test
+    public void failedGeneration_leavesNoCertificate() throws Exception {
+        mGenerator.mFail = true;
+        final CertificateCache cache = cache();
+
+        startAndRun(cache);
+
+        assertNull(cache.get());
+        assertFalse(file().exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lifetimeShorterThanRotationWindow_isRejected() {
+        new CertificateCache(file(), mGenerator, mClock, mExecutor, 7 * DAY_MS, 7 * DAY_MS);
+    }
+
+    private CertificateCache cache() {
+        return new CertificateCache(file(), mGenerator, mClock, mExecutor, LIFETIME_MS, ROTATE_BEFORE_MS);
+    }
+
+    private void startAndRun(final CertificateCache cache) {
+        cache.start();
+        mExecutor.runAll();
+    }
+
+    private File file() {
+        return new File(mFolder.getRoot(), CertificateCache.FILE_NAME);
+    }
+
+    private static class FakeWallClock implements CertificateCache.WallClock {
+        long mNowMs = START_MS;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNowMs;
+        }
+    }
+
+    private static class FakeGenerator implements CertificateCache.Generator {
+        int mCount;
+        long mLastLifetimeSeconds;
+        boolean mFail;
+
+        @Override
+        public RtcCertificatePem generate(long lifetimeSeconds) {
+            if (mFail) return null;
+
+            mCount++;
+            mLastLifetimeSeconds = lifetimeSeconds;
+            return new RtcCertificatePem("key-" + mCount, "cert-" + mCount);
+        }
+    }
+
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(final Runnable runnable) {
+            mTasks.add(runnable);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.poll().run();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoFrame;
+
+class FakeVideoEncoder implements VideoEncoder {
+    final String mName;
+    VideoCodecStatus mInitStatus = VideoCodecStatus.OK;
+    VideoCodecStatus mEncodeStatus = VideoCodecStatus.OK;
+    Callback mCallback;
+    int mEncodeCalls;
+    ResolutionBitrateLimits[] mBitrateLimits = new ResolutionBitrateLimits[0];
+    EncoderInfo mEncoderInfo = new EncoderInfo(1, false);
+
+    FakeVideoEncoder(final String name) {
+        mName = name;
+    }
+
+    void emitFrame() {
+        mCallback.onEncodedFrame(null, new CodecSpecificInfo());
+    }
+
+    @Override
+    public VideoCodecStatus initEncode(Settings settings, Callback encodeCallback) {
+        mCallback = encodeCallback;
+        return mInitStatus;
+    }
+
+    @Override
+    public VideoCodecStatus release() {
+        return VideoCodecStatus.OK;
+    }
+
+    @Override
+    public VideoCodecStatus encode(VideoFrame frame, EncodeInfo info) {
+        mEncodeCalls++;
+        return mEncodeStatus;
+    }
+
+    @Override
+    public VideoCodecStatus setRateAllocation(BitrateAllocation allocation, int framerate) {
+        return VideoCodecStatus.OK;
+    }
+
+    @Override
+    public ScalingSettings getScalingSettings() {
+        return null;
+    }
+
+    @Override
+    public String getImplementationName() {
+        return "Fake" + mName;
+    }
+
+    @Override
+    public ResolutionBitrateLimits[] getResolutionBitrateLimits() {
+        return mBitrateLimits;
+    }
+
+    @Override
+    public EncoderInfo getEncoderInfo() {
+        return mEncoderInfo;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class FakeVideoEncoderFactory implements VideoEncoderFactory {
+    final VideoCodecInfo[] mCodecs;
+    final List<FakeVideoEncoder> mCreated = new ArrayList<>();
+    boolean mThrowOnCreate;
+
+    FakeVideoEncoderFactory(final VideoCodecInfo... codecs) {
+        mCodecs = codecs;
+    }
+
+    @Override
+    public VideoEncoder createEncoder(VideoCodecInfo info) {
+        if (mThrowOnCreate) throw new IllegalStateException("MediaCodec unavailable");
+
+        final FakeVideoEncoder encoder = new FakeVideoEncoder(info.name);
+        mCreated.add(encoder);
+        return encoder;
+    }
+
+    @Override
+    public VideoCodecInfo[] getSupportedCodecs() {
+        return mCodecs;
+    }
+}
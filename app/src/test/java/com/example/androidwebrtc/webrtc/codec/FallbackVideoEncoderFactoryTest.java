@@ -0,0 +1,130 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFallback;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FallbackVideoEncoderFactoryTest {
+    private static final VideoCodecInfo VP8 = new VideoCodecInfo("VP8", Collections.<String, String>emptyMap());
+    private static final VideoCodecInfo VP9 = new VideoCodecInfo("VP9", Collections.<String, String>emptyMap());
+    private static final VideoCodecInfo H264 = new VideoCodecInfo("H264", h264Params());
+
+    private FakeVideoEncoderFactory mHardware;
+    private FakeVideoEncoderFactory mSoftware;
+    private CodecHealth mHealth;
+
+    @Before
+    public void setUp() {
+        mHardware = new FakeVideoEncoderFactory(H264, VP8);
+        mSoftware = new FakeVideoEncoderFactory(VP8, VP9);
+        mHealth = new CodecHealth();
+    }
+
+    @Test
+    public void supportedCodecs_rankHardwareFirstThenPreference() {
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoCodecInfo[] codecs = factory.getSupportedCodecs();
+
+        assertEquals(3, codecs.length);
+        assertEquals("H264", codecs[0].name);
+        assertEquals("VP8", codecs[1].name);
+        assertEquals("VP9", codecs[2].name);
+    }
+
+    @Test
+    public void supportedCodecs_overriddenPolicyCanReorderAndDrop() {
+        final CodecRankingPolicy vp9Only = new CodecRankingPolicy() {
+            @Override
+            public int score(VideoCodecInfo codec, boolean hardwareAccelerated) {
+                return codec.name.equals("VP9") ? 1 : -1;
+            }
+        };
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, vp9Only, mHealth);
+
+        final VideoCodecInfo[] codecs = factory.getSupportedCodecs();
+
+        assertEquals(1, codecs.length);
+        assertEquals("VP9", codecs[0].name);
+    }
+
+    @Test
+    public void supportedCodecs_disabledHardwareLosesHardwareBonus() {
+        mHealth.reportHardwareFailure("H264", "test");
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoCodecInfo[] codecs = factory.getSupportedCodecs();
+
+        assertEquals("VP8", codecs[0].name);
+        assertEquals("H264", codecs[1].name);
+    }
+
+    @Test
+    public void createEncoder_wrapsHardwareWithSoftwareFallback() {
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoEncoder encoder = factory.createEncoder(VP8);
+
+        assertTrue(encoder instanceof VideoEncoderFallback);
+        assertEquals(1, mHardware.mCreated.size());
+        assertEquals(1, mSoftware.mCreated.size());
+    }
+
+    @Test
+    public void createEncoder_hardwareOnlyCodecIsMonitoredWithoutFallback() {
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoEncoder encoder = factory.createEncoder(H264);
+
+        assertTrue(encoder instanceof StallAwareVideoEncoder);
+        assertEquals(0, mSoftware.mCreated.size());
+    }
+
+    @Test
+    public void createEncoder_softwareOnlyCodecSkipsHardware() {
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoEncoder encoder = factory.createEncoder(VP9);
+
+        assertSame(mSoftware.mCreated.get(0), encoder);
+        assertEquals(0, mHardware.mCreated.size());
+    }
+
+    @Test
+    public void createEncoder_usesSoftwareAfterHardwareFailure() {
+        mHealth.reportHardwareFailure("vp8", "test");
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoEncoder encoder = factory.createEncoder(VP8);
+
+        assertSame(mSoftware.mCreated.get(0), encoder);
+        assertEquals(0, mHardware.mCreated.size());
+    }
+
+    @Test
+    public void createEncoder_hardwareCreateThrowsFallsBackAndDisables() {
+        mHardware.mThrowOnCreate = true;
+        final FallbackVideoEncoderFactory factory = new FallbackVideoEncoderFactory(mHardware, mSoftware, PreferredCodecRankingPolicy.DEFAULT, mHealth);
+
+        final VideoEncoder encoder = factory.createEncoder(VP8);
+
+        assertSame(mSoftware.mCreated.get(0), encoder);
+        assertTrue(mHealth.isHardwareDisabled("VP8"));
+    }
+
+    private static Map<String, String> h264Params() {
+        final Map<String, String> params = new HashMap<>();
+        params.put("profile-level-id", "42e01f");
+        params.put("level-asymmetry-allowed", "1");
+        params.put("packetization-mode", "1");
+        return params;
+    }
+}
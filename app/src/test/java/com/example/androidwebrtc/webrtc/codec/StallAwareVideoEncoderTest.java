@@ -0,0 +1,116 @@
+package com.example.androidwebrtc.webrtc.codec;
+
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.EncodedImage;
+import org.webrtc.VideoCodecStatus;
+import org.webrtc.VideoEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StallAwareVideoEncoderTest {
+    private static final long STALL_TIMEOUT_MS = 500;
+
+    private final FakeClock mClock = new FakeClock();
+    private FakeVideoEncoder mHardware;
+    private CodecHealth mHealth;
+    private StallAwareVideoEncoder mEncoder;
+    private int mOutputFrames;
+
+    @Before
+    public void setUp() {
+        mHardware = new FakeVideoEncoder("VP8");
+        mHealth = new CodecHealth();
+        mEncoder = new StallAwareVideoEncoder(mHardware, "VP8", mHealth, mClock, STALL_TIMEOUT_MS);
+    }
+
+    @Test
+    public void initFailure_requestsSoftwareFallback() {
+        mHardware.mInitStatus = VideoCodecStatus.ERROR;
+
+        assertEquals(VideoCodecStatus.FALLBACK_SOFTWARE, mEncoder.initEncode(null, mCallback));
+        assertTrue(mHealth.isHardwareDisabled("VP8"));
+    }
+
+    @Test
+    public void encoderInfoAndBitrateLimits_comeFromTheWrappedEncoder() {
+        mHardware.mEncoderInfo = new VideoEncoder.EncoderInfo(16, true);
+        mHardware.mBitrateLimits = new VideoEncoder.ResolutionBitrateLimits[]{
+                new VideoEncoder.ResolutionBitrateLimits(640 * 360, 300_000, 30_000, 1_000_000)};
+
+        assertSame(mHardware.mEncoderInfo, mEncoder.getEncoderInfo());
+        assertSame(mHardware.mBitrateLimits, mEncoder.getResolutionBitrateLimits());
+    }
+
+    @Test
+    public void healthyEncoder_keepsEncoding() {
+        assertEquals(VideoCodecStatus.OK, mEncoder.initEncode(null, mCallback));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(VideoCodecStatus.OK, mEncoder.encode(null, null));
+            mClock.advanceMs(33);
+            mHardware.emitFrame();
+        }
+
+        assertEquals(100, mOutputFrames);
+        assertFalse(mHealth.isHardwareDisabled("VP8"));
+    }
+
+    @Test
+    public void stalledEncoder_requestsSoftwareFallback() {
+        mEncoder.initEncode(null, mCallback);
+
+        assertEquals(VideoCodecStatus.OK, mEncoder.encode(null, null));
+        mClock.advanceMs(STALL_TIMEOUT_MS / 2);
+        assertEquals(VideoCodecStatus.OK, mEncoder.encode(null, null));
+        mClock.advanceMs(STALL_TIMEOUT_MS);
+
+        assertEquals(VideoCodecStatus.FALLBACK_SOFTWARE, mEncoder.encode(null, null));
+        assertEquals(2, mHardware.mEncodeCalls);
+        assertTrue(mHealth.isHardwareDisabled("VP8"));
+
+        // Stays on software until re-initialized
+        assertEquals(VideoCodecStatus.FALLBACK_SOFTWARE, mEncoder.encode(null, null));
+    }
+
+    @Test
+    public void idleEncoder_isNotConsideredStalled() {
+        mEncoder.initEncode(null, mCallback);
+        mClock.advanceMs(STALL_TIMEOUT_MS * 10);
+
+        assertEquals(VideoCodecStatus.OK, mEncoder.encode(null, null));
+    }
+
+    @Test
+    public void encodeError_requestsSoftwareFallback() {
+        mEncoder.initEncode(null, mCallback);
+        mHardware.mEncodeStatus = VideoCodecStatus.ERROR;
+
+        assertEquals(VideoCodecStatus.FALLBACK_SOFTWARE, mEncoder.encode(null, null));
+        assertTrue(mHealth.isHardwareDisabled("VP8"));
+    }
+
+    private final VideoEncoder.Callback mCallback = new VideoEncoder.Callback() {
+        @Override
+        public void onEncodedFrame(EncodedImage frame, VideoEncoder.CodecSpecificInfo info) {
+            mOutputFrames++;
+        }
+    };
+
+    private static class FakeClock implements Clock {
+        private long mNowNs;
+
+        void advanceMs(final long ms) {
+            mNowNs += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNowNs;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class ChunkedTransferTest {
+    private static final int CHUNK_SIZE = 1024;
+    private static final long HIGH_WATERMARK = 4 * CHUNK_SIZE;
+    // One full frame still buffered is low enough to resume
+    private static final long LOW_WATERMARK = CHUNK_SIZE + ChunkFrames.CHUNK_HEADER_SIZE;
+    private static final long MAX_QUEUED_BYTES = 32 * CHUNK_SIZE;
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final List<byte[]> mReceived = new ArrayList<>();
+    private final DirectBufferPool mPool = new DirectBufferPool();
+    private FakeTransport mTransport;
+    private ChunkedSender mSender;
+    private Reassembler mReassembler;
+    private int mWritableCount;
+
+    @Before
+    public void setUp() {
+        mReassembler = new Reassembler(mPool, 1024 * 1024, 2, new Reassembler.Listener() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                final byte[] copy = new byte[message.remaining()];
+                message.get(copy);
+                mReceived.add(copy);
+            }
+        });
+        mTransport = new FakeTransport();
+        mSender = new ChunkedSender(mTransport, DIRECT, CHUNK_SIZE, HIGH_WATERMARK, LOW_WATERMARK, MAX_QUEUED_BYTES);
+        mSender.setListener(new ChunkedSender.Listener() {
+            @Override
+            public void onWritable() {
+                mWritableCount++;
+            }
+        });
+    }
+
+    @Test
+    public void smallPayload_isSentAsOneFrameAndDeliveredWithoutPooling() {
+        final byte[] payload = payload(100, 1);
+
+        assertEquals(0, mSender.send(ByteBuffer.wrap(payload)));
+        mTransport.deliverAll();
+
+        assertEquals(1, mTransport.mFrameCount);
+        assertEquals(1, mReceived.size());
+        assertArrayEquals(payload, mReceived.get(0));
+        assertEquals(0, mPool.getAllocationCount());
+    }
+
+    @Test
+    public void largePayload_isChunkedAndReassembled() {
+        final byte[] payload = payload(3 * CHUNK_SIZE + 17, 2);
+
+        mSender.send(ByteBuffer.wrap(payload));
+        mTransport.deliverAll();
+
+        assertEquals(4, mTransport.mFrameCount);
+        assertEquals(1, mReceived.size());
+        assertArrayEquals(payload, mReceived.get(0));
+        assertEquals(0, mReassembler.getPartialCount());
+        assertEquals(0, mSender.getQueuedBytes());
+        assertEquals(payload.length, mSender.getBytesSent());
+    }
+
+    @Test
+    public void pooledBuffers_areReusedAcrossTransfers() {
+        for (int i = 0; i < 5; i++) {
+            mSender.send(ByteBuffer.wrap(payload(8 * CHUNK_SIZE, i)));
+            drain();
+        }
+
+        assertEquals(5, mReceived.size());
+        assertEquals(1, mPool.getAllocationCount());
+    }
+
+    @Test
+    public void sender_pausesAtTheHighWatermarkAndResumesBelowTheLowOne() {
+        final byte[] payload = payload(10 * CHUNK_SIZE, 3);
+
+        mSender.send(ByteBuffer.wrap(payload));
+
+        // Nothing drains, so sending stops once four chunks are buffered
+        assertEquals(4, mTransport.mFrameCount);
+        assertEquals(1, mSender.getPauseCount());
+
+        // Still above the low watermark: stays paused
+        mTransport.deliver(2);
+        mSender.resume();
+        assertEquals(4, mTransport.mFrameCount);
+
+        mTransport.deliver(1);
+        mSender.resume();
+        assertEquals(7, mTransport.mFrameCount);
+
+        mTransport.deliverAll();
+        mSender.resume();
+        mTransport.deliverAll();
+        assertEquals(1, mReceived.size());
+        assertArrayEquals(payload, mReceived.get(0));
+    }
+
+    @Test
+    public void send_refusesWhenTheQueueIsFullAndReportsWhenWritable() {
+        // Large enough to sit in the queue while the channel is blocked
+        mTransport.mAcceptSends = false;
+        assertTrue(mSender.send(ByteBuffer.wrap(payload(24 * CHUNK_SIZE, 4))) >= 0);
+        assertEquals(-1, mSender.send(ByteBuffer.wrap(payload(16 * CHUNK_SIZE, 5))));
+        assertEquals(0, mWritableCount);
+
+        mTransport.mAcceptSends = true;
+        drain();
+
+        assertEquals(1, mWritableCount);
+        assertTrue(mSender.send(ByteBuffer.wrap(payload(16 * CHUNK_SIZE, 5))) >= 0);
+    }
+
+    @Test
+    public void send_acceptsAnOversizedPayloadIntoAnEmptyQueue() {
+        assertTrue(mSender.send(ByteBuffer.wrap(payload((int) MAX_QUEUED_BYTES * 2, 6))) >= 0);
+    }
+
+    @Test
+    public void close_dropsQueuedPayloadsAndRefusesNewOnes() {
+        mTransport.mAcceptSends = false;
+        mSender.send(ByteBuffer.wrap(payload(4 * CHUNK_SIZE, 7)));
+
+        mSender.close();
+
+        assertEquals(0, mSender.getQueuedBytes());
+        assertEquals(-1, mSender.send(ByteBuffer.wrap(payload(10, 8))));
+    }
+
+    @Test
+    public void close_runsTheCallbackAfterWorkAlreadyQueued() {
+        final List<Runnable> queued = new ArrayList<>();
+        final List<String> events = new ArrayList<>();
+        final ChunkedSender sender = new ChunkedSender(mTransport, new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                queued.add(runnable);
+            }
+        }, CHUNK_SIZE, HIGH_WATERMARK, LOW_WATERMARK, MAX_QUEUED_BYTES);
+
+        sender.send(ByteBuffer.wrap(payload(10, 10)));
+        sender.close(new Runnable() {
+            @Override
+            public void run() {
+                events.add("closed");
+            }
+        });
+        assertTrue(events.isEmpty());
+
+        for (final Runnable runnable : queued) runnable.run();
+        assertEquals(0, mTransport.mFrameCount);
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void reassembler_abortsATransferThatSkipsAChunk() {
+        mSender.send(ByteBuffer.wrap(payload(3 * CHUNK_SIZE, 9)));
+        mTransport.drop(1);
+        mTransport.deliverAll();
+
+        assertTrue(mReceived.isEmpty());
+        assertEquals(0, mReassembler.getPartialCount());
+    }
+
+    @Test
+    public void reassembler_rejectsTransfersAboveTheMessageLimit() {
+        final Reassembler small = new Reassembler(mPool, 2 * CHUNK_SIZE, 2, new Reassembler.Listener() {
+            @Override
+            public void onMessage(ByteBuffer message) {
+                fail("oversized message delivered");
+            }
+        });
+
+        mSender.send(ByteBuffer.wrap(payload(3 * CHUNK_SIZE, 10)));
+        for (final ByteBuffer frame : mTransport.mFrames) {
+            small.onFrame(frame);
+        }
+
+        assertEquals(0, small.getPartialCount());
+    }
+
+    @Test
+    public void reassembler_interleavesConcurrentTransfers() {
+        final byte[] first = payload(2 * CHUNK_SIZE, 11);
+        final byte[] second = payload(2 * CHUNK_SIZE, 12);
+        // Frames 0-1 belong to the first transfer, 2-3 to the second
+        final List<ByteBuffer> frames = framesOf(first, second);
+
+        mReassembler.onFrame(frames.get(0));
+        mReassembler.onFrame(frames.get(2));
+        mReassembler.onFrame(frames.get(3));
+        mReassembler.onFrame(frames.get(1));
+
+        assertEquals(2, mReceived.size());
+        assertArrayEquals(second, mReceived.get(0));
+        assertArrayEquals(first, mReceived.get(1));
+    }
+
+    private void drain() {
+        while (mSender.getQueuedBytes() > 0) {
+            mTransport.deliverAll();
+            mSender.resume();
+        }
+        mTransport.deliverAll();
+    }
+
+    private List<ByteBuffer> framesOf(final byte[]... payloads) {
+        final FakeTransport transport = new FakeTransport();
+        final ChunkedSender sender = new ChunkedSender(transport, DIRECT, CHUNK_SIZE, Long.MAX_VALUE, 0, MAX_QUEUED_BYTES);
+        for (final byte[] payload : payloads) {
+            sender.send(ByteBuffer.wrap(payload));
+        }
+        return transport.mFrames;
+    }
+
+    private static byte[] payload(final int size, final int seed) {
+        final byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) (i * 31 + seed);
+        }
+        return payload;
+    }
+
+    // Holds sent frames as buffered until delivered to the reassembler
+    private class FakeTransport implements DataChannelTransport {
+        final List<ByteBuffer> mFrames = new ArrayList<>();
+        boolean mAcceptSends = true;
+        int mFrameCount;
+        private long mBuffered;
+
+        @Override
+        public long bufferedAmount() {
+            return mBuffered;
+        }
+
+        @Override
+        public boolean send(ByteBuffer frame) {
+            if (!mAcceptSends) return false;
+
+            // The sender reuses its frame buffer, like DataChannel.send this copies
+            final ByteBuffer copy = ByteBuffer.allocateDirect(frame.remaining());
+            copy.put(frame).flip();
+            mFrames.add(copy);
+            mFrameCount++;
+            mBuffered += copy.remaining();
+            return true;
+        }
+
+        void deliver(final int count) {
+            for (int i = 0; i < count && !mFrames.isEmpty(); i++) {
+                final ByteBuffer frame = mFrames.remove(0);
+                mBuffered -= frame.remaining();
+                mReassembler.onFrame(frame);
+            }
+        }
+
+        void deliverAll() {
+            deliver(Integer.MAX_VALUE);
+        }
+
+        void drop(final int index) {
+            mBuffered -= mFrames.remove(index).remaining();
+        }
+    }
+}
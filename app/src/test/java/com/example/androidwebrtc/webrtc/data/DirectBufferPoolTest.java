@@ -0,0 +1,67 @@
+package com.example.androidwebrtc.webrtc.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class DirectBufferPoolTest {
+    @Test
+    public void acquire_roundsUpToAPowerOfTwoAndLimitsToTheRequestedSize() {
+        final DirectBufferPool pool = new DirectBufferPool();
+
+        final ByteBuffer buffer = pool.acquire(5000);
+
+        assertTrue(buffer.isDirect());
+        assertEquals(8192, buffer.capacity());
+        assertEquals(5000, buffer.limit());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void release_makesTheBufferAvailableForTheSameSizeClass() {
+        final DirectBufferPool pool = new DirectBufferPool();
+
+        final ByteBuffer first = pool.acquire(3000);
+        pool.release(first);
+        final ByteBuffer second = pool.acquire(4000);
+
+        assertSame(first, second);
+        assertEquals(4000, second.limit());
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    public void release_keepsAtMostMaxPerSize() {
+        final DirectBufferPool pool = new DirectBufferPool(1, DirectBufferPool.DEFAULT_MAX_POOLED_CAPACITY);
+
+        pool.release(pool.acquire(100));
+        pool.release(ByteBuffer.allocateDirect(1024));
+        pool.acquire(100);
+        pool.acquire(100);
+
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void release_ignoresForeignAndOversizedBuffers() {
+        final DirectBufferPool pool = new DirectBufferPool(4, 4096);
+
+        pool.release(ByteBuffer.allocate(1024));
+        pool.release(ByteBuffer.allocateDirect(1500));
+        pool.release(pool.acquire(8192));
+
+        pool.acquire(1024);
+        pool.acquire(8192);
+        assertEquals(3, pool.getAllocationCount());
+    }
+
+    @Test
+    public void capacityFor_smallSizesShareTheMinimumClass() {
+        assertEquals(DirectBufferPool.MIN_CAPACITY, DirectBufferPool.capacityFor(0));
+        assertEquals(DirectBufferPool.MIN_CAPACITY, DirectBufferPool.capacityFor(DirectBufferPool.MIN_CAPACITY));
+        assertEquals(2048, DirectBufferPool.capacityFor(1025));
+        assertEquals(1 << 20, DirectBufferPool.capacityFor(1 << 20));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.androidwebrtc.webrtc.dump;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class Y4mFrameDumpSinkTest {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    // 4x2 frame: "FRAME\n" + 8 luma + 2 + 2 chroma bytes
+    private static final int SLOT_SIZE = 6 + 8 + 2 + 2;
+    private static final String HEADER = "YUV4MPEG2 W4 H2 F30:1 Ip A1:1 C420\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final ManualExecutor mExecutor = new ManualExecutor();
+
+    @Test
+    public void writesHeaderAndFramesWithoutStridePadding() throws Exception {
+        final Y4mFrameDumpSink sink = sink(1, 1024);
+
+        // Luma stride 6 for a 4 pixel wide frame
+        final JavaI420Buffer buffer = JavaI420Buffer.wrap(4, 2,
+                bytes(1, 2, 3, 4, 0, 0, 5, 6, 7, 8, 0, 0), 6,
+                bytes(9, 10), 2, bytes(11, 12), 2, null);
+        sink.onFrame(new VideoFrame(buffer, 0, 0));
+        mExecutor.runAll();
+        sink.close();
+        mExecutor.runAll();
+
+        final byte[] file = Files.readAllBytes(sink.getFile(0).toPath());
+        final byte[] header = HEADER.getBytes(ASCII);
+        assertEquals(header.length + SLOT_SIZE, file.length);
+        assertEquals(HEADER, new String(file, 0, header.length, ASCII));
+        assertEquals("FRAME\n", new String(file, header.length, 6, ASCII));
+        for (int i = 0; i < 12; i++) {
+            assertEquals(i + 1, file[header.length + 6 + i]);
+        }
+        assertFalse(new File(mFolder.getRoot(), "dump-0.y4m.part").exists());
+    }
+
+    @Test
+    public void keepsEverySampleIntervalthFrame() throws Exception {
+        final Y4mFrameDumpSink sink = sink(3, 1024);
+
+        for (int i = 0; i < 7; i++) {
+            sink.onFrame(frame(i));
+            mExecutor.runAll();
+        }
+        sink.close();
+        mExecutor.runAll();
+
+        assertEquals(3, sink.getWrittenFrames());
+        assertArrayEquals(new int[] {0, 3, 6}, frameMarkers(sink.getFile(0)));
+    }
+
+    @Test
+    public void ringKeepsTheNewestFramesInCaptureOrder() throws Exception {
+        // Room for three frames
+        final Y4mFrameDumpSink sink = sink(1, HEADER.length() + 3 * SLOT_SIZE + SLOT_SIZE / 2);
+
+        for (int i = 0; i < 5; i++) {
+            sink.onFrame(frame(i));
+            mExecutor.runAll();
+        }
+        sink.close();
+        mExecutor.runAll();
+
+        assertArrayEquals(new int[] {2, 3, 4}, frameMarkers(sink.getFile(0)));
+    }
+
+    @Test
+    public void dropsFramesWhileTheCopyIsPending() throws Exception {
+        final Y4mFrameDumpSink sink = sink(1, 1024);
+        final JavaI420Buffer first = buffer(1);
+        final JavaI420Buffer second = buffer(2);
+
+        sink.onFrame(new VideoFrame(first, 0, 0));
+        sink.onFrame(new VideoFrame(second, 0, 0));
+        assertEquals(2, first.refCount());
+        assertEquals(1, second.refCount());
+        mExecutor.runAll();
+
+        assertEquals(1, first.refCount());
+        assertEquals(1, sink.getDroppedFrames());
+        assertEquals(1, sink.getWrittenFrames());
+    }
+
+    @Test
+    public void resolutionChangeContinuesInTheNextFile() throws Exception {
+        final Y4mFrameDumpSink sink = sink(1, 1024);
+
+        sink.onFrame(frame(1));
+        mExecutor.runAll();
+        sink.onFrame(new VideoFrame(JavaI420Buffer.allocate(2, 2), 0, 0));
+        mExecutor.runAll();
+        sink.close();
+        mExecutor.runAll();
+
+        assertArrayEquals(new int[] {1}, frameMarkers(sink.getFile(0)));
+        final String header = new String(Files.readAllBytes(sink.getFile(1).toPath()), ASCII);
+        assertTrue(header.startsWith("YUV4MPEG2 W2 H2 "));
+    }
+
+    @Test
+    public void framesLargerThanTheLimitAreSkipped() throws Exception {
+        final Y4mFrameDumpSink sink = sink(1, HEADER.length() + SLOT_SIZE - 1);
+
+        sink.onFrame(frame(1));
+        mExecutor.runAll();
+        sink.close();
+        mExecutor.runAll();
+
+        assertEquals(0, sink.getWrittenFrames());
+        assertFalse(sink.getFile(0).exists());
+    }
+
+    @Test
+    public void slotCount_keepsTheMappingWithinTwoGigabytes() {
+        final int header = HEADER.length();
+        final int slotSize = 6 + 1280 * 720 * 3 / 2;
+
+        final int slots = Y4mFrameDumpSink.slotCount(4L * 1024 * 1024 * 1024, header, slotSize);
+
+        assertEquals((Integer.MAX_VALUE - header) / slotSize, slots);
+        assertTrue(header + (long) slots * slotSize <= Integer.MAX_VALUE);
+        assertEquals(0, Y4mFrameDumpSink.slotCount(header + slotSize - 1, header, slotSize));
+    }
+
+    @Test
+    public void ignoresFramesAfterClose() {
+        final Y4mFrameDumpSink sink = sink(1, 1024);
+        sink.close();
+        final JavaI420Buffer buffer = buffer(1);
+
+        sink.onFrame(new VideoFrame(buffer, 0, 0));
+
+        assertEquals(1, buffer.refCount());
+        assertEquals(1, mExecutor.mTasks.size());
+    }
+
+    private Y4mFrameDumpSink sink(final int sampleInterval, final long maxFileBytes) {
+        return new Y4mFrameDumpSink(mFolder.getRoot(), "dump", sampleInterval, maxFileBytes, 30, mExecutor);
+    }
+
+    // Marks the frame with its first luma byte
+    private static VideoFrame frame(final int marker) {
+        return new VideoFrame(buffer(marker), 0, 0);
+    }
+
+    private static JavaI420Buffer buffer(final int marker) {
+        final JavaI420Buffer buffer = JavaI420Buffer.allocate(4, 2);
+        buffer.getDataY().put(0, (byte) marker);
+        return buffer;
+    }
+
+    private static ByteBuffer bytes(final int... values) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(values.length);
+        for (final int value : values) buffer.put((byte) value);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int[] frameMarkers(final File file) throws Exception {
+        final byte[] data = Files.readAllBytes(file.toPath());
+        final int frames = (data.length - HEADER.length()) / SLOT_SIZE;
+        assertEquals(HEADER.length() + frames * SLOT_SIZE, data.length);
+
+        final int[] markers = new int[frames];
+        for (int i = 0; i < frames; i++) {
+            final int slot = HEADER.length() + i * SLOT_SIZE;
+            assertEquals("FRAME\n", new String(data, slot, 6, ASCII));
+            markers[i] = data[slot + 6];
+        }
+        return markers;
+    }
+
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(final Runnable runnable) {
+            mTasks.add(runnable);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.poll().run();
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.androidwebrtc.webrtc.encoding;
+
+import org.junit.Test;
+import org.webrtc.RtpParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EncodingControllerTest {
+    private static final SimulcastConfig THREE_LAYERS = SimulcastConfig.threeLayers(1_500_000);
+
+    @Test
+    public void setMaxBitrate_changesOnlyThatLayer() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        assertTrue(controller.setMaxBitrate("h", 300_000));
+
+        assertEquals(1, target.mWrites);
+        assertEquals(Integer.valueOf(150_000), target.encoding("q").maxBitrateBps);
+        assertEquals(Integer.valueOf(300_000), target.encoding("h").maxBitrateBps);
+        assertEquals(Integer.valueOf(1_500_000), target.encoding("f").maxBitrateBps);
+        assertEquals(Integer.valueOf(300_000), controller.getLayer("h").maxBitrateBps);
+    }
+
+    @Test
+    public void nullBitrate_removesTheCap() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        controller.setMaxBitrate("f", null);
+
+        assertNull(target.encoding("f").maxBitrateBps);
+    }
+
+    @Test
+    public void setMaxFramerateAndActive_mapOntoTheEncoding() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        controller.setMaxFramerate("q", 10);
+        controller.setActive("f", false);
+
+        assertEquals(Integer.valueOf(10), target.encoding("q").maxFramerate);
+        assertTrue(target.encoding("q").active);
+        assertFalse(target.encoding("f").active);
+        assertNull(target.encoding("f").maxFramerate);
+        assertEquals(2, target.mWrites);
+    }
+
+    @Test
+    public void laterChanges_keepEarlierOnes() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        controller.setActive("f", false);
+        // Something else resets the sender, the next change restores the whole state
+        target.mEncodings = THREE_LAYERS.toSendEncodings();
+        controller.setMaxFramerate("q", 15);
+
+        assertFalse(target.encoding("f").active);
+        assertEquals(Integer.valueOf(15), target.encoding("q").maxFramerate);
+    }
+
+    @Test
+    public void setDegradationPreference_isWrittenWithEveryApply() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        controller.setMaxBitrate("q", 100_000);
+        assertNull(target.mDegradationPreference);
+
+        controller.setDegradationPreference(RtpParameters.DegradationPreference.MAINTAIN_FRAMERATE);
+        assertEquals(RtpParameters.DegradationPreference.MAINTAIN_FRAMERATE, target.mDegradationPreference);
+        assertEquals(RtpParameters.DegradationPreference.MAINTAIN_FRAMERATE, controller.getDegradationPreference());
+    }
+
+    @Test
+    public void configDegradationPreference_isAppliedByApply() {
+        final SimulcastConfig config = new SimulcastConfig.Builder()
+                .add(null, 1.0, null, null)
+                .setDegradationPreference(RtpParameters.DegradationPreference.MAINTAIN_RESOLUTION)
+                .build();
+        final FakeTarget target = new FakeTarget(config.toSendEncodings());
+
+        assertTrue(new EncodingController(target, config).apply());
+        assertEquals(RtpParameters.DegradationPreference.MAINTAIN_RESOLUTION, target.mDegradationPreference);
+    }
+
+    @Test
+    public void singleLayer_isAddressedWithNullRid() {
+        final SimulcastConfig config = SimulcastConfig.singleLayer();
+        final FakeTarget target = new FakeTarget(config.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, config);
+
+        controller.setMaxBitrate(null, 800_000);
+
+        assertEquals(Integer.valueOf(800_000), target.mEncodings.get(0).maxBitrateBps);
+    }
+
+    @Test
+    public void encodingsMissingFromTheSender_areSkipped() {
+        // A receiver without simulcast support leaves only the first encoding
+        final List<RtpParameters.Encoding> encodings = new ArrayList<>();
+        encodings.add(THREE_LAYERS.toSendEncodings().get(0));
+        final FakeTarget target = new FakeTarget(encodings);
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        assertTrue(controller.setMaxBitrate("f", 900_000));
+        assertTrue(controller.setMaxBitrate("q", 90_000));
+
+        assertEquals(1, target.mEncodings.size());
+        assertEquals(Integer.valueOf(90_000), target.encoding("q").maxBitrateBps);
+    }
+
+    @Test
+    public void unknownRid_isRejectedWithoutTouchingTheSender() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        try {
+            controller.setMaxBitrate("x", 100_000);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            controller.setActive(null, false);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(0, target.mWrites);
+    }
+
+    @Test
+    public void invalidValues_areRejectedAndNotRecorded() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        try {
+            controller.setMaxBitrate("h", 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            controller.setMaxFramerate("h", -5);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            controller.setDegradationPreference(null);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(0, target.mWrites);
+        assertEquals(Integer.valueOf(500_000), controller.getLayer("h").maxBitrateBps);
+    }
+
+    @Test
+    public void rejectedOrMissingParameters_returnFalse() {
+        final FakeTarget target = new FakeTarget(THREE_LAYERS.toSendEncodings());
+        final EncodingController controller = new EncodingController(target, THREE_LAYERS);
+
+        target.mReject = true;
+        assertFalse(controller.setActive("q", false));
+
+        target.mEncodings = null;
+        assertFalse(controller.setActive("q", true));
+        // The request is still recorded for the next successful apply
+        assertTrue(controller.getLayer("q").active);
+    }
+
+    private static class FakeTarget implements EncodingTarget {
+        List<RtpParameters.Encoding> mEncodings;
+        RtpParameters.DegradationPreference mDegradationPreference;
+        boolean mReject;
+        int mWrites;
+
+        FakeTarget(final List<RtpParameters.Encoding> encodings) {
+            mEncodings = encodings;
+        }
+
+        RtpParameters.Encoding encoding(final String rid) {
+            for (final RtpParameters.Encoding encoding : mEncodings) {
+                if (rid.equals(encoding.rid)) return encoding;
+            }
+            throw new AssertionError("no encoding " + rid);
+        }
+
+        @Override
+        public Parameters read() {
+            if (mEncodings == null) return null;
+
+            // Work on copies like a real sender, nothing sticks until write()
+            final List<RtpParameters.Encoding> copies = new ArrayList<>();
+            for (final RtpParameters.Encoding encoding : mEncodings) {
+                final RtpParameters.Encoding copy = new RtpParameters.Encoding(encoding.rid, encoding.active, encoding.scaleResolutionDownBy);
+                copy.maxBitrateBps = encoding.maxBitrateBps;
+                copy.maxFramerate = encoding.maxFramerate;
+                copies.add(copy);
+            }
+
+            return new Parameters() {
+                private RtpParameters.DegradationPreference mPreference = mDegradationPreference;
+
+                @Override
+                public List<RtpParameters.Encoding> getEncodings() {
+                    return copies;
+                }
+
+                @Override
+                public void setDegradationPreference(RtpParameters.DegradationPreference preference) {
+                    mPreference = preference;
+                }
+
+                @Override
+                public boolean write() {
+                    if (mReject) return false;
+
+                    mWrites++;
+                    mEncodings = copies;
+                    mDegradationPreference = mPreference;
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.androidwebrtc.webrtc.encoding;
+
+import org.junit.Test;
+import org.webrtc.RtpParameters;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimulcastConfigTest {
+    @Test
+    public void threeLayers_mapsToSendEncodingsLowestFirst() {
+        final List<RtpParameters.Encoding> encodings = SimulcastConfig.threeLayers(1_500_000).toSendEncodings();
+
+        assertEquals(3, encodings.size());
+        assertEquals("q", encodings.get(0).rid);
+        assertEquals(4.0, encodings.get(0).scaleResolutionDownBy, 0.0);
+        assertEquals(Integer.valueOf(150_000), encodings.get(0).maxBitrateBps);
+        assertEquals("h", encodings.get(1).rid);
+        assertEquals(2.0, encodings.get(1).scaleResolutionDownBy, 0.0);
+        assertEquals(Integer.valueOf(500_000), encodings.get(1).maxBitrateBps);
+        assertEquals("f", encodings.get(2).rid);
+        assertEquals(1.0, encodings.get(2).scaleResolutionDownBy, 0.0);
+        assertEquals(Integer.valueOf(1_500_000), encodings.get(2).maxBitrateBps);
+        for (final RtpParameters.Encoding encoding : encodings) {
+            assertTrue(encoding.active);
+            assertNull(encoding.maxFramerate);
+        }
+    }
+
+    @Test
+    public void toSendEncodings_returnsFreshInstances() {
+        final SimulcastConfig config = SimulcastConfig.threeLayers(1_000_000);
+
+        assertNotSame(config.toSendEncodings().get(0), config.toSendEncodings().get(0));
+    }
+
+    @Test
+    public void singleLayer_isNotSimulcast() {
+        final SimulcastConfig config = SimulcastConfig.singleLayer();
+
+        assertFalse(config.isSimulcast());
+        assertNull(config.get(0).rid);
+        assertNull(config.toSendEncodings().get(0).maxBitrateBps);
+    }
+
+    @Test
+    public void builder_carriesDegradationPreference() {
+        final SimulcastConfig config = new SimulcastConfig.Builder()
+                .add("lo", 2.0, 300_000, 15)
+                .add("hi", 1.0, 1_000_000, 30)
+                .setDegradationPreference(RtpParameters.DegradationPreference.MAINTAIN_RESOLUTION)
+                .build();
+
+        assertTrue(config.isSimulcast());
+        assertEquals(RtpParameters.DegradationPreference.MAINTAIN_RESOLUTION, config.getDegradationPreference());
+        assertEquals(Integer.valueOf(15), config.toSendEncodings().get(0).maxFramerate);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scaleBelowOne_isRejected() {
+        new SimulcastConfig.Layer("f", 0.5, null, null, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nanScale_isRejected() {
+        new SimulcastConfig.Layer("f", Double.NaN, null, null, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBitrate_isRejected() {
+        new SimulcastConfig.Layer("f", 1.0, 0, null, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeFramerate_isRejected() {
+        new SimulcastConfig.Layer("f", 1.0, null, -1, true);
+    }
+
+    @Test
+    public void invalidRids_areRejected() {
+        for (final String rid : new String[]{"", "a b", "f;", "r\u00fcd", "abcdefghijklmnopq"}) {
+            try {
+                new SimulcastConfig.Layer(rid, 1.0, null, null, true);
+                fail("accepted rid " + rid);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+
+        assertEquals("a-Z_9", new SimulcastConfig.Layer("a-Z_9", 1.0, null, null, true).rid);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void layersOutOfOrder_areRejected() {
+        new SimulcastConfig.Builder().add("f", 1.0, null, null).add("q", 4.0, null, null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicateRids_areRejected() {
+        new SimulcastConfig.Builder().add("f", 2.0, null, null).add("f", 1.0, null, null).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void simulcastLayerWithoutRid_isRejected() {
+        new SimulcastConfig.Builder().add("h", 2.0, null, null).add(null, 1.0, null, null).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tooManyLayers_areRejected() {
+        new SimulcastConfig.Builder()
+                .add("a", 8.0, null, null)
+                .add("b", 4.0, null, null)
+                .add("c", 2.0, null, null)
+                .add("d", 1.0, null, null)
+                .build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyConfig_isRejected() {
+        new SimulcastConfig.Builder().build();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.androidwebrtc.webrtc.negotiation;
+
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Completes SDP operations only when the test says so, like the native signaling
+// thread would some time later. Candidates added before a remote description are
+// dropped, which is what PeerConnection does.
+public class FakeSdpTarget implements SdpTarget {
+    public final List<String> mEvents = new ArrayList<>();
+    final List<IceCandidate> mAdded = new ArrayList<>();
+    final List<IceCandidate> mDropped = new ArrayList<>();
+    // SDP text of every description applied, local and remote
+    final List<String> mApplied = new ArrayList<>();
+    // What createOffer and createAnswer produce
+    String mLocalSdp;
+    private final ArrayDeque<Runnable> mPending = new ArrayDeque<>();
+    private boolean mHasRemoteDescription;
+    private String mFailNext;
+
+    public int pendingCount() {
+        return mPending.size();
+    }
+
+    public void completeNext() {
+        final Runnable completion = mPending.poll();
+        if (completion == null) throw new IllegalStateException("Nothing in flight");
+        completion.run();
+    }
+
+    public void completeAll() {
+        while (!mPending.isEmpty()) completeNext();
+    }
+
+    void failNextOperation(final String error) {
+        mFailNext = error;
+    }
+
+    @Override
+    public void createOffer(final SdpObserver observer, final MediaConstraints constraints) {
+        mEvents.add("createOffer");
+        create(observer, new SessionDescription(SessionDescription.Type.OFFER, mLocalSdp != null ? mLocalSdp : "local-offer"));
+    }
+
+    @Override
+    public void createAnswer(final SdpObserver observer, final MediaConstraints constraints) {
+        mEvents.add("createAnswer");
+        create(observer, new SessionDescription(SessionDescription.Type.ANSWER, mLocalSdp != null ? mLocalSdp : "local-answer"));
+    }
+
+    @Override
+    public void setLocalDescription(final SdpObserver observer, final SessionDescription description) {
+        mEvents.add("setLocal:" + description.type);
+        mApplied.add(description.description);
+        set(observer, false);
+    }
+
+    @Override
+    public void setRemoteDescription(final SdpObserver observer, final SessionDescription description) {
+        mEvents.add("setRemote:" + description.type);
+        mApplied.add(description.description);
+        set(observer, true);
+    }
+
+    @Override
+    public boolean addIceCandidate(final IceCandidate candidate) {
+        mEvents.add("addIceCandidate");
+        if (!mHasRemoteDescription) {
+            mDropped.add(candidate);
+            return false;
+        }
+
+        mAdded.add(candidate);
+        return true;
+    }
+
+    private void create(final SdpObserver observer, final SessionDescription description) {
+        final String error = takeFailure();
+        mPending.add(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    observer.onCreateFailure(error);
+                } else {
+                    observer.onCreateSuccess(description);
+                }
+            }
+        });
+    }
+
+    private void set(final SdpObserver observer, final boolean remote) {
+        final String error = takeFailure();
+        mPending.add(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    observer.onSetFailure(error);
+                    return;
+                }
+
+                if (remote) mHasRemoteDescription = true;
+                observer.onSetSuccess();
+            }
+        });
+    }
+
+    private String takeFailure() {
+        final String error = mFailNext;
+        mFailNext = null;
+        return error;
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.androidwebrtc.webrtc.negotiation;
+
+import com.example.androidwebrtc.TestResources;
+import com.example.androidwebrtc.webrtc.sdp.BandwidthRule;
+import com.example.androidwebrtc.webrtc.sdp.RemoveCodecsRule;
+import com.example.androidwebrtc.webrtc.sdp.SdpRewriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class NegotiationStateMachineTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private final List<SessionDescription> mOffers = new ArrayList<>();
+    private final List<SessionDescription> mAnswers = new ArrayList<>();
+    private final List<String> mFailures = new ArrayList<>();
+
+    private FakeSdpTarget mTarget;
+    private NegotiationStateMachine mMachine;
+
+    @Before
+    public void setUp() {
+        setUp(new SdpRewriter());
+    }
+
+    private void setUp(final SdpRewriter rewriter) {
+        mOffers.clear();
+        mAnswers.clear();
+        mFailures.clear();
+        mTarget = new FakeSdpTarget();
+        mMachine = new NegotiationStateMachine(mTarget, new NegotiationStateMachine.Listener() {
+            @Override
+            public void onLocalDescriptionCreated(SessionDescription description) {
+            }
+
+            @Override
+            public void onLocalOffer(SessionDescription offer) {
+                mOffers.add(offer);
+            }
+
+            @Override
+            public void onLocalAnswer(SessionDescription answer) {
+                mAnswers.add(answer);
+            }
+
+            @Override
+            public void onNegotiationFailed(String reason) {
+                mFailures.add(reason);
+            }
+        }, rewriter, DIRECT);
+    }
+
+    @Test
+    public void callee_candidatesBeforeOffer_areAddedAfterRemoteDescription() {
+        mMachine.addRemoteCandidate(candidate(1));
+        mMachine.addRemoteCandidates(Arrays.asList(candidate(2), candidate(3)));
+        assertEquals(3, mMachine.getPendingCandidateCount());
+
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        assertEquals(Collections.singletonList("setRemote:OFFER"), mTarget.mEvents);
+
+        mTarget.completeAll();
+
+        assertEquals(Arrays.asList("setRemote:OFFER", "addIceCandidate", "addIceCandidate", "addIceCandidate",
+                "createAnswer", "setLocal:ANSWER"), mTarget.mEvents);
+        assertEquals(3, mTarget.mAdded.size());
+        assertTrue(mTarget.mDropped.isEmpty());
+        assertEquals(0, mMachine.getPendingCandidateCount());
+        assertEquals(1, mAnswers.size());
+        assertEquals(NegotiationStateMachine.State.STABLE, mMachine.getState());
+    }
+
+    @Test
+    public void callee_createAnswerWaitsForSetRemoteDescription() {
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+
+        assertEquals(1, mTarget.pendingCount());
+        assertFalse(mTarget.mEvents.contains("createAnswer"));
+
+        mTarget.completeNext();
+        assertEquals(NegotiationStateMachine.State.HAVE_REMOTE_OFFER, mMachine.getState());
+        assertEquals("createAnswer", mTarget.mEvents.get(mTarget.mEvents.size() - 1));
+    }
+
+    @Test
+    public void caller_answerBeforeLocalOfferIsSet_waitsForIt() {
+        mMachine.createOffer(new MediaConstraints());
+        mTarget.completeNext();
+
+        // Local description still in flight when the answer and candidates arrive
+        mMachine.setRemoteAnswer("remote-answer");
+        mMachine.addRemoteCandidate(candidate(1));
+        assertEquals(Arrays.asList("createOffer", "setLocal:OFFER"), mTarget.mEvents);
+
+        mTarget.completeAll();
+
+        assertEquals(Arrays.asList("createOffer", "setLocal:OFFER", "setRemote:ANSWER", "addIceCandidate"), mTarget.mEvents);
+        assertEquals(1, mOffers.size());
+        assertEquals(1, mTarget.mAdded.size());
+        assertTrue(mFailures.isEmpty());
+        assertEquals(NegotiationStateMachine.State.STABLE, mMachine.getState());
+    }
+
+    @Test
+    public void candidatesAfterRemoteDescription_areAddedDirectly() {
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        mTarget.completeAll();
+
+        mMachine.addRemoteCandidate(candidate(1));
+        assertEquals(1, mTarget.mAdded.size());
+        assertEquals(0, mMachine.getPendingCandidateCount());
+    }
+
+    @Test
+    public void failedStep_reportsAndRunsTheNextOperation() {
+        mTarget.failNextOperation("bad sdp");
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        mMachine.addRemoteCandidate(candidate(1));
+
+        mTarget.completeNext();
+        assertEquals(Collections.singletonList("bad sdp"), mFailures);
+        assertEquals(1, mMachine.getPendingCandidateCount());
+
+        mTarget.completeAll();
+        assertEquals(1, mAnswers.size());
+        assertEquals(1, mTarget.mAdded.size());
+    }
+
+    @Test
+    public void answerWithoutLocalOffer_isRejected() {
+        mMachine.setRemoteAnswer("remote-answer");
+
+        assertEquals(1, mFailures.size());
+        assertTrue(mTarget.mEvents.isEmpty());
+    }
+
+    @Test
+    public void offerDuringLocalOffer_isRejectedAsGlare() {
+        mMachine.createOffer(new MediaConstraints());
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        mTarget.completeAll();
+
+        assertEquals(1, mOffers.size());
+        assertEquals(1, mFailures.size());
+        assertEquals(NegotiationStateMachine.State.HAVE_LOCAL_OFFER, mMachine.getState());
+    }
+
+    @Test
+    public void restartIce_replacesAnUnansweredOffer() {
+        mMachine.createOffer(new MediaConstraints());
+        mMachine.restartIce(new MediaConstraints());
+        mMachine.restartIce(new MediaConstraints());
+        mTarget.completeAll();
+
+        assertEquals(3, mOffers.size());
+        assertTrue(mFailures.isEmpty());
+        assertEquals(NegotiationStateMachine.State.HAVE_LOCAL_OFFER, mMachine.getState());
+    }
+
+    @Test
+    public void createOffer_isStillRejectedDuringLocalOffer() {
+        mMachine.createOffer(new MediaConstraints());
+        mMachine.createOffer(new MediaConstraints());
+        mTarget.completeAll();
+
+        assertEquals(1, mOffers.size());
+        assertEquals(1, mFailures.size());
+    }
+
+    @Test
+    public void offerDuringLocalOffer_politeSideRollsBackAndAnswers() {
+        mMachine.setPolite(true);
+        mMachine.createOffer(new MediaConstraints());
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        mMachine.addRemoteCandidate(candidate(1));
+        mTarget.completeAll();
+
+        assertEquals(Arrays.asList("createOffer", "setLocal:OFFER", "setLocal:ROLLBACK", "setRemote:OFFER",
+                "addIceCandidate", "createAnswer", "setLocal:ANSWER"), mTarget.mEvents);
+        assertEquals(1, mAnswers.size());
+        assertTrue(mFailures.isEmpty());
+        assertEquals(NegotiationStateMachine.State.STABLE, mMachine.getState());
+    }
+
+    @Test
+    public void close_dropsQueuedWorkAndLateCompletions() {
+        mMachine.createOffer(new MediaConstraints());
+        mMachine.setRemoteAnswer("remote-answer");
+        mMachine.addRemoteCandidate(candidate(1));
+
+        mMachine.close();
+        mTarget.completeAll();
+        mMachine.addRemoteCandidate(candidate(2));
+
+        assertEquals(Collections.singletonList("createOffer"), mTarget.mEvents);
+        assertTrue(mOffers.isEmpty());
+        assertEquals(NegotiationStateMachine.State.CLOSED, mMachine.getState());
+    }
+
+    // Whatever order signaling delivers the answer and candidates in, and however
+    // the native completions interleave, every candidate is added exactly once
+    @Test
+    public void caller_shuffledSignaling_neverDropsCandidates() {
+        final Random random = new Random(7);
+
+        for (int run = 0; run < 500; run++) {
+            setUp();
+            final int candidates = 1 + random.nextInt(8);
+            final List<Runnable> events = new ArrayList<>();
+
+            events.add(new Runnable() {
+                @Override
+                public void run() {
+                    mMachine.setRemoteAnswer("remote-answer");
+                }
+            });
+            for (int i = 0; i < candidates; i++) {
+                final IceCandidate candidate = candidate(i);
+                events.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        mMachine.addRemoteCandidate(candidate);
+                    }
+                });
+            }
+            Collections.shuffle(events, random);
+
+            mMachine.createOffer(new MediaConstraints());
+            for (final Runnable event : events) {
+                event.run();
+                while (mTarget.pendingCount() > 0 && random.nextBoolean()) {
+                    mTarget.completeNext();
+                }
+            }
+            mTarget.completeAll();
+
+            assertEquals("run " + run, candidates, mTarget.mAdded.size());
+            assertTrue("run " + run, mTarget.mDropped.isEmpty());
+            assertTrue("run " + run, mFailures.isEmpty());
+            assertEquals(NegotiationStateMachine.State.STABLE, mMachine.getState());
+        }
+    }
+
+    @Test
+    public void callee_shuffledSignaling_neverDropsCandidates() {
+        final Random random = new Random(11);
+
+        for (int run = 0; run < 500; run++) {
+            setUp();
+            final int batches = 1 + random.nextInt(4);
+            final List<Runnable> events = new ArrayList<>();
+
+            events.add(new Runnable() {
+                @Override
+                public void run() {
+                    mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+                }
+            });
+            for (int i = 0; i < batches; i++) {
+                final List<IceCandidate> batch = Arrays.asList(candidate(i * 2), candidate(i * 2 + 1));
+                events.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        mMachine.addRemoteCandidates(batch);
+                    }
+                });
+            }
+            Collections.shuffle(events, random);
+
+            for (final Runnable event : events) {
+                event.run();
+                while (mTarget.pendingCount() > 0 && random.nextBoolean()) {
+                    mTarget.completeNext();
+                }
+            }
+            mTarget.completeAll();
+
+            assertEquals("run " + run, batches * 2, mTarget.mAdded.size());
+            assertTrue("run " + run, mTarget.mDropped.isEmpty());
+            assertEquals(1, mAnswers.size());
+        }
+    }
+
+    @Test
+    public void caller_appliesAndReportsTheRewrittenOffer() throws Exception {
+        setUp(new SdpRewriter().addLocalRule(new BandwidthRule("video", 800)));
+        mTarget.mLocalSdp = TestResources.read("sdp/android_offer.sdp");
+
+        mMachine.createOffer(new MediaConstraints());
+        mTarget.completeAll();
+
+        final String applied = mTarget.mApplied.get(0);
+        assertTrue(applied.contains("b=AS:800\r\n"));
+        assertEquals(applied, mOffers.get(0).description);
+    }
+
+    @Test
+    public void callee_rewritesTheRemoteOfferOnly() throws Exception {
+        final String offer = TestResources.read("sdp/chrome_offer.sdp");
+        setUp(new SdpRewriter().addRemoteRule(new RemoveCodecsRule("video", "AV1")));
+        mTarget.mLocalSdp = "local-answer";
+
+        mMachine.setRemoteOffer(offer, new MediaConstraints());
+        mTarget.completeAll();
+
+        assertTrue(offer.contains("AV1/90000"));
+        assertFalse(mTarget.mApplied.get(0).contains("AV1/90000"));
+        assertEquals("local-answer", mTarget.mApplied.get(1));
+        assertEquals("local-answer", mAnswers.get(0).description);
+    }
+
+    @Test
+    public void unparsableDescriptions_areAppliedUnchanged() {
+        setUp(new SdpRewriter().addRule(new BandwidthRule("video", 800)));
+
+        mMachine.setRemoteOffer("remote-offer", new MediaConstraints());
+        mTarget.completeAll();
+
+        assertEquals(Arrays.asList("remote-offer", "local-answer"), mTarget.mApplied);
+        assertTrue(mFailures.isEmpty());
+    }
+
+    private static IceCandidate candidate(final int port) {
+        return new IceCandidate("0", 0, "candidate:" + port + " 1 udp 2122260223 192.168.0.12 " + port + " typ host generation 0");
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import com.example.androidwebrtc.benchmark.Benchmarks;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost and allocation per frame (gc.alloc.rate.norm) of each filter on synthetic
+ * 640x480 frames rotated by 90 degrees, with output buffers taken from the pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameFilterBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Param({"rotate", "crop", "blur"})
+    public String filterName;
+
+    private final I420BufferPool mPool = new I420BufferPool();
+    private final FilterContext mContext = new FilterContext(mPool);
+    private FrameFilter mFilter;
+
+    @Setup
+    public void setUp() {
+        // Inputs come from the pool like an earlier filter's output, so blur runs in place
+        mContext.setBufferPrivate(true);
+        if ("rotate".equals(filterName)) {
+            mFilter = new RotationFilter();
+        } else if ("crop".equals(filterName)) {
+            mFilter = new CropFilter(1, 1);
+        } else {
+            mFilter = new BoxBlurFilter(4);
+        }
+    }
+
+    @Benchmark
+    public int apply() {
+        final JavaI420Buffer input = mPool.acquire(WIDTH, HEIGHT);
+        fillGradient(input.getDataY());
+        mContext.setRotation(90);
+
+        final VideoFrame.I420Buffer output = mFilter.apply(input, mContext);
+        final int width = output.getWidth();
+        output.release();
+        return width;
+    }
+
+    private static void fillGradient(final ByteBuffer plane) {
+        for (int y = 0; y < HEIGHT; y += 16) {
+            plane.put(y * WIDTH, (byte) y);
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmarks.run(FrameFilterBenchmark.class);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.junit.Test;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameFiltersTest {
+    private final I420BufferPool mPool = new I420BufferPool();
+    private final FilterContext mContext = new FilterContext(mPool);
+
+    @Test
+    public void rotate_turnsThePlanesClockwise() {
+        // 4x2 luma, 2x1 chroma
+        final JavaI420Buffer input = frame(4, 2, new int[] {0, 1, 2, 3, 4, 5, 6, 7}, new int[] {10, 11}, new int[] {20, 21});
+        mContext.setRotation(90);
+
+        final VideoFrame.I420Buffer rotated = new RotationFilter().apply(input, mContext);
+
+        assertEquals(2, rotated.getWidth());
+        assertEquals(4, rotated.getHeight());
+        assertArrayEquals(new int[] {4, 0, 5, 1, 6, 2, 7, 3}, plane(rotated.getDataY(), 8));
+        assertArrayEquals(new int[] {10, 11}, plane(rotated.getDataU(), 2));
+        assertArrayEquals(new int[] {20, 21}, plane(rotated.getDataV(), 2));
+        assertEquals(0, mContext.getRotation());
+        assertEquals(0, input.refCount());
+    }
+
+    @Test
+    public void rotate_by180ReversesThePlane() {
+        final JavaI420Buffer input = frame(2, 2, new int[] {1, 2, 3, 4}, new int[] {5}, new int[] {6});
+        mContext.setRotation(180);
+
+        final VideoFrame.I420Buffer rotated = new RotationFilter().apply(input, mContext);
+
+        assertArrayEquals(new int[] {4, 3, 2, 1}, plane(rotated.getDataY(), 4));
+    }
+
+    @Test
+    public void rotate_leavesUprightFramesAlone() {
+        final JavaI420Buffer input = mPool.acquire(4, 4);
+        mContext.setRotation(0);
+
+        assertSame(input, new RotationFilter().apply(input, mContext));
+        assertEquals(1, input.refCount());
+    }
+
+    @Test
+    public void crop_takesTheEvenAlignedCentre() {
+        final int[] luma = new int[8 * 4];
+        for (int i = 0; i < luma.length; i++) luma[i] = i;
+        final JavaI420Buffer input = frame(8, 4, luma, new int[] {0, 1, 2, 3, 4, 5, 6, 7}, new int[8]);
+
+        final VideoFrame.I420Buffer cropped = new CropFilter(1, 1).apply(input, mContext);
+
+        assertEquals(4, cropped.getWidth());
+        assertEquals(4, cropped.getHeight());
+        assertArrayEquals(new int[] {2, 3, 4, 5, 10, 11, 12, 13, 18, 19, 20, 21, 26, 27, 28, 29}, plane(cropped.getDataY(), 16));
+        assertArrayEquals(new int[] {1, 2, 5, 6}, plane(cropped.getDataU(), 4));
+        assertEquals(0, input.refCount());
+    }
+
+    @Test
+    public void crop_keepsFramesAlreadyAtTheAspectRatio() {
+        final JavaI420Buffer input = mPool.acquire(640, 360);
+
+        assertSame(input, new CropFilter(16, 9).apply(input, mContext));
+    }
+
+    @Test
+    public void blur_keepsAFlatPlaneAndTheFrameSize() {
+        final int[] luma = new int[16 * 8];
+        java.util.Arrays.fill(luma, 200);
+        final JavaI420Buffer input = frame(16, 8, luma, new int[32], new int[32]);
+        mContext.setBufferPrivate(true);
+
+        final VideoFrame.I420Buffer blurred = new BoxBlurFilter(2).apply(input, mContext);
+
+        assertSame(input, blurred);
+        assertArrayEquals(luma, plane(blurred.getDataY(), luma.length));
+    }
+
+    @Test
+    public void blur_copiesASharedBufferInsteadOfChangingIt() {
+        final int[] luma = new int[5 * 5];
+        luma[12] = 225;
+        final JavaI420Buffer input = frame(5, 5, luma, new int[] {1, 2, 3, 4, 5, 6, 7, 8, 9}, new int[9]);
+        input.retain();
+        mContext.setBufferPrivate(false);
+
+        final VideoFrame.I420Buffer blurred = new BoxBlurFilter(1).apply(input, mContext);
+
+        assertNotSame(input, blurred);
+        assertArrayEquals(luma, plane(input.getDataY(), 25));
+        assertEquals(25, plane(blurred.getDataY(), 25)[12]);
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5, 6, 7, 8, 9}, plane(blurred.getDataU(), 9));
+        assertEquals(1, input.refCount());
+    }
+
+    @Test
+    public void blur_spreadsASinglePixel() {
+        final int[] luma = new int[5 * 5];
+        luma[12] = 225;
+        final JavaI420Buffer input = frame(5, 5, luma, new int[9], new int[9]);
+        mContext.setBufferPrivate(true);
+
+        new BoxBlurFilter(1).apply(input, mContext);
+
+        final int[] blurred = plane(input.getDataY(), 25);
+        assertEquals(25, blurred[12]);
+        assertEquals(25, blurred[6]);
+        assertEquals(0, blurred[0]);
+    }
+
+    private JavaI420Buffer frame(final int width, final int height, final int[] y, final int[] u, final int[] v) {
+        final JavaI420Buffer buffer = mPool.acquire(width, height);
+        fill(buffer.getDataY(), y);
+        fill(buffer.getDataU(), u);
+        fill(buffer.getDataV(), v);
+        return buffer;
+    }
+
+    private static void fill(final ByteBuffer plane, final int[] values) {
+        for (int i = 0; i < values.length; i++) plane.put(i, (byte) values[i]);
+    }
+
+    private static int[] plane(final ByteBuffer plane, final int length) {
+        final int[] values = new int[length];
+        for (int i = 0; i < length; i++) values[i] = plane.get(i) & 0xff;
+        return values;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.junit.Test;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameProcessingPipelineTest {
+    private final I420BufferPool mPool = new I420BufferPool();
+    private final ManualExecutor mExecutor = new ManualExecutor();
+    private final FakeClock mClock = new FakeClock();
+    private final RecordingSink mSink = new RecordingSink();
+    private final List<String> mApplied = new ArrayList<>();
+
+    @Test
+    public void withoutFilters_framesPassStraightThrough() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        final VideoFrame frame = frame(90);
+
+        pipeline.onFrameCaptured(frame);
+
+        assertEquals(1, mSink.mFrames.size());
+        assertSame(frame, mSink.mFrames.get(0));
+        assertEquals(0, mExecutor.mTasks.size());
+    }
+
+    @Test
+    public void filters_runInOrderOnTheProcessingThread() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.setFilters(Arrays.asList(filter("a", 0), filter("b", 0)));
+        pipeline.addFilter(filter("c", 0));
+
+        pipeline.onFrameCaptured(frame(0));
+        assertEquals(0, mSink.mFrames.size());
+        mExecutor.runAll();
+
+        assertEquals(Arrays.asList("a", "b", "c"), mApplied);
+        assertEquals(1, mSink.mFrames.size());
+        assertEquals(1, pipeline.getProcessedFrames());
+    }
+
+    @Test
+    public void filters_canBeSwappedBetweenFrames() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        final FrameFilter a = filter("a", 0);
+        pipeline.addFilter(a);
+        pipeline.onFrameCaptured(frame(0));
+        mExecutor.runAll();
+
+        pipeline.removeFilter(a);
+        pipeline.addFilter(filter("b", 0));
+        pipeline.onFrameCaptured(frame(0));
+        mExecutor.runAll();
+
+        assertEquals(Arrays.asList("a", "b"), mApplied);
+    }
+
+    @Test
+    public void output_keepsTimestampAndCarriesTheFiltersRotation() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.addFilter(new RotationFilter());
+        final VideoFrame frame = new VideoFrame(mPool.acquire(64, 48), 90, 1234);
+
+        pipeline.onFrameCaptured(frame);
+        mExecutor.runAll();
+
+        final VideoFrame out = mSink.mFrames.get(0);
+        assertEquals(0, out.getRotation());
+        assertEquals(1234, out.getTimestampNs());
+        assertEquals(48, out.getBuffer().getWidth());
+        assertEquals(64, out.getBuffer().getHeight());
+    }
+
+    @Test
+    public void whileBusy_onlyTheNewestFrameIsKept() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.addFilter(filter("a", 0));
+        final JavaI420Buffer first = mPool.acquire(64, 48);
+        final JavaI420Buffer second = mPool.acquire(64, 48);
+        final JavaI420Buffer third = mPool.acquire(64, 48);
+
+        pipeline.onFrameCaptured(new VideoFrame(first, 0, 1));
+        pipeline.onFrameCaptured(new VideoFrame(second, 0, 2));
+        pipeline.onFrameCaptured(new VideoFrame(third, 0, 3));
+        assertEquals(1, mExecutor.mTasks.size());
+        mExecutor.runAll();
+
+        assertEquals(2, pipeline.getDroppedFrames());
+        assertEquals(1, pipeline.getProcessedFrames());
+        assertEquals(3, mSink.mFrames.get(0).getTimestampNs());
+        // Dropped and processed frames are both handed back to the capturer
+        assertEquals(1, first.refCount());
+        assertEquals(1, second.refCount());
+        assertEquals(1, third.refCount());
+    }
+
+    @Test
+    public void pooledBuffers_areReusedAcrossFrames() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.addFilter(new CropFilter(1, 1));
+
+        for (int i = 0; i < 10; i++) {
+            final JavaI420Buffer buffer = JavaI420Buffer.allocate(64, 48);
+            pipeline.onFrameCaptured(new VideoFrame(buffer, 0, i));
+            mExecutor.runAll();
+        }
+
+        assertEquals(10, pipeline.getProcessedFrames());
+        assertEquals(1, mPool.getAllocationCount());
+    }
+
+    @Test
+    public void blur_leavesTheCapturersBufferAlone() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.addFilter(new BoxBlurFilter(1));
+        final JavaI420Buffer captured = JavaI420Buffer.allocate(4, 4);
+        captured.getDataY().put(5, (byte) 200);
+
+        pipeline.onFrameCaptured(new VideoFrame(captured, 0, 0));
+        mExecutor.runAll();
+
+        assertEquals(200, captured.getDataY().get(5) & 0xff);
+        assertNotSame(captured, mSink.mFrames.get(0).getBuffer());
+    }
+
+    @Test
+    public void blur_afterACopyingFilterRunsInPlace() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.setFilters(Arrays.<FrameFilter>asList(new CropFilter(1, 1), new BoxBlurFilter(1)));
+
+        pipeline.onFrameCaptured(new VideoFrame(JavaI420Buffer.allocate(64, 48), 0, 0));
+        mExecutor.runAll();
+
+        assertEquals(1, mPool.getAllocationCount());
+    }
+
+    @Test
+    public void stageTimings_arePerFilter() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.setFilters(Arrays.asList(filter("a", 2), filter("b", 6)));
+
+        pipeline.onFrameCaptured(frame(0));
+        mExecutor.runAll();
+        pipeline.onFrameCaptured(frame(0));
+        mExecutor.runAll();
+
+        final List<FrameProcessingPipeline.StageTiming> timings = pipeline.getStageTimings();
+        assertEquals(3, timings.size());
+        assertEquals(FrameProcessingPipeline.STAGE_TO_I420, timings.get(0).name);
+        assertEquals("a", timings.get(1).name);
+        assertEquals(2, timings.get(1).getFrames());
+        assertEquals(2.0, timings.get(1).getMeanMs(), 0.001);
+        assertEquals("b", timings.get(2).name);
+        assertEquals(6.0, timings.get(2).getMaxMs(), 0.001);
+    }
+
+    @Test
+    public void failingFilter_dropsTheFrameAndKeepsRunning() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        final FrameFilter failing = new FrameFilter() {
+            @Override
+            public String getName() {
+                return "failing";
+            }
+
+            @Override
+            public VideoFrame.I420Buffer apply(VideoFrame.I420Buffer buffer, FilterContext context) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        pipeline.addFilter(failing);
+        final JavaI420Buffer buffer = mPool.acquire(64, 48);
+
+        pipeline.onFrameCaptured(new VideoFrame(buffer, 0, 0));
+        mExecutor.runAll();
+        pipeline.removeFilter(failing);
+        pipeline.addFilter(filter("a", 0));
+        pipeline.onFrameCaptured(frame(0));
+        mExecutor.runAll();
+
+        // Only the capturer's own reference is left
+        assertEquals(1, buffer.refCount());
+        assertEquals(1, mSink.mFrames.size());
+    }
+
+    @Test
+    public void onCapturerStopped_releasesThePendingFrame() {
+        final FrameProcessingPipeline pipeline = pipeline();
+        pipeline.addFilter(filter("a", 0));
+        final JavaI420Buffer buffer = mPool.acquire(64, 48);
+
+        pipeline.onFrameCaptured(new VideoFrame(buffer, 0, 0));
+        pipeline.onCapturerStopped();
+        mExecutor.runAll();
+
+        assertEquals(1, buffer.refCount());
+        assertEquals(0, mSink.mFrames.size());
+    }
+
+    private FrameProcessingPipeline pipeline() {
+        final FrameProcessingPipeline pipeline = new FrameProcessingPipeline(mPool, mExecutor, mClock);
+        pipeline.setSink(mSink);
+        return pipeline;
+    }
+
+    private VideoFrame frame(final int rotation) {
+        return new VideoFrame(mPool.acquire(64, 48), rotation, 0);
+    }
+
+    // Records its name and takes costMs on the fake clock
+    private FrameFilter filter(final String name, final long costMs) {
+        return new FrameFilter() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public VideoFrame.I420Buffer apply(VideoFrame.I420Buffer buffer, FilterContext context) {
+                mApplied.add(name);
+                mClock.advanceMs(costMs);
+                return buffer;
+            }
+        };
+    }
+
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(final Runnable runnable) {
+            mTasks.add(runnable);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.poll().run();
+            }
+        }
+    }
+
+    private static class RecordingSink implements VideoSink {
+        final List<VideoFrame> mFrames = new ArrayList<>();
+
+        @Override
+        public void onFrame(final VideoFrame frame) {
+            mFrames.add(frame);
+        }
+    }
+
+    private static class FakeClock implements Clock {
+        private long mNowNs;
+
+        void advanceMs(final long ms) {
+            mNowNs += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNowNs;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.androidwebrtc.webrtc.processing;
+
+import org.junit.Test;
+import org.webrtc.JavaI420Buffer;
+
+import static org.junit.Assert.*;
+
+public class I420BufferPoolTest {
+    @Test
+    public void acquire_laysOutThePlanesForTheResolution() {
+        final I420BufferPool pool = new I420BufferPool();
+
+        final JavaI420Buffer buffer = pool.acquire(641, 361);
+
+        assertEquals(641, buffer.getWidth());
+        assertEquals(361, buffer.getHeight());
+        assertEquals(641, buffer.getStrideY());
+        assertEquals(321, buffer.getStrideU());
+        assertEquals(641 * 361, buffer.getDataY().remaining());
+        assertEquals(321 * 181, buffer.getDataU().remaining());
+        assertEquals(321 * 181, buffer.getDataV().remaining());
+    }
+
+    @Test
+    public void release_returnsTheFrameForTheSameResolution() {
+        final I420BufferPool pool = new I420BufferPool();
+
+        pool.acquire(640, 480).release();
+        pool.acquire(640, 480).release();
+        pool.acquire(480, 640).release();
+
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void release_waitsForTheLastReference() {
+        final I420BufferPool pool = new I420BufferPool();
+
+        final JavaI420Buffer buffer = pool.acquire(320, 240);
+        buffer.retain();
+        buffer.release();
+        pool.acquire(320, 240);
+
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void release_keepsAtMostMaxPerResolution() {
+        final I420BufferPool pool = new I420BufferPool(1, I420BufferPool.DEFAULT_MAX_RESOLUTIONS);
+
+        final JavaI420Buffer first = pool.acquire(320, 240);
+        final JavaI420Buffer second = pool.acquire(320, 240);
+        first.release();
+        second.release();
+        pool.acquire(320, 240);
+        pool.acquire(320, 240);
+
+        assertEquals(3, pool.getAllocationCount());
+    }
+
+    @Test
+    public void acquire_dropsTheLeastRecentlyUsedResolution() {
+        final I420BufferPool pool = new I420BufferPool(4, 2);
+
+        pool.acquire(320, 240).release();
+        pool.acquire(640, 480).release();
+        pool.acquire(320, 240).release();
+        // Evicts 640x480, the resolution used least recently
+        pool.acquire(1280, 720).release();
+
+        pool.acquire(320, 240).release();
+        pool.acquire(640, 480).release();
+
+        assertEquals(4, pool.getAllocationCount());
+    }
+
+    @Test
+    public void release_afterTheResolutionWasEvictedIsDropped() {
+        final I420BufferPool pool = new I420BufferPool(4, 1);
+
+        final JavaI420Buffer stale = pool.acquire(320, 240);
+        pool.acquire(640, 480).release();
+        stale.release();
+        pool.acquire(640, 480);
+        pool.acquire(320, 240);
+
+        assertEquals(3, pool.getAllocationCount());
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.androidwebrtc.webrtc.recovery;
+
+import com.example.androidwebrtc.webrtc.negotiation.NegotiationStateMachine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class IceRecoveryControllerTest {
+    private LinkLossHarness mHarness;
+
+    @Before
+    public void setUp() {
+        mHarness = new LinkLossHarness();
+    }
+
+    @After
+    public void tearDown() {
+        mHarness.shutdown();
+    }
+
+    @Test
+    public void linkLoss_restartsAfterGraceAndMeasuresRecoveryOnly() {
+        mHarness.connect();
+        mHarness.dropLink();
+        mHarness.advanceMs(1000);
+        mHarness.restoreLink();
+        mHarness.advanceMs(1000);
+
+        assertEquals(Collections.singletonList(1), mHarness.mCaller.mRestarts);
+        assertTrue(mHarness.mCallee.mRestarts.isEmpty());
+        assertEquals(1, mHarness.mCallee.mRemoteOffers);
+        assertEquals(PeerConnection.IceConnectionState.CONNECTED, mHarness.mCaller.getState());
+
+        // The 1.5s of initial setup is not part of it
+        assertEquals(Collections.singletonList(LinkLossHarness.GRACE_MS), mHarness.mCaller.mRecoveries);
+        assertEquals(Collections.singletonList(LinkLossHarness.GRACE_MS), mHarness.mCallee.mRecoveries);
+        assertEquals(LinkLossHarness.GRACE_MS, mHarness.mCaller.mController.getLastRecoveryMs());
+        assertEquals(1, mHarness.mCaller.mController.getRecoveryCount());
+        assertFalse(mHarness.mCaller.mController.isRecovering());
+    }
+
+    @Test
+    public void linkLoss_retriesRestartsLostWhileTheLinkIsDown() {
+        mHarness.connect();
+        mHarness.dropLink();
+        mHarness.advanceMs(6000);
+        mHarness.restoreLink();
+        mHarness.advanceMs(2000);
+
+        // The first offer at 2s is dropped, the retry at 7s gets through
+        assertEquals(Arrays.asList(1, 2), mHarness.mCaller.mRestarts);
+        assertEquals(1, mHarness.getDroppedMessages());
+        // The retry replaces the unanswered offer instead of being rejected
+        assertEquals(2, mHarness.mCaller.mOffersSent);
+        assertEquals(1, mHarness.mCallee.mRemoteOffers);
+        assertTrue(mHarness.mCaller.mNegotiationFailures.isEmpty());
+        assertEquals(Collections.singletonList(7000L), mHarness.mCaller.mRecoveries);
+        assertEquals(Collections.singletonList(2), mHarness.mCaller.mRecoveryAttempts);
+    }
+
+    @Test
+    public void linkLoss_givesUpAfterMaxAttempts() {
+        mHarness.connect();
+        mHarness.dropLink();
+        mHarness.advanceMs(30_000);
+
+        assertEquals(Arrays.asList(1, 2, 3), mHarness.mCaller.mRestarts);
+        // Every attempt produces an offer, all of them lost with the link
+        assertEquals(3, mHarness.mCaller.mOffersSent);
+        assertTrue(mHarness.mCaller.mNegotiationFailures.isEmpty());
+        assertEquals(NegotiationStateMachine.State.HAVE_LOCAL_OFFER, mHarness.mCaller.mNegotiation.getState());
+        assertEquals(1, mHarness.mCaller.mFailures);
+        assertTrue(mHarness.mCaller.mRecoveries.isEmpty());
+        assertFalse(mHarness.mCaller.mController.isRecovering());
+        assertEquals(PeerConnection.IceConnectionState.FAILED, mHarness.mCaller.getState());
+    }
+
+    @Test
+    public void transientDisconnect_healsWithoutARestart() {
+        mHarness.connect();
+        mHarness.mCaller.setState(PeerConnection.IceConnectionState.DISCONNECTED);
+        mHarness.advanceMs(1000);
+        mHarness.mCaller.setState(PeerConnection.IceConnectionState.CONNECTED);
+        mHarness.advanceMs(5000);
+
+        assertTrue(mHarness.mCaller.mRestarts.isEmpty());
+        assertEquals(Collections.singletonList(1000L), mHarness.mCaller.mRecoveries);
+        assertEquals(Collections.singletonList(0), mHarness.mCaller.mRecoveryAttempts);
+    }
+
+    @Test
+    public void failed_restartsAtOnceOnTheInitiator() {
+        mHarness.connect();
+        mHarness.mCaller.setState(PeerConnection.IceConnectionState.FAILED);
+        mHarness.settle();
+
+        assertEquals(Collections.singletonList(1), mHarness.mCaller.mRestarts);
+        assertEquals(Collections.singletonList(0L), mHarness.mCaller.mRecoveries);
+    }
+
+    @Test
+    public void nonInitiator_restartsOnlyWhenTheInitiatorStaysSilent() {
+        mHarness.connect();
+        // Only the callee notices, the caller never sends a restart
+        mHarness.mCallee.setState(PeerConnection.IceConnectionState.DISCONNECTED);
+        // It waits out every attempt the initiator could make
+        mHarness.advanceMs(LinkLossHarness.GRACE_MS + LinkLossHarness.MAX_ATTEMPTS * LinkLossHarness.RESTART_TIMEOUT_MS);
+        assertTrue(mHarness.mCallee.mRestarts.isEmpty());
+
+        mHarness.advanceMs(LinkLossHarness.RESTART_TIMEOUT_MS / 2);
+        assertEquals(Collections.singletonList(1), mHarness.mCallee.mRestarts);
+        assertEquals(1, mHarness.mCaller.mRemoteOffers);
+        assertEquals(PeerConnection.IceConnectionState.CONNECTED, mHarness.mCallee.getState());
+    }
+
+    @Test
+    public void collidingRestarts_politeSideRollsBackAndAnswers() {
+        mHarness.connect();
+        mHarness.mCaller.setState(PeerConnection.IceConnectionState.DISCONNECTED);
+        mHarness.mCallee.setState(PeerConnection.IceConnectionState.DISCONNECTED);
+        mHarness.mCaller.mNegotiation.restartIce(new MediaConstraints());
+        mHarness.mCallee.mNegotiation.restartIce(new MediaConstraints());
+        mHarness.settle();
+
+        assertTrue(mHarness.mCallee.mTarget.mEvents.contains("setLocal:ROLLBACK"));
+        assertTrue(mHarness.mCallee.mNegotiationFailures.isEmpty());
+        // The caller rejects the callee's offer and gets its own answered
+        assertEquals(1, mHarness.mCaller.mNegotiationFailures.size());
+        assertEquals(NegotiationStateMachine.State.STABLE, mHarness.mCaller.mNegotiation.getState());
+        assertEquals(NegotiationStateMachine.State.STABLE, mHarness.mCallee.mNegotiation.getState());
+        assertEquals(PeerConnection.IceConnectionState.CONNECTED, mHarness.mCaller.getState());
+        assertEquals(PeerConnection.IceConnectionState.CONNECTED, mHarness.mCallee.getState());
+    }
+
+    @Test
+    public void failureDuringSetup_isNotTreatedAsALostConnection() {
+        mHarness.mCaller.setState(PeerConnection.IceConnectionState.CHECKING);
+        mHarness.mCaller.setState(PeerConnection.IceConnectionState.FAILED);
+        mHarness.advanceMs(10_000);
+
+        assertTrue(mHarness.mCaller.mRestarts.isEmpty());
+        assertFalse(mHarness.mCaller.mController.isRecovering());
+    }
+
+    @Test
+    public void close_stopsARecoveryInProgress() {
+        mHarness.connect();
+        mHarness.dropLink();
+        mHarness.mCaller.mController.close();
+        mHarness.advanceMs(10_000);
+
+        assertTrue(mHarness.mCaller.mRestarts.isEmpty());
+        assertFalse(mHarness.mCaller.mController.isRecovering());
+    }
+}
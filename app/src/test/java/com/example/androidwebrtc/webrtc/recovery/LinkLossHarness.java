@@ -0,0 +1,253 @@
+package com.example.androidwebrtc.webrtc.recovery;
+
+import com.example.androidwebrtc.webrtc.Clock;
+import com.example.androidwebrtc.webrtc.negotiation.FakeSdpTarget;
+import com.example.androidwebrtc.webrtc.negotiation.NegotiationStateMachine;
+
+import org.webrtc.MediaConstraints;
+import org.webrtc.PeerConnection;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two endpoints joined by a simulated network path and a local stand-in for the
+ * signaling server. Dropping the link kills the selected candidate pair and the
+ * signaling socket alike; restoring it brings signaling back but the old pair
+ * stays dead, so only an ICE restart reconnects. Time only moves in advanceMs.
+ *
+ * <p>Each endpoint negotiates through a real {@link NegotiationStateMachine} on a
+ * {@link FakeSdpTarget}, so restarts go through the same state checks as on a
+ * device. Signaling messages and SDP completions are delivered in {@link #settle}.
+ */
+class LinkLossHarness {
+    static final long GRACE_MS = 2000;
+    static final long RESTART_TIMEOUT_MS = 5000;
+    static final int MAX_ATTEMPTS = 3;
+    // DISCONNECTED turns into FAILED once consent checks have been missing this long
+    static final long FAILED_AFTER_MS = 10_000;
+    private static final long STEP_MS = 250;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    final FakeClock mClock = new FakeClock();
+    final Endpoint mCaller;
+    final Endpoint mCallee;
+
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private final ArrayDeque<Runnable> mMessages = new ArrayDeque<>();
+    private boolean mLinkUp = true;
+    private boolean mAnswerDelivered;
+    private int mDroppedMessages;
+
+    LinkLossHarness() {
+        mCaller = new Endpoint("caller");
+        mCallee = new Endpoint("callee");
+        mCaller.mController.setInitiator(true);
+        mCaller.mNegotiation.setPolite(false);
+        mCallee.mNegotiation.setPolite(true);
+    }
+
+    // Initial setup; recovery time must not include any of it
+    void connect() {
+        mClock.advanceMs(1500);
+        mCaller.mNegotiation.createOffer(new MediaConstraints());
+        settle();
+        // Only count what recovery sends
+        mCaller.mOffersSent = 0;
+        mCallee.mRemoteOffers = 0;
+    }
+
+    void dropLink() {
+        mLinkUp = false;
+        mCaller.setState(PeerConnection.IceConnectionState.DISCONNECTED);
+        mCallee.setState(PeerConnection.IceConnectionState.DISCONNECTED);
+    }
+
+    void restoreLink() {
+        mLinkUp = true;
+    }
+
+    void advanceMs(final long ms) {
+        for (long elapsed = 0; elapsed < ms; elapsed += STEP_MS) {
+            mClock.advanceMs(STEP_MS);
+            mCaller.tick();
+            mCallee.tick();
+            settle();
+        }
+    }
+
+    // Completes SDP operations and delivers signaling until both sides are idle.
+    // Once an answer has been applied both sides have fresh credentials and, with
+    // the link up, a working path, so checks succeed.
+    void settle() {
+        while (mCaller.mTarget.pendingCount() > 0 || mCallee.mTarget.pendingCount() > 0 || !mMessages.isEmpty()) {
+            mCaller.mTarget.completeAll();
+            mCallee.mTarget.completeAll();
+            while (!mMessages.isEmpty()) mMessages.poll().run();
+        }
+
+        if (mAnswerDelivered && mLinkUp
+                && mCaller.mNegotiation.getState() == NegotiationStateMachine.State.STABLE
+                && mCallee.mNegotiation.getState() == NegotiationStateMachine.State.STABLE) {
+            mAnswerDelivered = false;
+            mCaller.setState(PeerConnection.IceConnectionState.CONNECTED);
+            mCallee.setState(PeerConnection.IceConnectionState.CONNECTED);
+        }
+    }
+
+    int getDroppedMessages() {
+        return mDroppedMessages;
+    }
+
+    void shutdown() {
+        mCaller.mNegotiation.close();
+        mCallee.mNegotiation.close();
+        mExecutor.shutdownNow();
+    }
+
+    private Endpoint other(final Endpoint endpoint) {
+        return endpoint == mCaller ? mCallee : mCaller;
+    }
+
+    // The signaling stand-in: queues for delivery while the link is up, drops otherwise
+    private void sendOffer(final Endpoint from, final SessionDescription offer) {
+        final Endpoint to = other(from);
+        send(new Runnable() {
+            @Override
+            public void run() {
+                to.mRemoteOffers++;
+                to.mNegotiation.setRemoteOffer(offer.description, new MediaConstraints());
+            }
+        });
+    }
+
+    private void sendAnswer(final Endpoint from, final SessionDescription answer) {
+        final Endpoint to = other(from);
+        send(new Runnable() {
+            @Override
+            public void run() {
+                mAnswerDelivered = true;
+                to.mNegotiation.setRemoteAnswer(answer.description);
+            }
+        });
+    }
+
+    private void send(final Runnable delivery) {
+        if (!mLinkUp) {
+            mDroppedMessages++;
+            return;
+        }
+        mMessages.add(delivery);
+    }
+
+    class Endpoint {
+        final String mName;
+        final FakeSdpTarget mTarget = new FakeSdpTarget();
+        final NegotiationStateMachine mNegotiation;
+        final IceRecoveryController mController;
+        final List<Integer> mRestarts = new ArrayList<>();
+        final List<Long> mRecoveries = new ArrayList<>();
+        final List<Integer> mRecoveryAttempts = new ArrayList<>();
+        final List<String> mNegotiationFailures = new ArrayList<>();
+        int mFailures;
+        int mRemoteOffers;
+        int mOffersSent;
+
+        private PeerConnection.IceConnectionState mState = PeerConnection.IceConnectionState.NEW;
+        private long mDisconnectedNs;
+
+        Endpoint(final String name) {
+            mName = name;
+            mNegotiation = new NegotiationStateMachine(mTarget, new NegotiationStateMachine.Listener() {
+                @Override
+                public void onLocalDescriptionCreated(SessionDescription description) {
+                }
+
+                @Override
+                public void onLocalOffer(SessionDescription offer) {
+                    mOffersSent++;
+                    sendOffer(Endpoint.this, offer);
+                }
+
+                @Override
+                public void onLocalAnswer(SessionDescription answer) {
+                    sendAnswer(Endpoint.this, answer);
+                }
+
+                @Override
+                public void onNegotiationFailed(String reason) {
+                    mNegotiationFailures.add(reason);
+                }
+            }, DIRECT);
+            mController = new IceRecoveryController(new IceRecoveryController.Restarter() {
+                @Override
+                public void restartIce() {
+                    final MediaConstraints constraints = new MediaConstraints();
+                    constraints.mandatory.add(new MediaConstraints.KeyValuePair("IceRestart", "true"));
+                    mNegotiation.restartIce(constraints);
+                }
+            }, new IceRecoveryController.Listener() {
+                @Override
+                public void onIceRestart(int attempt) {
+                    mRestarts.add(attempt);
+                }
+
+                @Override
+                public void onRecovered(long recoveryMs, int attempts) {
+                    mRecoveries.add(recoveryMs);
+                    mRecoveryAttempts.add(attempts);
+                }
+
+                @Override
+                public void onRecoveryFailed(int attempts) {
+                    mFailures++;
+                }
+            }, mClock, mExecutor, GRACE_MS, RESTART_TIMEOUT_MS, MAX_ATTEMPTS, TimeUnit.HOURS.toMillis(1));
+        }
+
+        PeerConnection.IceConnectionState getState() {
+            return mState;
+        }
+
+        void setState(final PeerConnection.IceConnectionState state) {
+            if (state == mState) return;
+
+            mState = state;
+            if (state == PeerConnection.IceConnectionState.DISCONNECTED) mDisconnectedNs = mClock.nanoTime();
+            mController.onIceConnectionChange(state);
+        }
+
+        private void tick() {
+            if (mState == PeerConnection.IceConnectionState.DISCONNECTED
+                    && mClock.nanoTime() - mDisconnectedNs >= TimeUnit.MILLISECONDS.toNanos(FAILED_AFTER_MS)) {
+                setState(PeerConnection.IceConnectionState.FAILED);
+            }
+            mController.check();
+        }
+    }
+
+    static class FakeClock implements Clock {
+        private long mNowNs;
+
+        void advanceMs(final long ms) {
+            mNowNs += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNowNs;
+        }
+    }
+}
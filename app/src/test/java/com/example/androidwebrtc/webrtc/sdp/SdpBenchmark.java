@@ -0,0 +1,62 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import com.example.androidwebrtc.TestResources;
+import com.example.androidwebrtc.benchmark.Benchmarks;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse, write and full rewrite throughput for each SDP of the test corpus, and
+ * allocation per description (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SdpBenchmark {
+    @Param({"android_offer", "chrome_offer", "firefox_offer"})
+    public String sdpName;
+
+    private String mText;
+    private Sdp mParsed;
+    private SdpRewriter mRewriter;
+
+    @Setup
+    public void setUp() throws Exception {
+        mText = TestResources.read("sdp/" + sdpName + ".sdp");
+        mParsed = Sdp.parse(mText);
+        mRewriter = new SdpRewriter()
+                .addLocalRule(new PreferCodecRule("video", "VP8"))
+                .addLocalRule(new RemoveCodecsRule("audio", "ISAC", "ILBC"))
+                .addLocalRule(new BandwidthRule("video", 1500));
+    }
+
+    @Benchmark
+    public Sdp parse() throws SdpParseException {
+        return Sdp.parse(mText);
+    }
+
+    @Benchmark
+    public String write() {
+        return mParsed.write();
+    }
+
+    @Benchmark
+    public String rewrite() {
+        return mRewriter.rewriteLocal(mText);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmarks.run(SdpBenchmark.class);
+    }
+}
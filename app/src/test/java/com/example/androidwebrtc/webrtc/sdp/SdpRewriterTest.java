@@ -0,0 +1,110 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import com.example.androidwebrtc.TestResources;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SdpRewriterTest {
+    @Test
+    public void withoutRules_theSameStringComesBack() throws Exception {
+        final String offer = TestResources.read("sdp/android_offer.sdp");
+
+        assertSame(offer, new SdpRewriter().rewriteLocal(offer));
+        assertSame(offer, new SdpRewriter().addLocalRule(new BandwidthRule("video", 500)).rewriteRemote(offer));
+    }
+
+    @Test
+    public void preferCodec_movesItAndItsRtxToTheFront() throws Exception {
+        final Sdp sdp = rewrite("sdp/android_offer.sdp", new PreferCodecRule("video", "H264", "VP9"));
+
+        final MediaSection video = sdp.getMediaSections("video").get(0);
+        assertEquals(Arrays.asList("127", "103", "104", "105", "106", "107", "108", "109", "98", "99", "100", "101", "96", "97"),
+                video.getFormats().subList(0, 14));
+        assertEquals(19, video.getFormats().size());
+    }
+
+    @Test
+    public void removeCodecs_shrinksTheOfferAndKeepsItParsable() throws Exception {
+        final String offer = TestResources.read("sdp/android_offer.sdp");
+        final String rewritten = new SdpRewriter()
+                .addLocalRule(new RemoveCodecsRule("video", "H264", "AV1", "red", "ulpfec"))
+                .addLocalRule(new RemoveCodecsRule("audio", "ISAC", "ILBC"))
+                .rewriteLocal(offer);
+
+        final Sdp sdp = Sdp.parse(rewritten);
+        assertEquals(Arrays.asList("96", "97", "98", "99", "100", "101"), sdp.getMediaSections("video").get(0).getFormats());
+        assertEquals(Arrays.asList("111", "63", "9", "0", "8", "106", "105", "13", "110", "112", "113", "126"),
+                sdp.getMediaSections("audio").get(0).getFormats());
+        assertFalse(rewritten.contains("H264"));
+        assertFalse(rewritten.contains("apt=125"));
+        assertTrue(rewritten.length() < offer.length() * 3 / 4);
+    }
+
+    @Test
+    public void removeCodecs_neverEmptiesASection() throws Exception {
+        final Sdp sdp = rewrite("sdp/firefox_offer.sdp", new RemoveCodecsRule("audio", "opus", "G722", "PCMU", "PCMA", "telephone-event"));
+
+        assertEquals(5, sdp.getMediaSections("audio").get(0).getFormats().size());
+    }
+
+    @Test
+    public void bandwidth_capsOnlyTheMediaType() throws Exception {
+        final Sdp sdp = rewrite("sdp/chrome_offer.sdp", new BandwidthRule("video", 1200));
+
+        assertEquals("1200", sdp.getMediaSections("video").get(0).getBandwidth("AS"));
+        assertEquals("1200000", sdp.getMediaSections("video").get(0).getBandwidth("TIAS"));
+        assertNull(sdp.getMediaSections("audio").get(0).getBandwidth("AS"));
+    }
+
+    @Test
+    public void removeExtensions_appliesToEverySection() throws Exception {
+        final String rewritten = new SdpRewriter()
+                .addRule(new RemoveExtensionsRule("http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time",
+                        "http://www.webrtc.org/experiments/rtp-hdrext/video-timing"))
+                .rewriteRemote(TestResources.read("sdp/chrome_offer.sdp"));
+
+        assertFalse(rewritten.contains("abs-send-time"));
+        assertFalse(rewritten.contains("video-timing"));
+        assertTrue(rewritten.contains("transport-wide-cc"));
+    }
+
+    @Test
+    public void failingRule_leavesTheDescriptionUnchanged() throws Exception {
+        final String offer = TestResources.read("sdp/android_offer.sdp");
+        final SdpRewriter rewriter = new SdpRewriter().addLocalRule(new SdpRule() {
+            @Override
+            public void apply(Sdp sdp) {
+                throw new IllegalStateException("broken rule");
+            }
+        });
+
+        assertSame(offer, rewriter.rewriteLocal(offer));
+    }
+
+    @Test
+    public void corpus_survivesEveryRule() throws Exception {
+        final SdpRewriter rewriter = new SdpRewriter()
+                .addLocalRule(new PreferCodecRule("video", "VP9"))
+                .addLocalRule(new RemoveCodecsRule("audio", "G722"))
+                .addLocalRule(new BandwidthRule("audio", 64))
+                .addLocalRule(new RemoveExtensionsRule("urn:ietf:params:rtp-hdrext:toffset"));
+
+        for (final String name : SdpTest.CORPUS) {
+            final String rewritten = rewriter.rewriteLocal(TestResources.read(name));
+
+            // Rewriting again only re-applies the same edits
+            assertEquals(name, rewritten, rewriter.rewriteLocal(rewritten));
+            assertFalse(name, rewritten.contains("G722"));
+        }
+    }
+
+    private static Sdp rewrite(final String name, final SdpRule rule) throws Exception {
+        final Sdp sdp = Sdp.parse(TestResources.read(name));
+        rule.apply(sdp);
+        return Sdp.parse(sdp.write());
+    }
+}
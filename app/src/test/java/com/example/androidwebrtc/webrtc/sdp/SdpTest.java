@@ -0,0 +1,101 @@
+package com.example.androidwebrtc.webrtc.sdp;
+
+import com.example.androidwebrtc.TestResources;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SdpTest {
+    // Offers captured from the Android app, desktop Chrome and Firefox
+    static final List<String> CORPUS = Arrays.asList(
+            "sdp/android_offer.sdp", "sdp/chrome_offer.sdp", "sdp/firefox_offer.sdp");
+
+    @Test
+    public void corpus_roundTripsByteForByte() throws Exception {
+        for (final String name : CORPUS) {
+            final String text = TestResources.read(name);
+
+            assertEquals(name, text, Sdp.parse(text).write());
+        }
+    }
+
+    @Test
+    public void corpus_sectionsAndCodecsAreFound() throws Exception {
+        final Sdp chrome = Sdp.parse(TestResources.read("sdp/chrome_offer.sdp"));
+
+        assertEquals(3, chrome.getMediaSections().size());
+        final MediaSection video = chrome.getMediaSections("video").get(0);
+        assertEquals("1", video.getMid());
+        assertEquals("VP8", video.getCodecName("96"));
+        assertEquals(Arrays.asList("97"), video.findRetransmissionTypes("96"));
+        assertEquals(Arrays.asList("98", "100"), video.findPayloadTypes("vp9"));
+
+        final MediaSection data = chrome.getMediaSections("application").get(0);
+        assertEquals("UDP/DTLS/SCTP", data.getProto());
+        assertEquals(Arrays.asList("webrtc-datachannel"), data.getFormats());
+    }
+
+    @Test
+    public void bareLineFeeds_areWrittenBackWithCrlf() throws Exception {
+        final Sdp sdp = Sdp.parse("v=0\no=- 1 2 IN IP4 127.0.0.1\ns=-\nt=0 0\n\nm=audio 9 UDP/TLS/RTP/SAVPF 111\na=rtpmap:111 opus/48000/2\n");
+
+        assertEquals("v=0\r\no=- 1 2 IN IP4 127.0.0.1\r\ns=-\r\nt=0 0\r\nm=audio 9 UDP/TLS/RTP/SAVPF 111\r\na=rtpmap:111 opus/48000/2\r\n",
+                sdp.write());
+    }
+
+    @Test
+    public void malformedDescriptions_areRejected() {
+        for (final String text : Arrays.asList("", "remote-offer", "o=- 1 2 IN IP4 0.0.0.0\r\n",
+                "v=0\r\nm=audio 9\r\n", "v=0\r\nnot a line\r\n")) {
+            try {
+                Sdp.parse(text);
+                fail("parsed " + text);
+            } catch (SdpParseException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void removePayloadType_dropsItsAttributeLinesOnly() throws Exception {
+        final MediaSection video = video("sdp/android_offer.sdp");
+
+        assertTrue(video.removePayloadType("96"));
+
+        assertFalse(video.getFormats().contains("96"));
+        assertNull(video.getCodecName("96"));
+        for (final String line : video.getLines()) {
+            assertFalse(line, line.startsWith("a=rtcp-fb:96 ") || line.startsWith("a=fmtp:96 "));
+        }
+        // The rtx stream of VP8 is its own payload type
+        assertEquals("rtx", video.getCodecName("97"));
+    }
+
+    @Test
+    public void setBandwidth_goesAfterTheConnectionLineAndReplaces() throws Exception {
+        final MediaSection video = video("sdp/firefox_offer.sdp");
+
+        video.setBandwidth("TIAS", 500000);
+        video.setBandwidth("AS", 500);
+
+        assertEquals("c=IN IP4 0.0.0.0", video.getLines().get(0));
+        assertEquals("b=TIAS:500000", video.getLines().get(1));
+        assertEquals("b=AS:500", video.getLines().get(2));
+        assertEquals("500000", video.getBandwidth("TIAS"));
+    }
+
+    @Test
+    public void removeExtension_matchesUrisWithDirections() throws Exception {
+        final MediaSection video = video("sdp/firefox_offer.sdp");
+
+        assertTrue(video.removeExtension("http://www.webrtc.org/experiments/rtp-hdrext/playout-delay"));
+        assertFalse(video.removeExtension("http://www.webrtc.org/experiments/rtp-hdrext/playout-delay"));
+    }
+
+    private static MediaSection video(final String name) throws Exception {
+        return Sdp.parse(TestResources.read(name)).getMediaSections("video").get(0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+import com.example.androidwebrtc.benchmark.Benchmarks;
+import com.example.androidwebrtc.webrtc.StatsListener;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.webrtc.RTCStatsReport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of the collector itself, on pre-built reports so the numbers
+ * exclude libwebrtc's own report construction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StatsCollectorBenchmark {
+    private static final int REPORTS = 64;
+
+    private final RTCStatsReport[] mReports = new RTCStatsReport[REPORTS];
+    private StatsCollector mCollector;
+    private StatsCollector mCollectorWithListener;
+    private StatsSnapshot mSnapshot;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < REPORTS; i++) {
+            mReports[i] = StatsReports.callReport(i * 1_000_000L, 0.04 + i % 7 / 1000.0, i * 60_000L, i * 55_000L, i / 8, 0.01);
+        }
+
+        mCollector = new StatsCollector();
+        mCollectorWithListener = new StatsCollector();
+        mCollectorWithListener.setListener(new StatsListener() {
+            @Override
+            public void onStats(StatsSnapshot snapshot) {
+            }
+        });
+        mSnapshot = new StatsSnapshot();
+
+        // Full history so aggregates are computed over the whole window
+        for (int i = 0; i < StatsCollector.DEFAULT_HISTORY_SIZE; i++) {
+            mCollector.record(nextReport());
+            mCollectorWithListener.record(nextReport());
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        mCollector.record(nextReport());
+    }
+
+    @Benchmark
+    public void recordWithListener() {
+        mCollectorWithListener.record(nextReport());
+    }
+
+    @Benchmark
+    public void pullSnapshot(final Blackhole blackhole) {
+        blackhole.consume(mCollector.getSnapshot(mSnapshot));
+    }
+
+    private RTCStatsReport nextReport() {
+        final RTCStatsReport report = mReports[mNext];
+        mNext = (mNext + 1) % REPORTS;
+        return report;
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Benchmarks.run(StatsCollectorBenchmark.class);
+    }
+}
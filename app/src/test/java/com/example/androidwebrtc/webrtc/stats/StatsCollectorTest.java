@@ -0,0 +1,113 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+import com.example.androidwebrtc.webrtc.StatsListener;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StatsCollectorTest {
+    private static final long SECOND_US = 1_000_000;
+
+    @Test
+    public void gauges_useNominatedPairAndScaleToMs() {
+        final StatsCollector collector = new StatsCollector(1000, 10);
+
+        collector.record(StatsReports.callReport(0, 0.050, 0, 0, 0, 0.010));
+        final StatsSnapshot snapshot = collector.getSnapshot(new StatsSnapshot());
+
+        assertEquals(50.0, snapshot.getLatest(StatsMetric.RTT_MS), 1e-9);
+        assertEquals(10.0, snapshot.getLatest(StatsMetric.VIDEO_JITTER_MS), 1e-9);
+        assertEquals(4.0, snapshot.getLatest(StatsMetric.AUDIO_JITTER_MS), 1e-9);
+        assertEquals(30.0, snapshot.getLatest(StatsMetric.OUTBOUND_VIDEO_FPS), 1e-9);
+    }
+
+    @Test
+    public void cumulativeCounters_becomePerSecondRates() {
+        final StatsCollector collector = new StatsCollector(1000, 10);
+
+        collector.record(StatsReports.callReport(0, 0.05, 0, 0, 0, 0.01));
+        StatsSnapshot snapshot = collector.getSnapshot(new StatsSnapshot());
+        assertTrue(Double.isNaN(snapshot.getLatest(StatsMetric.OUTBOUND_VIDEO_BITRATE_BPS)));
+
+        // 125 kB over two seconds is 500 kbps
+        collector.record(StatsReports.callReport(2 * SECOND_US, 0.05, 125_000, 62_500, 6, 0.01));
+        snapshot = collector.getSnapshot(snapshot);
+        assertEquals(500_000.0, snapshot.getLatest(StatsMetric.OUTBOUND_VIDEO_BITRATE_BPS), 1e-6);
+        assertEquals(250_000.0, snapshot.getLatest(StatsMetric.INBOUND_VIDEO_BITRATE_BPS), 1e-6);
+        assertEquals(3.0, snapshot.getLatest(StatsMetric.VIDEO_PACKETS_LOST_PER_SECOND), 1e-9);
+    }
+
+    @Test
+    public void simulcastLayers_sumCountersButNotGauges() {
+        final StatsCollector collector = new StatsCollector(1000, 10);
+
+        collector.record(StatsReports.simulcastReport(0, 0));
+        // 3 layers of 12.5 kB in one second is 300 kbps
+        collector.record(StatsReports.simulcastReport(SECOND_US, 12_500));
+        final StatsSnapshot snapshot = collector.getSnapshot(new StatsSnapshot());
+
+        assertEquals(300_000.0, snapshot.getLatest(StatsMetric.OUTBOUND_VIDEO_BITRATE_BPS), 1e-6);
+        assertEquals(30.0, snapshot.getLatest(StatsMetric.OUTBOUND_VIDEO_FPS), 1e-9);
+        assertEquals(30.0, snapshot.getLatest(StatsMetric.VIDEO_JITTER_MS), 1e-9);
+    }
+
+    @Test
+    public void percentiles_coverOnlyTheHistoryWindow() {
+        final StatsCollector collector = new StatsCollector(1000, 20);
+
+        // 100 samples with RTT 1..100 ms, only the last 20 (81..100) are kept
+        for (int i = 1; i <= 100; i++) {
+            collector.record(StatsReports.callReport(i * SECOND_US, i / 1000.0, i * 1000L, i * 1000L, 0, 0.01));
+        }
+        final StatsSnapshot snapshot = collector.getSnapshot(new StatsSnapshot());
+
+        assertEquals(20, snapshot.getSampleCount(StatsMetric.RTT_MS));
+        assertEquals(100, snapshot.getSamples());
+        assertEquals(100.0, snapshot.getLatest(StatsMetric.RTT_MS), 1e-9);
+        assertEquals(90.0, snapshot.getP50(StatsMetric.RTT_MS), 1e-9);
+        assertEquals(99.0, snapshot.getP95(StatsMetric.RTT_MS), 1e-9);
+        assertEquals(90.5, snapshot.getMean(StatsMetric.RTT_MS), 1e-9);
+    }
+
+    @Test
+    public void counterReset_isSkippedInsteadOfNegativeRate() {
+        final StatsCollector collector = new StatsCollector(1000, 10);
+
+        collector.record(StatsReports.callReport(0, 0.05, 100_000, 0, 0, 0.01));
+        collector.record(StatsReports.callReport(SECOND_US, 0.05, 10_000, 0, 0, 0.01));
+        final StatsSnapshot snapshot = collector.getSnapshot(new StatsSnapshot());
+
+        assertEquals(0, snapshot.getSampleCount(StatsMetric.OUTBOUND_VIDEO_BITRATE_BPS));
+    }
+
+    @Test
+    public void listener_receivesSnapshotPerSample() {
+        final StatsCollector collector = new StatsCollector(1000, 10);
+        final int[] calls = new int[1];
+        collector.setListener(new StatsListener() {
+            @Override
+            public void onStats(StatsSnapshot snapshot) {
+                calls[0]++;
+                assertEquals(calls[0], snapshot.getSamples());
+            }
+        });
+
+        collector.record(StatsReports.callReport(0, 0.05, 0, 0, 0, 0.01));
+        collector.record(StatsReports.callReport(SECOND_US, 0.05, 0, 0, 0, 0.01));
+
+        assertEquals(2, calls[0]);
+    }
+
+    @Test
+    public void reset_clearsHistory() {
+        final StatsCollector collector = new StatsCollector(1000, 10);
+        collector.record(StatsReports.callReport(0, 0.05, 0, 0, 0, 0.01));
+
+        collector.reset();
+        final StatsSnapshot snapshot = collector.getSnapshot(new StatsSnapshot());
+
+        assertEquals(0, snapshot.getSamples());
+        assertTrue(Double.isNaN(snapshot.getLatest(StatsMetric.RTT_MS)));
+    }
+}
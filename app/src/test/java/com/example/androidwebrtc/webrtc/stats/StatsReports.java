@@ -0,0 +1,86 @@
+package com.example.androidwebrtc.webrtc.stats;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds RTCStatsReports shaped like the ones libwebrtc delivers during a call.
+ */
+final class StatsReports {
+    private StatsReports() {}
+
+    static RTCStatsReport callReport(final long timestampUs, final double rttSec, final long bytesSent,
+                                     final long bytesReceived, final long videoPacketsLost, final double jitterSec) {
+        final Map<String, RTCStats> stats = new HashMap<>();
+
+        final Map<String, Object> nominatedPair = new HashMap<>();
+        nominatedPair.put("nominated", true);
+        nominatedPair.put("state", "succeeded");
+        nominatedPair.put("currentRoundTripTime", rttSec);
+        nominatedPair.put("availableOutgoingBitrate", 1_500_000.0);
+        stats.put("CP1", new RTCStats(timestampUs, "candidate-pair", "CP1", nominatedPair));
+
+        final Map<String, Object> backupPair = new HashMap<>();
+        backupPair.put("nominated", false);
+        backupPair.put("currentRoundTripTime", 5.0);
+        stats.put("CP2", new RTCStats(timestampUs, "candidate-pair", "CP2", backupPair));
+
+        final Map<String, Object> outboundVideo = new HashMap<>();
+        outboundVideo.put("kind", "video");
+        outboundVideo.put("bytesSent", bytesSent);
+        outboundVideo.put("framesPerSecond", 30.0);
+        stats.put("OT01V", new RTCStats(timestampUs, "outbound-rtp", "OT01V", outboundVideo));
+
+        final Map<String, Object> inboundVideo = new HashMap<>();
+        inboundVideo.put("kind", "video");
+        inboundVideo.put("bytesReceived", bytesReceived);
+        inboundVideo.put("packetsLost", videoPacketsLost);
+        inboundVideo.put("jitter", jitterSec);
+        inboundVideo.put("framesPerSecond", 29.0);
+        stats.put("IT01V", new RTCStats(timestampUs, "inbound-rtp", "IT01V", inboundVideo));
+
+        final Map<String, Object> inboundAudio = new HashMap<>();
+        inboundAudio.put("kind", "audio");
+        inboundAudio.put("bytesReceived", bytesReceived / 10);
+        inboundAudio.put("packetsLost", 0L);
+        inboundAudio.put("jitter", 0.004);
+        stats.put("IT01A", new RTCStats(timestampUs, "inbound-rtp", "IT01A", inboundAudio));
+
+        final Map<String, Object> codec = new HashMap<>();
+        codec.put("mimeType", "video/VP8");
+        codec.put("clockRate", 90000L);
+        stats.put("COT01_96", new RTCStats(timestampUs, "codec", "COT01_96", codec));
+
+        return new RTCStatsReport(timestampUs, stats);
+    }
+
+    // Three simulcast layers at quarter, half and full frame rate, each having sent
+    // bytesPerLayer, and two inbound video streams with different jitter
+    static RTCStatsReport simulcastReport(final long timestampUs, final long bytesPerLayer) {
+        final Map<String, RTCStats> stats = new HashMap<>();
+        final double[] fps = {7.5, 15.0, 30.0};
+
+        for (int layer = 0; layer < fps.length; layer++) {
+            final Map<String, Object> outboundVideo = new HashMap<>();
+            outboundVideo.put("kind", "video");
+            outboundVideo.put("ssrc", 1000L + layer);
+            outboundVideo.put("bytesSent", bytesPerLayer);
+            outboundVideo.put("framesPerSecond", fps[layer]);
+            stats.put("OT0" + layer + "V", new RTCStats(timestampUs, "outbound-rtp", "OT0" + layer + "V", outboundVideo));
+        }
+
+        final double[] jitterSec = {0.010, 0.030};
+        for (int stream = 0; stream < jitterSec.length; stream++) {
+            final Map<String, Object> inboundVideo = new HashMap<>();
+            inboundVideo.put("kind", "video");
+            inboundVideo.put("bytesReceived", 0L);
+            inboundVideo.put("jitter", jitterSec[stream]);
+            stats.put("IT0" + stream + "V", new RTCStats(timestampUs, "inbound-rtp", "IT0" + stream + "V", inboundVideo));
+        }
+
+        return new RTCStatsReport(timestampUs, stats);
+    }
+}
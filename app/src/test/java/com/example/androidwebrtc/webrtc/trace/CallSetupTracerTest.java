@@ -0,0 +1,125 @@
+package com.example.androidwebrtc.webrtc.trace;
+
+import com.example.androidwebrtc.webrtc.Clock;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CallSetupTracerTest {
+    private final FakeClock mClock = new FakeClock();
+    private final CallSetupTracer mTracer = new CallSetupTracer(mClock, 20);
+
+    @Test
+    public void timeline_recordsOffsetsFromBegin() {
+        mClock.advanceMs(5000);
+        mTracer.begin(CallSetupTracer.Role.CALLER);
+        mClock.advanceMs(12);
+        mTracer.mark(CallPhase.LOCAL_SDP_CREATED);
+        mClock.advanceMs(3);
+        mTracer.mark(CallPhase.LOCAL_SDP_SET);
+        mClock.advanceMs(100);
+        mTracer.mark(CallPhase.ICE_CONNECTED);
+
+        final CallTimeline timeline = mTracer.finish();
+
+        assertEquals(CallSetupTracer.Role.CALLER, timeline.role);
+        assertEquals(12.0, timeline.getOffsetMs(CallPhase.LOCAL_SDP_CREATED), 1e-9);
+        assertEquals(15.0, timeline.getOffsetMs(CallPhase.LOCAL_SDP_SET), 1e-9);
+        assertEquals(115.0, timeline.getOffsetMs(CallPhase.ICE_CONNECTED), 1e-9);
+        assertFalse(timeline.has(CallPhase.FIRST_FRAME_RENDERED));
+        assertTrue(Double.isNaN(timeline.getOffsetMs(CallPhase.FIRST_FRAME_RENDERED)));
+    }
+
+    @Test
+    public void repeatedMarks_keepTheFirst() {
+        mTracer.begin(CallSetupTracer.Role.CALLER);
+        mClock.advanceMs(40);
+        mTracer.mark(CallPhase.FIRST_LOCAL_CANDIDATE);
+        mClock.advanceMs(40);
+        mTracer.mark(CallPhase.FIRST_LOCAL_CANDIDATE);
+
+        assertEquals(40.0, mTracer.finish().getOffsetMs(CallPhase.FIRST_LOCAL_CANDIDATE), 1e-9);
+    }
+
+    @Test
+    public void marksOutsideACall_areIgnored() {
+        mTracer.mark(CallPhase.ICE_CONNECTED);
+        assertNull(mTracer.finish());
+
+        mTracer.begin(CallSetupTracer.Role.CALLEE);
+        mTracer.finish();
+        mTracer.mark(CallPhase.ICE_CONNECTED);
+
+        assertEquals(1, mTracer.getCallCount());
+        assertTrue(Double.isNaN(mTracer.getPercentileMs(CallPhase.ICE_CONNECTED, 50)));
+    }
+
+    @Test
+    public void percentiles_coverCallsThatReachedThePhase() {
+        for (int i = 1; i <= 10; i++) {
+            mTracer.begin(CallSetupTracer.Role.CALLER);
+            mClock.advanceMs(i * 100);
+            mTracer.mark(CallPhase.FIRST_FRAME_RENDERED);
+            mTracer.finish();
+        }
+        // A failed call that never rendered does not skew the distribution
+        mTracer.begin(CallSetupTracer.Role.CALLER);
+        mTracer.finish();
+
+        assertEquals(11, mTracer.getCallCount());
+        assertEquals(500.0, mTracer.getPercentileMs(CallPhase.FIRST_FRAME_RENDERED, 50), 1e-9);
+        assertEquals(1000.0, mTracer.getPercentileMs(CallPhase.FIRST_FRAME_RENDERED, 99), 1e-9);
+    }
+
+    @Test
+    public void history_keepsTheMostRecentCalls() {
+        for (int i = 0; i < 25; i++) {
+            mTracer.begin(CallSetupTracer.Role.CALLER);
+            mTracer.finish();
+        }
+
+        assertEquals(20, mTracer.getCallCount());
+    }
+
+    @Test
+    public void begin_finishesTheCallInProgress() {
+        mTracer.begin(CallSetupTracer.Role.CALLER);
+        mTracer.begin(CallSetupTracer.Role.CALLEE);
+        mTracer.finish();
+
+        assertEquals(2, mTracer.getCallCount());
+    }
+
+    @Test
+    public void export_containsCallsAndSummary() throws Exception {
+        mTracer.begin(CallSetupTracer.Role.CALLEE);
+        mClock.advanceMs(250);
+        mTracer.mark(CallPhase.DTLS_CONNECTED);
+        mTracer.finish();
+
+        final JSONObject json = mTracer.exportJson();
+        final JSONObject call = json.getJSONArray("calls").getJSONObject(0);
+
+        assertEquals("callee", call.getString("role"));
+        assertEquals(250.0, call.getDouble("dtls_connected_ms"), 1e-9);
+        assertFalse(call.has("ice_connected_ms"));
+        assertEquals(250.0, json.getJSONObject("summary").getJSONObject("dtls_connected_ms").getDouble("p90"), 1e-9);
+    }
+
+    private static class FakeClock implements Clock {
+        private long mNowNs;
+
+        void advanceMs(final long ms) {
+            mNowNs += TimeUnit.MILLISECONDS.toNanos(ms);
+        }
+
+        @Override
+        public long nanoTime() {
+            return mNowNs;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.androidwebrtc.webrtc.transport;
+
+import org.junit.Test;
+import org.webrtc.PeerConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TransportProfileTest {
+    @Test
+    public void standard_keepsTheDefaultsAndGathersContinually() {
+        final PeerConnection.RTCConfiguration configuration = defaults();
+
+        TransportProfile.STANDARD.applyTo(configuration);
+
+        assertEquals(PeerConnection.BundlePolicy.BALANCED, configuration.bundlePolicy);
+        assertEquals(PeerConnection.RtcpMuxPolicy.NEGOTIATE, configuration.rtcpMuxPolicy);
+        assertEquals(PeerConnection.TcpCandidatePolicy.ENABLED, configuration.tcpCandidatePolicy);
+        assertEquals(PeerConnection.IceTransportsType.ALL, configuration.iceTransportsType);
+        assertEquals(PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY, configuration.continualGatheringPolicy);
+        assertEquals(2, configuration.iceCandidatePoolSize);
+        assertEquals(-1, configuration.iceConnectionReceivingTimeout);
+        assertEquals(1, TransportProfile.STANDARD.getIceServers().size());
+        assertFalse(TransportProfile.STANDARD.getIceServers().get(0).isTurn());
+    }
+
+    @Test
+    public void maxBundle_sharesOneTransportWithoutTcp() {
+        final PeerConnection.RTCConfiguration configuration = defaults();
+
+        TransportProfile.MAX_BUNDLE.applyTo(configuration);
+
+        assertEquals(PeerConnection.BundlePolicy.MAXBUNDLE, configuration.bundlePolicy);
+        assertEquals(PeerConnection.RtcpMuxPolicy.REQUIRE, configuration.rtcpMuxPolicy);
+        assertEquals(PeerConnection.TcpCandidatePolicy.DISABLED, configuration.tcpCandidatePolicy);
+        assertEquals(PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY, configuration.continualGatheringPolicy);
+        assertEquals(1, configuration.iceCandidatePoolSize);
+        assertEquals(TransportProfile.STANDARD.getIceServers(), TransportProfile.MAX_BUNDLE.getIceServers());
+    }
+
+    @Test
+    public void cellularFriendly_toleratesLongerStalls() {
+        final PeerConnection.RTCConfiguration configuration = defaults();
+
+        TransportProfile.CELLULAR_FRIENDLY.applyTo(configuration);
+
+        assertEquals(PeerConnection.BundlePolicy.MAXBUNDLE, configuration.bundlePolicy);
+        assertEquals(5000, configuration.iceConnectionReceivingTimeout);
+        assertNull(TransportProfile.CELLULAR_FRIENDLY.getCandidateNetworkPolicy());
+    }
+
+    @Test
+    public void relayOnly_usesOnlyTheGivenTurnServers() {
+        final TransportProfile.IceServerSpec turn = new TransportProfile.IceServerSpec(
+                Arrays.asList("turn:turn.example.com:3478?transport=udp", "turns:turn.example.com:443"), "user", "secret");
+
+        final TransportProfile profile = TransportProfile.relayOnly(Collections.singletonList(turn));
+        final PeerConnection.RTCConfiguration configuration = defaults();
+        profile.applyTo(configuration);
+
+        assertEquals("relay-only", profile.getName());
+        assertEquals(Collections.singletonList(turn), profile.getIceServers());
+        assertEquals(PeerConnection.IceTransportsType.RELAY, configuration.iceTransportsType);
+        assertEquals(PeerConnection.BundlePolicy.MAXBUNDLE, configuration.bundlePolicy);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void relayOnly_withoutTurn_isRejected() {
+        new TransportProfile.Builder("broken")
+                .addStunServer(TransportProfile.DEFAULT_STUN_URL)
+                .setIceTransportsType(PeerConnection.IceTransportsType.RELAY)
+                .build();
+    }
+
+    @Test
+    public void builderFromBase_addsTurnWithoutTouchingThePreset() {
+        final TransportProfile profile = new TransportProfile.Builder("max-bundle-turn", TransportProfile.MAX_BUNDLE)
+                .addTurnServer("turn:turn.example.com:3478", "user", "secret")
+                .build();
+
+        assertEquals(2, profile.getIceServers().size());
+        assertTrue(profile.getIceServers().get(1).isTurn());
+        assertEquals("secret", profile.getIceServers().get(1).password);
+        assertEquals(1, TransportProfile.MAX_BUNDLE.getIceServers().size());
+        assertEquals(PeerConnection.BundlePolicy.MAXBUNDLE, profile.getBundlePolicy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void turnWithoutCredentials_isRejected() {
+        new TransportProfile.Builder("broken").addTurnServer("turn:turn.example.com:3478", null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownScheme_isRejected() {
+        new TransportProfile.Builder("broken").addStunServer("http://stun.example.com");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativePoolSize_isRejected() {
+        new TransportProfile.Builder("broken").setIceCandidatePoolSize(-1);
+    }
+
+    // Fixed starting values, so each test sees exactly what a profile overrides
+    private static PeerConnection.RTCConfiguration defaults() {
+        final PeerConnection.RTCConfiguration configuration = new PeerConnection.RTCConfiguration(new ArrayList<PeerConnection.IceServer>());
+        configuration.iceTransportsType = PeerConnection.IceTransportsType.ALL;
+        configuration.bundlePolicy = PeerConnection.BundlePolicy.BALANCED;
+        configuration.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.NEGOTIATE;
+        configuration.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.ENABLED;
+        configuration.candidateNetworkPolicy = PeerConnection.CandidateNetworkPolicy.ALL;
+        configuration.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_ONCE;
+        configuration.iceConnectionReceivingTimeout = -1;
+        return configuration;
+    }
+}